@@ -23,6 +23,7 @@ import org.apache.unomi.api.utils.YamlUtils.YamlMapBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.bind.annotation.XmlTransient;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -82,6 +83,8 @@ public abstract class Item implements Serializable, YamlConvertible {
     private String sourceInstanceId;
     private Date lastSyncDate;
 
+    private transient Object persistedState;
+
     public Item() {
         this.itemType = getItemType(this.getClass());
         if (itemType == null) {
@@ -194,6 +197,26 @@ public abstract class Item implements Serializable, YamlConvertible {
         systemMetadata.put(key, value);
     }
 
+    /**
+     * Retrieves the state of this item as last loaded from or saved to the persistence service, recorded by the service
+     * managing the item so that only the changes made since then have to be persisted.
+     *
+     * @return the recorded state, or {@code null} if none was recorded
+     */
+    @XmlTransient
+    public Object getPersistedState() {
+        return persistedState;
+    }
+
+    /**
+     * Sets the state of this item as last loaded from or saved to the persistence service, see {@link #getPersistedState()}.
+     *
+     * @param persistedState the recorded state
+     */
+    public void setPersistedState(Object persistedState) {
+        this.persistedState = persistedState;
+    }
+
     public String getTenantId() {
         return tenantId;
     }
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.unomi.api.campaigns;
+
+import org.apache.unomi.api.Item;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A separate item holding the materialized statistics of a {@link Campaign} and of the goals attached to it. These
+ * counters are maintained incrementally as campaign and goal rules are executed, and periodically reconciled against
+ * the profiles and sessions they are derived from, so that campaign details and goal reports can be served without
+ * querying the profile and session indices.
+ *
+ * The item identifier is the campaign identifier. Goals that are not attached to any campaign are tracked in a single
+ * document identified by {@link #NO_CAMPAIGN_ID}.
+ */
+public class CampaignStatistics extends Item {
+
+    /**
+     * The CampaignStatistics ITEM_TYPE.
+     *
+     * @see Item for a discussion of ITEM_TYPE
+     */
+    public static final String ITEM_TYPE = "campaignstats";
+
+    /**
+     * Identifier of the statistics document tracking goals that are not attached to a campaign.
+     */
+    public static final String NO_CAMPAIGN_ID = "_noCampaign";
+
+    private static final long serialVersionUID = 1L;
+
+    private long engagedProfiles = 0;
+    private long engagedSessions = 0;
+    private Map<String, Long> goalStartedSessions = new HashMap<>();
+    private Map<String, Long> goalReachedSessions = new HashMap<>();
+    private Date lastSyncDate;
+    private Date lastReconciliationDate;
+
+    public CampaignStatistics() {
+    }
+
+    public CampaignStatistics(String itemId) {
+        super(itemId);
+    }
+
+    /**
+     * Retrieves the number of profiles that engaged in the campaign.
+     *
+     * @return the number of engaged profiles
+     */
+    public long getEngagedProfiles() {
+        return engagedProfiles;
+    }
+
+    /**
+     * Sets the number of profiles that engaged in the campaign.
+     *
+     * @param engagedProfiles the number of engaged profiles
+     */
+    public void setEngagedProfiles(long engagedProfiles) {
+        this.engagedProfiles = engagedProfiles;
+    }
+
+    /**
+     * Retrieves the number of sessions that engaged in the campaign.
+     *
+     * @return the number of engaged sessions
+     */
+    public long getEngagedSessions() {
+        return engagedSessions;
+    }
+
+    /**
+     * Sets the number of sessions that engaged in the campaign.
+     *
+     * @param engagedSessions the number of engaged sessions
+     */
+    public void setEngagedSessions(long engagedSessions) {
+        this.engagedSessions = engagedSessions;
+    }
+
+    /**
+     * Retrieves, by goal identifier, the number of sessions in which the goal's start event was reached.
+     *
+     * @return a map of goal identifiers to session counts
+     */
+    public Map<String, Long> getGoalStartedSessions() {
+        return goalStartedSessions;
+    }
+
+    /**
+     * Sets, by goal identifier, the number of sessions in which the goal's start event was reached.
+     *
+     * @param goalStartedSessions a map of goal identifiers to session counts
+     */
+    public void setGoalStartedSessions(Map<String, Long> goalStartedSessions) {
+        this.goalStartedSessions = goalStartedSessions;
+    }
+
+    /**
+     * Retrieves, by goal identifier, the number of sessions in which the goal's target event was reached.
+     *
+     * @return a map of goal identifiers to session counts
+     */
+    public Map<String, Long> getGoalReachedSessions() {
+        return goalReachedSessions;
+    }
+
+    /**
+     * Sets, by goal identifier, the number of sessions in which the goal's target event was reached.
+     *
+     * @param goalReachedSessions a map of goal identifiers to session counts
+     */
+    public void setGoalReachedSessions(Map<String, Long> goalReachedSessions) {
+        this.goalReachedSessions = goalReachedSessions;
+    }
+
+    /**
+     * Retrieves the last time counters accumulated by the cluster nodes were added to this document.
+     *
+     * @return the last sync date
+     */
+    public Date getLastSyncDate() {
+        return lastSyncDate;
+    }
+
+    /**
+     * Sets the last time counters accumulated by the cluster nodes were added to this document.
+     *
+     * @param lastSyncDate the last sync date
+     */
+    public void setLastSyncDate(Date lastSyncDate) {
+        this.lastSyncDate = lastSyncDate;
+    }
+
+    /**
+     * Retrieves the last time the counters were recomputed from the profiles and sessions.
+     *
+     * @return the last reconciliation date
+     */
+    public Date getLastReconciliationDate() {
+        return lastReconciliationDate;
+    }
+
+    /**
+     * Sets the last time the counters were recomputed from the profiles and sessions.
+     *
+     * @param lastReconciliationDate the last reconciliation date
+     */
+    public void setLastReconciliationDate(Date lastReconciliationDate) {
+        this.lastReconciliationDate = lastReconciliationDate;
+    }
+}
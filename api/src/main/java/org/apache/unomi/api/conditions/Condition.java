@@ -46,6 +46,7 @@ public class Condition implements Serializable, YamlConvertible {
     ConditionType conditionType;
     String conditionTypeId;
     Map<String, Object> parameterValues = new HashMap<>();
+    private transient volatile Object preparedValue;
 
     /**
      * Instantiates a new Condition.
@@ -120,6 +121,7 @@ public class Condition implements Serializable, YamlConvertible {
      */
     public void setParameterValues(Map<String, Object> parameterValues) {
         this.parameterValues = parameterValues != null ? parameterValues : new HashMap<>();
+        this.preparedValue = null;
     }
 
     /**
@@ -154,6 +156,30 @@ public class Condition implements Serializable, YamlConvertible {
             parameterValues = new HashMap<>();
         }
         parameterValues.put(name, value);
+        preparedValue = null;
+    }
+
+    /**
+     * Retrieves the value prepared from the parameters of this condition by its evaluator, such as parsed parameters
+     * or an index of the parameter values, so that it does not have to be rebuilt on every evaluation. The prepared
+     * value is neither serialized nor copied, and is discarded whenever the parameters are set.
+     *
+     * @return the prepared value, or {@code null} if none was prepared yet
+     */
+    @XmlTransient
+    public Object getPreparedValue() {
+        return preparedValue;
+    }
+
+    /**
+     * Sets the value prepared from the parameters of this condition, see {@link #getPreparedValue()}. As the parameter
+     * values map may still be modified in place, evaluators should check that the prepared value matches the current
+     * parameters before using it.
+     *
+     * @param preparedValue the prepared value
+     */
+    public void setPreparedValue(Object preparedValue) {
+        this.preparedValue = preparedValue;
     }
 
     @Override
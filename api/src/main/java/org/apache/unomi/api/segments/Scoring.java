@@ -43,6 +43,7 @@ public class Scoring extends MetadataItem implements YamlConvertible {
     public static final String ITEM_TYPE = "scoring";
     private static final long serialVersionUID = 6351058906259967559L;
     private List<ScoringElement> elements;
+    private String definitionHash;
 
     /**
      * Instantiates a new Scoring.
@@ -77,6 +78,25 @@ public class Scoring extends MetadataItem implements YamlConvertible {
         this.elements = elements;
     }
 
+    /**
+     * Retrieves the hash of the content of this Scoring (elements and enabled state) as it was when profiles were last
+     * updated for it, used to skip the update of existing profiles when an unchanged definition is saved again.
+     *
+     * @return the hash of the definition, or {@code null} if it was never computed
+     */
+    public String getDefinitionHash() {
+        return definitionHash;
+    }
+
+    /**
+     * Sets the hash of the content of this Scoring.
+     *
+     * @param definitionHash the hash of the definition
+     */
+    public void setDefinitionHash(String definitionHash) {
+        this.definitionHash = definitionHash;
+    }
+
     /**
      * Converts this scoring to a Map structure for YAML output.
      * Implements YamlConvertible interface with circular reference detection.
@@ -47,6 +47,7 @@ public class Segment extends MetadataItem implements YamlConvertible {
     public static final String ITEM_TYPE = "segment";
     private static final long serialVersionUID = -1384533444860961296L;
     private Condition condition;
+    private String definitionHash;
 
     /**
      * Instantiates a new Segment.
@@ -81,6 +82,25 @@ public class Segment extends MetadataItem implements YamlConvertible {
         this.condition = condition;
     }
 
+    /**
+     * Retrieves the hash of the content of this Segment (condition and enabled state) as it was when profiles were last
+     * updated for it, used to skip the update of existing profiles when an unchanged definition is saved again.
+     *
+     * @return the hash of the definition, or {@code null} if it was never computed
+     */
+    public String getDefinitionHash() {
+        return definitionHash;
+    }
+
+    /**
+     * Sets the hash of the content of this Segment.
+     *
+     * @param definitionHash the hash of the definition
+     */
+    public void setDefinitionHash(String definitionHash) {
+        this.definitionHash = definitionHash;
+    }
+
     /**
      * Converts this segment to a Map structure for YAML output.
      * Implements YamlConvertible interface with circular reference detection.
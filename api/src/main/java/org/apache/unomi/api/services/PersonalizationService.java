@@ -40,6 +40,17 @@ public interface PersonalizationService {
      */
     boolean filter(Profile profile, Session session, PersonalizedContent personalizedContent);
 
+    /**
+     * Check which items of a list are visible for the specified profile and session. Filters shared by several items
+     * are only evaluated once.
+     *
+     * @param profile The profile
+     * @param session The session
+     * @param personalizedContents Personalized contents, each containing a list of filters
+     * @return A map of content ids to their visibility
+     */
+    Map<String, Boolean> filter(Profile profile, Session session, List<PersonalizedContent> personalizedContents);
+
     /**
      * Get the best match among a list of items, for the specified profile and session
      *
@@ -21,6 +21,8 @@ import org.apache.unomi.api.*;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.query.Query;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.util.*;
 
@@ -64,6 +66,24 @@ public interface ProfileService {
      */
     String exportProfilesPropertiesToCsv(Query query);
 
+    /**
+     * Writes a comma-separated values (CSV) formatted version of the profiles matching the specified query to the
+     * specified writer. The profiles are paged through and written as they are retrieved, so that the export is never
+     * held in memory. All the profiles matching the query are exported, unless the query sets a limit.
+     * <p>
+     * In single pass mode, the columns are the known profile property types, and the properties without a known type
+     * are written as a JSON object in a trailing {@code otherProperties} column. In two pass mode, the profiles are
+     * first spilled to a temporary file to discover all their properties, and each property gets its own column, as in
+     * {@link #exportProfilesPropertiesToCsv(Query)}.
+     *
+     * @param query   the query specifying which profiles to export
+     * @param writer  the writer to write the CSV export to
+     * @param twoPass {@code true} to give each property its own column using a temporary spill file,
+     *                {@code false} to stream the rows in a single pass
+     * @throws IOException if the export cannot be written
+     */
+    void exportProfilesPropertiesToCsv(Query query, Writer writer, boolean twoPass) throws IOException;
+
     /**
      * Find profiles which have the specified property with the specified value, ordered according to the specified {@code sortBy} String and paged: only
      * {@code size} of them are retrieved, starting with the {@code offset}-th one.
@@ -100,6 +120,36 @@ public interface ProfileService {
      */
     Profile load(String profileId);
 
+    /**
+     * Retrieves the profile and the session of a request together, in a single request to the persistence service when
+     * possible. The profile identifier may be an alias, which is resolved as in {@link #load(String)}.
+     *
+     * @param profileId the identifier of the profile to retrieve, or {@code null} if no profile should be retrieved
+     * @param sessionId the identifier of the session to retrieve, or {@code null} if no session should be retrieved
+     * @return the profile and the session, each of them being {@code null} if it does not exist
+     */
+    default ProfileWithSession loadProfileWithSession(String profileId, String sessionId) {
+        return new ProfileWithSession(profileId != null ? load(profileId) : null, sessionId != null ? loadSession(sessionId) : null);
+    }
+
+    /**
+     * Retrieves several profiles, in as few requests to the persistence service as possible. The identifiers may be
+     * aliases, which are resolved as in {@link #load(String)}.
+     *
+     * @param profileIds the identifiers of the profiles to retrieve
+     * @return the profiles found, by requested identifier
+     */
+    default Map<String, Profile> loadProfiles(Collection<String> profileIds) {
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+        for (String profileId : profileIds) {
+            Profile profile = load(profileId);
+            if (profile != null) {
+                profiles.put(profileId, profile);
+            }
+        }
+        return profiles;
+    }
+
     /**
      * Saves the specified profile in the context server.
      *
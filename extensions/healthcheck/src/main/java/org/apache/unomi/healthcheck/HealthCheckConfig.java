@@ -51,11 +51,15 @@ public class HealthCheckConfig {
     public static final String ENABLED = "healthcheck.enabled";
     public static final String PROVIDERS = "healthcheck.providers";
     public static final String TIMEOUT = "healthcheck.timeout";
+    public static final String REFRESH_INTERVAL = "healthcheck.refreshInterval";
+    public static final String THREADS = "healthcheck.threads";
 
     private Map<String, String> config = new HashMap<>();
     private boolean enabled = true;
     private List<String> enabledProviders = new ArrayList<>();
     private int timeout = 400;
+    private long refreshInterval = 1000;
+    private int threads = 4;
 
     @Activate
     @Modified
@@ -65,6 +69,8 @@ public class HealthCheckConfig {
         this.setEnabled(config.getOrDefault(ENABLED, "true").equalsIgnoreCase("true"));
         this.setEnabledProviders(config.getOrDefault(PROVIDERS, "").isEmpty() ? new ArrayList<>() : List.of(config.get(PROVIDERS).split(",")));
         this.setTimeout(Integer.parseInt(config.getOrDefault(TIMEOUT, "400")));
+        this.setRefreshInterval(Long.parseLong(config.getOrDefault(REFRESH_INTERVAL, "1000")));
+        this.setThreads(Integer.parseInt(config.getOrDefault(THREADS, "4")));
     }
 
     public String get(String configKey) {
@@ -87,6 +93,14 @@ public class HealthCheckConfig {
         return timeout;
     }
 
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     public void setConfig(Map<String, String> config) {
         this.config = config;
     }
@@ -102,4 +116,12 @@ public class HealthCheckConfig {
     public void setTimeout(int timeout) {
         this.timeout = timeout;
     }
+
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
 }
@@ -30,25 +30,41 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 import static org.apache.unomi.healthcheck.HealthCheckConfig.CONFIG_AUTH_REALM;
 
 /**
  * Health check service that aggregates health checks from multiple providers and ensure asynchronous execution. The service is
  * aware of any configuration changes.
+ * <p>
+ * Providers are executed concurrently on a small dedicated executor, each one bounded by the configured timeout. Results are
+ * published as an immutable snapshot and refreshed in the background once they are older than the refresh interval, so callers
+ * always get the latest published snapshot without waiting for providers (only the very first call waits for the initial
+ * refresh, which is itself bounded by the provider timeout).
  */
 @Component (service = HealthCheckService.class, immediate = true)
 public class HealthCheckService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HealthCheckService.class.getName());
 
-    private final List<HealthCheckProvider> providers = new ArrayList<>();
-    private final Object cacheLock = new Object();
-    private volatile long cacheTimestamp = 0L;
-    private volatile List<HealthCheckResponse> healthCache = Collections.emptyList();
-    private volatile boolean initialized = false;
-    private volatile boolean busy = false;
+    private final List<HealthCheckProvider> providers = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Snapshot>> pendingRefresh = new AtomicReference<>();
+    private final Map<String, CompletableFuture<HealthCheckResponse>> runningChecks = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
     private boolean registered = false;
+    private LongSupplier clock = System::currentTimeMillis;
 
     @Reference
     protected HttpService httpService;
@@ -62,14 +78,18 @@ public class HealthCheckService {
     @Activate
     public void activate() throws ServletException, NamespaceException {
         LOGGER.info("Activating healthcheck service...");
+        if (executor == null) {
+            executor = createExecutor(config != null ? config.getThreads() : 4);
+        }
         if (!registered) {
             setConfig(config);
         }
     }
 
     @Reference(service = HealthCheckConfig.class, policy = ReferencePolicy.DYNAMIC, updated = "setConfig")
-    private void setConfig(HealthCheckConfig config) throws ServletException, NamespaceException {
+    protected void setConfig(HealthCheckConfig config) throws ServletException, NamespaceException {
         this.config = config;
+        snapshot.set(null);
         if (httpService == null ) {
             LOGGER.info("Healthcheck config with {} entrie(s) did not update the service as not fully started yet.", config.getSize());
             return;
@@ -92,6 +112,10 @@ public class HealthCheckService {
         }
     }
 
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
     private void unsetConfig(HealthCheckConfig config) {
         this.config = null;
     }
@@ -103,6 +127,13 @@ public class HealthCheckService {
             httpService.unregister("/health/check");
             registered = false;
         }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        snapshot.set(null);
+        pendingRefresh.set(null);
+        runningChecks.clear();
     }
 
     @Reference(service = HealthCheckProvider.class, cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC, unbind = "unbind")
@@ -117,56 +148,129 @@ public class HealthCheckService {
     }
 
     public List<HealthCheckResponse> check() {
-        if (config == null || !config.isEnabled()) {
+        HealthCheckConfig currentConfig = config;
+        if (currentConfig == null || !currentConfig.isEnabled()) {
             LOGGER.warn("Healthcheck service is disabled");
             return Collections.emptyList();
         }
-        if (!initialized) {
-            synchronized (cacheLock) {
-                if (!initialized) {
-                    refreshCache();
-                    initialized = true;
-                }
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            // Nothing has been published yet, wait for the first refresh. Every provider is bounded by the timeout so this
+            // can only block for about one timeout period.
+            CompletableFuture<Snapshot> refresh = triggerRefresh(currentConfig);
+            if (refresh == null) {
+                return Collections.emptyList();
             }
-        } else if (shouldRefreshCache()) {
-            synchronized (cacheLock) {
-                if (!busy) {
-                    busy = true;
-                    try {
-                        refreshCache();
-                    } finally {
-                        busy = false;
-                    }
-                }
+            try {
+                return refresh.get(currentConfig.getTimeout() * 2L, TimeUnit.MILLISECONDS).responses;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            } catch (Exception e) {
+                LOGGER.warn("Initial health check refresh did not complete in time");
+                current = snapshot.get();
+                return current != null ? current.responses : Collections.emptyList();
             }
         }
-        return healthCache;
+        if (clock.getAsLong() - current.timestamp > currentConfig.getRefreshInterval()) {
+            triggerRefresh(currentConfig);
+        }
+        return current.responses;
     }
 
-    private boolean shouldRefreshCache() {
-        return !busy && (System.currentTimeMillis() - cacheTimestamp) > 1000;
+    /**
+     * Starts a background refresh unless one is already running.
+     *
+     * @return the running refresh, or null if the service is not activated
+     */
+    private CompletableFuture<Snapshot> triggerRefresh(HealthCheckConfig currentConfig) {
+        ExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            return null;
+        }
+        CompletableFuture<Snapshot> running = pendingRefresh.get();
+        if (running != null) {
+            return running;
+        }
+        CompletableFuture<Snapshot> refresh = new CompletableFuture<>();
+        if (!pendingRefresh.compareAndSet(null, refresh)) {
+            return pendingRefresh.get();
+        }
+        try {
+            refreshCache(currentConfig, currentExecutor).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.error("Error refreshing health cache", throwable);
+                } else {
+                    snapshot.set(result);
+                }
+                pendingRefresh.set(null);
+                if (throwable != null) {
+                    refresh.completeExceptionally(throwable);
+                } else {
+                    refresh.complete(result);
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.error("Error refreshing health cache", e);
+            pendingRefresh.set(null);
+            refresh.completeExceptionally(e);
+        }
+        return refresh;
     }
 
-    private void refreshCache() {
-        try {
+    private CompletableFuture<Snapshot> refreshCache(HealthCheckConfig currentConfig, ExecutorService currentExecutor) {
+        List<CompletableFuture<HealthCheckResponse>> checks = new ArrayList<>();
+        for (HealthCheckProvider provider : providers.stream()
+                .filter(p -> currentConfig.getEnabledProviders().contains(p.name()))
+                .toList()) {
+            // A provider still running from a previous refresh is awaited again instead of being piled up on the executor
+            CompletableFuture<HealthCheckResponse> execution = runningChecks.compute(provider.name(),
+                    (name, running) -> running == null || running.isDone() ? CompletableFuture.supplyAsync(provider::execute, currentExecutor) : running);
+            checks.add(execution.copy()
+                    .completeOnTimeout(null, currentConfig.getTimeout(), TimeUnit.MILLISECONDS)
+                    .handle((response, throwable) -> {
+                        if (throwable != null) {
+                            LOGGER.error("Error while executing health check {}", provider.name(), throwable);
+                            return provider.timeout();
+                        }
+                        if (response == null) {
+                            LOGGER.warn("Health check {} did not respond within {}ms", provider.name(), currentConfig.getTimeout());
+                            return provider.timeout();
+                        }
+                        return response;
+                    }));
+        }
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).thenApply(ignored -> {
             List<HealthCheckResponse> health = new ArrayList<>();
             health.add(HealthCheckResponse.live("karaf"));
-            for (HealthCheckProvider provider : providers.stream()
-                    .filter(p -> config.getEnabledProviders().contains(p.name()))
-                    .toList()) {
-                try {
-                    HealthCheckResponse response = provider.execute();
-                    health.add(response);
-                } catch (Exception e) {
-                    LOGGER.error("Error while executing health check", e);
-                    health.add(provider.timeout());
-                }
+            for (CompletableFuture<HealthCheckResponse> check : checks) {
+                health.add(check.join());
             }
             health.sort(Comparator.comparing(HealthCheckResponse::getName));
-            healthCache = List.copyOf(health);
-            cacheTimestamp = System.currentTimeMillis();
-        } catch (Exception e) {
-            LOGGER.error("Error refreshing health cache", e);
+            return new Snapshot(List.copyOf(health), clock.getAsLong());
+        });
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "unomi-healthcheck-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Math.max(1, threads), threadFactory);
+    }
+
+    /**
+     * Immutable set of health check results published by a refresh.
+     */
+    private static final class Snapshot {
+        private final List<HealthCheckResponse> responses;
+        private final long timestamp;
+
+        private Snapshot(List<HealthCheckResponse> responses, long timestamp) {
+            this.responses = responses;
+            this.timestamp = timestamp;
         }
     }
 }
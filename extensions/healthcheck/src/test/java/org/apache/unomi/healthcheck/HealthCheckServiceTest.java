@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.healthcheck;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HealthCheckServiceTest {
+
+    private HealthCheckService service;
+    private HealthCheckConfig config;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        config = new HealthCheckConfig();
+        Map<String, String> properties = new HashMap<>();
+        properties.put(HealthCheckConfig.PROVIDERS, "fast,slow,hung,failing");
+        properties.put(HealthCheckConfig.TIMEOUT, "2000");
+        properties.put(HealthCheckConfig.REFRESH_INTERVAL, "100");
+        config.modified(properties);
+        service = new HealthCheckService();
+        service.setConfig(config);
+        service.activate();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.deactivate();
+    }
+
+    @Test
+    public void testProvidersRunInParallel() {
+        // Both providers wait for each other, they can only complete if they are executed concurrently
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        service.bind(new StubProvider("fast", false));
+        service.bind(new StubProvider("slow", barrier));
+        service.bind(new StubProvider("slow2", barrier));
+        config.setEnabledProviders(List.of("fast", "slow", "slow2"));
+
+        List<HealthCheckResponse> responses = service.check();
+
+        assertEquals(4, responses.size());
+        assertTrue(responses.stream().allMatch(HealthCheckResponse::isLive), "All providers should be live");
+    }
+
+    @Test
+    public void testSlowProviderTimesOut() {
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        service.bind(new StubProvider("fast", false));
+        service.bind(new StubProvider("hung", neverReleased));
+
+        List<HealthCheckResponse> responses = service.check();
+
+        assertTrue(find(responses, "fast").isLive());
+        HealthCheckResponse hung = find(responses, "hung");
+        assertTrue(hung.isError());
+        assertEquals("timeout", hung.getData().get("error.cause"));
+    }
+
+    @Test
+    public void testFailingProviderReportsError() {
+        service.bind(new StubProvider("failing", true));
+
+        List<HealthCheckResponse> responses = service.check();
+
+        assertTrue(find(responses, "failing").isError());
+        assertTrue(find(responses, "karaf").isLive());
+    }
+
+    @Test
+    public void testStaleResultsServedWhileRefreshing() throws Exception {
+        AtomicLong now = new AtomicLong(1000);
+        service.setClock(now::get);
+        StubProvider slow = new StubProvider("slow", false);
+        service.bind(slow);
+        List<HealthCheckResponse> first = service.check();
+        assertEquals(1, slow.executions.get());
+
+        // Block the provider and make the snapshot stale
+        CountDownLatch release = new CountDownLatch(1);
+        slow.latch = release;
+        now.addAndGet(150);
+
+        // The provider is blocked, so the stale snapshot can only be returned without waiting for the refresh
+        assertSame(first, service.check());
+
+        // Concurrent callers during the refresh share the same background execution
+        for (int i = 0; i < 10; i++) {
+            assertSame(first, service.check());
+        }
+        release.countDown();
+        List<HealthCheckResponse> refreshed = first;
+        for (int i = 0; i < 500 && refreshed == first; i++) {
+            Thread.sleep(10);
+            refreshed = service.check();
+        }
+        assertNotSame(first, refreshed);
+        assertEquals(2, slow.executions.get());
+    }
+
+    @Test
+    public void testDisabledProvidersAreIgnored() {
+        StubProvider other = new StubProvider("other", false);
+        service.bind(new StubProvider("fast", false));
+        service.bind(other);
+
+        List<HealthCheckResponse> responses = service.check();
+
+        assertEquals(2, responses.size());
+        assertEquals(0, other.executions.get());
+    }
+
+    private static HealthCheckResponse find(List<HealthCheckResponse> responses, String name) {
+        return responses.stream().filter(r -> name.equals(r.getName())).findFirst()
+                .orElseThrow(() -> new AssertionError("No response for " + name));
+    }
+
+    /**
+     * Provider stub which waits for a latch or a barrier when one is set, or which throws when failing.
+     */
+    private static class StubProvider implements HealthCheckProvider {
+        private final String name;
+        private final AtomicInteger executions = new AtomicInteger();
+        private final boolean failing;
+        private final CyclicBarrier barrier;
+        private volatile CountDownLatch latch;
+
+        private StubProvider(String name, boolean failing) {
+            this.name = name;
+            this.failing = failing;
+            this.barrier = null;
+        }
+
+        private StubProvider(String name, CyclicBarrier barrier) {
+            this.name = name;
+            this.failing = false;
+            this.barrier = barrier;
+        }
+
+        private StubProvider(String name, CountDownLatch latch) {
+            this(name, false);
+            this.latch = latch;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public HealthCheckResponse execute() {
+            executions.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("Stub failure");
+            }
+            try {
+                if (barrier != null) {
+                    barrier.await();
+                }
+                CountDownLatch currentLatch = latch;
+                if (currentLatch != null) {
+                    currentLatch.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (BrokenBarrierException e) {
+                throw new IllegalStateException(e);
+            }
+            return HealthCheckResponse.live(name);
+        }
+    }
+}
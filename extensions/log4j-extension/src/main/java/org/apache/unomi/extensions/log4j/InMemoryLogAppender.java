@@ -16,6 +16,7 @@
  */
 package org.apache.unomi.extensions.log4j;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.Core;
 import org.apache.logging.log4j.core.Filter;
@@ -33,9 +34,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Custom Log4j2 appender that captures log events in memory for test log checking.
@@ -45,28 +45,25 @@ import java.util.concurrent.atomic.AtomicLong;
  * attaches to the Pax Logging Log4j2 bundle, ensuring it's available early in the
  * startup process. It's only configured in integration tests, not in the default package.
  * 
- * The appender uses a lock-free bounded buffer to prevent memory leaks while minimizing
- * contention. When the buffer exceeds the maximum size, older events are automatically evicted.
+ * The appender stores the events in a fixed-size ring buffer to prevent memory leaks while minimizing
+ * contention. When the buffer is full, the oldest events are overwritten.
  * The default maximum size is 100,000 events, which should be sufficient for most test scenarios.
  * 
  * Performance optimizations:
- * - Lock-free append path using ConcurrentLinkedQueue
- * - Atomic counters for size tracking
- * - Minimal synchronization only for infrequent operations (clear, get all events)
- * - Read operations use lock-free iteration
+ * - Wait-free append path: an event claims a sequence number and is stored in the slot of that sequence
+ * - Readers never block writers and only copy the events of the requested range of sequence numbers
+ * - Optional filtering on the level and the logger name, before the event is copied
  */
 @Plugin(name = "InMemoryLogAppender", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
 public class InMemoryLogAppender extends AbstractAppender {
 
     private static final int DEFAULT_MAX_EVENTS = 100000;
-    // Lock-free queue for maximum append performance
-    private static final ConcurrentLinkedQueue<LogEvent> capturedEvents = new ConcurrentLinkedQueue<>();
-    // Atomic counters for lock-free size tracking
-    private static final AtomicInteger currentSize = new AtomicInteger(0);
-    private static final AtomicLong totalEventsAdded = new AtomicLong(0);
-    private static final AtomicLong totalEventsEvicted = new AtomicLong(0);
+    // Replaced as a whole when the buffer is cleared or resized
+    private static volatile RingBuffer buffer = new RingBuffer(DEFAULT_MAX_EVENTS, 0);
     private static volatile boolean enabled = true;
-    private static volatile int maxEvents = DEFAULT_MAX_EVENTS;
+    // Capture filters, null to capture all the events
+    private static volatile Level minLevel;
+    private static volatile String[] loggerPrefixes;
 
     protected InMemoryLogAppender(String name, Filter filter, Layout<? extends Serializable> layout, boolean ignoreExceptions, Property[] properties) {
         super(name, filter, layout, ignoreExceptions, properties);
@@ -77,7 +74,9 @@ public class InMemoryLogAppender extends AbstractAppender {
             @PluginAttribute("name") String name,
             @PluginElement("Filter") Filter filter,
             @PluginElement("Layout") Layout<? extends Serializable> layout,
-            @PluginAttribute("ignoreExceptions") boolean ignoreExceptions) {
+            @PluginAttribute("ignoreExceptions") boolean ignoreExceptions,
+            @PluginAttribute("minLevel") String minLevel,
+            @PluginAttribute("loggerPrefixes") String loggerPrefixes) {
         if (name == null) {
             LOGGER.error("No name provided for InMemoryLogAppender");
             return null;
@@ -85,98 +84,79 @@ public class InMemoryLogAppender extends AbstractAppender {
         if (layout == null) {
             layout = PatternLayout.createDefaultLayout();
         }
+        if (minLevel != null) {
+            setMinLevel(Level.toLevel(minLevel, null));
+        }
+        if (loggerPrefixes != null) {
+            List<String> prefixes = new ArrayList<>();
+            for (String prefix : loggerPrefixes.split(",")) {
+                if (!prefix.trim().isEmpty()) {
+                    prefixes.add(prefix.trim());
+                }
+            }
+            setLoggerPrefixes(prefixes);
+        }
         return new InMemoryLogAppender(name, filter, layout, ignoreExceptions, null);
     }
 
     @Override
     public void append(LogEvent event) {
         // Fast path: check enabled flag first (volatile read, no lock)
-        if (!enabled) {
+        if (!enabled || !isCaptured(event)) {
             return;
         }
         
         // Create a copy of the event to avoid issues with event reuse
-        LogEvent immutableEvent = event.toImmutable();
-        
-        // Lock-free add to queue (always succeeds with ConcurrentLinkedQueue)
-        capturedEvents.offer(immutableEvent);
-        int newSize = currentSize.incrementAndGet();
-        totalEventsAdded.incrementAndGet();
-        
-        // Evict old events if we exceed the maximum size
-        // This is done asynchronously to avoid blocking the append path
-        if (newSize > maxEvents) {
-            evictOldEvents();
-        }
+        buffer.add(event.toImmutable());
     }
-    
-    /**
-     * Evict old events to maintain the maximum size limit.
-     * This method is lock-free and only evicts when necessary.
-     */
-    private static void evictOldEvents() {
-        // Calculate how many events to evict
-        int current = currentSize.get();
-        int toEvict = current - maxEvents;
-        
-        if (toEvict <= 0) {
-            return;
+
+    private static boolean isCaptured(LogEvent event) {
+        Level level = minLevel;
+        if (level != null && !event.getLevel().isMoreSpecificThan(level)) {
+            return false;
         }
-        
-        // Evict oldest events (lock-free)
-        int evicted = 0;
-        while (evicted < toEvict) {
-            LogEvent evictedEvent = capturedEvents.poll();
-            if (evictedEvent == null) {
-                // Queue is empty (shouldn't happen, but handle gracefully)
-                break;
-            }
-            evicted++;
+        String[] prefixes = loggerPrefixes;
+        if (prefixes == null) {
+            return true;
         }
-        
-        if (evicted > 0) {
-            currentSize.addAndGet(-evicted);
-            totalEventsEvicted.addAndGet(evicted);
+        String loggerName = event.getLoggerName();
+        if (loggerName != null) {
+            for (String prefix : prefixes) {
+                if (loggerName.startsWith(prefix)) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 
     /**
      * Get all captured log events
      * Note: This returns events in insertion order, but may not include all events
-     * if the buffer was full and events were evicted.
-     * This operation uses lock-free iteration for minimal contention.
+     * if the buffer was full and events were overwritten.
+     * This operation does not block the appending threads.
      */
     public static List<LogEvent> getCapturedEvents() {
-        // Lock-free iteration - ConcurrentLinkedQueue.iterator() is thread-safe
-        List<LogEvent> events = new ArrayList<>();
-        for (LogEvent event : capturedEvents) {
-            events.add(event);
-        }
-        return Collections.unmodifiableList(events);
+        RingBuffer currentBuffer = buffer;
+        return Collections.unmodifiableList(currentBuffer.getEvents(currentBuffer.getOldestSequence()));
     }
 
     /**
      * Clear all captured events
-     * Note: This operation requires synchronization to ensure atomicity,
-     * but it's infrequent (typically only at test setup/teardown).
+     * Note: Events appended while the buffer is being cleared may be lost,
+     * which is acceptable as it's infrequent (typically only at test setup/teardown).
      */
     public static void clearEvents() {
-        // Synchronize only for clear operation (infrequent)
-        synchronized (capturedEvents) {
-            capturedEvents.clear();
-            currentSize.set(0);
-            totalEventsAdded.set(0);
-            totalEventsEvicted.set(0);
-        }
+        buffer = new RingBuffer(buffer.capacity, 0);
     }
 
     /**
      * Get events captured since a specific index
      * Note: The index is relative to the total number of events added, not the current buffer size.
-     * If events were evicted and the startIndex is before the oldest available event, 
+     * If events were overwritten and the startIndex is before the oldest available event, 
      * an empty list is returned (checkpoint was lost due to buffer overflow).
      * 
-     * This operation uses lock-free iteration for minimal contention.
+     * Only the events of the requested range are copied, without blocking the appending threads.
      * 
      * @param startIndex The index of the first event to return (0-based, relative to total events added)
      * @return List of events since the start index, or empty list if checkpoint was lost
@@ -186,70 +166,50 @@ public class InMemoryLogAppender extends AbstractAppender {
             return Collections.emptyList();
         }
         
-        // Lock-free reads of atomic counters
-        long currentTotal = totalEventsAdded.get();
-        int bufferSize = currentSize.get();
-        long oldestAvailableIndex = currentTotal - bufferSize;
+        RingBuffer currentBuffer = buffer;
+        long oldestAvailableIndex = currentBuffer.getOldestSequence();
         
         // If the startIndex is before the oldest available event, the checkpoint was lost
         if (startIndex < oldestAvailableIndex) {
             // Checkpoint was lost due to buffer overflow
+            long currentTotal = currentBuffer.sequence.get();
             LOGGER.warn("Checkpoint index {} is before oldest available event {} (buffer overflow detected). " +
                        "Total events: {}, Buffer size: {}, Evicted: {}",
-                       startIndex, oldestAvailableIndex, currentTotal, bufferSize, totalEventsEvicted.get());
+                       startIndex, oldestAvailableIndex, currentTotal, currentTotal - oldestAvailableIndex, oldestAvailableIndex);
             return Collections.emptyList();
         }
         
-        // Calculate the actual start index in the buffer
-        int actualStartIndex = (int) (startIndex - oldestAvailableIndex);
-        
-        if (actualStartIndex >= bufferSize) {
-            // Start index is beyond the available events (shouldn't happen, but handle gracefully)
-            return Collections.emptyList();
-        }
-        
-        // Lock-free iteration - ConcurrentLinkedQueue.iterator() is thread-safe
-        List<LogEvent> events = new ArrayList<>();
-        int index = 0;
-        for (LogEvent event : capturedEvents) {
-            if (index >= actualStartIndex) {
-                events.add(event);
-            }
-            index++;
-        }
-        
-        return Collections.unmodifiableList(events);
+        return Collections.unmodifiableList(currentBuffer.getEvents(startIndex));
     }
 
     /**
      * Get the current event count (can be used as a checkpoint)
      * Note: This returns the total number of events added, not the current buffer size.
-     * If events were evicted, the buffer size will be less than this count.
+     * If events were overwritten, the buffer size will be less than this count.
      */
     public static int getEventCount() {
-        return (int) totalEventsAdded.get();
+        return (int) buffer.sequence.get();
     }
 
     /**
      * Get the current buffer size (number of events currently stored)
-     * Note: This uses an atomic counter for lock-free reads.
      */
     public static int getBufferSize() {
-        return currentSize.get();
+        RingBuffer currentBuffer = buffer;
+        return (int) (currentBuffer.sequence.get() - currentBuffer.getOldestSequence());
     }
 
     /**
      * Get the total number of events that have been evicted due to buffer being full
      */
     public static long getEvictedEventCount() {
-        return totalEventsEvicted.get();
+        return buffer.getOldestSequence();
     }
 
     /**
      * Set the maximum number of events to store in the buffer
-     * Note: This is a volatile write, so it's immediately visible to all threads.
-     * If the current buffer size exceeds the new max, old events will be evicted
-     * on the next append operation.
+     * Note: The buffer is replaced by a buffer of the new size, which keeps the most recent events.
+     * Events appended while the buffer is being replaced may be lost.
      * 
      * @param maxEvents Maximum number of events to store
      */
@@ -257,20 +217,26 @@ public class InMemoryLogAppender extends AbstractAppender {
         if (maxEvents <= 0) {
             throw new IllegalArgumentException("maxEvents must be positive");
         }
-        // Volatile write - no synchronization needed
-        InMemoryLogAppender.maxEvents = maxEvents;
-        
-        // Evict old events if current size exceeds new max
-        if (currentSize.get() > maxEvents) {
-            evictOldEvents();
+        RingBuffer currentBuffer = buffer;
+        if (currentBuffer.capacity == maxEvents) {
+            return;
         }
+        long oldestSequence = currentBuffer.getOldestSequence();
+        List<LogEvent> events = currentBuffer.getEvents(oldestSequence);
+        List<LogEvent> keptEvents = events.subList(Math.max(0, events.size() - maxEvents), events.size());
+        // Keep the sequence numbers, so that existing checkpoints remain valid
+        RingBuffer newBuffer = new RingBuffer(maxEvents, oldestSequence + events.size() - keptEvents.size());
+        for (LogEvent event : keptEvents) {
+            newBuffer.add(event);
+        }
+        buffer = newBuffer;
     }
 
     /**
      * Get the maximum number of events that can be stored in the buffer
      */
     public static int getMaxEvents() {
-        return maxEvents;
+        return buffer.capacity;
     }
 
     /**
@@ -286,5 +252,102 @@ public class InMemoryLogAppender extends AbstractAppender {
     public static boolean isEnabled() {
         return enabled;
     }
-}
 
+    /**
+     * Only capture the events of a level at least as specific as the given level
+     *
+     * @param minLevel the minimum level of the captured events, null to capture the events of all levels
+     */
+    public static void setMinLevel(Level minLevel) {
+        InMemoryLogAppender.minLevel = minLevel;
+    }
+
+    /**
+     * Only capture the events of loggers whose name starts with one of the given prefixes
+     *
+     * @param loggerPrefixes the prefixes of the logger names, null or empty to capture the events of all loggers
+     */
+    public static void setLoggerPrefixes(List<String> loggerPrefixes) {
+        InMemoryLogAppender.loggerPrefixes = loggerPrefixes == null || loggerPrefixes.isEmpty() ? null : loggerPrefixes.toArray(new String[0]);
+    }
+
+    /**
+     * Fixed-size buffer of events indexed by sequence number. Appending claims the next sequence number and stores the
+     * event in the slot of that sequence, overwriting the event stored one capacity earlier. Each slot records the
+     * sequence of its event, so that readers can detect events that were overwritten or are not stored yet.
+     */
+    static final class RingBuffer {
+        private final int capacity;
+        private final AtomicReferenceArray<Slot> slots;
+        // The sequence number of the first event of the buffer
+        private final long firstSequence;
+        // The sequence number of the next event
+        private final AtomicLong sequence;
+
+        RingBuffer(int capacity, long firstSequence) {
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.firstSequence = firstSequence;
+            this.sequence = new AtomicLong(firstSequence);
+        }
+
+        void add(LogEvent event) {
+            store(claim(), event);
+        }
+
+        long claim() {
+            return sequence.getAndIncrement();
+        }
+
+        /**
+         * Stores an event in the slot of its sequence number, unless the slot already holds a more recent event: a writer
+         * delayed after claiming its sequence must not overwrite the event of a writer which claimed a later one.
+         */
+        void store(long eventSequence, LogEvent event) {
+            int index = (int) (eventSequence % capacity);
+            Slot newSlot = new Slot(eventSequence, event);
+            Slot slot;
+            do {
+                slot = slots.get(index);
+                if (slot != null && slot.sequence > eventSequence) {
+                    return;
+                }
+            } while (!slots.compareAndSet(index, slot, newSlot));
+        }
+
+        private long getOldestSequence() {
+            return Math.max(firstSequence, sequence.get() - capacity);
+        }
+
+        /**
+         * @return the stored events from the given sequence number, up to the first event that is not stored yet
+         */
+        List<LogEvent> getEvents(long fromSequence) {
+            long toSequence = sequence.get();
+            List<LogEvent> events = new ArrayList<>((int) Math.max(0, Math.min(toSequence - fromSequence, capacity)));
+            long oldestSequence = Math.max(firstSequence, toSequence - capacity);
+            for (long eventSequence = Math.max(fromSequence, oldestSequence); eventSequence < toSequence; eventSequence++) {
+                Slot slot = slots.get((int) (eventSequence % capacity));
+                if (slot == null || slot.sequence < eventSequence) {
+                    // Claimed by a writer which did not store it yet
+                    break;
+                }
+                if (slot.sequence == eventSequence) {
+                    events.add(slot.event);
+                }
+                // Otherwise the event was overwritten while reading
+            }
+            return events;
+        }
+    }
+
+    private static final class Slot {
+        private final long sequence;
+        private final LogEvent event;
+
+        private Slot(long sequence, LogEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+}
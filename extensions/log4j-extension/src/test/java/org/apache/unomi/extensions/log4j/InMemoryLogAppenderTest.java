@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.extensions.log4j;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryLogAppenderTest {
+
+    private static final int THREADS = 8;
+
+    private final InMemoryLogAppender appender = InMemoryLogAppender.createAppender("test", null, null, false, null, null);
+
+    @AfterEach
+    public void tearDown() {
+        InMemoryLogAppender.setMinLevel(null);
+        InMemoryLogAppender.setLoggerPrefixes(null);
+        InMemoryLogAppender.setMaxEvents(100000);
+        InMemoryLogAppender.clearEvents();
+    }
+
+    @Test
+    public void testEventsSinceCheckpoint() {
+        InMemoryLogAppender.clearEvents();
+        appendEvents(0, 5);
+        int checkpoint = InMemoryLogAppender.getEventCount();
+        appendEvents(5, 3);
+
+        assertEquals(Arrays.asList("message 5", "message 6", "message 7"), getMessages(InMemoryLogAppender.getEventsSince(checkpoint)));
+        assertEquals(8, InMemoryLogAppender.getCapturedEvents().size());
+        assertTrue(InMemoryLogAppender.getEventsSince(InMemoryLogAppender.getEventCount()).isEmpty());
+    }
+
+    @Test
+    public void testOldestEventsAreOverwritten() {
+        InMemoryLogAppender.setMaxEvents(10);
+        InMemoryLogAppender.clearEvents();
+        appendEvents(0, 25);
+
+        assertEquals(25, InMemoryLogAppender.getEventCount());
+        assertEquals(10, InMemoryLogAppender.getBufferSize());
+        assertEquals(15, InMemoryLogAppender.getEvictedEventCount());
+        assertTrue(InMemoryLogAppender.getEventsSince(5).isEmpty(), "Lost checkpoints should return no events");
+        assertEquals(Arrays.asList("message 20", "message 21", "message 22", "message 23", "message 24"),
+                getMessages(InMemoryLogAppender.getEventsSince(20)));
+        assertEquals("message 15", getMessages(InMemoryLogAppender.getCapturedEvents()).get(0));
+
+        // Resizing keeps the most recent events and the checkpoints
+        InMemoryLogAppender.setMaxEvents(3);
+        assertEquals(Arrays.asList("message 22", "message 23", "message 24"), getMessages(InMemoryLogAppender.getEventsSince(22)));
+        InMemoryLogAppender.setMaxEvents(20);
+        appendEvents(25, 2);
+        assertEquals(Arrays.asList("message 22", "message 23", "message 24", "message 25", "message 26"),
+                getMessages(InMemoryLogAppender.getCapturedEvents()));
+        assertEquals(27, InMemoryLogAppender.getEventCount());
+    }
+
+    @Test
+    public void testLevelAndLoggerFilters() {
+        InMemoryLogAppender.clearEvents();
+        InMemoryLogAppender.setMinLevel(Level.WARN);
+        InMemoryLogAppender.setLoggerPrefixes(List.of("org.apache.unomi.services"));
+
+        appender.append(createEvent("org.apache.unomi.services.Test", Level.INFO, "info"));
+        appender.append(createEvent("org.apache.unomi.services.Test", Level.ERROR, "error"));
+        appender.append(createEvent("org.apache.unomi.services.Test", Level.WARN, "warning"));
+        appender.append(createEvent("org.apache.unomi.rest.Test", Level.ERROR, "other logger"));
+
+        assertEquals(Arrays.asList("error", "warning"), getMessages(InMemoryLogAppender.getCapturedEvents()));
+    }
+
+    @Test
+    public void testDelayedWriterDoesNotOverwriteMoreRecentEvents() {
+        InMemoryLogAppender.RingBuffer ringBuffer = new InMemoryLogAppender.RingBuffer(2, 0);
+        // A writer claims its sequence but is delayed before storing its event
+        long delayedSequence = ringBuffer.claim();
+        ringBuffer.add(createEvent("org.apache.unomi.Test", Level.INFO, "message 1"));
+        ringBuffer.add(createEvent("org.apache.unomi.Test", Level.INFO, "message 2"));
+        ringBuffer.store(delayedSequence, createEvent("org.apache.unomi.Test", Level.INFO, "message 0"));
+
+        assertEquals(Arrays.asList("message 1", "message 2"), getMessages(ringBuffer.getEvents(0)));
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        int eventsPerThread = 20000;
+        int maxEvents = 64;
+        InMemoryLogAppender.setMaxEvents(maxEvents);
+        InMemoryLogAppender.clearEvents();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger runningWriters = new AtomicInteger(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    appendEvents(0, eventsPerThread);
+                    runningWriters.decrementAndGet();
+                    return null;
+                }));
+            }
+            // A log checker reading the events since its last checkpoint
+            Future<?> reader = executor.submit(() -> {
+                start.await();
+                int checkpoint = 0;
+                while (runningWriters.get() > 0) {
+                    List<LogEvent> events = InMemoryLogAppender.getEventsSince(checkpoint);
+                    assertTrue(events.size() <= maxEvents);
+                    assertFalse(events.contains(null));
+                    checkpoint = InMemoryLogAppender.getEventCount();
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            reader.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(THREADS * eventsPerThread, InMemoryLogAppender.getEventCount());
+        // The events of delayed writers did not replace more recent events, all the slots hold the latest events
+        assertEquals(maxEvents, InMemoryLogAppender.getCapturedEvents().size());
+    }
+
+    private void appendEvents(int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            appender.append(createEvent("org.apache.unomi.Test", Level.INFO, "message " + i));
+        }
+    }
+
+    private static LogEvent createEvent(String loggerName, Level level, String message) {
+        return Log4jLogEvent.newBuilder().setLoggerName(loggerName).setLevel(level).setMessage(new SimpleMessage(message)).build();
+    }
+
+    private static List<String> getMessages(List<LogEvent> events) {
+        List<String> messages = new ArrayList<>();
+        for (LogEvent event : events) {
+            messages.add(event.getMessage().getFormattedMessage());
+        }
+        return messages;
+    }
+}
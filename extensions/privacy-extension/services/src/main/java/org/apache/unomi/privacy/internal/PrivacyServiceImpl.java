@@ -18,9 +18,10 @@
 package org.apache.unomi.privacy.internal;
 
 import org.apache.unomi.api.*;
-import org.apache.unomi.api.services.EventService;
-import org.apache.unomi.api.services.PrivacyService;
-import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.api.services.*;
+import org.apache.unomi.api.tasks.ScheduledTask;
+import org.apache.unomi.api.tasks.TaskExecutor;
 import org.apache.unomi.lifecycle.BundleWatcher;
 import org.apache.unomi.persistence.spi.PersistenceService;
 import org.apache.unomi.persistence.spi.aggregate.TermsAggregate;
@@ -28,6 +29,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Privacy service implementation
@@ -36,10 +39,21 @@ public class PrivacyServiceImpl implements PrivacyService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PrivacyServiceImpl.class);
 
+    static final String ANONYMIZE_BROWSING_DATA_TASK_TYPE = "anonymize-browsing-data";
+    private static final String ANONYMIZE_BROWSING_DATA_SCRIPT = "anonymizeBrowsingData";
+    private static final String SESSIONS_STEP = "sessions";
+    private static final String EVENTS_STEP = "events";
+
     private PersistenceService persistenceService;
     private ProfileService profileService;
     private EventService eventService;
     private BundleWatcher bundleWatcher;
+    private DefinitionsService definitionsService;
+    private SchedulerService schedulerService;
+    private ExecutionContextManager contextManager;
+
+    private Semaphore anonymizationPermits = new Semaphore(2);
+    private final TaskExecutor anonymizeBrowsingDataExecutor = new AnonymizeBrowsingDataTaskExecutor();
 
     public PrivacyServiceImpl() {
         LOGGER.info("Initializing privacy service...");
@@ -62,6 +76,38 @@ public class PrivacyServiceImpl implements PrivacyService {
         this.bundleWatcher = bundleWatcher;
     }
 
+    public void setDefinitionsService(DefinitionsService definitionsService) {
+        this.definitionsService = definitionsService;
+    }
+
+    public void setSchedulerService(SchedulerService schedulerService) {
+        this.schedulerService = schedulerService;
+    }
+
+    public void setContextManager(ExecutionContextManager contextManager) {
+        this.contextManager = contextManager;
+    }
+
+    /**
+     * Sets how many browsing data anonymizations may run their update by query operations at the same time on this
+     * node. The other ones wait for a permit, so that a burst of requests does not flood the persistence backend.
+     *
+     * @param maxConcurrentAnonymizations the maximum number of concurrent anonymizations
+     */
+    public void setMaxConcurrentAnonymizations(int maxConcurrentAnonymizations) {
+        this.anonymizationPermits = new Semaphore(Math.max(1, maxConcurrentAnonymizations));
+    }
+
+    public void init() {
+        schedulerService.registerTaskExecutor(anonymizeBrowsingDataExecutor);
+    }
+
+    public void destroy() {
+        if (schedulerService != null) {
+            schedulerService.unregisterTaskExecutor(anonymizeBrowsingDataExecutor);
+        }
+    }
+
     @Override
     public ServerInfo getServerInfo() {
         List<ServerInfo> serverInfos = bundleWatcher.getServerInfos();
@@ -124,23 +170,112 @@ public class PrivacyServiceImpl implements PrivacyService {
         return res;
     }
 
+    /**
+     * Detaches the sessions and events of the profile from it, replacing the profile snapshot held by each session with
+     * an anonymous copy stripped of the personal identifiers. Rather than updating the items one by one, this is done
+     * by two update by query operations, run by a persistent scheduler task so that it can be resumed if the node
+     * stops before they complete.
+     *
+     * @param profileId the identifier of the profile whose browsing data is anonymized
+     * @return {@code false} if the profile has no session, {@code true} once the anonymization is scheduled
+     */
     @Override
     public Boolean anonymizeBrowsingData(String profileId) {
-        List<Session> sessions = profileService.getProfileSessions(profileId, null, 0, -1, null).getList();
-        if (sessions.isEmpty()) {
+        if (persistenceService.queryCount(getProfileIdCondition("sessionPropertyCondition", profileId), Session.ITEM_TYPE) == 0) {
             return false;
         }
-        for (Session session : sessions) {
-            Profile newProfile = getAnonymousProfile(session.getProfile());
-            session.setProfile(newProfile);
-            persistenceService.save(session);
-            List<Event> events = eventService.searchEvents(session.getItemId(), new String[0], null, 0, -1, null).getList();
-            for (Event event : events) {
-                persistenceService.update(event, Event.class, "profileId", newProfile.getItemId());
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("tenantId", contextManager.getCurrentContext().getTenantId());
+        parameters.put("profileId", profileId);
+        parameters.put("deniedProperties", getDeniedProperties(profileId));
+        schedulerService.newTask(ANONYMIZE_BROWSING_DATA_TASK_TYPE)
+                .withParameters(parameters)
+                .asOneShot()
+                .withMaxRetries(3)
+                .withRetryDelay(1, TimeUnit.MINUTES)
+                .schedule();
+        return true;
+    }
+
+    private Condition getProfileIdCondition(String conditionTypeId, String profileId) {
+        Condition condition = new Condition(definitionsService.getConditionType(conditionTypeId));
+        condition.setParameter("propertyName", "profileId");
+        condition.setParameter("comparisonOperator", "equals");
+        condition.setParameter("propertyValue", profileId);
+        return condition;
+    }
+
+    /**
+     * Runs the anonymization update by query operations of a profile: first on its sessions, then on its events. A
+     * checkpoint is saved after each of them; as they only match items still attached to the profile, running one again
+     * after a crash is harmless.
+     */
+    private class AnonymizeBrowsingDataTaskExecutor implements TaskExecutor {
+
+        @Override
+        public String getTaskType() {
+            return ANONYMIZE_BROWSING_DATA_TASK_TYPE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void execute(ScheduledTask task, TaskStatusCallback callback) throws Exception {
+            String tenantId = (String) task.getParameters().get("tenantId");
+            String profileId = (String) task.getParameters().get("profileId");
+            List<String> deniedProperties = (List<String>) task.getParameters().get("deniedProperties");
+            List<String> completedSteps = new ArrayList<>();
+            if (task.getCheckpointData() != null && task.getCheckpointData().get("completedSteps") != null) {
+                completedSteps.addAll((List<String>) task.getCheckpointData().get("completedSteps"));
+            }
+
+            Map<String, Object> scriptParams = new HashMap<>();
+            scriptParams.put("deniedProperties", deniedProperties != null ? deniedProperties : Collections.emptyList());
+
+            anonymizationPermits.acquire();
+            try {
+                boolean success = contextManager.executeAsTenant(tenantId, () -> {
+                    boolean result = true;
+                    if (!completedSteps.contains(SESSIONS_STEP)) {
+                        result = anonymize(SESSIONS_STEP, Session.class, "sessionPropertyCondition", profileId, scriptParams, completedSteps, callback);
+                    }
+                    if (result && !completedSteps.contains(EVENTS_STEP)) {
+                        result = anonymize(EVENTS_STEP, Event.class, "eventPropertyCondition", profileId, scriptParams, completedSteps, callback);
+                    }
+                    return result;
+                });
+                if (success) {
+                    callback.complete();
+                } else {
+                    callback.fail("Error while anonymizing the browsing data of profile " + profileId + ", completed steps: " + completedSteps);
+                }
+            } finally {
+                anonymizationPermits.release();
             }
         }
 
-        return true;
+        @SuppressWarnings("unchecked")
+        private boolean anonymize(String step, Class<? extends Item> itemClass, String conditionTypeId, String profileId,
+                                  Map<String, Object> scriptParams, List<String> completedSteps, TaskStatusCallback callback) {
+            callback.updateStep(step, Collections.singletonMap("profileId", profileId));
+            long startTime = System.currentTimeMillis();
+            Map<String, Object>[] scriptsParams = new Map[]{scriptParams};
+            boolean result = persistenceService.updateWithQueryAndStoredScriptAsync(new Class<?>[]{itemClass},
+                    new String[]{ANONYMIZE_BROWSING_DATA_SCRIPT}, scriptsParams,
+                    new Condition[]{getProfileIdCondition(conditionTypeId, profileId)}).join();
+            if (result) {
+                completedSteps.add(step);
+                callback.checkpoint(Collections.singletonMap("completedSteps", new ArrayList<>(completedSteps)));
+                callback.updateStatusDetails(Collections.singletonMap(step + "Duration", System.currentTimeMillis() - startTime));
+                LOGGER.debug("Anonymized {} of profile {} in {}ms", step, profileId, System.currentTimeMillis() - startTime);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean canResume(ScheduledTask task) {
+            return true;
+        }
     }
 
     @Override
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.privacy.internal;
+
+import org.apache.unomi.api.*;
+import org.apache.unomi.api.services.ExecutionContextManager;
+import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.api.services.SchedulerService;
+import org.apache.unomi.api.tenants.TenantService;
+import org.apache.unomi.persistence.spi.PersistenceService;
+import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluatorDispatcher;
+import org.apache.unomi.services.TestHelper;
+import org.apache.unomi.services.common.security.KarafSecurityService;
+import org.apache.unomi.services.impl.InMemoryPersistenceServiceImpl;
+import org.apache.unomi.services.impl.TestBundleContext;
+import org.apache.unomi.services.impl.TestConditionEvaluators;
+import org.apache.unomi.services.impl.TestTenantService;
+import org.apache.unomi.services.impl.cache.MultiTypeCacheServiceImpl;
+import org.apache.unomi.services.impl.definitions.DefinitionsServiceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PrivacyServiceImplTest {
+
+    private static final String TENANT_1 = "tenant1";
+
+    private PrivacyServiceImpl privacyService;
+    private TenantService tenantService;
+    private PersistenceService persistenceService;
+    private ExecutionContextManager contextManager;
+    private SchedulerService schedulerService;
+    private MultiTypeCacheServiceImpl cacheService;
+
+    @Before
+    public void setUp() {
+        tenantService = new TestTenantService();
+        KarafSecurityService securityService = TestHelper.createSecurityService();
+        contextManager = TestHelper.createExecutionContextManager(securityService);
+        TestHelper.setupCommonTestData(tenantService);
+
+        ConditionEvaluatorDispatcher conditionEvaluatorDispatcher = TestConditionEvaluators.createDispatcher();
+        persistenceService = new InMemoryPersistenceServiceImpl(contextManager, conditionEvaluatorDispatcher);
+
+        TestBundleContext bundleContext = new TestBundleContext();
+        schedulerService = TestHelper.createSchedulerService("privacy-service-scheduler-node", persistenceService, contextManager, bundleContext, null, -1, true, true);
+        cacheService = new MultiTypeCacheServiceImpl();
+        DefinitionsServiceImpl definitionsService = TestHelper.createDefinitionService(persistenceService, bundleContext, schedulerService, cacheService, contextManager, tenantService);
+        TestConditionEvaluators.getConditionTypes().forEach((key, value) -> definitionsService.setConditionType(value));
+        TestHelper.injectDefinitionsServiceIntoDispatcher(conditionEvaluatorDispatcher, definitionsService);
+
+        PropertyType emailPropertyType = new PropertyType(new Metadata("email"));
+        ProfileService profileService = mock(ProfileService.class);
+        when(profileService.getPropertyTypeBySystemTag(ProfileService.PERSONAL_IDENTIFIER_TAG_NAME)).thenReturn(Collections.singleton(emailPropertyType));
+
+        privacyService = new PrivacyServiceImpl();
+        privacyService.setPersistenceService(persistenceService);
+        privacyService.setProfileService(profileService);
+        privacyService.setDefinitionsService(definitionsService);
+        privacyService.setSchedulerService(schedulerService);
+        privacyService.setContextManager(contextManager);
+        privacyService.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        privacyService.destroy();
+        TestHelper.tearDown(schedulerService, cacheService, persistenceService, tenantService, TENANT_1);
+    }
+
+    @Test
+    public void testAnonymizeBrowsingData() {
+        contextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile = createProfile("profile1");
+            Profile otherProfile = createProfile("profile2");
+            List<Session> sessions = Arrays.asList(createSession("session1", profile), createSession("session2", profile));
+            Session otherSession = createSession("session3", otherProfile);
+            List<Event> events = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                events.add(createEvent("event" + i, sessions.get(i % 2), profile));
+            }
+            Event otherEvent = createEvent("event10", otherSession, otherProfile);
+            persistenceService.refresh();
+
+            assertTrue(privacyService.anonymizeBrowsingData("profile1"));
+
+            // Same outcome as updating each session and event: the sessions hold an anonymous profile without the
+            // personal identifiers, and neither the sessions nor their events reference the profile anymore
+            TestHelper.retryUntil(() -> persistenceService.load("event9", Event.class), event -> event.getProfileId() == null);
+            for (Session session : sessions) {
+                Session anonymizedSession = persistenceService.load(session.getItemId(), Session.class);
+                assertNull(anonymizedSession.getProfileId());
+                assertEquals(true, anonymizedSession.getProfile().getSystemProperties().get("isAnonymousProfile"));
+                assertNull(anonymizedSession.getProfile().getProperty("email"));
+                assertEquals("Doe", anonymizedSession.getProfile().getProperty("lastName"));
+            }
+            for (Event event : events) {
+                assertNull(persistenceService.load(event.getItemId(), Event.class).getProfileId());
+            }
+
+            // The browsing data of other profiles is left untouched
+            Session loadedOtherSession = persistenceService.load(otherSession.getItemId(), Session.class);
+            assertEquals("profile2", loadedOtherSession.getProfileId());
+            assertEquals("profile2@example.com", loadedOtherSession.getProfile().getProperty("email"));
+            assertEquals("profile2", persistenceService.load(otherEvent.getItemId(), Event.class).getProfileId());
+        });
+    }
+
+    @Test
+    public void testAnonymizeBrowsingDataWithoutSessions() {
+        contextManager.executeAsTenant(TENANT_1, () -> {
+            createProfile("profile1");
+            persistenceService.refresh();
+
+            assertFalse(privacyService.anonymizeBrowsingData("profile1"));
+        });
+    }
+
+    private Profile createProfile(String profileId) {
+        Profile profile = new Profile(profileId);
+        profile.setProperty("email", profileId + "@example.com");
+        profile.setProperty("lastName", "Doe");
+        persistenceService.save(profile);
+        return profile;
+    }
+
+    private Session createSession(String sessionId, Profile profile) {
+        Session session = new Session(sessionId, profile, new Date(), "testScope");
+        persistenceService.save(session);
+        return session;
+    }
+
+    private Event createEvent(String eventId, Session session, Profile profile) {
+        Event event = new Event(eventId, "view", session, profile, "testScope", null, null, new Date());
+        persistenceService.save(event);
+        return event;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.dataloaders;
+
+import graphql.annotations.processor.ProcessingElementsContainer;
+import graphql.annotations.processor.typeFunctions.TypeFunction;
+import graphql.schema.GraphQLType;
+
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.ParameterizedType;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Maps the fields returning a {@link CompletableFuture}, such as the fields resolved through {@link UnomiDataLoaders},
+ * to the GraphQL type of the value of the future.
+ */
+public class CompletableFutureFunction implements TypeFunction {
+
+    @Override
+    public boolean canBuildType(Class<?> aClass, AnnotatedType annotatedType) {
+        return CompletableFuture.class.isAssignableFrom(aClass);
+    }
+
+    @Override
+    public GraphQLType buildType(boolean input, Class<?> aClass, AnnotatedType annotatedType, ProcessingElementsContainer container) {
+        if (!(annotatedType instanceof AnnotatedParameterizedType)) {
+            throw new IllegalArgumentException("CompletableFuture type parameter should be specified");
+        }
+        final AnnotatedType valueType = ((AnnotatedParameterizedType) annotatedType).getAnnotatedActualTypeArguments()[0];
+        final Class<?> valueClass = valueType.getType() instanceof ParameterizedType
+                ? (Class<?>) ((ParameterizedType) valueType.getType()).getRawType()
+                : (Class<?>) valueType.getType();
+        return container.getDefaultTypeFunction().buildType(input, valueClass, valueType, container);
+    }
+
+}
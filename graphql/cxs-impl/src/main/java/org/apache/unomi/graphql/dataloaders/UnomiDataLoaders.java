@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.dataloaders;
+
+import graphql.schema.DataFetchingEnvironment;
+import org.apache.unomi.api.Item;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.ProfileAlias;
+import org.apache.unomi.api.Session;
+import org.apache.unomi.api.segments.Segment;
+import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.api.services.SegmentService;
+import org.apache.unomi.graphql.services.ServiceManager;
+import org.apache.unomi.persistence.spi.PersistenceService;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * The data loaders of a GraphQL request. Items requested by the resolvers of a same level of the query are loaded
+ * together, with a single persistence request per item type instead of one load per item, and are cached for the rest
+ * of the request.
+ * <p>
+ * A new registry must be created for each request, see {@link #createRegistry(ServiceManager)}, so that cached items
+ * are never shared between requests.
+ */
+public final class UnomiDataLoaders {
+
+    public static final String PROFILES = "profiles";
+
+    public static final String SESSIONS = "sessions";
+
+    public static final String SEGMENTS = "segments";
+
+    public static final String PROFILE_ALIASES = "profileAliases";
+
+    private UnomiDataLoaders() {
+    }
+
+    /**
+     * Create the data loaders for a request
+     * @param serviceManager The service manager of the request
+     * @return The data loader registry to set on the execution input of the request
+     */
+    public static DataLoaderRegistry createRegistry(final ServiceManager serviceManager) {
+        final DataLoaderRegistry registry = new DataLoaderRegistry();
+
+        registry.register(PROFILES, DataLoader.<String, Profile>newMappedDataLoader(ids -> CompletableFuture.completedFuture(loadProfiles(ids, serviceManager))));
+        registry.register(SESSIONS, DataLoader.<String, Session>newMappedDataLoader(ids -> CompletableFuture.completedFuture(loadItems(ids, Session.class, serviceManager))));
+        registry.register(PROFILE_ALIASES, DataLoader.<String, ProfileAlias>newMappedDataLoader(ids -> CompletableFuture.completedFuture(loadItems(ids, ProfileAlias.class, serviceManager))));
+        registry.register(SEGMENTS, DataLoader.<String, Segment>newMappedDataLoader(ids -> {
+            // Segment definitions are served from the in-memory cache, the loader only avoids looking up the same segment repeatedly
+            final SegmentService segmentService = serviceManager.getService(SegmentService.class);
+            final Map<String, Segment> segments = new HashMap<>();
+            for (String id : ids) {
+                segments.put(id, segmentService.getSegmentDefinition(id));
+            }
+            return CompletableFuture.completedFuture(segments);
+        }));
+
+        return registry;
+    }
+
+    /**
+     * Load an item through a data loader of the request. Requests executed without data loaders, such as subscriptions,
+     * load the item directly.
+     * @param environment The data fetching environment
+     * @param dataLoaderName The name of the data loader
+     * @param id The identifier of the item
+     * @param directLoader Loads the item when the request has no data loaders
+     * @param <V> The type of the item
+     * @return The item, or null if it does not exist
+     */
+    public static <V> CompletableFuture<V> load(final DataFetchingEnvironment environment, final String dataLoaderName,
+                                                final String id, final Function<String, V> directLoader) {
+        final DataLoader<String, V> dataLoader = getDataLoader(environment, dataLoaderName);
+        if (dataLoader == null) {
+            return CompletableFuture.completedFuture(directLoader.apply(id));
+        }
+        return dataLoader.load(id);
+    }
+
+    /**
+     * Load several items through a data loader of the request, see {@link #load(DataFetchingEnvironment, String, String, Function)}
+     * @param environment The data fetching environment
+     * @param dataLoaderName The name of the data loader
+     * @param ids The identifiers of the items
+     * @param directLoader Loads an item when the request has no data loaders
+     * @param <V> The type of the items
+     * @return The items, in the order of the identifiers, with null for the items that do not exist
+     */
+    public static <V> CompletableFuture<List<V>> loadMany(final DataFetchingEnvironment environment, final String dataLoaderName,
+                                                          final List<String> ids, final Function<String, V> directLoader) {
+        final DataLoader<String, V> dataLoader = getDataLoader(environment, dataLoaderName);
+        if (dataLoader == null) {
+            final List<V> items = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                items.add(directLoader.apply(id));
+            }
+            return CompletableFuture.completedFuture(items);
+        }
+        return dataLoader.loadMany(ids);
+    }
+
+    /**
+     * Add an item already loaded, for instance by a connection query, to the cache of a data loader of the request
+     * @param environment The data fetching environment
+     * @param dataLoaderName The name of the data loader
+     * @param item The item
+     */
+    public static void prime(final DataFetchingEnvironment environment, final String dataLoaderName, final Item item) {
+        final DataLoader<String, Item> dataLoader = getDataLoader(environment, dataLoaderName);
+        if (dataLoader != null && item != null) {
+            dataLoader.prime(item.getItemId(), item);
+        }
+    }
+
+    private static <V> DataLoader<String, V> getDataLoader(final DataFetchingEnvironment environment, final String dataLoaderName) {
+        return environment.getDataLoaderRegistry() != null ? environment.getDataLoader(dataLoaderName) : null;
+    }
+
+    private static Map<String, Profile> loadProfiles(final Set<String> ids, final ServiceManager serviceManager) {
+        // Same resolution as ProfileService.load, the identifiers may be aliases of the profiles
+        final Map<String, Profile> profiles = serviceManager.getService(ProfileService.class).loadProfiles(ids);
+        return profiles != null ? profiles : Collections.emptyMap();
+    }
+
+    private static <T extends Item> Map<String, T> loadItems(final Set<String> ids, final Class<T> clazz, final ServiceManager serviceManager) {
+        // Loaded by identifier rather than searched, so that the items saved since the last refresh are found
+        final Map<String, T> items = serviceManager.getService(PersistenceService.class).multiLoad(ids, clazz);
+        return items != null ? items : Collections.emptyMap();
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.unomi.api.ProfileAlias;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.query.Query;
 import org.apache.unomi.graphql.condition.factories.ProfileAliasConditionFactory;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.fetchers.BaseConnectionDataFetcher;
 import org.apache.unomi.graphql.fetchers.ConnectionParams;
 import org.apache.unomi.graphql.services.ServiceManager;
@@ -60,6 +61,8 @@ public class FindProfileAliasConnectionDataFetcher extends BaseConnectionDataFet
         final PartialList<ProfileAlias> partialList = persistenceService.query(
                 query.getCondition(), query.getSortby(), ProfileAlias.class, query.getOffset(), query.getLimit());
 
+        partialList.getList().forEach(profileAlias -> UnomiDataLoaders.prime(environment, UnomiDataLoaders.PROFILE_ALIASES, profileAlias));
+
         final List<CDPProfileAliasEdge> edges = partialList.getList().stream().map(CDPProfileAliasEdge::new).collect(Collectors.toList());
 
         return new CDPProfileAliasConnection(edges, new CDPPageInfo(), partialList.getTotalSize());
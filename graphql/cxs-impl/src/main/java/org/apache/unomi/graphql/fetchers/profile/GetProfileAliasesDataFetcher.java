@@ -21,6 +21,7 @@ import graphql.schema.DataFetchingEnvironment;
 import org.apache.unomi.api.PartialList;
 import org.apache.unomi.api.ProfileAlias;
 import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.services.ServiceManager;
 import org.apache.unomi.graphql.types.output.CDPProfileAlias;
 
@@ -41,6 +42,7 @@ public class GetProfileAliasesDataFetcher implements DataFetcher<List<CDPProfile
 
         ProfileService profileService = serviceManager.getService(ProfileService.class);
         PartialList<ProfileAlias> partialList = profileService.findProfileAliases(profileId, 0, 100, null);
+        partialList.getList().forEach(profileAlias -> UnomiDataLoaders.prime(environment, UnomiDataLoaders.PROFILE_ALIASES, profileAlias));
 
         return partialList.getList().stream().map(CDPProfileAlias::new).collect(Collectors.toList());
     }
@@ -19,11 +19,14 @@ package org.apache.unomi.graphql.fetchers.profile;
 import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
 import org.apache.unomi.api.ProfileAlias;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.services.ServiceManager;
 import org.apache.unomi.graphql.types.output.CDPProfileAlias;
 import org.apache.unomi.persistence.spi.PersistenceService;
 
-public class ProfileAliasDataFetcher implements DataFetcher<CDPProfileAlias> {
+import java.util.concurrent.CompletableFuture;
+
+public class ProfileAliasDataFetcher implements DataFetcher<CompletableFuture<CDPProfileAlias>> {
 
     private final String alias;
 
@@ -32,10 +35,10 @@ public class ProfileAliasDataFetcher implements DataFetcher<CDPProfileAlias> {
     }
 
     @Override
-    public CDPProfileAlias get(final DataFetchingEnvironment environment) throws Exception {
+    public CompletableFuture<CDPProfileAlias> get(final DataFetchingEnvironment environment) throws Exception {
         ServiceManager serviceManager = environment.getContext();
         PersistenceService persistenceService = serviceManager.getService(PersistenceService.class);
-        ProfileAlias profileAlias = persistenceService.load(alias, ProfileAlias.class);
-        return profileAlias != null ? new CDPProfileAlias(profileAlias) : null;
+        return UnomiDataLoaders.<ProfileAlias>load(environment, UnomiDataLoaders.PROFILE_ALIASES, alias, id -> persistenceService.load(id, ProfileAlias.class))
+                .thenApply(profileAlias -> profileAlias != null ? new CDPProfileAlias(profileAlias) : null);
     }
 }
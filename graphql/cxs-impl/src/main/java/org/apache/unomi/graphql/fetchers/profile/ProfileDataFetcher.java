@@ -20,12 +20,15 @@ package org.apache.unomi.graphql.fetchers.profile;
 import graphql.schema.DataFetchingEnvironment;
 import org.apache.unomi.api.Profile;
 import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.fetchers.BaseDataFetcher;
 import org.apache.unomi.graphql.services.ServiceManager;
 import org.apache.unomi.graphql.types.input.CDPProfileIDInput;
 import org.apache.unomi.graphql.types.output.CDPProfile;
 
-public class ProfileDataFetcher extends BaseDataFetcher<CDPProfile> {
+import java.util.concurrent.CompletableFuture;
+
+public class ProfileDataFetcher extends BaseDataFetcher<CompletableFuture<CDPProfile>> {
 
     private final CDPProfileIDInput profileIDInput;
     private final Boolean createIfMissing;
@@ -36,26 +39,26 @@ public class ProfileDataFetcher extends BaseDataFetcher<CDPProfile> {
     }
 
     @Override
-    public CDPProfile get(DataFetchingEnvironment environment) throws Exception {
+    public CompletableFuture<CDPProfile> get(DataFetchingEnvironment environment) throws Exception {
         final ServiceManager serviceManager = environment.getContext();
         final ProfileService profileService = serviceManager.getService(ProfileService.class);
 
-        Profile profile = profileService.load(profileIDInput.getId());
-
-        if (profile != null) {
-            return new CDPProfile(profile);
-        }
+        return UnomiDataLoaders.<Profile>load(environment, UnomiDataLoaders.PROFILES, profileIDInput.getId(), profileService::load).thenApply(profile -> {
+            if (profile != null) {
+                return new CDPProfile(profile);
+            }
 
-        if (createIfMissing != null && createIfMissing) {
-            profile = new Profile();
-            profile.setItemId(profileIDInput.getId());
-            profile.setItemType("profile");
+            if (createIfMissing != null && createIfMissing) {
+                profile = new Profile();
+                profile.setItemId(profileIDInput.getId());
+                profile.setItemType("profile");
 
-            profile = profileService.save(profile);
+                profile = profileService.save(profile);
 
-            return new CDPProfile(profile);
-        }
+                return new CDPProfile(profile);
+            }
 
-        return null;
+            return null;
+        });
     }
 }
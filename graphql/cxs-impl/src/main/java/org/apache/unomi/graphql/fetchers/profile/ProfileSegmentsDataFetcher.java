@@ -22,15 +22,17 @@ import org.apache.unomi.api.Metadata;
 import org.apache.unomi.api.Profile;
 import org.apache.unomi.api.segments.Segment;
 import org.apache.unomi.api.services.SegmentService;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.fetchers.BaseDataFetcher;
 import org.apache.unomi.graphql.services.ServiceManager;
 import org.apache.unomi.graphql.types.output.CDPSegment;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class ProfileSegmentsDataFetcher extends BaseDataFetcher<List<CDPSegment>> {
+public class ProfileSegmentsDataFetcher extends BaseDataFetcher<CompletableFuture<List<CDPSegment>>> {
 
     private final Profile profile;
     private final List<String> viewIds;
@@ -41,7 +43,7 @@ public class ProfileSegmentsDataFetcher extends BaseDataFetcher<List<CDPSegment>
     }
 
     @Override
-    public List<CDPSegment> get(DataFetchingEnvironment environment) throws Exception {
+    public CompletableFuture<List<CDPSegment>> get(DataFetchingEnvironment environment) throws Exception {
         final ServiceManager serviceManager = environment.getContext();
         final SegmentService segmentService = serviceManager.getService(SegmentService.class);
 
@@ -53,13 +55,10 @@ public class ProfileSegmentsDataFetcher extends BaseDataFetcher<List<CDPSegment>
             stream = stream.filter(s -> viewIds.contains(s.getScope()));
         }
 
-        return stream.map(s -> createCDPSegment(s, segmentService)).collect(Collectors.toList());
-    }
-
-
-    private CDPSegment createCDPSegment(Metadata segmentMetadata, SegmentService segmentService) {
-        Segment segment = segmentService.getSegmentDefinition(segmentMetadata.getId());
+        final List<String> segmentIds = stream.map(Metadata::getId).collect(Collectors.toList());
 
-        return new CDPSegment(segment);
+        // The segments shared by the profiles of the query are only looked up once
+        return UnomiDataLoaders.<Segment>loadMany(environment, UnomiDataLoaders.SEGMENTS, segmentIds, segmentService::getSegmentDefinition)
+                .thenApply(segments -> segments.stream().map(CDPSegment::new).collect(Collectors.toList()));
     }
 }
@@ -17,6 +17,7 @@
 package org.apache.unomi.graphql.providers;
 
 import graphql.annotations.processor.typeFunctions.TypeFunction;
+import org.apache.unomi.graphql.dataloaders.CompletableFutureFunction;
 import org.apache.unomi.graphql.scalars.DateFunction;
 import org.apache.unomi.graphql.scalars.DateTimeFunction;
 import org.apache.unomi.graphql.scalars.GeoPointFunction;
@@ -91,6 +92,7 @@ public class CDPDefaultGraphQLProvider
         typeFunctions.add(new DateFunction());
         typeFunctions.add(new JSONFunction());
         typeFunctions.add(new GeoPointFunction());
+        typeFunctions.add(new CompletableFutureFunction());
 
         return typeFunctions;
     }
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.schema;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of parsed and validated GraphQL documents, keyed by query text, so that the queries sent over and
+ * over by the front ends are only parsed and validated once.
+ * <p>
+ * A cache is attached to a single {@link graphql.GraphQL} instance, and is therefore dropped along with it when the
+ * schema of a tenant is rebuilt: documents validated against a previous schema are never reused. Documents that fail
+ * to parse or validate are not cached, so that invalid queries cannot evict valid ones. The least recently used
+ * documents are evicted once the cache is full.
+ */
+public class GraphQLDocumentCache implements PreparsedDocumentProvider {
+
+    private final Map<String, PreparsedDocumentEntry> documents;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum number of documents kept, 0 to disable caching
+     */
+    public GraphQLDocumentCache(int maxSize) {
+        this.documents = new LinkedHashMap<String, PreparsedDocumentEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparsedDocumentEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        String query = executionInput.getQuery();
+        PreparsedDocumentEntry entry;
+        synchronized (documents) {
+            entry = documents.get(query);
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        // Parsing happens outside of the lock, concurrent misses on a same query may both parse it
+        entry = parseAndValidateFunction.apply(executionInput);
+        if (!entry.hasErrors()) {
+            synchronized (documents) {
+                documents.put(query, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Retrieves the number of documents currently cached.
+     *
+     * @return the number of cached documents
+     */
+    public int size() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    /**
+     * Retrieves the number of queries served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves the number of queries that had to be parsed and validated.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -17,6 +17,11 @@
 package org.apache.unomi.graphql.schema;
 
 import graphql.GraphQL;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
 import graphql.execution.SubscriptionExecutionStrategy;
 import graphql.schema.GraphQLCodeRegistry;
 import graphql.schema.GraphQLSchema;
@@ -30,6 +35,7 @@ import org.osgi.service.component.annotations.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -42,6 +48,12 @@ public class GraphQLSchemaUpdater {
 
         int schema_update_delay() default 0;
 
+        int document_cache_size() default 1000;
+
+        int max_query_depth() default 20;
+
+        int max_query_complexity() default 2000;
+
     }
 
     private final List<GraphQLQueryProvider> queryProviders = new CopyOnWriteArrayList<>();
@@ -84,6 +96,12 @@ public class GraphQLSchemaUpdater {
 
     private int schemaUpdateDelay;
 
+    private int documentCacheSize;
+
+    private int maxQueryDepth;
+
+    private int maxQueryComplexity;
+
     // Add tenant schema cache
     private final ConcurrentMap<String, GraphQL> tenantSchemas = new ConcurrentHashMap<>();
 
@@ -91,6 +109,9 @@ public class GraphQLSchemaUpdater {
     public void activate(final SchemaConfig config) {
         this.isActivated = true;
         this.schemaUpdateDelay = config.schema_update_delay();
+        this.documentCacheSize = config.document_cache_size();
+        this.maxQueryDepth = config.max_query_depth();
+        this.maxQueryComplexity = config.max_query_complexity();
 
         if (config.schema_update_delay() != 0) {
             this.executorService = Executors.newSingleThreadScheduledExecutor();
@@ -315,9 +336,7 @@ public class GraphQLSchemaUpdater {
             contextManager.executeAsSystem(() -> {
                 final GraphQLSchema graphQLSchema = createGraphQLSchema();
 
-                this.graphQL = GraphQL.newGraphQL(graphQLSchema)
-                        .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy())
-                        .build();
+                this.graphQL = buildGraphQL(graphQLSchema, new GraphQLDocumentCache(documentCacheSize), maxQueryDepth, maxQueryComplexity);
                 return null;
             });
 
@@ -352,9 +371,7 @@ public class GraphQLSchemaUpdater {
             return contextManager.executeAsTenant(tenantId, () -> {
                 LOGGER.info("Creating GraphQL schema for tenant: {}", tenantId);
                 final GraphQLSchema graphQLSchema = createGraphQLSchemaForTenant(tenantId);
-                return GraphQL.newGraphQL(graphQLSchema)
-                        .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy())
-                        .build();
+                return buildGraphQL(graphQLSchema, new GraphQLDocumentCache(documentCacheSize), maxQueryDepth, maxQueryComplexity);
             });
         } catch (Exception e) {
             LOGGER.error("Error creating GraphQL schema for tenant: " + tenantId, e);
@@ -374,6 +391,34 @@ public class GraphQLSchemaUpdater {
         }
     }
 
+    /**
+     * Build a GraphQL instance for a schema, with its own parsed document cache, so that the cached documents are
+     * dropped along with the schema they were validated against.
+     * @param schema The schema
+     * @param documentCache The parsed document cache of the schema
+     * @param maxQueryDepth The maximum depth of the queries, 0 for no limit
+     * @param maxQueryComplexity The maximum complexity of the queries, 0 for no limit
+     * @return GraphQL instance for the schema
+     */
+    static GraphQL buildGraphQL(GraphQLSchema schema, GraphQLDocumentCache documentCache, int maxQueryDepth, int maxQueryComplexity) {
+        // Pathological queries are rejected before any data is fetched
+        final List<Instrumentation> instrumentations = new ArrayList<>();
+        instrumentations.add(new DataLoaderDispatcherInstrumentation());
+        // Queries cancelled after their execution timeout stop at the next field fetch
+        instrumentations.add(new InterruptionInstrumentation());
+        if (maxQueryDepth > 0) {
+            instrumentations.add(new MaxQueryDepthInstrumentation(maxQueryDepth));
+        }
+        if (maxQueryComplexity > 0) {
+            instrumentations.add(new MaxQueryComplexityInstrumentation(maxQueryComplexity));
+        }
+        return GraphQL.newGraphQL(schema)
+                .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy())
+                .preparsedDocumentProvider(documentCache)
+                .instrumentation(new ChainedInstrumentation(instrumentations))
+                .build();
+    }
+
     /**
      * Get the default GraphQL instance (system tenant)
      */
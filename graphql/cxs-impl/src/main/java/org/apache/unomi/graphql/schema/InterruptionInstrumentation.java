@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.schema;
+
+import graphql.execution.AbortExecutionException;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+
+/**
+ * Aborts the execution of a query once the thread executing it has been interrupted, so that a query cancelled after
+ * its execution timeout stops fetching data instead of running to completion in the background.
+ * <p>
+ * The Unomi data fetchers and data loaders complete on the thread executing the query, so checking the interruption
+ * status of that thread before each field fetch is enough to stop the execution.
+ */
+public class InterruptionInstrumentation extends SimpleInstrumentation {
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new AbortExecutionException("GraphQL execution was cancelled");
+        }
+        return super.beginFieldFetch(parameters);
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.unomi.api.ExecutionContext;
 import org.apache.unomi.api.security.SecurityService;
 import org.apache.unomi.api.services.ExecutionContextManager;
 import org.apache.unomi.api.tenants.TenantService;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.schema.GraphQLSchemaUpdater;
 import org.apache.unomi.graphql.services.ServiceManager;
 import org.apache.unomi.graphql.servlet.auth.GraphQLServletSecurityValidator;
@@ -33,11 +34,15 @@ import org.apache.unomi.graphql.utils.GraphQLObjectMapper;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
 import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.security.auth.Subject;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletResponse;
@@ -45,8 +50,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component(service = GraphQLServlet.class)
 public class GraphQLServlet extends WebSocketServlet {
@@ -55,6 +63,20 @@ public class GraphQLServlet extends WebSocketServlet {
 
     public static final String SCHEMA_URL = "/schema.json";
 
+    public @interface ExecutionConfig {
+
+        int execution_threads() default 16;
+
+        int execution_queue_size() default 200;
+
+        long execution_timeout() default 30000;
+
+    }
+
+    private ThreadPoolExecutor executor;
+
+    private long executionTimeout;
+
     private GraphQLSchemaUpdater graphQLSchemaUpdater;
     private ServiceManager serviceManager;
 
@@ -95,6 +117,27 @@ public class GraphQLServlet extends WebSocketServlet {
         LOGGER.info("GraphQLServlet created");
     }
 
+    @Activate
+    public void activate(final ExecutionConfig config) {
+        this.executionTimeout = config.execution_timeout();
+        // Requests are executed on a bounded pool, so that slow data fetchers cannot tie up all the HTTP threads
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.execution_threads(), config.execution_threads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.execution_queue_size()), runnable -> {
+            Thread thread = new Thread(runnable, "unomi-graphql-execution-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Deactivate
+    public void deactivate() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     @Override
     public void init(ServletConfig config) throws ServletException {
         LOGGER.debug("GraphQLServlet initialized");
@@ -160,7 +203,7 @@ public class GraphQLServlet extends WebSocketServlet {
                 return;
             }
             setupCORSHeaders(req, resp);
-            executeGraphQLRequest(resp, query, operationName, variables);
+            executeGraphQLRequest(req, resp, query, operationName, variables);
         } finally {
             cleanupSecurityContext();
         }
@@ -188,7 +231,7 @@ public class GraphQLServlet extends WebSocketServlet {
                 return;
             }
             setupCORSHeaders(req, resp);
-            executeGraphQLRequest(resp, query, operationName, variables);
+            executeGraphQLRequest(req, resp, query, operationName, variables);
         } finally {
             cleanupSecurityContext();
         }
@@ -205,16 +248,16 @@ public class GraphQLServlet extends WebSocketServlet {
         }
     }
 
-    private void executeGraphQLRequest(
-            HttpServletResponse resp, String query, String operationName, Map<String, Object> variables) throws IOException {
+    private void executeGraphQLRequest(HttpServletRequest req, HttpServletResponse resp, String query, String operationName,
+            Map<String, Object> variables) throws IOException {
         LOGGER.debug("Executing GraphQL request with query: {}, operationName: {}, variables: {}", query, operationName, variables);
         if (query == null || query.trim().length() == 0) {
             throw new IllegalArgumentException("Query cannot be empty or null");
         }
 
         // Get the current tenant ID from the execution context
-        String tenantId = executionContextManager.getCurrentContext() != null ?
-            executionContextManager.getCurrentContext().getTenantId() : null;
+        final ExecutionContext executionContext = executionContextManager.getCurrentContext();
+        String tenantId = executionContext != null ? executionContext.getTenantId() : null;
 
         LOGGER.debug("Executing GraphQL request for tenant: {}", tenantId);
 
@@ -228,13 +271,86 @@ public class GraphQLServlet extends WebSocketServlet {
                 .variables(variables)
                 .operationName(operationName)
                 .context(serviceManager)
+                .dataLoaderRegistry(UnomiDataLoaders.createRegistry(serviceManager))
                 .build();
 
-        final ExecutionResult executionResult = graphQL.execute(executionInput);
+        // The security context of the request is carried over to the execution thread
+        final Subject subject = securityService.getCurrentSubject();
+        final CompletableFuture<ExecutionResult> executionResult = new CompletableFuture<>();
+        final Future<?> execution;
+        try {
+            execution = executor.submit(() -> {
+                try {
+                    executionResult.complete(execute(graphQL, executionInput, subject, executionContext));
+                } catch (Throwable t) {
+                    executionResult.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Rejected GraphQL request, {} requests are already queued", executor.getQueue().size());
+            writeError(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many concurrent GraphQL requests");
+            return;
+        }
+        // A timed out execution is interrupted, which aborts it at its next field fetch, or removed from the queue
+        executionResult.orTimeout(executionTimeout, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            if (error instanceof TimeoutException) {
+                execution.cancel(true);
+            }
+        });
+
+        if (req.isAsyncSupported()) {
+            // Release the HTTP thread while the request is executed
+            final AsyncContext asyncContext = req.startAsync();
+            asyncContext.setTimeout(0);
+            executionResult.whenComplete((result, error) -> {
+                try {
+                    writeResult((HttpServletResponse) asyncContext.getResponse(), result, error);
+                } catch (IOException e) {
+                    LOGGER.error("Error writing GraphQL response", e);
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+        } else {
+            try {
+                writeResult(resp, executionResult.join(), null);
+            } catch (CompletionException e) {
+                writeResult(resp, null, e.getCause());
+            }
+        }
+    }
+
+    private ExecutionResult execute(GraphQL graphQL, ExecutionInput executionInput, Subject subject, ExecutionContext executionContext) {
+        if (subject != null) {
+            securityService.setCurrentSubject(subject);
+        }
+        executionContextManager.setCurrentContext(executionContext);
+        try {
+            return graphQL.execute(executionInput);
+        } finally {
+            cleanupSecurityContext();
+        }
+    }
 
-        final Map<String, Object> specificationResult = executionResult.toSpecification();
+    private void writeResult(HttpServletResponse resp, ExecutionResult executionResult, Throwable error) throws IOException {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof TimeoutException) {
+            LOGGER.warn("GraphQL request exceeded the execution timeout of {}ms", executionTimeout);
+            writeError(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "GraphQL request timed out");
+        } else if (error != null) {
+            LOGGER.error("Error executing GraphQL request", error);
+            writeError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error executing GraphQL request");
+        } else {
+            GraphQLObjectMapper.getInstance().writeValue(resp.getWriter(), executionResult.toSpecification());
+        }
+    }
 
-        GraphQLObjectMapper.getInstance().writeValue(resp.getWriter(), specificationResult);
+    private void writeError(HttpServletResponse resp, int status, String message) throws IOException {
+        resp.setStatus(status);
+        GraphQLObjectMapper.getInstance().writeValue(resp.getWriter(),
+                Collections.singletonMap("errors", Collections.singletonList(Collections.singletonMap("message", message))));
     }
 
     private void setupCORSHeaders(HttpServletRequest httpServletRequest, ServletResponse response) {
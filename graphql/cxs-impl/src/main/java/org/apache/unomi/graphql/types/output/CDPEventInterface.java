@@ -27,12 +27,14 @@ import org.apache.unomi.api.Event;
 import org.apache.unomi.api.GeoPoint;
 import org.apache.unomi.api.Profile;
 import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.graphql.dataloaders.UnomiDataLoaders;
 import org.apache.unomi.graphql.services.ServiceManager;
 import org.apache.unomi.graphql.types.resolvers.CDPEventInterfaceResolver;
 import org.apache.unomi.graphql.utils.DateUtils;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.unomi.graphql.types.output.CDPEventInterface.TYPE_NAME;
 
@@ -74,17 +76,17 @@ public interface CDPEventInterface {
 
     @GraphQLField
     @GraphQLNonNull
-    default CDPProfile cdp_profile(final DataFetchingEnvironment environment) {
+    default CompletableFuture<CDPProfile> cdp_profile(final DataFetchingEnvironment environment) {
         if (getEvent().getProfile() != null) {
-            return new CDPProfile(getEvent().getProfile());
+            return CompletableFuture.completedFuture(new CDPProfile(getEvent().getProfile()));
         } else if (getEvent().getProfileId() != null) {
             ServiceManager serviceManager = environment.getContext();
 
-            Profile profile = serviceManager.getService(ProfileService.class).load(getEvent().getProfileId());
-
-            return new CDPProfile(profile);
+            // The profiles of all the events of the query are loaded together
+            return UnomiDataLoaders.<Profile>load(environment, UnomiDataLoaders.PROFILES, getEvent().getProfileId(),
+                    serviceManager.getService(ProfileService.class)::load).thenApply(CDPProfile::new);
         } else {
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
     }
 
@@ -30,6 +30,7 @@ import org.apache.unomi.graphql.fetchers.profile.ProfileListsDataFetcher;
 import org.apache.unomi.graphql.fetchers.profile.ProfileSegmentsDataFetcher;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static org.apache.unomi.graphql.types.output.CDPPersona.TYPE_NAME;
@@ -87,7 +88,7 @@ public class CDPPersona implements CDPProfileInterface {
     }
 
     @GraphQLField
-    public List<CDPSegment> cdp_segments(
+    public CompletableFuture<List<CDPSegment>> cdp_segments(
             final @GraphQLName("views") List<String> viewIds, final DataFetchingEnvironment environment) throws Exception {
         return persona != null ? new ProfileSegmentsDataFetcher(persona, viewIds).get(environment) : null;
     }
@@ -38,6 +38,7 @@ import org.apache.unomi.graphql.types.input.CDPRecommendationInput;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.unomi.graphql.types.output.CDPProfile.TYPE_NAME;
 
@@ -66,7 +67,7 @@ public class CDPProfile implements CDPProfileInterface {
 
     @Override
     @GraphQLField
-    public List<CDPSegment> cdp_segments(final @GraphQLName("views") List<String> viewIds, final DataFetchingEnvironment environment) throws Exception {
+    public CompletableFuture<List<CDPSegment>> cdp_segments(final @GraphQLName("views") List<String> viewIds, final DataFetchingEnvironment environment) throws Exception {
         return new ProfileSegmentsDataFetcher(profile, viewIds).get(environment);
     }
 
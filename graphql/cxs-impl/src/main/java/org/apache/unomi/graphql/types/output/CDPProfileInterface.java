@@ -24,6 +24,7 @@ import graphql.schema.DataFetchingEnvironment;
 import org.apache.unomi.graphql.types.resolvers.CDPProfileTypeResolver;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.unomi.graphql.types.output.CDPProfileInterface.TYPE_NAME;
 
@@ -40,7 +41,7 @@ public interface CDPProfileInterface {
     List<CDPProfileID> cdp_profileIDs(final DataFetchingEnvironment environment) throws Exception;
 
     @GraphQLField
-    List<CDPSegment> cdp_segments(
+    CompletableFuture<List<CDPSegment>> cdp_segments(
             final @GraphQLName("views") List<String> viewIds,
             final DataFetchingEnvironment environment) throws Exception;
 
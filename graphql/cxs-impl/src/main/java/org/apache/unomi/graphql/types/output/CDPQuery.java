@@ -49,6 +49,7 @@ import org.apache.unomi.graphql.types.input.CDPSegmentFilterInput;
 import org.apache.unomi.graphql.types.input.CDPTopicFilterInput;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.unomi.graphql.types.output.CDPQuery.TYPE_NAME;
 
@@ -58,7 +59,7 @@ public class CDPQuery {
     public static final String TYPE_NAME = "CDP_Query";
 
     @GraphQLField
-    public CDPProfile getProfile(
+    public CompletableFuture<CDPProfile> getProfile(
             final @GraphQLName("profileID") @GraphQLNonNull CDPProfileIDInput profileID,
             final @GraphQLName("createIfMissing") Boolean createIfMissing,
             final DataFetchingEnvironment environment) throws Exception {
@@ -183,7 +184,7 @@ public class CDPQuery {
     }
 
     @GraphQLField
-    public CDPProfileAlias getProfileAlias(
+    public CompletableFuture<CDPProfileAlias> getProfileAlias(
             final @GraphQLID @GraphQLNonNull @GraphQLName("alias") String alias,
             final DataFetchingEnvironment environment) throws Exception {
         return new ProfileAliasDataFetcher(alias).get(environment);
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.dataloaders;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.annotations.AnnotationsSchemaCreator;
+import graphql.annotations.annotationTypes.GraphQLField;
+import graphql.annotations.annotationTypes.GraphQLName;
+import graphql.annotations.processor.GraphQLAnnotations;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingEnvironmentImpl;
+import org.apache.unomi.api.Item;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.ProfileAlias;
+import org.apache.unomi.api.Session;
+import org.apache.unomi.api.segments.Segment;
+import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.api.services.SegmentService;
+import org.apache.unomi.graphql.fetchers.profile.ProfileDataFetcher;
+import org.apache.unomi.graphql.services.ServiceManager;
+import org.apache.unomi.graphql.types.input.CDPProfileIDInput;
+import org.apache.unomi.graphql.types.output.CDPProfile;
+import org.apache.unomi.persistence.spi.PersistenceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UnomiDataLoadersTest {
+
+    private static final int EVENT_COUNT = 100;
+    private static final int PROFILE_COUNT = 10;
+
+    private final Map<String, Item> items = new HashMap<>();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger loads = new AtomicInteger();
+    private PersistenceService persistenceService;
+    private ProfileService profileService;
+    private ServiceManager serviceManager;
+    private GraphQL graphQL;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < PROFILE_COUNT; i++) {
+            Profile profile = new Profile("profile" + i);
+            profile.setProperty("firstName", "name" + i);
+            profile.getSegments().add("segment" + (i % 2));
+            items.put(profile.getItemId(), profile);
+        }
+        ProfileAlias alias = new ProfileAlias();
+        alias.setItemId("alias0");
+        alias.setProfileID("profile0");
+        items.put(alias.getItemId(), alias);
+
+        // Stubs counting the round trips, where searches do not see the items yet, as before an index refresh
+        persistenceService = mock(PersistenceService.class);
+        when(persistenceService.query(anyString(), any(String[].class), any(), any())).thenReturn(Collections.emptyList());
+        when(persistenceService.multiLoad(anyCollection(), any())).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            Collection<String> ids = invocation.getArgument(0);
+            Class<?> clazz = invocation.getArgument(1);
+            return ids.stream().filter(id -> clazz.isInstance(items.get(id))).collect(Collectors.toMap(id -> id, items::get));
+        });
+        profileService = mock(ProfileService.class);
+        when(profileService.load(anyString())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return resolve(invocation.getArgument(0));
+        });
+        when(profileService.loadProfiles(anyCollection())).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            Map<String, Profile> profiles = new HashMap<>();
+            for (String id : invocation.<Collection<String>>getArgument(0)) {
+                Profile profile = resolve(id);
+                if (profile != null) {
+                    profiles.put(id, profile);
+                }
+            }
+            return profiles;
+        });
+        when(profileService.save(any(Profile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        SegmentService segmentService = mock(SegmentService.class);
+        when(segmentService.getSegmentDefinition(anyString())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return new Segment(new org.apache.unomi.api.Metadata(invocation.getArgument(0)));
+        });
+
+        serviceManager = mock(ServiceManager.class);
+        when(serviceManager.getService(PersistenceService.class)).thenReturn(persistenceService);
+        when(serviceManager.getService(ProfileService.class)).thenReturn(profileService);
+        when(serviceManager.getService(SegmentService.class)).thenReturn(segmentService);
+
+        GraphQLAnnotations graphQLAnnotations = new GraphQLAnnotations();
+        graphQLAnnotations.registerTypeFunction(new CompletableFutureFunction());
+        graphQL = GraphQL.newGraphQL(AnnotationsSchemaCreator.newAnnotationsSchema()
+                        .query(TestQuery.class)
+                        .setAnnotationsProcessor(graphQLAnnotations)
+                        .build())
+                .instrumentation(new DataLoaderDispatcherInstrumentation())
+                .build();
+    }
+
+    private Profile resolve(String id) {
+        Item item = items.get(id);
+        if (item instanceof ProfileAlias) {
+            item = items.get(((ProfileAlias) item).getProfileID());
+        }
+        return item instanceof Profile ? (Profile) item : null;
+    }
+
+    private ExecutionResult execute(String query, boolean withDataLoaders) {
+        ExecutionInput.Builder executionInput = ExecutionInput.newExecutionInput().query(query).context(serviceManager);
+        if (withDataLoaders) {
+            executionInput.dataLoaderRegistry(UnomiDataLoaders.createRegistry(serviceManager));
+        }
+        ExecutionResult result = graphQL.execute(executionInput.build());
+        assertTrue(result.getErrors().isEmpty(), () -> result.getErrors().toString());
+        return result;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventProfilesAreLoadedInOneBatch() {
+        ExecutionResult result = execute("{ events { id profile { id firstName segments } } }", true);
+
+        List<Map<String, Object>> events = (List<Map<String, Object>>) ((Map<String, Object>) result.getData()).get("events");
+        assertEquals(EVENT_COUNT, events.size());
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Map<String, Object> profile = (Map<String, Object>) events.get(i).get("profile");
+            assertEquals("profile" + (i % PROFILE_COUNT), profile.get("id"));
+            assertEquals("name" + (i % PROFILE_COUNT), profile.get("firstName"));
+            assertEquals(Collections.singletonList("segment" + (i % PROFILE_COUNT % 2)), profile.get("segments"));
+        }
+        // The profiles loaded in one batch, and each distinct segment looked up once
+        assertEquals(1, batches.get());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAliasesAreResolved() {
+        ExecutionResult result = execute("{ profile(id: \"alias0\") { id } other: profile(id: \"profile0\") { id } missing: profile(id: \"missing\") { id } }", true);
+
+        Map<String, Object> data = result.getData();
+        assertEquals("profile0", ((Map<String, Object>) data.get("profile")).get("id"));
+        assertEquals("profile0", ((Map<String, Object>) data.get("other")).get("id"));
+        assertNull(data.get("missing"));
+        assertEquals(1, batches.get());
+    }
+
+    @Test
+    public void testItemsAreLoadedDirectlyWithoutDataLoaders() {
+        execute("{ events { id profile { id } } }", false);
+
+        assertEquals(0, batches.get());
+        assertEquals(EVENT_COUNT, loads.get());
+    }
+
+    @Test
+    public void testSessionsAreLoadedByIdentifier() {
+        Session session = new Session("session0", (Profile) items.get("profile0"), new Date(), "scope");
+        items.put(session.getItemId(), session);
+        DataFetchingEnvironment environment = createEnvironment(UnomiDataLoaders.createRegistry(serviceManager));
+
+        CompletableFuture<Session> loaded = UnomiDataLoaders.load(environment, UnomiDataLoaders.SESSIONS, "session0", id -> null);
+        environment.getDataLoaderRegistry().dispatchAll();
+
+        assertSame(session, loaded.join());
+        verify(persistenceService, never()).query(anyString(), any(String[].class), any(), any());
+    }
+
+    @Test
+    public void testCreateIfMissingKeepsExistingProfileNotYetSearchable() throws Exception {
+        // The profile was just saved, searches do not find it yet
+        assertEquals("profile1", fetchOrCreate("profile1").getProfile().getItemId());
+        assertEquals("name1", fetchOrCreate("profile1").getProfile().getProperty("firstName"));
+        verify(profileService, never()).save(any(Profile.class));
+    }
+
+    @Test
+    public void testCreateIfMissingResolvesAliases() throws Exception {
+        assertEquals("profile0", fetchOrCreate("alias0").getProfile().getItemId());
+        verify(profileService, never()).save(any(Profile.class));
+    }
+
+    @Test
+    public void testCreateIfMissingCreatesMissingProfile() throws Exception {
+        assertEquals("missing", fetchOrCreate("missing").getProfile().getItemId());
+        verify(profileService).save(any(Profile.class));
+    }
+
+    private CDPProfile fetchOrCreate(String id) throws Exception {
+        DataFetchingEnvironment environment = createEnvironment(UnomiDataLoaders.createRegistry(serviceManager));
+        CompletableFuture<CDPProfile> profile = new ProfileDataFetcher(new CDPProfileIDInput(id, null), true).get(environment);
+        environment.getDataLoaderRegistry().dispatchAll();
+        return profile.get(5, TimeUnit.SECONDS);
+    }
+
+    private DataFetchingEnvironment createEnvironment(DataLoaderRegistry registry) {
+        return DataFetchingEnvironmentImpl.newDataFetchingEnvironment().context(serviceManager).dataLoaderRegistry(registry).build();
+    }
+
+    @GraphQLName("TestQuery")
+    public static class TestQuery {
+
+        @GraphQLField
+        public static List<TestEvent> events() {
+            return IntStream.range(0, EVENT_COUNT).mapToObj(i -> new TestEvent("event" + i, "profile" + (i % PROFILE_COUNT))).collect(Collectors.toList());
+        }
+
+        @GraphQLField
+        public static CompletableFuture<TestProfile> profile(final @GraphQLName("id") String id, final DataFetchingEnvironment environment) {
+            ServiceManager serviceManager = environment.getContext();
+            return UnomiDataLoaders.<Profile>load(environment, UnomiDataLoaders.PROFILES, id, serviceManager.getService(ProfileService.class)::load)
+                    .thenApply(profile -> profile != null ? new TestProfile(profile) : null);
+        }
+    }
+
+    @GraphQLName("TestEvent")
+    public static class TestEvent {
+
+        private final String id;
+        private final String profileId;
+
+        public TestEvent(String id, String profileId) {
+            this.id = id;
+            this.profileId = profileId;
+        }
+
+        @GraphQLField
+        public String id() {
+            return id;
+        }
+
+        @GraphQLField
+        public CompletableFuture<TestProfile> profile(final DataFetchingEnvironment environment) {
+            return TestQuery.profile(profileId, environment);
+        }
+    }
+
+    @GraphQLName("TestProfile")
+    public static class TestProfile {
+
+        private final Profile profile;
+
+        public TestProfile(Profile profile) {
+            this.profile = profile;
+        }
+
+        @GraphQLField
+        public String id() {
+            return profile.getItemId();
+        }
+
+        @GraphQLField
+        public String firstName() {
+            return (String) profile.getProperty("firstName");
+        }
+
+        @GraphQLField
+        public CompletableFuture<List<String>> segments(final DataFetchingEnvironment environment) {
+            ServiceManager serviceManager = environment.getContext();
+            return UnomiDataLoaders.<Segment>loadMany(environment, UnomiDataLoaders.SEGMENTS, new ArrayList<>(profile.getSegments()),
+                    serviceManager.getService(SegmentService.class)::getSegmentDefinition)
+                    .thenApply(segments -> segments.stream().map(Segment::getItemId).collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.schema;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.introspection.IntrospectionQuery;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeReference;
+import graphql.schema.StaticDataFetcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static graphql.Scalars.GraphQLString;
+import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphQLDocumentCacheTest {
+
+    private static final String QUERY = "query { node { name child { name child { name } } } }";
+
+    private static GraphQLSchema createSchema() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("name", "node");
+        node.put("child", node);
+        GraphQLObjectType nodeType = GraphQLObjectType.newObject()
+                .name("Node")
+                .field(newFieldDefinition().name("name").type(GraphQLString))
+                .field(newFieldDefinition().name("child").type(GraphQLTypeReference.typeRef("Node")))
+                .build();
+        GraphQLObjectType queryType = GraphQLObjectType.newObject()
+                .name("Query")
+                .field(newFieldDefinition().name("node").type(nodeType).dataFetcher(new StaticDataFetcher(node)))
+                .build();
+        return GraphQLSchema.newSchema().query(queryType).build();
+    }
+
+    @Test
+    public void testDocumentsAreParsedOnce() {
+        GraphQLDocumentCache documentCache = new GraphQLDocumentCache(100);
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), documentCache, 20, 2000);
+
+        for (int i = 0; i < 10; i++) {
+            ExecutionResult result = graphQL.execute(QUERY);
+            assertTrue(result.getErrors().isEmpty());
+            assertEquals("node", ((Map<?, ?>) ((Map<?, ?>) result.getData()).get("node")).get("name"));
+        }
+
+        assertEquals(1, documentCache.getMisses());
+        assertEquals(9, documentCache.getHits());
+    }
+
+    @Test
+    public void testRebuiltSchemaDoesNotShareDocuments() {
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), new GraphQLDocumentCache(100), 20, 2000);
+        graphQL.execute(QUERY);
+
+        GraphQLDocumentCache rebuiltDocumentCache = new GraphQLDocumentCache(100);
+        GraphQL rebuiltGraphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), rebuiltDocumentCache, 20, 2000);
+        rebuiltGraphQL.execute(QUERY);
+
+        assertEquals(1, rebuiltDocumentCache.getMisses());
+        assertEquals(0, rebuiltDocumentCache.getHits());
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        GraphQLDocumentCache documentCache = new GraphQLDocumentCache(2);
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), documentCache, 20, 2000);
+
+        graphQL.execute("query { node { name } }");
+        graphQL.execute("query { node { child { name } } }");
+        graphQL.execute("query { node { name } }");
+        graphQL.execute("query { node { child { child { name } } } }");
+        // The least recently used query was evicted
+        graphQL.execute("query { node { child { name } } }");
+
+        assertEquals(2, documentCache.size());
+        assertEquals(4, documentCache.getMisses());
+    }
+
+    @Test
+    public void testInvalidDocumentsAreNotCached() {
+        GraphQLDocumentCache documentCache = new GraphQLDocumentCache(100);
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), documentCache, 20, 2000);
+
+        assertFalse(graphQL.execute("query { unknown }").getErrors().isEmpty());
+        assertFalse(graphQL.execute("query { unknown }").getErrors().isEmpty());
+
+        assertEquals(0, documentCache.size());
+        assertEquals(2, documentCache.getMisses());
+    }
+
+    @Test
+    public void testPathologicalQueriesAreRejected() {
+        StringBuilder deepQuery = new StringBuilder("query { node { ");
+        for (int i = 0; i < 30; i++) {
+            deepQuery.append("child { ");
+        }
+        deepQuery.append("name");
+        for (int i = 0; i < 31; i++) {
+            deepQuery.append(" }");
+        }
+        deepQuery.append(" }");
+
+        GraphQL depthLimited = GraphQLSchemaUpdater.buildGraphQL(createSchema(), new GraphQLDocumentCache(100), 20, 0);
+        ExecutionResult result = depthLimited.execute(deepQuery.toString());
+        assertFalse(result.getErrors().isEmpty());
+        assertNull(result.getData());
+
+        GraphQL complexityLimited = GraphQLSchemaUpdater.buildGraphQL(createSchema(), new GraphQLDocumentCache(100), 0, 10);
+        result = complexityLimited.execute(deepQuery.toString());
+        assertFalse(result.getErrors().isEmpty());
+        assertNull(result.getData());
+
+        GraphQL unlimited = GraphQLSchemaUpdater.buildGraphQL(createSchema(), new GraphQLDocumentCache(100), 0, 0);
+        assertTrue(unlimited.execute(deepQuery.toString()).getErrors().isEmpty());
+    }
+
+    @Test
+    public void testIntrospectionIsWithinDefaultLimits() {
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), new GraphQLDocumentCache(100), 20, 2000);
+
+        assertTrue(graphQL.execute(IntrospectionQuery.INTROSPECTION_QUERY).getErrors().isEmpty());
+    }
+
+    @Test
+    public void testDisabledCacheParsesEveryRequest() {
+        GraphQLDocumentCache disabledCache = new GraphQLDocumentCache(0);
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(createSchema(), disabledCache, 20, 2000);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(graphQL.execute(QUERY).getErrors().isEmpty());
+        }
+
+        assertEquals(0, disabledCache.size());
+        assertEquals(0, disabledCache.getHits());
+        assertEquals(3, disabledCache.getMisses());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.graphql.schema;
+
+import graphql.GraphQL;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static graphql.Scalars.GraphQLString;
+import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterruptionInstrumentationTest {
+
+    @Test
+    public void testInterruptedExecutionStopsFetching() {
+        AtomicInteger fetches = new AtomicInteger();
+        GraphQLObjectType queryType = GraphQLObjectType.newObject()
+                .name("Query")
+                .field(newFieldDefinition().name("first").type(GraphQLString).dataFetcher(environment -> {
+                    fetches.incrementAndGet();
+                    // Simulates the cancellation of the execution after its timeout
+                    Thread.currentThread().interrupt();
+                    return "first";
+                }))
+                .field(newFieldDefinition().name("second").type(GraphQLString).dataFetcher(environment -> {
+                    fetches.incrementAndGet();
+                    return "second";
+                }))
+                .build();
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(GraphQLSchema.newSchema().query(queryType).build(),
+                new GraphQLDocumentCache(100), 20, 2000);
+
+        try {
+            graphQL.execute("query { first second }");
+        } catch (RuntimeException e) {
+            // The execution may be aborted with an exception
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void testExecutionCompletesWithoutInterruption() {
+        GraphQLObjectType queryType = GraphQLObjectType.newObject()
+                .name("Query")
+                .field(newFieldDefinition().name("first").type(GraphQLString).dataFetcher(environment -> "first"))
+                .field(newFieldDefinition().name("second").type(GraphQLString).dataFetcher(environment -> "second"))
+                .build();
+        GraphQL graphQL = GraphQLSchemaUpdater.buildGraphQL(GraphQLSchema.newSchema().query(queryType).build(),
+                new GraphQLDocumentCache(100), 20, 2000);
+
+        assertTrue(graphQL.execute("query { first second }").getErrors().isEmpty());
+    }
+}
@@ -32,6 +32,8 @@ import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import co.elastic.clients.elasticsearch.core.bulk.UpdateAction;
 import co.elastic.clients.elasticsearch.core.bulk.UpdateOperation;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.TotalHits;
 import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
@@ -73,6 +75,8 @@ import org.apache.unomi.api.tenants.TenantTransformationListener;
 import org.apache.unomi.metrics.MetricAdapter;
 import org.apache.unomi.metrics.MetricsService;
 import org.apache.unomi.persistence.spi.PersistenceService;
+import org.apache.unomi.persistence.spi.PersistenceTaskTracker;
+import org.apache.unomi.persistence.spi.PropertyMappingCache;
 import org.apache.unomi.persistence.spi.aggregate.*;
 import org.apache.unomi.persistence.spi.aggregate.DateRangeAggregate;
 import org.apache.unomi.persistence.spi.aggregate.IpRangeAggregate;
@@ -97,7 +101,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -134,6 +140,11 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
     private final Integer removeByQueryTimeoutInMinutes = 10;
     private Integer taskWaitingTimeout = 3600000;
     private Integer taskWaitingPollingInterval = 1000;
+    private final PersistenceTaskTracker taskTracker = new PersistenceTaskTracker("unomi-es-task-tracker", this::getTaskStatus,
+            () -> taskWaitingPollingInterval, () -> taskWaitingTimeout);
+    private Integer mappingRefreshInterval = 60000;
+    private final PropertyMappingCache mappingCache = new PropertyMappingCache("unomi-es-mapping-refresher", this::loadPropertiesMapping,
+            () -> mappingRefreshInterval);
 
     private String bulkProcessorConcurrentRequests = "1";
     private String bulkProcessorBulkActions = "1000";
@@ -173,12 +184,10 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
     private Integer clientSocketTimeout = null;
     private Map<String, Refresh> itemTypeToRefreshPolicy = new HashMap<>();
 
-    private final Map<String, Map<String, Map<String, Object>>> knownMappings = new HashMap<>();
-
     private static final Map<String, String> itemTypeIndexNameMap = new HashMap<>();
     private static final Collection<String> systemItems = Arrays.asList("actionType", "campaign", "campaignevent", "goal", "userList",
             "propertyType", "scope", "conditionType", "rule", "scoring", "segment", "groovyAction", "topic", "patch", "jsonSchema",
-            "importConfig", "exportConfig", "rulestats");
+            "importConfig", "exportConfig", "rulestats", "campaignstats");
 
     static {
         for (String systemItem : systemItems) {
@@ -386,6 +395,12 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         }
     }
 
+    public void setMappingRefreshInterval(String mappingRefreshInterval) {
+        if (StringUtils.isNumeric(mappingRefreshInterval)) {
+            this.mappingRefreshInterval = Integer.parseInt(mappingRefreshInterval);
+        }
+    }
+
     /**
      * Check if the current cluster version is in the expected range
      *
@@ -646,6 +661,8 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         new InClassLoaderExecute<>(null, null, this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
             protected Object execute(Object... args) throws IOException {
                 LOGGER.info("Closing ElasticSearch persistence backend...");
+                taskTracker.shutdown();
+                mappingCache.shutdown();
                 if (esClient != null) {
                     esClient.close();
                 }
@@ -702,6 +719,7 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         propertyMappings.put("clientSocketTimeout", ConfigurationUpdateHelper.stringProperty(this::setClientSocketTimeout));
         propertyMappings.put("taskWaitingTimeout", ConfigurationUpdateHelper.stringProperty(this::setTaskWaitingTimeout));
         propertyMappings.put("taskWaitingPollingInterval", ConfigurationUpdateHelper.stringProperty(this::setTaskWaitingPollingInterval));
+        propertyMappings.put("mappingRefreshInterval", ConfigurationUpdateHelper.stringProperty(this::setMappingRefreshInterval));
         propertyMappings.put("aggQueryMaxResponseSizeHttp", ConfigurationUpdateHelper.stringProperty(this::setAggQueryMaxResponseSizeHttp));
 
         // Integer properties
@@ -887,6 +905,129 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
 
     }
 
+    @Override public Map<Class<? extends Item>, Item> multiLoad(final String itemId, final List<Class<? extends Item>> classes) {
+        Map<Class<? extends Item>, String> itemIds = new LinkedHashMap<>();
+        for (Class<? extends Item> clazz : classes) {
+            itemIds.put(clazz, itemId);
+        }
+        return multiLoad(itemIds);
+    }
+
+    @Override public Map<Class<? extends Item>, Item> multiLoad(final Map<Class<? extends Item>, String> itemIds) {
+        Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+        final List<Class<? extends Item>> classes = new ArrayList<>();
+        for (Map.Entry<Class<? extends Item>, String> entry : itemIds.entrySet()) {
+            if (StringUtils.isEmpty(entry.getValue())) {
+                continue;
+            }
+            String itemType = Item.getItemType(entry.getKey());
+            if (!isSessionDirectAccess(itemType) && isItemTypeRollingOver(itemType)) {
+                // Items of rolling over indices are loaded with a query
+                Item item = load(entry.getValue(), entry.getKey());
+                if (item != null) {
+                    items.put(entry.getKey(), item);
+                }
+            } else {
+                classes.add(entry.getKey());
+            }
+        }
+        if (classes.isEmpty()) {
+            return items;
+        }
+
+        Map<Class<? extends Item>, Item> loadedItems = new InClassLoaderExecute<Map<Class<? extends Item>, Item>>(metricsService,
+                this.getClass().getName() + ".multiLoadItems", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+            protected Map<Class<? extends Item>, Item> execute(Object... args) throws Exception {
+                Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+                try {
+                    MgetRequest.Builder request = new MgetRequest.Builder();
+                    for (Class<? extends Item> clazz : classes) {
+                        String itemType = Item.getItemType(clazz);
+                        String documentId = getDocumentIDForItemType(itemIds.get(clazz), itemType);
+                        // Sessions are read from the latest index directly, as for single loads
+                        String index = isSessionDirectAccess(itemType) ? sessionLatestIndex : getIndex(itemType);
+                        request.docs(doc -> doc.index(index).id(documentId));
+                    }
+                    MgetResponse<JsonData> response = esClient.mget(request.build(), JsonData.class);
+                    for (int i = 0; i < classes.size(); i++) {
+                        MultiGetResponseItem<JsonData> responseItem = response.docs().get(i);
+                        if (!responseItem.isResult() || !responseItem.result().found() || responseItem.result().source() == null) {
+                            // Missing documents and indices are reported as failures or not found items
+                            continue;
+                        }
+                        GetResult<JsonData> result = responseItem.result();
+                        Item value = result.source().to(classes.get(i));
+                        setMetadata(value, result.id(), result.version() != null ? result.version() : 0L,
+                                result.seqNo() != null ? result.seqNo() : 0L,
+                                result.primaryTerm() != null ? result.primaryTerm() : 0L, result.index());
+                        items.put(classes.get(i), handleItemReverseTransformation(value));
+                    }
+                    return items;
+                } catch (Exception ex) {
+                    throw new Exception("Error loading items=" + itemIds, ex);
+                }
+            }
+        }.catchingExecuteInClassLoader(true);
+        if (loadedItems == null) {
+            return null;
+        }
+        items.putAll(loadedItems);
+        return items;
+    }
+
+    @Override public <T extends Item> Map<String, T> multiLoad(final Collection<String> itemIds, final Class<T> clazz) {
+        final String itemType = Item.getItemType(clazz);
+        final List<String> ids = new ArrayList<>();
+        for (String itemId : itemIds) {
+            if (StringUtils.isNotEmpty(itemId) && !ids.contains(itemId)) {
+                ids.add(itemId);
+            }
+        }
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        if (!isSessionDirectAccess(itemType) && isItemTypeRollingOver(itemType)) {
+            // Items of rolling over indices are loaded with a query
+            return PersistenceService.super.multiLoad(ids, clazz);
+        }
+
+        return new InClassLoaderExecute<Map<String, T>>(metricsService, this.getClass().getName() + ".multiLoadItemsById", this.bundleContext,
+                this.fatalIllegalStateErrors, throwExceptions) {
+            protected Map<String, T> execute(Object... args) throws Exception {
+                Map<String, T> items = new LinkedHashMap<>();
+                try {
+                    MgetRequest.Builder request = new MgetRequest.Builder();
+                    // Sessions are read from the latest index directly, as for single loads
+                    String index = isSessionDirectAccess(itemType) ? sessionLatestIndex : getIndex(itemType);
+                    for (String itemId : ids) {
+                        String documentId = getDocumentIDForItemType(itemId, itemType);
+                        request.docs(doc -> doc.index(index).id(documentId));
+                    }
+                    MgetResponse<JsonData> response = esClient.mget(request.build(), JsonData.class);
+                    for (int i = 0; i < ids.size(); i++) {
+                        MultiGetResponseItem<JsonData> responseItem = response.docs().get(i);
+                        if (!responseItem.isResult() || !responseItem.result().found() || responseItem.result().source() == null) {
+                            continue;
+                        }
+                        GetResult<JsonData> result = responseItem.result();
+                        T value = result.source().to(clazz);
+                        setMetadata(value, result.id(), result.version() != null ? result.version() : 0L,
+                                result.seqNo() != null ? result.seqNo() : 0L,
+                                result.primaryTerm() != null ? result.primaryTerm() : 0L, result.index());
+                        items.put(ids.get(i), handleItemReverseTransformation(value));
+                    }
+                    return items;
+                } catch (Exception ex) {
+                    throw new Exception("Error loading itemType=" + clazz.getName() + " itemIds=" + ids, ex);
+                }
+            }
+        }.catchingExecuteInClassLoader(true);
+    }
+
+    private boolean isSessionDirectAccess(String itemType) {
+        return sessionLatestIndex != null && Session.ITEM_TYPE.equals(itemType);
+    }
+
     private void setMetadata(Item item, String itemId, long version, long seqNo, long primaryTerm, String index) {
         if (item != null) {
             String strippedId = stripTenantFromDocumentId(itemId);
@@ -929,6 +1070,16 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         }
     }
 
+    @Override public boolean isPartialUpdateSupported(Item item) {
+        // Tenant transformation listeners only apply to whole items
+        for (TenantTransformationListener listener : transformationListeners) {
+            if (listener.isTransformationEnabled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override public boolean isConsistent(Item item) {
         return getRefreshPolicy(item.getItemType()) != Refresh.False;
     }
@@ -1182,6 +1333,46 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
 
     @Override public boolean updateWithQueryAndStoredScript(Class<?>[] classes, String[] scripts, Map<String, Object>[] scriptParams,
             Condition[] conditions, boolean waitForComplete) {
+        return updateWithQueryAndScript(classes, buildStoredScripts(scripts, scriptParams), conditions, waitForComplete);
+    }
+
+    @Override public CompletableFuture<Boolean> updateWithQueryAndStoredScriptAsync(Class<?>[] classes, String[] scripts,
+            Map<String, Object>[] scriptParams, Condition[] conditions) {
+        String[] itemTypes = Arrays.stream(classes).map(Item::getItemType).toArray(String[]::new);
+        String[] indices = Arrays.stream(itemTypes).map(itemType -> getIndexNameForQuery(itemType)).toArray(String[]::new);
+        Script[] builtScripts = buildStoredScripts(scripts, scriptParams);
+        // The queries are built on the calling thread, which holds the tenant context
+        Query[] queries = new Query[conditions.length];
+        try {
+            for (int i = 0; i < conditions.length; i++) {
+                queries[i] = wrapWithTenantAndItemsTypeQuery(itemTypes, conditionESQueryBuilderDispatcher.buildFilter(conditions[i]), getTenantId());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Cannot build the update by query requests", e);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        // Each script is submitted once the previous one has completed, as in the blocking variant
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+        for (int i = 0; i < builtScripts.length; i++) {
+            int finalI = i;
+            result = result.thenComposeAsync(submitted -> {
+                if (!submitted) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                String task = new InClassLoaderExecute<String>(metricsService, this.getClass().getName() + ".updateWithQueryAndScriptAsync",
+                        this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+                    protected String execute(Object... args) throws Exception {
+                        return submitUpdateByQuery(itemTypes, indices, builtScripts[finalI], queries[finalI]);
+                    }
+                }.catchingExecuteInClassLoader(true);
+                return task != null ? taskTracker.track(task).thenApply(completed -> true) : CompletableFuture.completedFuture(false);
+            });
+        }
+        return result;
+    }
+
+    private Script[] buildStoredScripts(String[] scripts, Map<String, Object>[] scriptParams) {
         Script[] builtScripts = new Script[scripts.length];
         for (int i = 0; i < scripts.length; i++) {
             int finalI = i;
@@ -1189,7 +1380,7 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
                     .collect(Collectors.toMap(Map.Entry::getKey, entry -> JsonData.of(entry.getValue())));
             builtScripts[i] = Script.of(s -> s.id(scripts[finalI]).params(jsonDataParams));
         }
-        return updateWithQueryAndScript(classes, builtScripts, conditions, waitForComplete);
+        return builtScripts;
     }
 
     private boolean updateWithQueryAndScript(final Class<?>[] classes, final Script[] scripts, final Condition[] conditions,
@@ -1200,43 +1391,14 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
                 String[] itemTypes = Arrays.stream(classes).map(Item::getItemType).toArray(String[]::new);
                 String[] indices = Arrays.stream(itemTypes).map(itemType -> getIndexNameForQuery(itemType)).toArray(String[]::new);
 
-                try {
-                    for (int i = 0; i < scripts.length; i++) {
-                        esClient.indices().refresh(r -> r.index(Arrays.asList(indices)));
-
-                        Query query = conditionESQueryBuilderDispatcher.buildFilter(conditions[i]);
-                        int finalI = i;
-
-                        UpdateByQueryRequest updateByQueryRequest = UpdateByQueryRequest.of(
-                                builder -> builder.index(List.of(indices)).conflicts(Conflicts.Proceed).waitForCompletion(false)
-                                        .slices(Slices.of(s -> s.value(2))).script(scripts[finalI])
-                                        .query(wrapWithTenantAndItemsTypeQuery(itemTypes, query, getTenantId())));
-
-                        UpdateByQueryResponse response = esClient.updateByQuery(updateByQueryRequest);
-
-                        if (response.task() == null) {
-                            LOGGER.error("update with query and script: no response returned for query: {}", query);
-                        } else if (waitForComplete) {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug(
-                                        "Waiting task [{}]: [{}] using query: [{}], polling every {}ms with a timeout configured to {}ms",
-                                        response.task(), updateByQueryRequest, updateByQueryRequest.query(), taskWaitingPollingInterval,
-                                        taskWaitingTimeout);
-                            }
-                            waitForTaskComplete(response.task());
-                        } else {
-                            LOGGER.debug("ES task started {}", response.task());
-                        }
+                for (int i = 0; i < scripts.length; i++) {
+                    Query query = wrapWithTenantAndItemsTypeQuery(itemTypes, conditionESQueryBuilderDispatcher.buildFilter(conditions[i]), getTenantId());
+                    String task = submitUpdateByQuery(itemTypes, indices, scripts[i], query);
+                    if (task != null && waitForComplete) {
+                        waitForTaskComplete(task);
                     }
-                    return true;
-                } catch (ElasticsearchException e) {
-                    if (e.status() == 404 && e.getMessage() != null && e.getMessage().contains("index_not_found_exception")) {
-                        throw new Exception("No index found for itemTypes=" + String.join(",", itemTypes), e);
-                    }
-                    //TODO check the message
-                    LOGGER.error("Error in the update script : {}\n{}", e.response().toString(), e.getMessage(), e);
-                    throw new Exception("Error in the update script");
                 }
+                return true;
             }
         }.catchingExecuteInClassLoader(true);
         if (result == null) {
@@ -1246,46 +1408,82 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         }
     }
 
+    /**
+     * Submits an update by query request without waiting for its completion.
+     *
+     * @return the identifier of the task running the update, or null if none was returned
+     */
+    private String submitUpdateByQuery(String[] itemTypes, String[] indices, Script script, Query query) throws Exception {
+        try {
+            esClient.indices().refresh(r -> r.index(Arrays.asList(indices)));
+
+            UpdateByQueryRequest updateByQueryRequest = UpdateByQueryRequest.of(
+                    builder -> builder.index(List.of(indices)).conflicts(Conflicts.Proceed).waitForCompletion(false)
+                            .slices(Slices.of(s -> s.value(2))).script(script).query(query));
+
+            UpdateByQueryResponse response = esClient.updateByQuery(updateByQueryRequest);
+
+            if (response.task() == null) {
+                LOGGER.error("update with query and script: no response returned for query: {}", query);
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("ES task started [{}]: [{}] using query: [{}], polling at most every {}ms with a timeout configured to {}ms",
+                        response.task(), updateByQueryRequest, updateByQueryRequest.query(), taskWaitingPollingInterval, taskWaitingTimeout);
+            }
+            return response.task();
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404 && e.getMessage() != null && e.getMessage().contains("index_not_found_exception")) {
+                throw new Exception("No index found for itemTypes=" + String.join(",", itemTypes), e);
+            }
+            //TODO check the message
+            LOGGER.error("Error in the update script : {}\n{}", e.response().toString(), e.getMessage(), e);
+            throw new Exception("Error in the update script");
+        }
+    }
+
     private void waitForTaskComplete(String task) {
-        long start = System.currentTimeMillis();
-        new InClassLoaderExecute<Void>(metricsService, this.getClass().getName() + ".waitForTask", this.bundleContext,
-                this.fatalIllegalStateErrors, throwExceptions) {
-            protected Void execute(Object... args) throws Exception {
-
-                while (true) {
-                    GetTasksResponse tasksResponse = esClient.tasks().get(GetTasksRequest.of(builder -> builder.taskId(task)));
-                    if (tasksResponse != null) {
-                        long taskId = tasksResponse.task().id();
-                        if (tasksResponse.completed()) {
-                            if (LOGGER.isDebugEnabled()) {
-                                long millis = tasksResponse.task().runningTimeInNanos() / 1_000_000;
-                                long seconds = millis / 1000;
-                                LOGGER.debug("Waiting task [{}]: Finished in {} {}", taskId, seconds >= 1 ? seconds : millis,
-                                        seconds >= 1 ? "seconds" : "milliseconds");
-                            }
-                            break;
-                        } else {
-                            if ((start + taskWaitingTimeout) < System.currentTimeMillis()) {
-                                LOGGER.error("Waiting task [{}]: Exceeded configured timeout ({}ms), aborting wait process", taskId,
-                                        taskWaitingTimeout);
-                                break;
-                            }
+        try {
+            taskTracker.track(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Waiting task [" + task + "]: interrupted");
+        } catch (ExecutionException e) {
+            // Already logged by the task tracker, the wait is aborted as before
+            LOGGER.debug("Waiting task [{}]: aborted", task, e.getCause());
+        }
+    }
 
-                            try {
-                                Thread.sleep(taskWaitingPollingInterval);
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                throw new IllegalStateException("Waiting task [" + taskId + "]: interrupted");
-                            }
-                        }
-                    } else {
-                        LOGGER.error("Waiting task [{}]: No task found", task);
-                        break;
-                    }
+    private PersistenceTaskTracker.TaskStatus getTaskStatus(String task, long waitForCompletionMillis) throws IOException {
+        GetTasksResponse tasksResponse;
+        try {
+            tasksResponse = esClient.tasks().get(GetTasksRequest.of(builder -> {
+                builder.taskId(task);
+                if (waitForCompletionMillis > 0) {
+                    builder.waitForCompletion(true).timeout(Time.of(t -> t.time(waitForCompletionMillis + "ms")));
                 }
-                return null;
+                return builder;
+            }));
+        } catch (ElasticsearchException e) {
+            if (e.status() == 408) {
+                // Long poll expired before the task completed
+                return PersistenceTaskTracker.TaskStatus.RUNNING;
+            } else if (e.status() == 404) {
+                return PersistenceTaskTracker.TaskStatus.NOT_FOUND;
             }
-        }.catchingExecuteInClassLoader(true);
+            throw e;
+        }
+        if (tasksResponse == null) {
+            return PersistenceTaskTracker.TaskStatus.NOT_FOUND;
+        }
+        if (tasksResponse.completed()) {
+            if (LOGGER.isDebugEnabled()) {
+                long millis = tasksResponse.task().runningTimeInNanos() / 1_000_000;
+                long seconds = millis / 1000;
+                LOGGER.debug("Waiting task [{}]: Finished in {} {}", task, seconds >= 1 ? seconds : millis,
+                        seconds >= 1 ? "seconds" : "milliseconds");
+            }
+            return PersistenceTaskTracker.TaskStatus.COMPLETED;
+        }
+        return PersistenceTaskTracker.TaskStatus.RUNNING;
     }
 
     @Override public boolean storeScripts(Map<String, String> scripts) {
@@ -1420,7 +1618,35 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         return Objects.requireNonNullElse(result, false);
     }
 
+    @Override public <T extends Item> CompletableFuture<Boolean> removeByQueryAsync(final Condition query, final Class<T> clazz) {
+        String task = new InClassLoaderExecute<String>(metricsService, this.getClass().getName() + ".removeByQueryAsync", this.bundleContext,
+                this.fatalIllegalStateErrors, throwExceptions) {
+            protected String execute(Object... args) throws Exception {
+                Query esQuery = conditionESQueryBuilderDispatcher.getQueryBuilder(query);
+                return submitDeleteByQuery(esQuery, clazz);
+            }
+        }.catchingExecuteInClassLoader(true);
+        if (task == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return taskTracker.track(task).thenApply(completed -> true);
+    }
+
     public <T extends Item> boolean removeByQuery(Query query, final Class<T> clazz) throws Exception {
+        String task = submitDeleteByQuery(query, clazz);
+        if (task == null) {
+            return false;
+        }
+        waitForTaskComplete(task);
+        return true;
+    }
+
+    /**
+     * Submits a delete by query request without waiting for its completion.
+     *
+     * @return the identifier of the task running the deletion, or null if none was returned
+     */
+    private <T extends Item> String submitDeleteByQuery(Query query, final Class<T> clazz) throws Exception {
         try {
             String itemType = Item.getItemType(clazz);
             LOGGER.debug("Remove item of type {} using a query", itemType);
@@ -1434,17 +1660,11 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
             String task = deleteByQueryResponse.task();
             if (task == null) {
                 LOGGER.error("Remove by query: no response returned for query: {}", query);
-                return false;
-            }
-
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Waiting task [{}]: [{}] using query: [{}], polling every {}ms with a timeout configured to {}ms", task,
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("ES task started [{}]: [{}] using query: [{}], polling at most every {}ms with a timeout configured to {}ms", task,
                         deleteByQueryRequest, deleteByQueryRequest.query(), taskWaitingPollingInterval, taskWaitingTimeout);
             }
-
-            waitForTaskComplete(task);
-
-            return true;
+            return task;
         } catch (Exception e) {
             throw new Exception("Cannot remove by query", e);
         }
@@ -1514,6 +1734,7 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
                     } else {
                         internalCreateIndex(index, mappings.get(itemType));
                     }
+                    mappingCache.invalidate(itemType);
                 }
                 return !indexExists.value();
             }
@@ -1531,6 +1752,7 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
                         .value();
                 if (indexExists) {
                     esClient.indices().delete(DeleteIndexRequest.of(builder -> builder.index(index)));
+                    mappingCache.invalidate(itemType);
                 }
                 return indexExists;
             }
@@ -1742,12 +1964,15 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
             putMapping(source, getIndex(type));
         } catch (IOException ioe) {
             LOGGER.error("Error while creating mapping for type {} and source {}", type, source, ioe);
+        } finally {
+            mappingCache.invalidate(type);
         }
     }
 
     public void setPropertyMapping(final PropertyType property, final String itemType) {
         try {
-            Map<String, Map<String, Object>> mappings = getPropertiesMapping(itemType);
+            // The cached mapping cannot be modified, and may be outdated
+            Map<String, Map<String, Object>> mappings = loadPropertiesMapping(itemType);
             if (mappings == null) {
                 mappings = new HashMap<>();
             }
@@ -1771,6 +1996,7 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
             final String mappingsSource = ESCustomObjectMapper.getObjectMapper().writeValueAsString(mappingsWrapper);
 
             putMapping(mappingsSource, getIndex(itemType));
+            mappingCache.invalidate(itemType);
         } catch (IOException ioe) {
             LOGGER.error("Error while creating mapping for type {} and property {}", itemType, property.getValueTypeId(), ioe);
         }
@@ -1853,6 +2079,11 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
     }
 
     @Override public Map<String, Map<String, Object>> getPropertiesMapping(final String itemType) {
+        PropertyMappingCache.ItemTypeMapping mapping = mappingCache.get(itemType);
+        return mapping != null ? mapping.getProperties() : null;
+    }
+
+    private Map<String, Map<String, Object>> loadPropertiesMapping(final String itemType) {
         return new InClassLoaderExecute<Map<String, Map<String, Object>>>(metricsService,
                 this.getClass().getName() + ".getPropertiesMapping", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
             @SuppressWarnings("unchecked") protected Map<String, Map<String, Object>> execute(Object... args) throws Exception {
@@ -1938,41 +2169,13 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
     }
 
     public Map<String, Object> getPropertyMapping(String property, String itemType) {
-        Map<String, Map<String, Object>> mappings = knownMappings.get(itemType);
-        Map<String, Object> result = getPropertyMapping(property, mappings);
-        if (result == null) {
-            mappings = getPropertiesMapping(itemType);
-            knownMappings.put(itemType, mappings);
-            result = getPropertyMapping(property, mappings);
-        }
-        return result;
-    }
-
-    private Map<String, Object> getPropertyMapping(String property, Map<String, Map<String, Object>> mappings) {
-        Map<String, Object> propMapping = null;
-        String[] properties = StringUtils.split(property, '.');
-        for (int i = 0; i < properties.length && mappings != null; i++) {
-            String s = properties[i];
-            propMapping = mappings.get(s);
-            if (i == properties.length - 1) {
-                return propMapping;
-            } else {
-                mappings = propMapping != null ? ((Map<String, Map<String, Object>>) propMapping.get("properties")) : null;
-            }
-        }
-        return null;
+        PropertyMappingCache.ItemTypeMapping mapping = mappingCache.get(itemType);
+        return mapping != null ? mapping.getPropertyMapping(property) : null;
     }
 
     private String getPropertyNameWithData(String name, String itemType) {
-        Map<String, Object> propertyMapping = getPropertyMapping(name, itemType);
-        if (propertyMapping == null) {
-            return null;
-        }
-        if ("text".equals(propertyMapping.get("type")) && propertyMapping.containsKey("fields") && ((Map) propertyMapping.get(
-                "fields")).containsKey("keyword")) {
-            name += ".keyword";
-        }
-        return name;
+        PropertyMappingCache.ItemTypeMapping mapping = mappingCache.get(itemType);
+        return mapping != null ? mapping.getPropertyNameWithData(name) : null;
     }
 
     @Override public boolean isValidCondition(Condition condition, Item item) {
@@ -2117,6 +2320,59 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
         }.catchingExecuteInClassLoader(true);
     }
 
+    @Override public Map<String, Long> queryCounts(Map<String, Condition> queries, String itemType) {
+        Map<String, Long> results = new LinkedHashMap<>();
+        Map<String, Query> filters = new LinkedHashMap<>();
+        for (Map.Entry<String, Condition> entry : queries.entrySet()) {
+            results.put(entry.getKey(), -1L);
+            try {
+                results.put(entry.getKey(), conditionESQueryBuilderDispatcher.count(entry.getValue()));
+            } catch (UnsupportedOperationException e) {
+                try {
+                    Query filter = conditionESQueryBuilderDispatcher.buildFilter(entry.getValue());
+                    if (filter.isIds()) {
+                        results.put(entry.getKey(), (long) filter.ids().values().size());
+                    } else {
+                        filters.put(entry.getKey(), filter);
+                    }
+                } catch (UnsupportedOperationException e1) {
+                    // keep -1, as queryCount does
+                }
+            }
+        }
+        if (!filters.isEmpty()) {
+            Map<String, Long> counts = queryFilterCounts(filters, itemType);
+            if (counts != null) {
+                results.putAll(counts);
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Long> queryFilterCounts(final Map<String, Query> filters, final String itemType) {
+        return new InClassLoaderExecute<Map<String, Long>>(metricsService, this.getClass().getName() + ".queryFilterCounts", this.bundleContext,
+                this.fatalIllegalStateErrors, throwExceptions) {
+
+            @Override protected Map<String, Long> execute(Object... args) throws IOException {
+                // A single search with one filter bucket per condition, instead of one count request per condition
+                Aggregation countsAggregation = new Aggregation.Builder().filters(f -> f.filters(b -> b.keyed(filters))).build();
+                SearchRequest searchRequest = SearchRequest.of(builder -> builder.index(getIndexNameForQuery(itemType))
+                        .size(0)
+                        .query(wrapWithTenantAndItemTypeQuery(itemType, Query.of(q -> q.matchAll(m -> m)), getTenantId()))
+                        .aggregations("counts", countsAggregation));
+                SearchResponse<Item> response = esClient.search(searchRequest, Item.class);
+
+                Map<String, Long> results = new LinkedHashMap<>();
+                Map<String, FiltersBucket> buckets = response.aggregations().get("counts").filters().buckets().keyed();
+                for (String key : filters.keySet()) {
+                    FiltersBucket bucket = buckets.get(key);
+                    results.put(key, bucket != null ? bucket.docCount() : 0L);
+                }
+                return results;
+            }
+        }.catchingExecuteInClassLoader(true);
+    }
+
     private <T extends Item> PartialList<T> query(final Query query, final String sortBy, final Class<T> clazz, final int offset,
             final int size, final String[] routing, final String scrollTimeValidity) {
         return query(query, sortBy, clazz, null, offset, size, routing, scrollTimeValidity);
@@ -2243,6 +2499,24 @@ public class ElasticSearchPersistenceServiceImpl implements PersistenceService,
                 PartialList.Relation.EQUAL;
     }
 
+    @Override public void clearScrollQuery(final String scrollIdentifier) {
+        if (scrollIdentifier == null) {
+            return;
+        }
+        new InClassLoaderExecute<Boolean>(metricsService, this.getClass().getName() + ".clearScrollQuery", this.bundleContext,
+                this.fatalIllegalStateErrors, throwExceptions) {
+            protected Boolean execute(Object... args) {
+                try {
+                    esClient.clearScroll(new ClearScrollRequest.Builder().scrollId(scrollIdentifier).build());
+                } catch (IOException | ElasticsearchException e) {
+                    LOGGER.warn("Failed to clear scroll query: {}. Set the log in DEBUG level for details", e.getMessage());
+                    LOGGER.debug("Error on clear scroll: ", e);
+                }
+                return true;
+            }
+        }.catchingExecuteInClassLoader(true);
+    }
+
     @Override public <T extends Item> PartialList<T> continueScrollQuery(final Class<T> clazz, final String scrollIdentifier,
             final String scrollTimeValidity) {
         String finalTenantId = validateTenantAndGetId(SecurityServiceConfiguration.PERMISSION_SCROLL_QUERY);
@@ -48,6 +48,8 @@ import org.apache.unomi.api.tenants.TenantTransformationListener;
 import org.apache.unomi.metrics.MetricAdapter;
 import org.apache.unomi.metrics.MetricsService;
 import org.apache.unomi.persistence.spi.PersistenceService;
+import org.apache.unomi.persistence.spi.PersistenceTaskTracker;
+import org.apache.unomi.persistence.spi.PropertyMappingCache;
 import org.apache.unomi.persistence.spi.aggregate.*;
 import org.apache.unomi.persistence.spi.aggregate.DateRangeAggregate;
 import org.apache.unomi.persistence.spi.aggregate.IpRangeAggregate;
@@ -67,6 +69,8 @@ import org.opensearch.client.opensearch.cluster.HealthResponse;
 import org.opensearch.client.opensearch.core.*;
 import org.opensearch.client.opensearch.core.bulk.BulkOperation;
 import org.opensearch.client.opensearch.core.bulk.UpdateOperation;
+import org.opensearch.client.opensearch.core.get.GetResult;
+import org.opensearch.client.opensearch.core.mget.MultiGetResponseItem;
 import org.opensearch.client.opensearch.core.search.Hit;
 import org.opensearch.client.opensearch.core.search.HitsMetadata;
 import org.opensearch.client.opensearch.core.search.TotalHits;
@@ -91,7 +95,9 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import static org.apache.unomi.api.tenants.TenantService.SYSTEM_TENANT;
@@ -128,6 +134,11 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
     private Integer removeByQueryTimeoutInMinutes = 10;
     private Integer taskWaitingTimeout = 3600000;
     private Integer taskWaitingPollingInterval = 1000;
+    private final PersistenceTaskTracker taskTracker = new PersistenceTaskTracker("unomi-opensearch-task-tracker", this::getTaskStatus,
+            () -> taskWaitingPollingInterval, () -> taskWaitingTimeout);
+    private Integer mappingRefreshInterval = 60000;
+    private final PropertyMappingCache mappingCache = new PropertyMappingCache("unomi-opensearch-mapping-refresher", this::loadPropertiesMapping,
+            () -> mappingRefreshInterval);
 
     // Rollover configuration
     private String sessionLatestIndex;
@@ -166,12 +177,11 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
     private Integer clientSocketTimeout = null;
     private Map<String, Refresh> itemTypeToRefreshPolicy = new HashMap<>();
 
-    private final Map<String, Map<String, Map<String, Object>>> knownMappings = new HashMap<>();
 
     private static final Map<String, String> itemTypeIndexNameMap = new HashMap<>();
     private static final Collection<String> systemItems = Arrays.asList("actionType", "campaign", "campaignevent", "goal",
             "userList", "propertyType", "scope", "conditionType", "rule", "scoring", "segment", "groovyAction", "topic",
-            "patch", "jsonSchema", "importConfig", "exportConfig", "rulestats");
+            "patch", "jsonSchema", "importConfig", "exportConfig", "rulestats", "campaignstats");
     static {
         for (String systemItem : systemItems) {
             itemTypeIndexNameMap.put(systemItem, "systemItems");
@@ -370,6 +380,12 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
         }
     }
 
+    public void setMappingRefreshInterval(String mappingRefreshInterval) {
+        if (StringUtils.isNumeric(mappingRefreshInterval)) {
+            this.mappingRefreshInterval = Integer.parseInt(mappingRefreshInterval);
+        }
+    }
+
     public void setMinimalClusterState(String minimalClusterState) {
         if ("GREEN".equalsIgnoreCase(minimalClusterState) || "YELLOW".equalsIgnoreCase(minimalClusterState)) {
             this.minimalClusterState = minimalClusterState.toUpperCase();
@@ -530,6 +546,8 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
         new InClassLoaderExecute<>(null, null, this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
             protected Object execute(Object... args) throws IOException {
                 LOGGER.info("Closing OpenSearch persistence backend...");
+                taskTracker.shutdown();
+                mappingCache.shutdown();
                 if (client != null) {
                     client._transport().close();
                     client = null;
@@ -594,6 +612,7 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
         propertyMappings.put("clientSocketTimeout", ConfigurationUpdateHelper.stringProperty(this::setClientSocketTimeout));
         propertyMappings.put("taskWaitingTimeout", ConfigurationUpdateHelper.stringProperty(this::setTaskWaitingTimeout));
         propertyMappings.put("taskWaitingPollingInterval", ConfigurationUpdateHelper.stringProperty(this::setTaskWaitingPollingInterval));
+        propertyMappings.put("mappingRefreshInterval", ConfigurationUpdateHelper.stringProperty(this::setMappingRefreshInterval));
         propertyMappings.put("aggQueryMaxResponseSizeHttp", ConfigurationUpdateHelper.stringProperty(this::setAggQueryMaxResponseSizeHttp));
 
         // Integer properties
@@ -793,6 +812,132 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
 
     }
 
+    @Override
+    public Map<Class<? extends Item>, Item> multiLoad(final String itemId, final List<Class<? extends Item>> classes) {
+        Map<Class<? extends Item>, String> itemIds = new LinkedHashMap<>();
+        for (Class<? extends Item> clazz : classes) {
+            itemIds.put(clazz, itemId);
+        }
+        return multiLoad(itemIds);
+    }
+
+    @Override
+    public Map<Class<? extends Item>, Item> multiLoad(final Map<Class<? extends Item>, String> itemIds) {
+        Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+        final List<Class<? extends Item>> classes = new ArrayList<>();
+        for (Map.Entry<Class<? extends Item>, String> entry : itemIds.entrySet()) {
+            if (StringUtils.isEmpty(entry.getValue())) {
+                continue;
+            }
+            String itemType = Item.getItemType(entry.getKey());
+            if (!isSessionDirectAccess(itemType) && isItemTypeRollingOver(itemType)) {
+                // Items of rolling over indices are loaded with a query
+                Item item = load(entry.getValue(), entry.getKey());
+                if (item != null) {
+                    items.put(entry.getKey(), item);
+                }
+            } else {
+                classes.add(entry.getKey());
+            }
+        }
+        if (classes.isEmpty()) {
+            return items;
+        }
+
+        Map<Class<? extends Item>, Item> loadedItems = new InClassLoaderExecute<Map<Class<? extends Item>, Item>>(metricsService,
+                this.getClass().getName() + ".multiLoadItems", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+            protected Map<Class<? extends Item>, Item> execute(Object... args) throws Exception {
+                Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+                try {
+                    MgetRequest.Builder request = new MgetRequest.Builder();
+                    for (Class<? extends Item> clazz : classes) {
+                        String itemType = Item.getItemType(clazz);
+                        String documentId = getDocumentIDForItemType(itemIds.get(clazz), itemType);
+                        // Sessions are read from the latest index directly, as for single loads
+                        String index = isSessionDirectAccess(itemType) ? sessionLatestIndex : getIndex(itemType);
+                        request.docs(doc -> doc.index(index).id(documentId));
+                    }
+                    MgetResponse<JsonData> response = client.mget(request.build(), JsonData.class);
+                    for (int i = 0; i < classes.size(); i++) {
+                        MultiGetResponseItem<JsonData> responseItem = response.docs().get(i);
+                        if (!responseItem.isResult() || !responseItem.result().found() || responseItem.result().source() == null) {
+                            // Missing documents and indices are reported as failures or not found items
+                            continue;
+                        }
+                        GetResult<JsonData> result = responseItem.result();
+                        Item value = result.source().to(classes.get(i));
+                        setMetadata(value, result.id(), result.version() != null ? result.version() : 0L,
+                                result.seqNo() != null ? result.seqNo() : 0L,
+                                result.primaryTerm() != null ? result.primaryTerm() : 0L, result.index());
+                        items.put(classes.get(i), value);
+                    }
+                    return items;
+                } catch (Exception ex) {
+                    throw new Exception("Error loading items=" + itemIds, ex);
+                }
+            }
+        }.catchingExecuteInClassLoader(true);
+        if (loadedItems == null) {
+            return null;
+        }
+        items.putAll(loadedItems);
+        return items;
+    }
+
+    @Override
+    public <T extends Item> Map<String, T> multiLoad(final Collection<String> itemIds, final Class<T> clazz) {
+        final String itemType = Item.getItemType(clazz);
+        final List<String> ids = new ArrayList<>();
+        for (String itemId : itemIds) {
+            if (StringUtils.isNotEmpty(itemId) && !ids.contains(itemId)) {
+                ids.add(itemId);
+            }
+        }
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        if (!isSessionDirectAccess(itemType) && isItemTypeRollingOver(itemType)) {
+            // Items of rolling over indices are loaded with a query
+            return PersistenceService.super.multiLoad(ids, clazz);
+        }
+
+        return new InClassLoaderExecute<Map<String, T>>(metricsService, this.getClass().getName() + ".multiLoadItemsById", this.bundleContext,
+                this.fatalIllegalStateErrors, throwExceptions) {
+            protected Map<String, T> execute(Object... args) throws Exception {
+                Map<String, T> items = new LinkedHashMap<>();
+                try {
+                    MgetRequest.Builder request = new MgetRequest.Builder();
+                    // Sessions are read from the latest index directly, as for single loads
+                    String index = isSessionDirectAccess(itemType) ? sessionLatestIndex : getIndex(itemType);
+                    for (String itemId : ids) {
+                        String documentId = getDocumentIDForItemType(itemId, itemType);
+                        request.docs(doc -> doc.index(index).id(documentId));
+                    }
+                    MgetResponse<JsonData> response = client.mget(request.build(), JsonData.class);
+                    for (int i = 0; i < ids.size(); i++) {
+                        MultiGetResponseItem<JsonData> responseItem = response.docs().get(i);
+                        if (!responseItem.isResult() || !responseItem.result().found() || responseItem.result().source() == null) {
+                            continue;
+                        }
+                        GetResult<JsonData> result = responseItem.result();
+                        T value = result.source().to(clazz);
+                        setMetadata(value, result.id(), result.version() != null ? result.version() : 0L,
+                                result.seqNo() != null ? result.seqNo() : 0L,
+                                result.primaryTerm() != null ? result.primaryTerm() : 0L, result.index());
+                        items.put(ids.get(i), value);
+                    }
+                    return items;
+                } catch (Exception ex) {
+                    throw new Exception("Error loading itemType=" + clazz.getName() + " itemIds=" + ids, ex);
+                }
+            }
+        }.catchingExecuteInClassLoader(true);
+    }
+
+    private boolean isSessionDirectAccess(String itemType) {
+        return sessionLatestIndex != null && Session.ITEM_TYPE.equals(itemType);
+    }
+
     private void setMetadata(Item item, String itemId, long version, long seqNo, long primaryTerm, String index) {
         if (item != null) {
             String strippedId = stripTenantFromDocumentId(itemId);
@@ -835,6 +980,17 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
     }
     }
 
+    @Override
+    public boolean isPartialUpdateSupported(Item item) {
+        // Tenant transformation listeners only apply to whole items
+        for (TenantTransformationListener listener : transformationListeners) {
+            if (listener.isTransformationEnabled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean isConsistent(Item item) {
         return getRefreshPolicy(item.getItemType()) != Refresh.False;
@@ -1081,12 +1237,51 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
 
     @Override
     public boolean updateWithQueryAndStoredScript(Class<?>[] classes, String[] scripts, Map<String, Object>[] scriptParams, Condition[] conditions, boolean waitForComplete) {
+        return updateWithQueryAndScript(classes, buildStoredScripts(scripts, scriptParams), conditions, waitForComplete);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateWithQueryAndStoredScriptAsync(Class<?>[] classes, String[] scripts, Map<String, Object>[] scriptParams, Condition[] conditions) {
+        String[] itemTypes = Arrays.stream(classes).map(Item::getItemType).toArray(String[]::new);
+        List<String> indices = Arrays.stream(itemTypes).map(itemType -> getIndexNameForQuery(itemType)).collect(Collectors.toList());
+        Script[] builtScripts = buildStoredScripts(scripts, scriptParams);
+        // The queries are built on the calling thread, which holds the tenant context
+        Query[] queries = new Query[conditions.length];
+        try {
+            for (int i = 0; i < conditions.length; i++) {
+                queries[i] = wrapWithTenantAndItemsTypeQuery(itemTypes, conditionOSQueryBuilderDispatcher.buildFilter(conditions[i]), getTenantId());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Cannot build the update by query requests", e);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        // Each script is submitted once the previous one has completed, as in the blocking variant
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+        for (int i = 0; i < builtScripts.length; i++) {
+            final int finalI = i;
+            result = result.thenComposeAsync(submitted -> {
+                if (!submitted) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                String taskId = new InClassLoaderExecute<String>(metricsService, this.getClass().getName() + ".updateWithQueryAndScriptAsync", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+                    protected String execute(Object... args) throws Exception {
+                        return submitUpdateByQuery(itemTypes, indices, builtScripts[finalI], queries[finalI]);
+                    }
+                }.catchingExecuteInClassLoader(true);
+                return taskId != null ? taskTracker.track(taskId).thenApply(completed -> true) : CompletableFuture.completedFuture(false);
+            });
+        }
+        return result;
+    }
+
+    private Script[] buildStoredScripts(String[] scripts, Map<String, Object>[] scriptParams) {
         Script[] builtScripts = new Script[scripts.length];
         for (int i = 0; i < scripts.length; i++) {
             final int finalI = i;
             builtScripts[i] = Script.of(s -> s.stored(stored -> stored.id(scripts[finalI]).params(convertParams(scriptParams[finalI]))));
         }
-        return updateWithQueryAndScript(classes, builtScripts, conditions, waitForComplete);
+        return builtScripts;
     }
 
     private boolean updateWithQueryAndScript(final Class<?>[] classes, final Script[] scripts, final Condition[] conditions, boolean waitForComplete) {
@@ -1095,80 +1290,104 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
                 String[] itemTypes = Arrays.stream(classes).map(Item::getItemType).toArray(String[]::new);
                 List<String> indices = Arrays.stream(itemTypes).map(itemType -> getIndexNameForQuery(itemType)).collect(Collectors.toList());
 
-                try {
-                    for (int i = 0; i < scripts.length; i++) {
-                        RefreshRequest refreshRequest = new RefreshRequest.Builder().index(indices).build();
-                        client.indices().refresh(refreshRequest);
-
-                        Query queryBuilder = conditionOSQueryBuilderDispatcher.buildFilter(conditions[i]);
-                        UpdateByQueryRequest.Builder updateByQueryRequestBuilder = new UpdateByQueryRequest.Builder().index(indices);
-                        updateByQueryRequestBuilder.conflicts(Conflicts.Proceed);
-                        updateByQueryRequestBuilder.slices(s -> s.calculation(SlicesCalculation.Auto));
-                        updateByQueryRequestBuilder.script(scripts[i]);
-                        updateByQueryRequestBuilder.query(wrapWithTenantAndItemsTypeQuery(itemTypes, queryBuilder, getTenantId()));
-                        updateByQueryRequestBuilder.waitForCompletion(false); // force the return of a task ID.
-
-                        UpdateByQueryRequest updateByQueryRequest = updateByQueryRequestBuilder.build();
-                        UpdateByQueryResponse updateByQueryResponse = client.updateByQuery(updateByQueryRequest);
-                        if (updateByQueryResponse == null) {
-                            LOGGER.error("update with query and script: no response returned for query: {}", queryBuilder);
-                        } else if (waitForComplete) {
-                            waitForTaskComplete(updateByQueryRequest.toString(), updateByQueryRequest.toString(), updateByQueryResponse.task());
-                        } else {
-                            LOGGER.debug("OpenSearch task started {}", updateByQueryResponse.task());
-                        }
+                for (int i = 0; i < scripts.length; i++) {
+                    Query query = wrapWithTenantAndItemsTypeQuery(itemTypes, conditionOSQueryBuilderDispatcher.buildFilter(conditions[i]), getTenantId());
+                    String taskId = submitUpdateByQuery(itemTypes, indices, scripts[i], query);
+                    if (taskId != null && waitForComplete) {
+                        waitForTaskComplete(taskId);
                     }
-                    return true;
-                } catch (OpenSearchException ose) {
-                    throw new Exception("Error updating with query and script for itemTypes=" + String.join(",", itemTypes), ose);
                 }
+                return true;
             }
         }.catchingExecuteInClassLoader(true);
         return Objects.requireNonNullElse(result, false);
     }
 
-    private void waitForTaskComplete(String request, String requestSource, String taskId) {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Waiting task [{}]: [{}] using query: [{}], polling every {}ms with a timeout configured to {}ms",
-                    taskId, request, requestSource, taskWaitingPollingInterval, taskWaitingTimeout);
+    /**
+     * Submits an update by query request without waiting for its completion.
+     *
+     * @return the identifier of the task running the update, or null if none was returned
+     */
+    private String submitUpdateByQuery(String[] itemTypes, List<String> indices, Script script, Query query) throws Exception {
+        try {
+            RefreshRequest refreshRequest = new RefreshRequest.Builder().index(indices).build();
+            client.indices().refresh(refreshRequest);
+
+            UpdateByQueryRequest.Builder updateByQueryRequestBuilder = new UpdateByQueryRequest.Builder().index(indices);
+            updateByQueryRequestBuilder.conflicts(Conflicts.Proceed);
+            updateByQueryRequestBuilder.slices(s -> s.calculation(SlicesCalculation.Auto));
+            updateByQueryRequestBuilder.script(script);
+            updateByQueryRequestBuilder.query(query);
+            updateByQueryRequestBuilder.waitForCompletion(false); // force the return of a task ID.
+
+            UpdateByQueryRequest updateByQueryRequest = updateByQueryRequestBuilder.build();
+            UpdateByQueryResponse updateByQueryResponse = client.updateByQuery(updateByQueryRequest);
+            if (updateByQueryResponse == null) {
+                LOGGER.error("update with query and script: no response returned for query: {}", query);
+                return null;
+            }
+            logTaskStarted(updateByQueryRequest.toString(), updateByQueryResponse.task());
+            return updateByQueryResponse.task();
+        } catch (OpenSearchException ose) {
+            throw new Exception("Error updating with query and script for itemTypes=" + String.join(",", itemTypes), ose);
         }
+    }
+
+    private void logTaskStarted(String request, String taskId) {
         if (taskId == null) {
             LOGGER.warn("No taskId provided, can't wait for task [{}]", request);
-            return;
+        } else if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("OpenSearch task started [{}]: [{}], polling at most every {}ms with a timeout configured to {}ms",
+                    taskId, request, taskWaitingPollingInterval, taskWaitingTimeout);
         }
-        long start = System.currentTimeMillis();
-        new InClassLoaderExecute<Void>(metricsService, this.getClass().getName() + ".waitForTask", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
-            protected Void execute(Object... args) throws Exception {
-
-                while (true){
-                    GetTasksResponse getTasksResponse = client.tasks().get(t -> t.taskId(taskId));
-                    if (getTasksResponse.completed()) {
-                        if (LOGGER.isDebugEnabled()) {
-                            long millis = getTasksResponse.task().runningTimeInNanos() / 1_000_000;
-                            long seconds = millis / 1000;
+    }
 
-                            LOGGER.debug("Waiting task [{}]: Finished in {} {}", taskId,
-                                    seconds >= 1 ? seconds : millis,
-                                    seconds >= 1 ? "seconds" : "milliseconds");
-                        }
-                        break;
-                    } else {
-                        if ((start + taskWaitingTimeout) < System.currentTimeMillis()) {
-                            LOGGER.error("Waiting task [{}]: Exceeded configured timeout ({}ms), aborting wait process", taskId, taskWaitingTimeout);
-                            break;
-                        }
+    private void waitForTaskComplete(String taskId) {
+        try {
+            taskTracker.track(taskId).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Waiting task [" + taskId + "]: interrupted");
+        } catch (ExecutionException e) {
+            // Already logged by the task tracker, the wait is aborted as before
+            LOGGER.debug("Waiting task [{}]: aborted", taskId, e.getCause());
+        }
+    }
 
-                        try {
-                            Thread.sleep(taskWaitingPollingInterval);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            throw new IllegalStateException("Waiting task [{}]: interrupted");
-                        }
-                    }
+    private PersistenceTaskTracker.TaskStatus getTaskStatus(String taskId, long waitForCompletionMillis) throws IOException {
+        GetTasksResponse getTasksResponse;
+        try {
+            getTasksResponse = client.tasks().get(t -> {
+                t.taskId(taskId);
+                if (waitForCompletionMillis > 0) {
+                    t.waitForCompletion(true).timeout(time -> time.time(waitForCompletionMillis + "ms"));
                 }
-                return null;
+                return t;
+            });
+        } catch (OpenSearchException e) {
+            if (e.status() == 408) {
+                // Long poll expired before the task completed
+                return PersistenceTaskTracker.TaskStatus.RUNNING;
+            } else if (e.status() == 404) {
+                return PersistenceTaskTracker.TaskStatus.NOT_FOUND;
             }
-        }.catchingExecuteInClassLoader(true);
+            throw e;
+        }
+        if (getTasksResponse == null) {
+            return PersistenceTaskTracker.TaskStatus.NOT_FOUND;
+        }
+        if (getTasksResponse.completed()) {
+            if (LOGGER.isDebugEnabled()) {
+                long millis = getTasksResponse.task().runningTimeInNanos() / 1_000_000;
+                long seconds = millis / 1000;
+
+                LOGGER.debug("Waiting task [{}]: Finished in {} {}", taskId,
+                        seconds >= 1 ? seconds : millis,
+                        seconds >= 1 ? "seconds" : "milliseconds");
+            }
+            return PersistenceTaskTracker.TaskStatus.COMPLETED;
+        }
+        return PersistenceTaskTracker.TaskStatus.RUNNING;
     }
 
     @Override
@@ -1278,7 +1497,37 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
         return Objects.requireNonNullElse(result, false);
     }
 
+    @Override
+    public <T extends Item> CompletableFuture<Boolean> removeByQueryAsync(final Condition query, final Class<T> clazz) {
+        validateTenantAndGetId(SecurityServiceConfiguration.PERMISSION_REMOVE_BY_QUERY);
+
+        String taskId = new InClassLoaderExecute<String>(metricsService, this.getClass().getName() + ".removeByQueryAsync", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+            protected String execute(Object... args) throws Exception {
+                Query queryBuilder = conditionOSQueryBuilderDispatcher.getQueryBuilder(query);
+                return submitDeleteByQuery(queryBuilder, clazz);
+            }
+        }.catchingExecuteInClassLoader(true);
+        if (taskId == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return taskTracker.track(taskId).thenApply(completed -> true);
+    }
+
     public <T extends Item> boolean removeByQuery(Query queryBuilder, final Class<T> clazz) throws Exception {
+        String taskId = submitDeleteByQuery(queryBuilder, clazz);
+        if (taskId == null) {
+            return false;
+        }
+        waitForTaskComplete(taskId);
+        return true;
+    }
+
+    /**
+     * Submits a delete by query request without waiting for its completion.
+     *
+     * @return the identifier of the task running the deletion, or null if none was returned
+     */
+    private <T extends Item> String submitDeleteByQuery(Query queryBuilder, final Class<T> clazz) throws Exception {
         try {
             String itemType = Item.getItemType(clazz);
             LOGGER.debug("Remove item of type {} using a query", itemType);
@@ -1293,7 +1542,7 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
                     // So we explicitly set the conflict strategy to proceed in case of version conflict.
                     .conflicts(Conflicts.Proceed)
                     // We force waitForCompletion to the value false to make sure we get back a taskID that we can then poll for
-                    // in our waitForTaskComplete method
+                    // through the task tracker
                     .waitForCompletion(false)
                     // Remove by Query is mostly used for purge and cleaning up old data
                     // It's mostly used in jobs/timed tasks so we don't really care about long request
@@ -1305,12 +1554,10 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
 
             if (deleteByQueryResponse == null) {
                 LOGGER.error("Remove by query: no response returned for query: {}", queryBuilder);
-                return false;
+                return null;
             }
-
-            waitForTaskComplete(deleteByQueryRequest.toString(), deleteByQueryRequest.toString(), deleteByQueryResponse.task());
-
-            return true;
+            logTaskStarted(deleteByQueryRequest.toString(), deleteByQueryResponse.task());
+            return deleteByQueryResponse.task();
         } catch (Exception e) {
             throw new Exception("Cannot remove by query", e);
         }
@@ -1458,6 +1705,7 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
                     } else {
                         internalCreateIndex(index, mappings.get(itemType));
                     }
+                    mappingCache.invalidate(itemType);
                 }
 
                 return !indexExists;
@@ -1475,6 +1723,7 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
                 boolean indexExists = client.indices().exists(e -> e.index(index)).value();
                 if (indexExists) {
                     client.indices().delete(d -> d.index(index));
+                    mappingCache.invalidate(itemType);
                 }
                 return indexExists;
             }
@@ -1570,12 +1819,15 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
             putMapping(source, getIndex(type));
         } catch (IOException ioe) {
             LOGGER.error("Error while creating mapping for type " + type + " and source " + source, ioe);
+        } finally {
+            mappingCache.invalidate(type);
         }
     }
 
     public void setPropertyMapping(final PropertyType property, final String itemType) {
         try {
-            Map<String, Map<String, Object>> mappings = getPropertiesMapping(itemType);
+            // The cached mapping cannot be modified, and may be outdated
+            Map<String, Map<String, Object>> mappings = loadPropertiesMapping(itemType);
             if (mappings == null) {
                 mappings = new HashMap<>();
             }
@@ -1599,6 +1851,7 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
             final String mappingsSource = OSCustomObjectMapper.getObjectMapper().writeValueAsString(mappingsWrapper);
 
             putMapping(mappingsSource, getIndex(itemType));
+            mappingCache.invalidate(itemType);
         } catch (IOException ioe) {
             LOGGER.error("Error while creating mapping for type " + itemType + " and property " + property.getValueTypeId(), ioe);
         }
@@ -1693,6 +1946,11 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
 
     @Override
     public Map<String, Map<String, Object>> getPropertiesMapping(final String itemType) {
+        PropertyMappingCache.ItemTypeMapping mapping = mappingCache.get(itemType);
+        return mapping != null ? mapping.getProperties() : null;
+    }
+
+    private Map<String, Map<String, Object>> loadPropertiesMapping(final String itemType) {
         return new InClassLoaderExecute<Map<String, Map<String, Object>>>(metricsService, this.getClass().getName() + ".getPropertiesMapping", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
             @SuppressWarnings("unchecked")
             protected Map<String, Map<String, Object>> execute(Object... args) throws Exception {
@@ -1758,43 +2016,13 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
     }
 
     public Map<String, Object> getPropertyMapping(String property, String itemType) {
-        Map<String, Map<String, Object>> mappings = knownMappings.get(itemType);
-        Map<String, Object> result = getPropertyMapping(property, mappings);
-        if (result == null) {
-            mappings = getPropertiesMapping(itemType);
-            knownMappings.put(itemType, mappings);
-            result = getPropertyMapping(property, mappings);
-        }
-        return result;
-    }
-
-    private Map<String, Object> getPropertyMapping(String property, Map<String, Map<String, Object>> mappings) {
-        Map<String, Object> propMapping = null;
-        String[] properties = StringUtils.split(property, '.');
-        for (int i = 0; i < properties.length && mappings != null; i++) {
-            String s = properties[i];
-            propMapping = mappings.get(s);
-            if (i == properties.length - 1) {
-                return propMapping;
-            } else {
-                mappings = propMapping != null ? ((Map<String, Map<String, Object>>) propMapping.get("properties")) : null;
-            }
-        }
-        return null;
+        PropertyMappingCache.ItemTypeMapping mapping = mappingCache.get(itemType);
+        return mapping != null ? mapping.getPropertyMapping(property) : null;
     }
 
     private String getPropertyNameWithData(String name, String itemType) {
-        Map<String, Object> propertyMapping = getPropertyMapping(name, itemType);
-        if (propertyMapping == null) {
-            return null;
-        }
-        if (propertyMapping != null
-                && "text".equals(propertyMapping.get("type"))
-                && propertyMapping.containsKey("fields")
-                && ((Map) propertyMapping.get("fields")).containsKey("keyword")) {
-            name += ".keyword";
-        }
-        return name;
+        PropertyMappingCache.ItemTypeMapping mapping = mappingCache.get(itemType);
+        return mapping != null ? mapping.getPropertyNameWithData(name) : null;
     }
 
     public boolean saveQuery(final String queryName, final String query) {
@@ -1991,6 +2219,59 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
         }.catchingExecuteInClassLoader(true);
     }
 
+    @Override
+    public Map<String, Long> queryCounts(Map<String, Condition> queries, String itemType) {
+        Map<String, Long> results = new LinkedHashMap<>();
+        Map<String, Query> filters = new LinkedHashMap<>();
+        for (Map.Entry<String, Condition> entry : queries.entrySet()) {
+            results.put(entry.getKey(), -1L);
+            try {
+                results.put(entry.getKey(), conditionOSQueryBuilderDispatcher.count(entry.getValue()));
+            } catch (UnsupportedOperationException e) {
+                try {
+                    Query filter = conditionOSQueryBuilderDispatcher.buildFilter(entry.getValue());
+                    if (filter.isIds()) {
+                        results.put(entry.getKey(), (long) filter.ids().values().size());
+                    } else {
+                        filters.put(entry.getKey(), filter);
+                    }
+                } catch (UnsupportedOperationException e1) {
+                    // keep -1, as queryCount does
+                }
+            }
+        }
+        if (!filters.isEmpty()) {
+            Map<String, Long> counts = queryFilterCounts(filters, itemType);
+            if (counts != null) {
+                results.putAll(counts);
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Long> queryFilterCounts(final Map<String, Query> filters, final String itemType) {
+        return new InClassLoaderExecute<Map<String, Long>>(metricsService, this.getClass().getName() + ".queryFilterCounts", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+
+            @Override
+            protected Map<String, Long> execute(Object... args) throws IOException {
+                // A single search with one filter bucket per condition, instead of one count request per condition
+                Aggregation countsAggregation = new Aggregation.Builder().filters(f -> f.filters(b -> b.keyed(filters))).build();
+                SearchResponse<Item> response = client.search(s -> s.index(getIndexNameForQuery(itemType))
+                        .size(0)
+                        .query(wrapWithTenantAndItemTypeQuery(itemType, Query.of(q -> q.matchAll(m -> m)), getTenantId()))
+                        .aggregations("counts", countsAggregation), Item.class);
+
+                Map<String, Long> results = new LinkedHashMap<>();
+                Map<String, FiltersBucket> buckets = response.aggregations().get("counts").filters().buckets().keyed();
+                for (String key : filters.keySet()) {
+                    FiltersBucket bucket = buckets.get(key);
+                    results.put(key, bucket != null ? bucket.docCount() : 0L);
+                }
+                return results;
+            }
+        }.catchingExecuteInClassLoader(true);
+    }
+
     private <T extends Item> PartialList<T> query(final Query query, final String sortBy, final Class<T> clazz, final int offset, final int size, final String[] routing, final String scrollTimeValidity) {
         return query(query, sortBy, clazz, null, offset, size, routing, scrollTimeValidity);
     }
@@ -2125,6 +2406,24 @@ public class OpenSearchPersistenceServiceImpl implements PersistenceService, Syn
         return TotalHitsRelation.Gte.equals(totalHits.relation()) ? PartialList.Relation.GREATER_THAN_OR_EQUAL_TO : PartialList.Relation.EQUAL;
     }
 
+    @Override
+    public void clearScrollQuery(final String scrollIdentifier) {
+        if (scrollIdentifier == null) {
+            return;
+        }
+        new InClassLoaderExecute<Boolean>(metricsService, this.getClass().getName() + ".clearScrollQuery", this.bundleContext, this.fatalIllegalStateErrors, throwExceptions) {
+            protected Boolean execute(Object... args) {
+                try {
+                    client.clearScroll(c -> c.scrollId(scrollIdentifier));
+                } catch (IOException | OpenSearchException e) {
+                    LOGGER.warn("Failed to clear scroll query: {}. Set the log in DEBUG level for details", e.getMessage());
+                    LOGGER.debug("Error on clear scroll: ", e);
+                }
+                return true;
+            }
+        }.catchingExecuteInClassLoader(true);
+    }
+
     @Override
     public <T extends Item> PartialList<T> continueScrollQuery(final Class<T> clazz, final String scrollIdentifier, final String scrollTimeValidity) {
         String finalTenantId = validateTenantAndGetId(SecurityServiceConfiguration.PERMISSION_SCROLL_QUERY);
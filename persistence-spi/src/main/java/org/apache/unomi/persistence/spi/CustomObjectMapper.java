@@ -29,6 +29,7 @@ import com.fasterxml.jackson.module.jaxb.JaxbAnnotationModule;
 import org.apache.unomi.api.*;
 import org.apache.unomi.api.actions.ActionType;
 import org.apache.unomi.api.campaigns.Campaign;
+import org.apache.unomi.api.campaigns.CampaignStatistics;
 import org.apache.unomi.api.campaigns.events.CampaignEvent;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.conditions.ConditionType;
@@ -112,6 +113,7 @@ public class CustomObjectMapper extends ObjectMapper {
         builtinItemTypeClasses.put(ClusterNode.ITEM_TYPE, ClusterNode.class);
         builtinItemTypeClasses.put(ScheduledTask.ITEM_TYPE, ScheduledTask.class);
         builtinItemTypeClasses.put(RuleStatistics.ITEM_TYPE, RuleStatistics.class);
+        builtinItemTypeClasses.put(CampaignStatistics.ITEM_TYPE, CampaignStatistics.class);
         builtinItemTypeClasses.put(Scope.ITEM_TYPE, Scope.class);
         builtinItemTypeClasses.put(PersonaSession.ITEM_TYPE, PersonaSession.class);
         builtinItemTypeClasses.put(UserList.ITEM_TYPE, UserList.class);
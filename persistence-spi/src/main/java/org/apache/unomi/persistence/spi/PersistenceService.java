@@ -24,9 +24,12 @@ import org.apache.unomi.api.PropertyType;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.persistence.spi.aggregate.BaseAggregate;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A service to provide persistence and retrieval of context server entities.
@@ -95,6 +98,18 @@ public interface PersistenceService {
      */
     boolean isConsistent(Item item);
 
+    /**
+     * Checks whether a partial document sent with {@link #update(Item, Class, Map)} is stored as sent for the specified
+     * item. This is not the case when the saved items are transformed, for instance by tenant transformation listeners,
+     * which only apply to whole items: such items must be saved with {@link #save(Item)}.
+     *
+     * @param item the item to update
+     * @return {@code true} if the item can be updated with a partial document, {@code false} otherwise
+     */
+    default boolean isPartialUpdateSupported(Item item) {
+        return true;
+    }
+
     /**
      * Persists the specified Item in the context server.
      *
@@ -267,6 +282,21 @@ public interface PersistenceService {
      */
     boolean updateWithQueryAndStoredScript(Class<?>[] classes, String[] scripts, Map<String, Object>[] scriptParams, Condition[] conditions, boolean waitForComplete);
 
+    /**
+     * Non-blocking variant of {@link #updateWithQueryAndStoredScript(Class[], String[], Map[], Condition[], boolean)}
+     * waiting for completion. The scripts are still applied one after the other, but the calling thread is released
+     * as soon as the requests are built, so that several bulk maintenance jobs can run concurrently.
+     *
+     * @param classes      classes of items to update, be careful all of them will be submitted to update for all scripts/conditions
+     * @param scripts      Stored scripts name
+     * @param scriptParams script params array
+     * @param conditions   conditions array
+     * @return a future completing with {@code true} once all the updates are complete, {@code false} if they could not be submitted
+     */
+    default CompletableFuture<Boolean> updateWithQueryAndStoredScriptAsync(Class<?>[] classes, String[] scripts, Map<String, Object>[] scriptParams, Condition[] conditions) {
+        return CompletableFuture.completedFuture(updateWithQueryAndStoredScript(classes, scripts, scriptParams, conditions, true));
+    }
+
     /**
      * @deprecated use {@link #updateWithQueryAndStoredScript(Class, String[], Map[], Condition[])}
      */
@@ -297,6 +327,66 @@ public interface PersistenceService {
     @Deprecated
     <T extends Item> T load(String itemId, Date dateHint, Class<T> clazz);
 
+    /**
+     * Retrieves the items of several Item subclasses sharing the same identifier, such as a profile and a profile alias.
+     * Implementations should retrieve all the items in a single request to the persistence backend when possible.
+     *
+     * @param itemId  the identifier of the items we want to retrieve
+     * @param classes the {@link Item} subclasses of the items we want to retrieve
+     * @return the items found, by Item subclass
+     */
+    default Map<Class<? extends Item>, Item> multiLoad(String itemId, List<Class<? extends Item>> classes) {
+        Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+        for (Class<? extends Item> clazz : classes) {
+            Item item = load(itemId, clazz);
+            if (item != null) {
+                items.put(clazz, item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Retrieves items of several Item subclasses, each with its own identifier, such as the profile and the session of a
+     * request. Implementations should retrieve all the items in a single request to the persistence backend when
+     * possible.
+     *
+     * @param itemIds the identifiers of the items we want to retrieve, by {@link Item} subclass, {@code null}
+     *                identifiers are ignored
+     * @return the items found, by Item subclass
+     */
+    default Map<Class<? extends Item>, Item> multiLoad(Map<Class<? extends Item>, String> itemIds) {
+        Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+        for (Map.Entry<Class<? extends Item>, String> entry : itemIds.entrySet()) {
+            Item item = entry.getValue() != null ? load(entry.getValue(), entry.getKey()) : null;
+            if (item != null) {
+                items.put(entry.getKey(), item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Retrieves several items of the same Item subclass by their identifiers. Unlike a query, the items are read in real
+     * time, including those saved since the last refresh. Implementations should retrieve all the items in a single
+     * request to the persistence backend when possible.
+     *
+     * @param <T>     the type of the Item subclass we want to retrieve
+     * @param itemIds the identifiers of the items we want to retrieve
+     * @param clazz   the {@link Item} subclass of the items we want to retrieve
+     * @return the items found, by identifier
+     */
+    default <T extends Item> Map<String, T> multiLoad(Collection<String> itemIds, Class<T> clazz) {
+        Map<String, T> items = new LinkedHashMap<>();
+        for (String itemId : itemIds) {
+            T item = itemId != null ? load(itemId, clazz) : null;
+            if (item != null) {
+                items.put(itemId, item);
+            }
+        }
+        return items;
+    }
+
     /**
      * Load a custom item type identified by an identifier, an optional date hint and the identifier of the custom item type
      *
@@ -343,6 +433,19 @@ public interface PersistenceService {
      */
     <T extends Item> boolean removeByQuery(Condition query, Class<T> clazz);
 
+    /**
+     * Non-blocking variant of {@link #removeByQuery(Condition, Class)}: the deletion is submitted from the calling
+     * thread, and its completion is tracked in the background.
+     *
+     * @param <T>   the type of the Item subclass we want to delete
+     * @param query a {@link Condition} identifying which elements we want to delete
+     * @param clazz the {@link Item} subclass of the items we want to delete
+     * @return a future completing with {@code true} once the deletion is complete, {@code false} if it could not be submitted
+     */
+    default <T extends Item> CompletableFuture<Boolean> removeByQueryAsync(Condition query, Class<T> clazz) {
+        return CompletableFuture.completedFuture(removeByQuery(query, clazz));
+    }
+
     /**
      * Retrieve the type mappings for a given itemType. This method queries the persistence service implementation
      * to retrieve any type mappings it may have for the specified itemType.
@@ -549,6 +652,15 @@ public interface PersistenceService {
      */
     <T extends Item> PartialList<T> continueScrollQuery(Class<T> clazz, String scrollIdentifier, String scrollTimeValidity);
 
+    /**
+     * Clears a scroll query that is not continued until its last results, releasing the resources it holds before its
+     * time validity expires.
+     *
+     * @param scrollIdentifier a scroll identifier obtained by the execution of a first query and returned in the {@link PartialList} object
+     */
+    default void clearScrollQuery(String scrollIdentifier) {
+    }
+
     /**
      * Retrieves a list of items satisfying the specified {@link Condition}, ordered according to the specified
      * {@code sortBy} String and paged: only {@code size} of them are retrieved, starting with the
@@ -610,6 +722,25 @@ public interface PersistenceService {
      */
     long queryCount(Condition query, String itemType);
 
+    /**
+     * Retrieves, in a single request when the persistence supports it, the number of items of the specified type
+     * matching each of the specified conditions. This is equivalent to calling {@link #queryCount(Condition, String)}
+     * for each condition, but avoids a round trip per condition when several counts are needed at once.
+     *
+     * @param queries  the conditions to count the items of, keyed by an identifier of the caller's choosing
+     * @param itemType the String representation of the item type we want to retrieve the counts of, as defined by its class' {@code ITEM_TYPE} field
+     * @return a map of the identifiers of the specified conditions to the number of matching items, -1 for conditions
+     * that cannot be counted
+     * @see Item Item for a discussion of {@code ITEM_TYPE}
+     */
+    default Map<String, Long> queryCounts(Map<String, Condition> queries, String itemType) {
+        Map<String, Long> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Condition> entry : queries.entrySet()) {
+            results.put(entry.getKey(), queryCount(entry.getValue(), itemType));
+        }
+        return results;
+    }
+
     /**
      * Retrieves the number of items with the specified type as defined by the Item subclass public field {@code ITEM_TYPE}.
      *
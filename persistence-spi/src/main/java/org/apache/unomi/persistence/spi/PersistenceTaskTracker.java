@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.persistence.spi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the completion of tasks running on the persistence backend, such as update by query or delete by query
+ * requests submitted with <code>wait_for_completion=false</code>.
+ * <p>
+ * All the outstanding tasks are multiplexed onto a single background poller thread instead of holding a thread per
+ * task. Each task is polled with an exponential backoff, starting at {@link #MIN_POLL_INTERVAL} milliseconds and
+ * capped at the configured polling interval. When a single task is outstanding, the poll waits on the backend for up to
+ * the polling interval (a <code>wait_for_completion</code> long poll), so that its completion is detected right away.
+ */
+public class PersistenceTaskTracker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceTaskTracker.class.getName());
+
+    /**
+     * The delay in milliseconds before the second poll of a task, doubled on each subsequent poll.
+     */
+    public static final long MIN_POLL_INTERVAL = 50;
+
+    /**
+     * The status of a persistence task.
+     */
+    public enum TaskStatus {
+        RUNNING,
+        COMPLETED,
+        NOT_FOUND
+    }
+
+    /**
+     * Retrieves the status of a task from the persistence backend.
+     */
+    @FunctionalInterface
+    public interface TaskStatusProvider {
+
+        /**
+         * Retrieves the status of a task.
+         *
+         * @param taskId                  the identifier of the task
+         * @param waitForCompletionMillis how long the backend may wait for the task to complete before answering, 0 to
+         *                                answer immediately
+         * @return the status of the task
+         * @throws Exception if the status cannot be retrieved
+         */
+        TaskStatus getStatus(String taskId, long waitForCompletionMillis) throws Exception;
+    }
+
+    private final TaskStatusProvider statusProvider;
+    private final LongSupplier pollingInterval;
+    private final LongSupplier timeout;
+    private final ScheduledExecutorService poller;
+    private final Map<String, TrackedTask> trackedTasks = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a tracker, starting its poller thread.
+     *
+     * @param name            the name of the poller thread
+     * @param statusProvider  retrieves the status of the tasks from the backend
+     * @param pollingInterval the maximum interval in milliseconds between two polls of a task
+     * @param timeout         the time in milliseconds after which a task that is still running is considered failed
+     */
+    public PersistenceTaskTracker(String name, TaskStatusProvider statusProvider, LongSupplier pollingInterval, LongSupplier timeout) {
+        this(statusProvider, pollingInterval, timeout, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            // The backend clients are loaded from the persistence bundle
+            thread.setContextClassLoader(statusProvider.getClass().getClassLoader());
+            return thread;
+        }));
+    }
+
+    /**
+     * Creates a tracker polling on the given single threaded executor, which is shut down with the tracker.
+     */
+    PersistenceTaskTracker(TaskStatusProvider statusProvider, LongSupplier pollingInterval, LongSupplier timeout, ScheduledExecutorService poller) {
+        this.statusProvider = statusProvider;
+        this.pollingInterval = pollingInterval;
+        this.timeout = timeout;
+        this.poller = poller;
+    }
+
+    /**
+     * Starts tracking a task. Tracking the same task several times returns futures completing at the same time.
+     *
+     * @param taskId the identifier of the task
+     * @return a future completing when the task is completed or cannot be found anymore, or completing exceptionally
+     * with a {@link TimeoutException} if the task is still running after the configured timeout
+     */
+    public CompletableFuture<Void> track(String taskId) {
+        TrackedTask trackedTask = trackedTasks.computeIfAbsent(taskId, id -> {
+            TrackedTask newTask = new TrackedTask(id);
+            poller.execute(() -> poll(newTask));
+            return newTask;
+        });
+        return trackedTask.future.copy();
+    }
+
+    /**
+     * Retrieves the number of tasks currently tracked.
+     *
+     * @return the number of tracked tasks
+     */
+    public int getTrackedTaskCount() {
+        return trackedTasks.size();
+    }
+
+    /**
+     * Stops the poller thread. The futures of the tasks still tracked complete exceptionally.
+     */
+    public void shutdown() {
+        poller.shutdownNow();
+        for (TrackedTask trackedTask : new ArrayList<>(trackedTasks.values())) {
+            complete(trackedTask, new CancellationException("Task tracker shut down before task " + trackedTask.taskId + " completed"));
+        }
+    }
+
+    private void poll(TrackedTask trackedTask) {
+        TaskStatus status;
+        try {
+            long waitForCompletion = trackedTasks.size() == 1 ? pollingInterval.getAsLong() : 0;
+            status = statusProvider.getStatus(trackedTask.taskId, waitForCompletion);
+        } catch (Exception e) {
+            LOGGER.error("Waiting task [{}]: Error while retrieving the task status", trackedTask.taskId, e);
+            complete(trackedTask, e);
+            return;
+        }
+
+        long elapsed = System.currentTimeMillis() - trackedTask.start;
+        switch (status) {
+            case COMPLETED:
+                LOGGER.debug("Waiting task [{}]: Finished in {}ms", trackedTask.taskId, elapsed);
+                complete(trackedTask, null);
+                break;
+            case NOT_FOUND:
+                LOGGER.error("Waiting task [{}]: No task found", trackedTask.taskId);
+                complete(trackedTask, null);
+                break;
+            default:
+                if (elapsed > timeout.getAsLong()) {
+                    LOGGER.error("Waiting task [{}]: Exceeded configured timeout ({}ms), aborting wait process", trackedTask.taskId,
+                            timeout.getAsLong());
+                    complete(trackedTask, new TimeoutException("Task " + trackedTask.taskId + " still running after " + elapsed + "ms"));
+                    break;
+                }
+                long delay = trackedTask.nextDelay;
+                trackedTask.nextDelay = Math.min(delay * 2, Math.max(MIN_POLL_INTERVAL, pollingInterval.getAsLong()));
+                try {
+                    poller.schedule(() -> poll(trackedTask), delay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    complete(trackedTask, e);
+                }
+        }
+    }
+
+    private void complete(TrackedTask trackedTask, Throwable failure) {
+        trackedTasks.remove(trackedTask.taskId, trackedTask);
+        if (failure != null) {
+            trackedTask.future.completeExceptionally(failure);
+        } else {
+            trackedTask.future.complete(null);
+        }
+    }
+
+    private static class TrackedTask {
+        private final String taskId;
+        private final long start = System.currentTimeMillis();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private long nextDelay = MIN_POLL_INTERVAL;
+
+        private TrackedTask(String taskId) {
+            this.taskId = taskId;
+        }
+    }
+}
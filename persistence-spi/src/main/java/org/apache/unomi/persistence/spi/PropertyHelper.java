@@ -18,14 +18,21 @@
 package org.apache.unomi.persistence.spi;
 
 import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.beanutils.NestedNullException;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.beanutils.expression.DefaultResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -36,7 +43,120 @@ public class PropertyHelper {
     private static final Logger LOGGER = LoggerFactory.getLogger(PropertyHelper.class.getName());
     private static DefaultResolver resolver = new DefaultResolver();
 
+    private static final int MAX_COMPILED_PATHS = 10000;
+    private static final String[] NOT_COMPILABLE = new String[0];
+    private static final Map<String, String[]> compiledPaths = new ConcurrentHashMap<>();
+
+    /**
+     * Sets a property of an object, creating the missing intermediate maps of a nested property path.
+     * <p>
+     * Property paths are split once and cached, maps are accessed directly and bean properties through method handles
+     * cached per class. Paths using the indexed or mapped syntax of commons-beanutils, and values requiring a type
+     * conversion, are handled by commons-beanutils.
+     *
+     * @param target              the object to update
+     * @param propertyName        the path of the property, such as {@code properties.address.city}
+     * @param propertyValue       the value, or the values to add or remove
+     * @param setPropertyStrategy {@code alwaysSet} (default), {@code setIfMissing}, {@code addValue(s)},
+     *                            {@code removeValue(s)} or {@code remove}
+     * @return {@code true} if the object was modified
+     */
     public static boolean setProperty(Object target, String propertyName, Object propertyValue, String setPropertyStrategy) {
+        String[] path = compilePath(propertyName);
+        if (path == null || target == null) {
+            return setPropertyWithBeanUtils(target, propertyName, propertyValue, setPropertyStrategy);
+        }
+        try {
+            return setProperty(target, path, propertyValue, setPropertyStrategy);
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            LOGGER.error("Cannot set property", e);
+        }
+        return false;
+    }
+
+    private static boolean setProperty(Object target, String[] path, Object propertyValue, String setPropertyStrategy)
+            throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        String propertyName = path[path.length - 1];
+
+        // Handle remove
+        if (setPropertyStrategy != null && setPropertyStrategy.equals("remove")) {
+            if (path.length < 2) {
+                return false;
+            }
+            Object parentTarget = null;
+            Object parentPropertyValue = target;
+            for (int i = 0; i < path.length - 1; i++) {
+                if (parentPropertyValue == null) {
+                    return false;
+                }
+                parentTarget = parentPropertyValue;
+                parentPropertyValue = getProperty(parentTarget, path[i]);
+            }
+            if (parentPropertyValue instanceof HashMap) {
+                if (((HashMap) parentPropertyValue).containsKey(propertyName)) {
+                    ((HashMap) parentPropertyValue).remove(propertyName);
+                    setRawProperty(parentTarget, path[path.length - 2], parentPropertyValue);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Leave now, next strategies require a propertyValue, if no propertyValue, nothing to update.
+        if (propertyValue == null) {
+            return false;
+        }
+
+        // Resolve propertyName
+        for (int i = 0; i < path.length - 1; i++) {
+            Object v = getProperty(target, path[i]);
+            if (v == null) {
+                v = new LinkedHashMap<>();
+                setRawProperty(target, path[i], v);
+            }
+            target = v;
+        }
+
+        // Get previous value
+        Object previousValue = getProperty(target, propertyName);
+
+        // Handle strategies
+        if (setPropertyStrategy == null ||
+                setPropertyStrategy.equals("alwaysSet") ||
+                (setPropertyStrategy.equals("setIfMissing") && previousValue == null)) {
+            if (!compareValues(propertyValue, previousValue)) {
+                setConvertedProperty(target, propertyName, propertyValue);
+                return true;
+            }
+        } else if (setPropertyStrategy.equals("addValue") || setPropertyStrategy.equals("addValues")) {
+            Collection<?> newValues = asList(propertyValue);
+            Collection<?> previousValues = asList(previousValue);
+
+            // Same set as the one built from the new values followed by the previous ones, so that the values keep
+            // their order
+            Set<Object> newValuesSet = new HashSet<>(Math.max((int) ((newValues.size() + previousValues.size()) / .75f) + 1, 16));
+            newValuesSet.addAll(newValues);
+            newValuesSet.addAll(previousValues);
+            if (newValuesSet.size() != previousValues.size()) {
+                setConvertedProperty(target, propertyName, Arrays.asList(newValuesSet.toArray()));
+                return true;
+            }
+        } else if (setPropertyStrategy.equals("removeValue") || setPropertyStrategy.equals("removeValues")) {
+            List<Object> previousValueList = convertToList(previousValue);
+            Collection<?> valuesToRemove = asList(propertyValue);
+            if (valuesToRemove.size() > 8) {
+                valuesToRemove = new HashSet<>(valuesToRemove);
+            }
+
+            if (previousValueList.removeAll(valuesToRemove)) {
+                setConvertedProperty(target, propertyName, previousValueList);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean setPropertyWithBeanUtils(Object target, String propertyName, Object propertyValue, String setPropertyStrategy) {
         try {
             // Handle remove
             String parentPropertyName;
@@ -113,6 +233,183 @@ public class PropertyHelper {
         return false;
     }
 
+    /**
+     * Splits a property path, returns {@code null} for paths that must be resolved by commons-beanutils.
+     */
+    private static String[] compilePath(String propertyName) {
+        if (propertyName == null) {
+            return null;
+        }
+        String[] path = compiledPaths.get(propertyName);
+        if (path != null) {
+            return path == NOT_COMPILABLE ? null : path;
+        }
+        path = propertyName.split("\\.", -1);
+        for (String element : path) {
+            if (element.isEmpty() || element.indexOf('[') >= 0 || element.indexOf(']') >= 0 || element.indexOf('(') >= 0
+                    || element.indexOf(')') >= 0) {
+                path = NOT_COMPILABLE;
+                break;
+            }
+        }
+        // Property names may come from events, the number of cached paths is bounded
+        if (compiledPaths.size() < MAX_COMPILED_PATHS) {
+            compiledPaths.put(propertyName, path);
+        }
+        return path == NOT_COMPILABLE ? null : path;
+    }
+
+    private static Object getProperty(Object target, String propertyName)
+            throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        if (target instanceof Map) {
+            return ((Map) target).get(propertyName);
+        }
+        return BeanProperty.of(target.getClass(), propertyName).get(target);
+    }
+
+    /**
+     * Sets a property without conversion, as done by {@link PropertyUtils#setProperty(Object, String, Object)}
+     */
+    private static void setRawProperty(Object target, String propertyName, Object value)
+            throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        if (target instanceof Map) {
+            ((Map) target).put(propertyName, value);
+        } else {
+            BeanProperty.of(target.getClass(), propertyName).set(target, value, false);
+        }
+    }
+
+    /**
+     * Sets a property converting the value to the type of the property, as done by
+     * {@link BeanUtils#setProperty(Object, String, Object)}
+     */
+    private static void setConvertedProperty(Object target, String propertyName, Object value)
+            throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+        if (target instanceof Map && !(value instanceof String[])) {
+            ((Map) target).put(propertyName, value);
+        } else if (target instanceof Map) {
+            BeanUtils.setProperty(target, propertyName, value);
+        } else {
+            BeanProperty.of(target.getClass(), propertyName).set(target, value, true);
+        }
+    }
+
+    private static Collection<?> asList(Object value) {
+        if (value instanceof List) {
+            return (List<?>) value;
+        } else if (value != null) {
+            return Collections.singletonList(value);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * The accessors of a bean property, as method handles.
+     */
+    private static final class BeanProperty {
+
+        private static final ClassValue<Map<String, BeanProperty>> PROPERTIES_BY_CLASS = new ClassValue<Map<String, BeanProperty>>() {
+            @Override
+            protected Map<String, BeanProperty> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final String name;
+        private final boolean exists;
+        private final Class<?> type;
+        // Values of types having a converter are converted even when they are instances of the property type
+        private final boolean converted;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final boolean hasSetter;
+
+        private BeanProperty(String name, PropertyDescriptor descriptor) {
+            this.name = name;
+            this.exists = descriptor != null;
+            this.type = descriptor != null ? wrap(descriptor.getPropertyType()) : null;
+            this.converted = type != null && ConvertUtils.lookup(type) != null;
+            this.getter = descriptor != null ? unreflect(descriptor.getReadMethod(), GETTER_TYPE) : null;
+            this.setter = descriptor != null ? unreflect(descriptor.getWriteMethod(), SETTER_TYPE) : null;
+            this.hasSetter = descriptor != null && descriptor.getWriteMethod() != null;
+        }
+
+        private static BeanProperty of(Class<?> beanClass, String name) {
+            Map<String, BeanProperty> properties = PROPERTIES_BY_CLASS.get(beanClass);
+            BeanProperty property = properties.get(name);
+            if (property == null) {
+                PropertyDescriptor descriptor = null;
+                for (PropertyDescriptor propertyDescriptor : PropertyUtils.getPropertyDescriptors(beanClass)) {
+                    if (name.equals(propertyDescriptor.getName())) {
+                        descriptor = propertyDescriptor;
+                        break;
+                    }
+                }
+                property = new BeanProperty(name, descriptor);
+                properties.put(name, property);
+            }
+            return property;
+        }
+
+        private Object get(Object bean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+            if (getter == null) {
+                // Missing or not accessible getter, reported or read by commons-beanutils
+                return PropertyUtils.getSimpleProperty(bean, name);
+            }
+            try {
+                return getter.invokeExact(bean);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private void set(Object bean, Object value, boolean convert)
+                throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+            if (exists && !hasSetter && convert) {
+                // Read only properties are skipped by commons-beanutils
+                return;
+            }
+            if (setter == null || (value != null && !type.isInstance(value)) || (value == null && type.isPrimitive())
+                    || (convert && (type.isArray() || (converted && value != null && value.getClass() != type)))) {
+                if (convert) {
+                    BeanUtils.setProperty(bean, name, value);
+                } else {
+                    PropertyUtils.setSimpleProperty(bean, name, value);
+                }
+                return;
+            }
+            try {
+                setter.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private static MethodHandle unreflect(Method method, MethodType methodType) {
+            if (method == null) {
+                return null;
+            }
+            try {
+                return MethodHandles.publicLookup().unreflect(method).asType(methodType);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+
+        private static Class<?> wrap(Class<?> type) {
+            if (type == null || !type.isPrimitive()) {
+                return type;
+            }
+            return MethodType.methodType(type).wrap().returnType();
+        }
+    }
+
     public static List<Object> convertToList(Object value) {
         List<Object> convertedList = new ArrayList<>();
         if (value != null && value instanceof List) {
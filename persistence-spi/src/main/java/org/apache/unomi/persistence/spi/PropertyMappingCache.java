@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.persistence.spi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the properties mapping of each item type, as returned by {@link PersistenceService#getPropertiesMapping(String)},
+ * so that building queries and listing properties do not fetch the mapping from the backend every time.
+ * <p>
+ * The mapping of an item type is held in an immutable, versioned {@link ItemTypeMapping}, loaded on first access. It is
+ * dropped when {@link #invalidate(String) invalidated} by an operation changing the mapping, and reloaded in the
+ * background once it is older than the refresh interval, so that the fields added by dynamic mapping are eventually
+ * picked up. Until then, the properties that are not mapped are answered from the cached mapping as well, instead of
+ * fetching the mapping again.
+ */
+public class PropertyMappingCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyMappingCache.class.getName());
+
+    /**
+     * Loads the properties mapping of an item type from the backend.
+     */
+    @FunctionalInterface
+    public interface MappingLoader {
+
+        /**
+         * Loads the properties mapping of an item type.
+         *
+         * @param itemType the item type
+         * @return the properties mapping, or {@code null} if it could not be retrieved
+         */
+        Map<String, Map<String, Object>> load(String itemType);
+    }
+
+    private final MappingLoader loader;
+    private final LongSupplier refreshInterval;
+    private final ExecutorService refresher;
+    private final Map<String, ItemTypeMapping> mappings = new ConcurrentHashMap<>();
+    private final Set<String> refreshingItemTypes = ConcurrentHashMap.newKeySet();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache, along with the thread used to refresh the mappings in the background.
+     *
+     * @param name            the name of the refresh thread
+     * @param loader          loads the mapping of an item type from the backend
+     * @param refreshInterval the age in milliseconds after which a mapping is reloaded
+     */
+    public PropertyMappingCache(String name, MappingLoader loader, LongSupplier refreshInterval) {
+        this.loader = loader;
+        this.refreshInterval = refreshInterval;
+        ClassLoader classLoader = loader.getClass().getClassLoader();
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            // The backend clients are loaded from the persistence bundle
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
+    }
+
+    /**
+     * Retrieves the mapping of an item type, loading it if it is not cached yet. A cached mapping older than the
+     * refresh interval is still returned, while a fresher one is loaded in the background.
+     *
+     * @param itemType the item type
+     * @return the mapping of the item type, or {@code null} if it could not be loaded
+     */
+    public ItemTypeMapping get(String itemType) {
+        ItemTypeMapping mapping = mappings.get(itemType);
+        if (mapping == null) {
+            return load(itemType);
+        }
+        if (System.currentTimeMillis() - mapping.getLoadTime() > refreshInterval.getAsLong() && refreshingItemTypes.add(itemType)) {
+            try {
+                refresher.execute(() -> {
+                    try {
+                        load(itemType);
+                    } finally {
+                        refreshingItemTypes.remove(itemType);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                refreshingItemTypes.remove(itemType);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Drops the cached mapping of an item type, so that it is loaded again on next access. To be called after any
+     * operation changing the mapping of the item type.
+     *
+     * @param itemType the item type
+     */
+    public void invalidate(String itemType) {
+        invalidations.incrementAndGet();
+        mappings.remove(itemType);
+    }
+
+    /**
+     * Drops all the cached mappings.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        mappings.clear();
+    }
+
+    /**
+     * Stops the refresh thread.
+     */
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private ItemTypeMapping load(String itemType) {
+        long invalidationsBeforeLoad = invalidations.get();
+        Map<String, Map<String, Object>> properties = loader.load(itemType);
+        if (properties == null) {
+            return null;
+        }
+        ItemTypeMapping mapping = new ItemTypeMapping(versions.incrementAndGet(), properties);
+        // A mapping loaded while the mappings were being changed might be outdated, so it is not kept
+        if (invalidations.get() == invalidationsBeforeLoad) {
+            mappings.put(itemType, mapping);
+        }
+        LOGGER.debug("Loaded mapping version {} for item type {}", mapping.getVersion(), itemType);
+        return mapping;
+    }
+
+    /**
+     * An immutable snapshot of the properties mapping of an item type, with the mapping of each property path and the
+     * field holding its data resolved once when the snapshot is created.
+     */
+    public static final class ItemTypeMapping {
+
+        private final long version;
+        private final long loadTime = System.currentTimeMillis();
+        private final Map<String, Map<String, Object>> properties;
+        private final Map<String, Map<String, Object>> propertyMappingsByPath = new HashMap<>();
+        private final Map<String, String> fieldsWithDataByPath = new HashMap<>();
+
+        public ItemTypeMapping(long version, Map<String, Map<String, Object>> properties) {
+            this.version = version;
+            this.properties = unmodifiableMapping(properties);
+            indexPaths(this.properties, "");
+        }
+
+        /**
+         * Retrieves the version of this mapping. A mapping loaded later has a greater version.
+         *
+         * @return the version of the mapping
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Retrieves the time this mapping was loaded at, in milliseconds since the epoch.
+         *
+         * @return the load time
+         */
+        public long getLoadTime() {
+            return loadTime;
+        }
+
+        /**
+         * Retrieves the properties mapping, as returned by {@link PersistenceService#getPropertiesMapping(String)}. The
+         * returned maps cannot be modified.
+         *
+         * @return the properties mapping
+         */
+        public Map<String, Map<String, Object>> getProperties() {
+            return properties;
+        }
+
+        /**
+         * Retrieves the mapping of a property.
+         *
+         * @param propertyPath the path of the property, such as {@code properties.firstName}
+         * @return the mapping of the property, or {@code null} if it is not mapped
+         */
+        public Map<String, Object> getPropertyMapping(String propertyPath) {
+            return propertyMappingsByPath.get(propertyPath);
+        }
+
+        /**
+         * Retrieves the field to sort or aggregate a property on: the {@code keyword} sub-field of text properties that
+         * have one, the property itself otherwise.
+         *
+         * @param propertyPath the path of the property
+         * @return the field holding the data of the property, or {@code null} if it is not mapped
+         */
+        public String getPropertyNameWithData(String propertyPath) {
+            return fieldsWithDataByPath.get(propertyPath);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void indexPaths(Map<String, Map<String, Object>> mappings, String prefix) {
+            for (Map.Entry<String, Map<String, Object>> entry : mappings.entrySet()) {
+                String path = prefix + entry.getKey();
+                Map<String, Object> propertyMapping = entry.getValue();
+                if (propertyMapping == null) {
+                    continue;
+                }
+                propertyMappingsByPath.put(path, propertyMapping);
+                Object fields = propertyMapping.get("fields");
+                if ("text".equals(propertyMapping.get("type")) && fields instanceof Map && ((Map<String, Object>) fields).containsKey("keyword")) {
+                    fieldsWithDataByPath.put(path, path + ".keyword");
+                } else {
+                    fieldsWithDataByPath.put(path, path);
+                }
+                Object subProperties = propertyMapping.get("properties");
+                if (subProperties instanceof Map) {
+                    indexPaths((Map<String, Map<String, Object>>) subProperties, path + ".");
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T unmodifiableMapping(T value) {
+            if (value instanceof Map) {
+                Map<Object, Object> copy = new LinkedHashMap<>();
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                    copy.put(entry.getKey(), unmodifiableMapping(entry.getValue()));
+                }
+                return (T) Collections.unmodifiableMap(copy);
+            }
+            if (value instanceof List) {
+                List<Object> copy = new ArrayList<>();
+                for (Object element : (List<Object>) value) {
+                    copy.add(unmodifiableMapping(element));
+                }
+                return (T) Collections.unmodifiableList(copy);
+            }
+            return value;
+        }
+    }
+}
@@ -41,7 +41,7 @@ public enum GeoDistance {
                     * Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
 
             double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-            return unit.convert(EARTH_MEAN_RADIUS * c, DistanceUnit.METERS);
+            return DistanceUnit.METERS.convert(EARTH_MEAN_RADIUS * c, unit);
         }
     },
     ARC {
@@ -58,7 +58,7 @@ public enum GeoDistance {
                     + Math.cos(latRad1) * Math.cos(latRad2) * Math.cos(deltaLon);
 
             double theta = Math.acos(Math.min(1.0, Math.max(-1.0, cosTheta))); // Clamp to avoid NaN
-            return unit.convert(EARTH_MEAN_RADIUS * theta, DistanceUnit.METERS);
+            return DistanceUnit.METERS.convert(EARTH_MEAN_RADIUS * theta, unit);
         }
     },
     PLANE {
@@ -67,7 +67,7 @@ public enum GeoDistance {
             double x = toRadians(lon2 - lon1) * Math.cos(toRadians((lat1 + lat2) / 2));
             double y = toRadians(lat2 - lat1);
             double distance = Math.sqrt(x * x + y * y) * EARTH_MEAN_RADIUS;
-            return unit.convert(distance, DistanceUnit.METERS);
+            return DistanceUnit.METERS.convert(distance, unit);
         }
     };
 
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.persistence.spi;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PersistenceTaskTrackerTest {
+
+    private final Map<String, Long> taskEndTimes = new ConcurrentHashMap<>();
+    private final Set<String> pollingThreads = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> runningPolls = new ConcurrentHashMap<>();
+    private final Queue<Long> scheduledDelays = new ConcurrentLinkedQueue<>();
+    private PersistenceTaskTracker tracker;
+
+    @After
+    public void tearDown() {
+        if (tracker != null) {
+            tracker.shutdown();
+        }
+    }
+
+    private PersistenceTaskTracker.TaskStatus getStatus(String taskId, long waitForCompletionMillis) {
+        pollingThreads.add(Thread.currentThread().getName());
+        AtomicInteger remainingPolls = runningPolls.get(taskId);
+        if (remainingPolls != null) {
+            return remainingPolls.getAndDecrement() > 0 ? PersistenceTaskTracker.TaskStatus.RUNNING : PersistenceTaskTracker.TaskStatus.COMPLETED;
+        }
+        Long end = taskEndTimes.get(taskId);
+        if (end == null) {
+            return PersistenceTaskTracker.TaskStatus.NOT_FOUND;
+        }
+        return System.currentTimeMillis() >= end ? PersistenceTaskTracker.TaskStatus.COMPLETED : PersistenceTaskTracker.TaskStatus.RUNNING;
+    }
+
+    @Test
+    public void testConcurrentTasksShareSinglePoller() throws Exception {
+        tracker = new PersistenceTaskTracker(this::getStatus, () -> 1000, () -> 10000, new RecordingPoller());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[10];
+        List<Long> expectedDelays = new ArrayList<>();
+        for (int i = 0; i < futures.length; i++) {
+            runningPolls.put("task" + i, new AtomicInteger(i));
+            expectedDelays.addAll(backoff(i, 1000));
+            futures[i] = tracker.track("task" + i);
+        }
+
+        CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+
+        assertEquals("All tasks should be polled from the same thread", Set.of("test-task-tracker"), pollingThreads);
+        assertEquals(0, tracker.getTrackedTaskCount());
+        List<Long> delays = new ArrayList<>(scheduledDelays);
+        Collections.sort(delays);
+        Collections.sort(expectedDelays);
+        assertEquals("Each task should be polled with its own backoff", expectedDelays, delays);
+    }
+
+    @Test
+    public void testPollIntervalsIncreaseUpToPollingInterval() throws Exception {
+        tracker = new PersistenceTaskTracker(this::getStatus, () -> 1000, () -> 10000, new RecordingPoller());
+        runningPolls.put("task", new AtomicInteger(7));
+
+        tracker.track("task").get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(50L, 100L, 200L, 400L, 800L, 1000L, 1000L), new ArrayList<>(scheduledDelays));
+    }
+
+    @Test
+    public void testTrackingSameTaskTwice() throws Exception {
+        tracker = new PersistenceTaskTracker("test-task-tracker", this::getStatus, () -> 1000, () -> 10000);
+        taskEndTimes.put("task", System.currentTimeMillis() + 100);
+
+        CompletableFuture<Void> first = tracker.track("task");
+        CompletableFuture<Void> second = tracker.track("task");
+        assertEquals(1, tracker.getTrackedTaskCount());
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testMissingTaskCompletes() throws Exception {
+        tracker = new PersistenceTaskTracker("test-task-tracker", this::getStatus, () -> 1000, () -> 10000);
+
+        tracker.track("unknown").get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        tracker = new PersistenceTaskTracker("test-task-tracker", this::getStatus, () -> 100, () -> 200);
+        taskEndTimes.put("task", Long.MAX_VALUE);
+
+        try {
+            tracker.track("task").get(5, TimeUnit.SECONDS);
+            fail("A task running past the timeout should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, tracker.getTrackedTaskCount());
+    }
+
+    @Test
+    public void testShutdownFailsOutstandingTasks() throws Exception {
+        tracker = new PersistenceTaskTracker("test-task-tracker", this::getStatus, () -> 1000, () -> 10000);
+        taskEndTimes.put("task", Long.MAX_VALUE);
+
+        CompletableFuture<Void> future = tracker.track("task");
+        tracker.shutdown();
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Tracking should be cancelled by the shutdown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+    }
+
+    private static List<Long> backoff(int polls, long pollingInterval) {
+        List<Long> delays = new ArrayList<>();
+        long delay = PersistenceTaskTracker.MIN_POLL_INTERVAL;
+        for (int i = 0; i < polls; i++) {
+            delays.add(delay);
+            delay = Math.min(delay * 2, pollingInterval);
+        }
+        return delays;
+    }
+
+    /**
+     * A poller recording the delays before the next polls and running them right away.
+     */
+    private class RecordingPoller extends ScheduledThreadPoolExecutor {
+
+        private RecordingPoller() {
+            super(1, runnable -> new Thread(runnable, "test-task-tracker"));
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            // execute() also schedules, with no delay
+            if (delay > 0) {
+                scheduledDelays.add(unit.toMillis(delay));
+            }
+            return super.schedule(command, 0, unit);
+        }
+    }
+}
@@ -17,11 +17,11 @@
 package org.apache.unomi.persistence.spi;
 
 import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
 import org.apache.unomi.persistence.spi.PropertyHelper;
 import org.junit.Test;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -123,6 +123,94 @@ public class PropertyHelperTest {
         assertFalse("Should return not updated", updated);
     }
 
+    @Test
+    public void testNestedProperties() {
+        Profile profile = new Profile();
+        boolean updated = PropertyHelper.setProperty(profile, "properties.address.city", "Geneva", null);
+        assertTrue("Should return updated", updated);
+        assertTrue("Missing intermediate properties should be created as maps", profile.getProperty("address") instanceof LinkedHashMap);
+        assertEquals("Geneva", ((Map) profile.getProperty("address")).get("city"));
+
+        updated = PropertyHelper.setProperty(profile, "properties.address.city", "Geneva", "alwaysSet");
+        assertFalse("Should return not updated", updated);
+
+        updated = PropertyHelper.setProperty(profile, "properties.address.city", null, "remove");
+        assertTrue("Should return updated", updated);
+        assertTrue(((Map) profile.getProperty("address")).isEmpty());
+
+        updated = PropertyHelper.setProperty(profile, "properties.missing.city", null, "remove");
+        assertFalse("Removing a property of a missing parent should do nothing", updated);
+        updated = PropertyHelper.setProperty(profile, "properties", null, "remove");
+        assertFalse("Only nested properties can be removed", updated);
+        assertNotNull(profile.getProperties());
+
+        Map<String, Object> map = new HashMap<>();
+        updated = PropertyHelper.setProperty(map, "first.second", 1, null);
+        assertTrue("Should return updated", updated);
+        assertEquals(1, ((Map) map.get("first")).get("second"));
+    }
+
+    @Test
+    public void testBeanProperties() {
+        Session session = new Session();
+        boolean updated = PropertyHelper.setProperty(session, "size", 3, null);
+        assertTrue("Should return updated", updated);
+        assertEquals(3, session.getSize());
+
+        updated = PropertyHelper.setProperty(session, "size", "5", null);
+        assertTrue("Values should be converted to the type of the property", updated);
+        assertEquals(5, session.getSize());
+
+        updated = PropertyHelper.setProperty(session, "size", 5, "alwaysSet");
+        assertFalse("Should return not updated", updated);
+
+        Profile profile = new Profile();
+        Set<String> segments = new HashSet<>(Arrays.asList("segment1", "segment2"));
+        updated = PropertyHelper.setProperty(profile, "segments", segments, null);
+        assertTrue("Should return updated", updated);
+        assertSame(segments, profile.getSegments());
+
+        updated = PropertyHelper.setProperty(profile, "unknownProperty", "value", null);
+        assertFalse("Unknown properties should not be updated", updated);
+        updated = PropertyHelper.setProperty(profile, "unknownProperty.nested", "value", null);
+        assertFalse("Unknown properties should not be updated", updated);
+    }
+
+    @Test
+    public void testMappedSyntaxIsStillSupported() {
+        Profile profile = new Profile();
+        boolean updated = PropertyHelper.setProperty(profile, "properties(test)", "value", null);
+        assertTrue("Should return updated", updated);
+        assertEquals("value", profile.getProperty("test"));
+    }
+
+    @Test
+    public void testStrategy_AddValues_KeepsOrder() {
+        Profile profile = new Profile();
+        profile.setProperty("test", Arrays.asList("value b", "value a", "value 10"));
+        boolean updated = PropertyHelper.setProperty(profile, "properties.test", Arrays.asList("value c", "value a"), "addValues");
+        assertTrue("Should return updated", updated);
+        // Values are ordered as in a set built from the new values followed by the previous ones
+        List<Object> expectedValues = Arrays.asList(new HashSet<>(Arrays.asList("value c", "value a", "value b", "value a", "value 10")).toArray());
+        assertEquals(expectedValues, profile.getProperty("test"));
+
+        profile.setProperty("single", "value 1");
+        updated = PropertyHelper.setProperty(profile, "properties.single", "value 1", "addValue");
+        assertFalse("Should return not updated", updated);
+        updated = PropertyHelper.setProperty(profile, "properties.single", "value 2", "addValue");
+        assertTrue("Should return updated", updated);
+        assertList(profile, "single", Arrays.asList("value 1", "value 2"));
+
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            values.add("value " + i);
+        }
+        profile.setProperty("large", new ArrayList<>(values));
+        updated = PropertyHelper.setProperty(profile, "properties.large", values.subList(0, 15), "removeValues");
+        assertTrue("Should return updated", updated);
+        assertEquals(values.subList(15, 20), profile.getProperty("large"));
+    }
+
     private void assertList(Profile profile, String propertyName, List<String> expectedList) {
         List<String> currentValue = (List<String>) profile.getProperty(propertyName);
         assertTrue("The list is not containing the expected elements", currentValue.containsAll(expectedList));
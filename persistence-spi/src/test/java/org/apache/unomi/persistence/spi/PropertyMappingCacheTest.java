@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.persistence.spi;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PropertyMappingCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private long refreshInterval = 60000;
+    private PropertyMappingCache cache;
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    private Map<String, Map<String, Object>> loadMapping(String itemType) {
+        loads.incrementAndGet();
+        if ("unknown".equals(itemType)) {
+            return null;
+        }
+        Map<String, Object> keywordField = new HashMap<>();
+        keywordField.put("type", "keyword");
+        Map<String, Object> firstName = new HashMap<>();
+        firstName.put("type", "text");
+        firstName.put("fields", Map.of("keyword", keywordField));
+        Map<String, Object> age = new HashMap<>();
+        age.put("type", "long");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("properties", new HashMap<>(Map.of("firstName", firstName, "age", age)));
+        Map<String, Map<String, Object>> mapping = new HashMap<>();
+        mapping.put("properties", properties);
+        return mapping;
+    }
+
+    @Test
+    public void testLookupsAreServedFromTheCachedMapping() {
+        cache = new PropertyMappingCache("test-mapping-refresher", this::loadMapping, () -> refreshInterval);
+
+        for (int i = 0; i < 100; i++) {
+            PropertyMappingCache.ItemTypeMapping mapping = cache.get("profile");
+            assertEquals("text", mapping.getPropertyMapping("properties.firstName").get("type"));
+            assertEquals("properties.firstName.keyword", mapping.getPropertyNameWithData("properties.firstName"));
+            assertEquals("properties.age", mapping.getPropertyNameWithData("properties.age"));
+            assertNull(mapping.getPropertyMapping("properties.unmapped"));
+            assertNull(mapping.getPropertyNameWithData("properties.unmapped"));
+        }
+        assertEquals("Unmapped properties should not trigger a reload", 1, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache = new PropertyMappingCache("test-mapping-refresher", this::loadMapping, () -> refreshInterval);
+
+        long version = cache.get("profile").getVersion();
+        cache.invalidate("profile");
+        assertTrue(cache.get("profile").getVersion() > version);
+        assertEquals(2, loads.get());
+
+        cache.invalidateAll();
+        cache.get("profile");
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testStaleMappingIsRefreshedInBackground() throws Exception {
+        refreshInterval = 0;
+        cache = new PropertyMappingCache("test-mapping-refresher", this::loadMapping, () -> refreshInterval);
+
+        PropertyMappingCache.ItemTypeMapping mapping = cache.get("profile");
+        Thread.sleep(5);
+        // The stale mapping is still returned while a new one is loaded
+        assertSame(mapping, cache.get("profile"));
+        long start = System.currentTimeMillis();
+        while (cache.get("profile") == mapping && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(10);
+        }
+        assertTrue(cache.get("profile").getVersion() > mapping.getVersion());
+    }
+
+    @Test
+    public void testMappingsThatCannotBeLoadedAreNotCached() {
+        cache = new PropertyMappingCache("test-mapping-refresher", this::loadMapping, () -> refreshInterval);
+
+        assertNull(cache.get("unknown"));
+        assertNull(cache.get("unknown"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedMappingCannotBeModified() {
+        cache = new PropertyMappingCache("test-mapping-refresher", this::loadMapping, () -> refreshInterval);
+
+        cache.get("profile").getProperties().get("properties").put("properties", new HashMap<>());
+    }
+}
@@ -52,5 +52,11 @@ public class GeoDistanceTest {
         assertEquals(expectedDistanceInMeters, actualDistance, 0.01);
     }
 
+    @Test
+    public void testCalculateInOtherUnits() {
+        double expectedDistanceInMeters = 3978199.0100920075;
+        assertEquals(expectedDistanceInMeters / 1000, GeoDistance.PLANE.calculate(SRC_LAT, SRC_LON, DST_LAT, DST_LON, DistanceUnit.KILOMETERS), 0.00001);
+        assertEquals(expectedDistanceInMeters / 1609.344, GeoDistance.PLANE.calculate(SRC_LAT, SRC_LON, DST_LAT, DST_LON, DistanceUnit.MILES), 0.00001);
+    }
 
 }
@@ -14,7 +14,6 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.unomi.plugins.baseplugin.actions;
 
 import org.apache.unomi.api.Event;
@@ -24,19 +23,46 @@ import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.services.DefinitionsService;
 import org.apache.unomi.api.services.EventService;
 import org.apache.unomi.persistence.spi.PersistenceService;
+import org.apache.unomi.persistence.spi.aggregate.DateAggregate;
 import org.apache.unomi.tracing.api.RequestTracer;
 import org.apache.unomi.tracing.api.TracerService;
 
 import javax.xml.bind.DatatypeConverter;
-import java.time.Duration;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 
+/**
+ * Maintains the number of past events matching a past event condition on the profile, in the {@code pastEvents} system
+ * property.
+ * <p>
+ * The counters are incremented as the matching events are received, the events are only counted with a query when the
+ * counter of a profile is materialized for the first time, or after it was reconciled by the recalculation of the past
+ * event conditions. The counters of conditions with a {@code numberOfDays} rolling window count the events after
+ * {@code numberOfDays} days ago, as the past event condition queries do. They keep the number of events per day, in UTC,
+ * on the profile: the days after the first day of the window are counted from these numbers. The first day is only
+ * partly in the window, its events are also kept per minute, read with a single aggregation when a day with events
+ * becomes the first day of the window. The minutes after the one of the start of the window are counted from these
+ * numbers, so that only the events of that minute are counted with a query, when it has events: at most one query per
+ * event, and none for the profiles without events in the minute which is leaving the window.
+ */
 public class SetEventOccurenceCountAction implements ActionExecutor {
+
+    private static final String PAST_EVENTS = "pastEvents";
+    private static final String DAYS = "days";
+    private static final String FIRST_DAY = "firstDay";
+    private static final String FIRST_DAY_MINUTES = "firstDayMinutes";
+
     private DefinitionsService definitionsService;
     private PersistenceService persistenceService;
     private TracerService tracerService;
+    private Clock clock = Clock.systemUTC();
 
     public void setDefinitionsService(DefinitionsService definitionsService) {
         this.definitionsService = definitionsService;
@@ -50,6 +76,10 @@ public class SetEventOccurenceCountAction implements ActionExecutor {
         this.tracerService = tracerService;
     }
 
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
     @Override
     public int execute(Action action, Event event) {
         RequestTracer tracer = null;
@@ -70,79 +100,101 @@ public class SetEventOccurenceCountAction implements ActionExecutor {
                 ));
             }
 
-            Condition andCondition = new Condition(definitionsService.getConditionType("booleanCondition"));
-            andCondition.setParameter("operator", "and");
-            ArrayList<Condition> conditions = new ArrayList<Condition>();
-
-            Condition eventCondition = (Condition) pastEventCondition.getParameter("eventCondition");
-            if (eventCondition != null) {
-                definitionsService.getConditionValidationService().validate(eventCondition);
-            }
-            conditions.add(eventCondition);
-
-            Condition c = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
-            c.setParameter("propertyName", "profileId");
-            c.setParameter("comparisonOperator", "equals");
-            c.setParameter("propertyValue", event.getProfileId());
-            conditions.add(c);
-
-            // may be current event is already persisted and indexed, in that case we filter it from the count to increment it manually at the end
-            Condition eventIdFilter = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
-            eventIdFilter.setParameter("propertyName", "itemId");
-            eventIdFilter.setParameter("comparisonOperator", "notEquals");
-            eventIdFilter.setParameter("propertyValue", event.getItemId());
-            conditions.add(eventIdFilter);
-
             Integer numberOfDays = (Integer) pastEventCondition.getParameter("numberOfDays");
             String fromDate = (String) pastEventCondition.getParameter("fromDate");
             String toDate = (String) pastEventCondition.getParameter("toDate");
 
-            if (numberOfDays != null) {
-                Condition numberOfDaysCondition = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
-                numberOfDaysCondition.setParameter("propertyName", "timeStamp");
-                numberOfDaysCondition.setParameter("comparisonOperator", "greaterThan");
-                numberOfDaysCondition.setParameter("propertyValueDateExpr", "now-" + numberOfDays + "d");
-                conditions.add(numberOfDaysCondition);
-            }
-            if (fromDate != null)  {
-                Condition startDateCondition = new Condition();
-                startDateCondition.setConditionType(definitionsService.getConditionType("eventPropertyCondition"));
-                startDateCondition.setParameter("propertyName", "timeStamp");
-                startDateCondition.setParameter("comparisonOperator", "greaterThanOrEqualTo");
-                startDateCondition.setParameter("propertyValueDate", fromDate);
-                conditions.add(startDateCondition);
-            }
-            if (toDate != null)  {
-                Condition endDateCondition = new Condition();
-                endDateCondition.setConditionType(definitionsService.getConditionType("eventPropertyCondition"));
-                endDateCondition.setParameter("propertyName", "timeStamp");
-                endDateCondition.setParameter("comparisonOperator", "lessThanOrEqualTo");
-                endDateCondition.setParameter("propertyValueDate", toDate);
-                conditions.add(endDateCondition);
-            }
-
-            andCondition.setParameter("subConditions", conditions);
-
-            long count = persistenceService.queryCount(andCondition, Event.ITEM_TYPE);
-
             LocalDateTime fromDateTime = null;
             if (fromDate != null) {
                 Calendar fromDateCalendar = DatatypeConverter.parseDateTime(fromDate);
-                fromDateTime = LocalDateTime.ofInstant(fromDateCalendar.toInstant(), ZoneId.of("UTC"));
+                fromDateTime = LocalDateTime.ofInstant(fromDateCalendar.toInstant(), ZoneOffset.UTC);
             }
             LocalDateTime toDateTime = null;
             if (toDate != null) {
                 Calendar toDateCalendar = DatatypeConverter.parseDateTime(toDate);
-                toDateTime = LocalDateTime.ofInstant(toDateCalendar.toInstant(), ZoneId.of("UTC"));
+                toDateTime = LocalDateTime.ofInstant(toDateCalendar.toInstant(), ZoneOffset.UTC);
             }
 
-            LocalDateTime eventTime = LocalDateTime.ofInstant(event.getTimeStamp().toInstant(),ZoneId.of("UTC"));
+            LocalDateTime eventTime = LocalDateTime.ofInstant(event.getTimeStamp().toInstant(), ZoneOffset.UTC);
+            Map<String, Object> pastEvent = getPastEvent(event, generatedPropertyKey);
 
-            if (inTimeRange(eventTime, numberOfDays, fromDateTime, toDateTime)) {
-                count++;
+            long count;
+            Map<String, Object> windowCounts = null;
+            if (numberOfDays != null) {
+                LocalDateTime now = LocalDateTime.ofInstant(clock.instant(), ZoneOffset.UTC);
+                LocalDateTime windowStart = now.minusDays(numberOfDays).truncatedTo(ChronoUnit.MILLIS);
+                LocalDate firstDay = windowStart.toLocalDate();
+                LocalDateTime firstMinute = windowStart.truncatedTo(ChronoUnit.MINUTES);
+                SortedMap<LocalDate, Long> countsByDay = pastEvent != null ? readCounts(pastEvent.get(DAYS), "day", SetEventOccurenceCountAction::parseDay) : null;
+                SortedMap<LocalDateTime, Long> countsByMinute = null;
+                if (countsByDay == null) {
+                    // First materialization of the counter, or the counter was reconciled without the counts per day
+                    countsByDay = loadCounts(getPastEventsCondition(pastEventCondition, event,
+                            getTimeStampCondition("greaterThanOrEqualTo", firstDay.atStartOfDay())), "1d", "yyyy-MM-dd",
+                            SetEventOccurenceCountAction::parseDay);
+                } else if (firstDay.toString().equals(pastEvent.get(FIRST_DAY))) {
+                    countsByMinute = readCounts(pastEvent.get(FIRST_DAY_MINUTES), "minute", SetEventOccurenceCountAction::parseMinute);
+                }
+                // Days are only kept while they are in the window
+                countsByDay.headMap(firstDay).clear();
+                if (countsByDay.containsKey(firstDay) && countsByMinute == null) {
+                    // The first day of the window has events, they are read per minute once for that day
+                    countsByMinute = loadCounts(getPastEventsCondition(pastEventCondition, event,
+                            getTimeStampCondition("greaterThanOrEqualTo", firstDay.atStartOfDay()),
+                            getTimeStampCondition("lessThan", firstDay.plusDays(1).atStartOfDay())), "1m", "yyyy-MM-dd'T'HH:mm",
+                            SetEventOccurenceCountAction::parseMinute);
+                }
+
+                boolean counted = !eventTime.toLocalDate().isBefore(firstDay) && !eventTime.isAfter(now) && inTimeRange(eventTime, fromDateTime, toDateTime);
+                if (counted) {
+                    countsByDay.merge(eventTime.toLocalDate(), 1L, Long::sum);
+                    if (eventTime.toLocalDate().equals(firstDay)) {
+                        if (countsByMinute == null) {
+                            countsByMinute = new TreeMap<>();
+                        }
+                        countsByMinute.merge(eventTime.truncatedTo(ChronoUnit.MINUTES), 1L, Long::sum);
+                    }
+                }
+
+                count = 0;
+                for (Map.Entry<LocalDate, Long> countOfDay : countsByDay.entrySet()) {
+                    if (!countOfDay.getKey().equals(firstDay)) {
+                        count += countOfDay.getValue();
+                    }
+                }
+                windowCounts = new LinkedHashMap<>();
+                windowCounts.put(DAYS, writeCounts(countsByDay, "day"));
+                if (countsByMinute != null) {
+                    // Minutes are only kept while they are in the window
+                    countsByMinute.headMap(firstMinute).clear();
+                    for (long countOfMinute : countsByMinute.tailMap(firstMinute.plusMinutes(1)).values()) {
+                        count += countOfMinute;
+                    }
+                    if (countsByMinute.containsKey(firstMinute)) {
+                        // Only the events of the first minute after the start of the window are counted
+                        count += persistenceService.queryCount(getPastEventsCondition(pastEventCondition, event,
+                                getTimeStampCondition("greaterThan", windowStart),
+                                getTimeStampCondition("lessThan", firstMinute.plusMinutes(1))), Event.ITEM_TYPE);
+                        if (counted && eventTime.isAfter(windowStart) && eventTime.isBefore(firstMinute.plusMinutes(1))) {
+                            count++;
+                        }
+                    }
+                    windowCounts.put(FIRST_DAY, firstDay.toString());
+                    windowCounts.put(FIRST_DAY_MINUTES, writeCounts(countsByMinute, "minute"));
+                }
+            } else {
+                if (pastEvent != null && pastEvent.get("count") instanceof Number) {
+                    count = ((Number) pastEvent.get("count")).longValue();
+                } else {
+                    // First materialization of the counter
+                    count = persistenceService.queryCount(getPastEventsCondition(pastEventCondition, event), Event.ITEM_TYPE);
+                }
+                if (inTimeRange(eventTime, fromDateTime, toDateTime)) {
+                    count++;
+                }
             }
 
-            boolean updated = updatePastEvents(event, generatedPropertyKey, count);
+            boolean updated = updatePastEvents(event, generatedPropertyKey, count, windowCounts);
             if (tracer != null) {
                 tracer.trace("Event count updated", Map.of(
                     "count", count,
@@ -160,19 +212,181 @@ public class SetEventOccurenceCountAction implements ActionExecutor {
         }
     }
 
-    private boolean updatePastEvents(Event event, String generatedPropertyKey, long count) {
-        List<Map<String, Object>> existingPastEvents = (List<Map<String, Object>>) event.getProfile().getSystemProperties().get("pastEvents");
+    /**
+     * Builds the condition matching the past events of the profile of an event, except the event itself.
+     */
+    private Condition getPastEventsCondition(Condition pastEventCondition, Event event, Condition... windowConditions) {
+        Condition andCondition = new Condition(definitionsService.getConditionType("booleanCondition"));
+        andCondition.setParameter("operator", "and");
+        ArrayList<Condition> conditions = new ArrayList<Condition>();
+
+        Condition eventCondition = (Condition) pastEventCondition.getParameter("eventCondition");
+        if (eventCondition != null) {
+            definitionsService.getConditionValidationService().validate(eventCondition);
+        }
+        conditions.add(eventCondition);
+
+        Condition c = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
+        c.setParameter("propertyName", "profileId");
+        c.setParameter("comparisonOperator", "equals");
+        c.setParameter("propertyValue", event.getProfileId());
+        conditions.add(c);
+
+        // may be current event is already persisted and indexed, in that case we filter it from the count to increment it manually at the end
+        Condition eventIdFilter = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
+        eventIdFilter.setParameter("propertyName", "itemId");
+        eventIdFilter.setParameter("comparisonOperator", "notEquals");
+        eventIdFilter.setParameter("propertyValue", event.getItemId());
+        conditions.add(eventIdFilter);
+
+        String fromDate = (String) pastEventCondition.getParameter("fromDate");
+        String toDate = (String) pastEventCondition.getParameter("toDate");
+
+        conditions.addAll(Arrays.asList(windowConditions));
+        if (fromDate != null)  {
+            Condition startDateCondition = new Condition();
+            startDateCondition.setConditionType(definitionsService.getConditionType("eventPropertyCondition"));
+            startDateCondition.setParameter("propertyName", "timeStamp");
+            startDateCondition.setParameter("comparisonOperator", "greaterThanOrEqualTo");
+            startDateCondition.setParameter("propertyValueDate", fromDate);
+            conditions.add(startDateCondition);
+        }
+        if (toDate != null)  {
+            Condition endDateCondition = new Condition();
+            endDateCondition.setConditionType(definitionsService.getConditionType("eventPropertyCondition"));
+            endDateCondition.setParameter("propertyName", "timeStamp");
+            endDateCondition.setParameter("comparisonOperator", "lessThanOrEqualTo");
+            endDateCondition.setParameter("propertyValueDate", toDate);
+            conditions.add(endDateCondition);
+        }
+
+        andCondition.setParameter("subConditions", conditions);
+        return andCondition;
+    }
+
+    private Condition getTimeStampCondition(String comparisonOperator, LocalDateTime dateTime) {
+        Condition timeStampCondition = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
+        timeStampCondition.setParameter("propertyName", "timeStamp");
+        timeStampCondition.setParameter("comparisonOperator", comparisonOperator);
+        timeStampCondition.setParameter("propertyValueDate", dateTime.toInstant(ZoneOffset.UTC).toString());
+        return timeStampCondition;
+    }
+
+    /**
+     * Counts the events matching a condition per period of time.
+     *
+     * @param interval the length of the periods, as understood by {@link DateAggregate}
+     * @param format   the format of the keys of the periods
+     * @param parser   the parser of the keys of the periods
+     */
+    private <T extends Comparable<? super T>> SortedMap<T, Long> loadCounts(Condition condition, String interval, String format, Function<String, T> parser) {
+        SortedMap<T, Long> counts = new TreeMap<>();
+        Map<String, Long> aggregation = persistenceService.aggregateWithOptimizedQuery(condition,
+                new DateAggregate("timeStamp", interval, format), Event.ITEM_TYPE);
+        if (aggregation == null) {
+            return counts;
+        }
+        for (Map.Entry<String, Long> bucket : aggregation.entrySet()) {
+            T period = parser.apply(bucket.getKey());
+            if (period != null && bucket.getValue() != null && bucket.getValue() > 0) {
+                counts.merge(period, bucket.getValue(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static LocalDate parseDay(String key) {
+        LocalDateTime dateTime = parseDateTime(key);
+        return dateTime != null ? dateTime.toLocalDate() : null;
+    }
+
+    private static LocalDateTime parseMinute(String key) {
+        LocalDateTime dateTime = parseDateTime(key);
+        return dateTime != null ? dateTime.truncatedTo(ChronoUnit.MINUTES) : null;
+    }
+
+    private static LocalDateTime parseDateTime(String key) {
+        if (key == null || key.startsWith("_")) {
+            // Global counts of the aggregation
+            return null;
+        }
+        try {
+            return key.indexOf('T') > 0 ? LocalDateTime.parse(key) : LocalDate.parse(key).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            try {
+                // Buckets keyed by their timestamp
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(key)), ZoneOffset.UTC);
+            } catch (NumberFormatException e2) {
+                return null;
+            }
+        }
+    }
+
+    private Map<String, Object> getPastEvent(Event event, String generatedPropertyKey) {
+        List<Map<String, Object>> existingPastEvents = (List<Map<String, Object>>) event.getProfile().getSystemProperties().get(PAST_EVENTS);
+        if (existingPastEvents != null) {
+            for (Map<String, Object> pastEvent : existingPastEvents) {
+                if (generatedPropertyKey.equals(pastEvent.get("key"))) {
+                    return pastEvent;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads counts per period of time stored on a counter.
+     *
+     * @return the counts per period, or {@code null} if the counter has no valid counts
+     */
+    private static <T extends Comparable<? super T>> SortedMap<T, Long> readCounts(Object storedCounts, String periodName, Function<String, T> parser) {
+        if (!(storedCounts instanceof List)) {
+            return null;
+        }
+        SortedMap<T, Long> counts = new TreeMap<>();
+        for (Object storedCount : (List<?>) storedCounts) {
+            if (!(storedCount instanceof Map) || !(((Map<?, ?>) storedCount).get("count") instanceof Number)) {
+                return null;
+            }
+            T period = parser.apply(String.valueOf(((Map<?, ?>) storedCount).get(periodName)));
+            if (period == null) {
+                return null;
+            }
+            counts.merge(period, ((Number) ((Map<?, ?>) storedCount).get("count")).longValue(), Long::sum);
+        }
+        return counts;
+    }
+
+    private static List<Map<String, Object>> writeCounts(SortedMap<?, Long> counts, String periodName) {
+        List<Map<String, Object>> storedCounts = new ArrayList<>();
+        for (Map.Entry<?, Long> countOfPeriod : counts.entrySet()) {
+            Map<String, Object> storedCount = new LinkedHashMap<>();
+            storedCount.put(periodName, countOfPeriod.getKey().toString());
+            storedCount.put("count", countOfPeriod.getValue());
+            storedCounts.add(storedCount);
+        }
+        return storedCounts;
+    }
+
+    private boolean updatePastEvents(Event event, String generatedPropertyKey, long count, Map<String, Object> windowCounts) {
+        List<Map<String, Object>> existingPastEvents = (List<Map<String, Object>>) event.getProfile().getSystemProperties().get(PAST_EVENTS);
         if (existingPastEvents == null) {
             existingPastEvents = new ArrayList<>();
-            event.getProfile().getSystemProperties().put("pastEvents", existingPastEvents);
+            event.getProfile().getSystemProperties().put(PAST_EVENTS, existingPastEvents);
         }
 
         for (Map<String, Object> pastEvent : existingPastEvents) {
             if (generatedPropertyKey.equals(pastEvent.get("key"))) {
-                if (pastEvent.containsKey("count") && pastEvent.get("count").equals(count)) {
+                if (pastEvent.get("count") instanceof Number && ((Number) pastEvent.get("count")).longValue() == count
+                        && (windowCounts == null || windowCounts.equals(getWindowCounts(pastEvent)))) {
                     return false;
                 }
                 pastEvent.put("count", count);
+                if (windowCounts != null) {
+                    pastEvent.remove(FIRST_DAY);
+                    pastEvent.remove(FIRST_DAY_MINUTES);
+                    pastEvent.putAll(windowCounts);
+                }
                 return true;
             }
         }
@@ -180,23 +394,32 @@ public class SetEventOccurenceCountAction implements ActionExecutor {
         Map<String, Object> newPastEvent = new HashMap<>();
         newPastEvent.put("key", generatedPropertyKey);
         newPastEvent.put("count", count);
+        if (windowCounts != null) {
+            newPastEvent.putAll(windowCounts);
+        }
         existingPastEvents.add(newPastEvent);
         return true;
     }
 
-    private boolean inTimeRange(LocalDateTime eventTime, Integer numberOfDays, LocalDateTime fromDate, LocalDateTime toDate) {
+    /**
+     * Reads the counts of a rolling window stored on a counter, whose numbers may have been read as integers, in their
+     * written representation.
+     */
+    private static Map<String, Object> getWindowCounts(Map<String, Object> pastEvent) {
+        Map<String, Object> windowCounts = new LinkedHashMap<>();
+        SortedMap<LocalDate, Long> countsByDay = readCounts(pastEvent.get(DAYS), "day", SetEventOccurenceCountAction::parseDay);
+        windowCounts.put(DAYS, countsByDay != null ? writeCounts(countsByDay, "day") : null);
+        if (pastEvent.containsKey(FIRST_DAY)) {
+            SortedMap<LocalDateTime, Long> countsByMinute = readCounts(pastEvent.get(FIRST_DAY_MINUTES), "minute", SetEventOccurenceCountAction::parseMinute);
+            windowCounts.put(FIRST_DAY, pastEvent.get(FIRST_DAY));
+            windowCounts.put(FIRST_DAY_MINUTES, countsByMinute != null ? writeCounts(countsByMinute, "minute") : null);
+        }
+        return windowCounts;
+    }
+
+    private boolean inTimeRange(LocalDateTime eventTime, LocalDateTime fromDate, LocalDateTime toDate) {
         boolean inTimeRange = true;
 
-        if (numberOfDays != null) {
-            LocalDateTime now = LocalDateTime.now(ZoneId.of("UTC"));
-            if (eventTime.isAfter(now)) {
-                inTimeRange = false;
-            }
-            long daysDiff = Duration.between(eventTime, now).toDays();
-            if (daysDiff > numberOfDays) {
-                inTimeRange = false;
-            }
-        }
         if (fromDate != null && fromDate.isAfter(eventTime)) {
             inTimeRange = false;
         }
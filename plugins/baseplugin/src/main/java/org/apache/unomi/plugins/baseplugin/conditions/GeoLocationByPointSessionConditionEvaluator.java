@@ -22,8 +22,7 @@ import org.apache.unomi.api.Item;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluator;
 import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluatorDispatcher;
-import org.apache.unomi.persistence.spi.conditions.geo.DistanceUnit;
-import org.apache.unomi.persistence.spi.conditions.geo.GeoDistance;
+import org.apache.unomi.plugins.baseplugin.conditions.accessors.HardcodedPropertyAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,36 +32,20 @@ public class GeoLocationByPointSessionConditionEvaluator implements ConditionEva
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GeoLocationByPointSessionConditionEvaluator.class.getName());
 
+    private static final HardcodedPropertyAccessorRegistry hardcodedPropertyAccessorRegistry = new HardcodedPropertyAccessorRegistry();
+
     @Override
     public boolean eval(Condition condition, Item item, Map<String, Object> context, ConditionEvaluatorDispatcher dispatcher) {
         try {
-            String type = (String) condition.getParameter("type");
-            String name = condition.getParameter("name") == null ? "properties.location" : (String) condition.getParameter("name");
-
-            double latitudeProperty = Double.parseDouble(BeanUtils.getProperty(item, name + ".lat"));
-            double longitudeProperty = Double.parseDouble(BeanUtils.getProperty(item, name + ".lon"));
-
-
-            if("circle".equals(type)) {
-                Double circleLatitude = (Double) condition.getParameter("circleLatitude");
-                Double circleLongitude = (Double) condition.getParameter("circleLongitude");
-                DistanceUnit.Distance distance = DistanceUnit.Distance.parseDistance(condition.getParameter("distance").toString());
+            PreparedGeoCondition geoCondition = PreparedGeoCondition.get(condition);
+            if (geoCondition == null) {
+                return false;
+            }
 
-                double d = GeoDistance.PLANE.calculate(circleLatitude, circleLongitude, latitudeProperty, longitudeProperty, distance.unit);
-                return d < distance.value;
-            } else if("rectangle".equals(type)) {
-                Double rectLatitudeNE = (Double) condition.getParameter("rectLatitudeNE");
-                Double rectLongitudeNE = (Double) condition.getParameter("rectLongitudeNE");
-                Double rectLatitudeSW = (Double) condition.getParameter("rectLatitudeSW");
-                Double rectLongitudeSW = (Double) condition.getParameter("rectLongitudeSW");
+            double latitudeProperty = getCoordinate(item, geoCondition.getLatitudePropertyName());
+            double longitudeProperty = getCoordinate(item, geoCondition.getLongitudePropertyName());
 
-                if(rectLatitudeNE != null && rectLongitudeNE != null && rectLatitudeSW != null && rectLongitudeSW != null) {
-                    return latitudeProperty < Math.max(rectLatitudeNE, rectLatitudeSW)  &&
-                            latitudeProperty > Math.min(rectLatitudeNE, rectLatitudeSW) &&
-                            longitudeProperty < Math.max(rectLongitudeNE, rectLongitudeSW) &&
-                            longitudeProperty > Math.min(rectLongitudeNE, rectLongitudeSW);
-                }
-            }
+            return geoCondition.contains(latitudeProperty, longitudeProperty);
         } catch (Exception e) {
             LOGGER.warn("Cannot evaluate condition, properties 'properties.location.lat' or 'properties.location.lon' not found, enable debug log level to see full stacktrace");
             LOGGER.debug("Cannot evaluate condition", e);
@@ -70,5 +53,15 @@ public class GeoLocationByPointSessionConditionEvaluator implements ConditionEva
         return false;
     }
 
-
+    private double getCoordinate(Item item, String propertyName) throws Exception {
+        Object value = hardcodedPropertyAccessorRegistry.getProperty(item, propertyName);
+        if (HardcodedPropertyAccessor.PROPERTY_NOT_FOUND_MARKER.equals(value)) {
+            // Not an item type with a hardcoded accessor, fall back to reflection
+            return Double.parseDouble(BeanUtils.getProperty(item, propertyName));
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
 }
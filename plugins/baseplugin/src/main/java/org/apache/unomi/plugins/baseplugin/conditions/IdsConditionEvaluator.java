@@ -24,7 +24,9 @@ import org.apache.unomi.tracing.api.RequestTracer;
 import org.apache.unomi.tracing.api.TracerService;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class IdsConditionEvaluator implements ConditionEvaluator {
     private TracerService tracerService;
@@ -52,7 +54,7 @@ public class IdsConditionEvaluator implements ConditionEvaluator {
                 return false;
             }
 
-            boolean contained = ids.contains(item.getItemId());
+            boolean contained = getIdSet(condition, ids).contains(item.getItemId());
             boolean matchValue = match == null || match;
             boolean result = matchValue == contained;
 
@@ -67,4 +69,34 @@ public class IdsConditionEvaluator implements ConditionEvaluator {
             throw e;
         }
     }
+
+    private static Set<String> getIdSet(Condition condition, Collection<String> ids) {
+        if (ids instanceof HashSet) {
+            return (Set<String>) ids;
+        }
+        // Ids are deserialized as lists, the set built from them is kept on the condition for the next evaluations
+        Object preparedValue = condition.getPreparedValue();
+        if (preparedValue instanceof PreparedIds && ((PreparedIds) preparedValue).isPreparedFrom(ids)) {
+            return ((PreparedIds) preparedValue).idSet;
+        }
+        PreparedIds preparedIds = new PreparedIds(ids);
+        condition.setPreparedValue(preparedIds);
+        return preparedIds.idSet;
+    }
+
+    private static class PreparedIds {
+        private final Collection<String> ids;
+        private final int size;
+        private final Set<String> idSet;
+
+        private PreparedIds(Collection<String> ids) {
+            this.ids = ids;
+            this.size = ids.size();
+            this.idSet = new HashSet<>(ids);
+        }
+
+        private boolean isPreparedFrom(Collection<String> ids) {
+            return this.ids == ids && this.size == ids.size();
+        }
+    }
 }
@@ -53,13 +53,18 @@ public class NestedConditionEvaluator implements ConditionEvaluator {
             // Get list of nested items to be evaluated
             Object nestedItems = propertyConditionEvaluator.getPropertyValue(item, path);
             if (nestedItems instanceof List) {
+                NestedItemView nestedItemView = null;
 
                 // Evaluated each nested items until one match the nested condition
                 for (Object nestedItem : (List<Object>) nestedItems) {
                     if (nestedItem instanceof Map) {
-                        Map<String, Object> flattenedNestedItem = flattenNestedItem(path, (Map<String, Object>) nestedItem);
-                        Item finalNestedItem = createFinalNestedItemForEvaluation(item, path, flattenedNestedItem);
-                        if (finalNestedItem != null && dispatcher.eval(subCondition, finalNestedItem, context)) {
+                        if (nestedItemView == null) {
+                            nestedItemView = createNestedItemView(item, path);
+                            if (nestedItemView == null) {
+                                return false;
+                            }
+                        }
+                        if (dispatcher.eval(subCondition, nestedItemView.wrap((Map<String, Object>) nestedItem), context)) {
                             // We found at least one nested item matching
                             return true;
                         }
@@ -126,4 +131,65 @@ public class NestedConditionEvaluator implements ConditionEvaluator {
 
         return null;
     }
+
+    /**
+     * Creates the item on which the sub condition is evaluated for each nested item. The item and its intermediate
+     * property maps are built once per evaluation, only the nested item is replaced from one element to the next.
+     * The result is the same as building the item with {@link #flattenNestedItem(String, Map)} and
+     * {@link #createFinalNestedItemForEvaluation(Item, String, Map)} for each element.
+     *
+     * @param parentItem the item holding the nested items
+     * @param path       the path of the nested items
+     * @return the view, or {@code null} if nested conditions are not supported on this type of item
+     */
+    protected NestedItemView createNestedItemView(Item parentItem, String path) {
+        Map<String, Object> properties = new HashMap<>();
+        Item item = createFinalNestedItemForEvaluation(parentItem, path, properties);
+        if (item == null) {
+            return null;
+        }
+
+        // Same levels as flattenNestedItem, the last level holds the nested item
+        String propertyPath = StringUtils.substringAfter(path, ".");
+        if (StringUtils.isEmpty(propertyPath)) {
+            return new NestedItemView(item, null, null);
+        }
+        String[] propertyKeys = propertyPath.split("\\.");
+        Map<String, Object> currentPropertiesLevel = properties;
+        for (int i = 0; i < propertyKeys.length - 1; i++) {
+            Map<String, Object> subLevel = new HashMap<>();
+            currentPropertiesLevel.put(propertyKeys[i], subLevel);
+            currentPropertiesLevel = subLevel;
+        }
+        return new NestedItemView(item, currentPropertiesLevel, propertyKeys[propertyKeys.length - 1]);
+    }
+
+    /**
+     * An item exposing one nested item at a time, see {@link #createNestedItemView(Item, String)}. A view is only used
+     * by the evaluation that created it, and must not be kept once the evaluation is done.
+     */
+    protected static class NestedItemView {
+        private final Item item;
+        private final Map<String, Object> lastPropertiesLevel;
+        private final String nestedItemKey;
+
+        protected NestedItemView(Item item, Map<String, Object> lastPropertiesLevel, String nestedItemKey) {
+            this.item = item;
+            this.lastPropertiesLevel = lastPropertiesLevel;
+            this.nestedItemKey = nestedItemKey;
+        }
+
+        /**
+         * Exposes a nested item through the item of the view.
+         *
+         * @param nestedItem the nested item
+         * @return the item of the view, holding the nested item at its path
+         */
+        public Item wrap(Map<String, Object> nestedItem) {
+            if (lastPropertiesLevel != null) {
+                lastPropertiesLevel.put(nestedItemKey, nestedItem);
+            }
+            return item;
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.unomi.plugins.baseplugin.conditions;
+
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.persistence.spi.conditions.geo.DistanceUnit;
+import org.apache.unomi.persistence.spi.conditions.geo.GeoDistance;
+
+/**
+ * The parameters of a geoLocationByPointSessionCondition, parsed once: the circle distance is converted to meters, the
+ * circle center to radians, and every shape gets a bounding box used to reject most points before computing a distance.
+ * <p>
+ * Instances are immutable and cached on the condition, see {@link #get(Condition)}.
+ */
+public class PreparedGeoCondition {
+
+    private static final String DEFAULT_PROPERTY_NAME = "properties.location";
+
+    private final Object[] sourceParameters;
+
+    private final String latitudePropertyName;
+    private final String longitudePropertyName;
+
+    private final boolean circle;
+    private final double centerLatitudeRadians;
+    private final double centerLongitudeRadians;
+    private final double distanceInMeters;
+
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    private PreparedGeoCondition(Object[] sourceParameters, String name, boolean circle, double centerLatitude, double centerLongitude,
+                                 double distanceInMeters, double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        this.sourceParameters = sourceParameters;
+        this.latitudePropertyName = name + ".lat";
+        this.longitudePropertyName = name + ".lon";
+        this.circle = circle;
+        this.centerLatitudeRadians = GeoDistance.toRadians(centerLatitude);
+        this.centerLongitudeRadians = GeoDistance.toRadians(centerLongitude);
+        this.distanceInMeters = distanceInMeters;
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * Retrieves the prepared form of a geo condition, preparing it on first use and whenever its parameters changed.
+     *
+     * @param condition the geoLocationByPointSessionCondition
+     * @return the prepared condition, or {@code null} if the shape of the condition is unknown or incomplete, in which
+     * case no point matches the condition
+     * @throws IllegalArgumentException if a coordinate or the distance cannot be parsed
+     */
+    public static PreparedGeoCondition get(Condition condition) {
+        Object[] sourceParameters = getSourceParameters(condition);
+        Object preparedValue = condition.getPreparedValue();
+        if (preparedValue instanceof PreparedGeoCondition && ((PreparedGeoCondition) preparedValue).isPreparedFrom(sourceParameters)) {
+            return (PreparedGeoCondition) preparedValue;
+        }
+        PreparedGeoCondition prepared = prepare(sourceParameters);
+        condition.setPreparedValue(prepared);
+        return prepared;
+    }
+
+    private static Object[] getSourceParameters(Condition condition) {
+        return new Object[]{
+                condition.getParameter("type"),
+                condition.getParameter("name"),
+                condition.getParameter("circleLatitude"),
+                condition.getParameter("circleLongitude"),
+                condition.getParameter("distance"),
+                condition.getParameter("rectLatitudeNE"),
+                condition.getParameter("rectLongitudeNE"),
+                condition.getParameter("rectLatitudeSW"),
+                condition.getParameter("rectLongitudeSW")
+        };
+    }
+
+    private boolean isPreparedFrom(Object[] parameters) {
+        // Parameters are compared by reference, a parameter replaced in the condition always triggers a new preparation
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] != sourceParameters[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static PreparedGeoCondition prepare(Object[] parameters) {
+        String type = (String) parameters[0];
+        String name = parameters[1] == null ? DEFAULT_PROPERTY_NAME : (String) parameters[1];
+
+        if ("circle".equals(type)) {
+            Double circleLatitude = toDouble(parameters[2]);
+            Double circleLongitude = toDouble(parameters[3]);
+            if (circleLatitude == null || circleLongitude == null || parameters[4] == null) {
+                return null;
+            }
+            DistanceUnit.Distance distance = DistanceUnit.Distance.parseDistance(parameters[4].toString());
+            double distanceInMeters = distance.unit.toMeters(distance.value);
+
+            // A point farther than the distance in latitude is farther than the distance on the plane
+            double latitudeDelta = Math.toDegrees(distanceInMeters / GeoDistance.EARTH_MEAN_RADIUS);
+            double maxAbsoluteLatitude = Math.abs(circleLatitude) + latitudeDelta;
+            double longitudeDelta = Double.POSITIVE_INFINITY;
+            if (maxAbsoluteLatitude < 90) {
+                // The plane distance scales longitudes by the cosine of the mean latitude, which is smallest at the
+                // latitude farthest from the equator that can still match
+                longitudeDelta = Math.toDegrees(distanceInMeters / (GeoDistance.EARTH_MEAN_RADIUS * Math.cos(Math.toRadians(maxAbsoluteLatitude))));
+            }
+            return new PreparedGeoCondition(parameters, name, true, circleLatitude, circleLongitude, distanceInMeters,
+                    circleLatitude - latitudeDelta, circleLatitude + latitudeDelta,
+                    circleLongitude - longitudeDelta, circleLongitude + longitudeDelta);
+        } else if ("rectangle".equals(type)) {
+            Double rectLatitudeNE = toDouble(parameters[5]);
+            Double rectLongitudeNE = toDouble(parameters[6]);
+            Double rectLatitudeSW = toDouble(parameters[7]);
+            Double rectLongitudeSW = toDouble(parameters[8]);
+            if (rectLatitudeNE == null || rectLongitudeNE == null || rectLatitudeSW == null || rectLongitudeSW == null) {
+                return null;
+            }
+            return new PreparedGeoCondition(parameters, name, false, 0, 0, 0,
+                    Math.min(rectLatitudeNE, rectLatitudeSW), Math.max(rectLatitudeNE, rectLatitudeSW),
+                    Math.min(rectLongitudeNE, rectLongitudeSW), Math.max(rectLongitudeNE, rectLongitudeSW));
+        }
+        return null;
+    }
+
+    private static Double toDouble(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    /**
+     * Determines whether a point is inside the circle or the rectangle of the condition, using the same plane distance
+     * as {@link GeoDistance#PLANE}.
+     *
+     * @param latitude  the latitude of the point, in degrees
+     * @param longitude the longitude of the point, in degrees
+     * @return {@code true} if the point is inside the shape of the condition
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (circle) {
+            if (latitude < minLatitude || latitude > maxLatitude || longitude < minLongitude || longitude > maxLongitude) {
+                return false;
+            }
+            double latitudeRadians = GeoDistance.toRadians(latitude);
+            double x = (GeoDistance.toRadians(longitude) - centerLongitudeRadians) * Math.cos((centerLatitudeRadians + latitudeRadians) / 2);
+            double y = latitudeRadians - centerLatitudeRadians;
+            return Math.sqrt(x * x + y * y) * GeoDistance.EARTH_MEAN_RADIUS < distanceInMeters;
+        }
+        return latitude < maxLatitude && latitude > minLatitude && longitude < maxLongitude && longitude > minLongitude;
+    }
+
+    public String getLatitudePropertyName() {
+        return latitudePropertyName;
+    }
+
+    public String getLongitudePropertyName() {
+        return longitudePropertyName;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.plugins.baseplugin.actions;
+
+import org.apache.unomi.api.Event;
+import org.apache.unomi.api.Metadata;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.actions.Action;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.api.conditions.ConditionType;
+import org.apache.unomi.api.services.ConditionValidationService;
+import org.apache.unomi.api.services.DefinitionsService;
+import org.apache.unomi.api.services.EventService;
+import org.apache.unomi.persistence.spi.PersistenceService;
+import org.apache.unomi.persistence.spi.aggregate.BaseAggregate;
+import org.apache.unomi.persistence.spi.aggregate.DateAggregate;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+
+import javax.xml.bind.DatatypeConverter;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SetEventOccurenceCountActionTest {
+
+    private static final String KEY = "eventTriggeredTest";
+
+    private final SetEventOccurenceCountAction action = new SetEventOccurenceCountAction();
+    private final List<Event> persistedEvents = new ArrayList<>();
+    private final Profile profile = new Profile("profile");
+    // A fixed time of the day, for the first day of the rolling windows to be only partly in them
+    private Instant now = Instant.parse("2026-10-19T12:34:56.789Z");
+    private PersistenceService persistenceService;
+
+    @Before
+    public void setUp() {
+        DefinitionsService definitionsService = mock(DefinitionsService.class);
+        when(definitionsService.getConditionType(anyString())).thenAnswer(invocation -> new ConditionType(new Metadata(invocation.getArgument(0))));
+        when(definitionsService.getConditionValidationService()).thenReturn(mock(ConditionValidationService.class));
+
+        // Answers the queries from the persisted events, as the event indices would
+        persistenceService = mock(PersistenceService.class);
+        when(persistenceService.queryCount(any(Condition.class), eq(Event.ITEM_TYPE))).thenAnswer(invocation ->
+                persistedEvents.stream().filter(event -> matches(event, invocation.getArgument(0))).count());
+        when(persistenceService.aggregateWithOptimizedQuery(any(Condition.class), any(BaseAggregate.class), eq(Event.ITEM_TYPE))).thenAnswer(invocation -> {
+            boolean perMinute = "1m".equals(((DateAggregate) invocation.getArgument(1)).getInterval());
+            Map<String, Long> buckets = new TreeMap<>();
+            for (Event event : persistedEvents) {
+                if (matches(event, invocation.getArgument(0))) {
+                    LocalDateTime timeStamp = LocalDateTime.ofInstant(event.getTimeStamp().toInstant(), ZoneOffset.UTC);
+                    buckets.merge(perMinute ? timeStamp.truncatedTo(ChronoUnit.MINUTES).toString() : timeStamp.toLocalDate().toString(), 1L, Long::sum);
+                    buckets.merge("_all", 1L, Long::sum);
+                }
+            }
+            return buckets;
+        });
+
+        action.setDefinitionsService(definitionsService);
+        action.setPersistenceService(persistenceService);
+        action.setClock(Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    public void testRollingWindowMatchesQueryCount() {
+        Condition pastEventCondition = pastEventCondition(7, null, null);
+        // Events received before the counter is materialized, on both sides of the window
+        persist(ago(Duration.ofDays(10)));
+        persist(ago(Duration.ofDays(8)));
+        persist(ago(Duration.ofDays(7).minusHours(1)));
+        persist(ago(Duration.ofDays(3)));
+
+        for (Duration age : Arrays.asList(Duration.ofDays(2), Duration.ofDays(8), Duration.ofDays(6), Duration.ofHours(1), Duration.ofMinutes(1))) {
+            executeAndCheck(pastEventCondition, ago(age));
+        }
+        verify(persistenceService, times(1)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perDay()), eq(Event.ITEM_TYPE));
+
+        // Two days later, the oldest events leave the window
+        shiftDays(2);
+        executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(1)));
+        assertEquals(5L, getPastEvent().get("count"));
+        verify(persistenceService, times(1)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perDay()), eq(Event.ITEM_TYPE));
+
+        // Counters reconciled by the recalculation of the past event conditions lose their counts per day
+        getPastEvent().remove("days");
+        getPastEvent().put("count", 100L);
+        executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(1)));
+        verify(persistenceService, times(2)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perDay()), eq(Event.ITEM_TYPE));
+    }
+
+    @Test
+    public void testFirstDayOfRollingWindowMatchesQueryCount() {
+        Condition pastEventCondition = pastEventCondition(7, null, null);
+        // Events of the first day of the window, on both sides of its start whatever the time of the day
+        Duration sinceStartOfDay = Duration.between(LocalDate.ofInstant(now, ZoneOffset.UTC).atStartOfDay(ZoneOffset.UTC).toInstant(), now);
+        persist(ago(Duration.ofDays(7).plusHours(3)));
+        persist(ago(Duration.ofDays(7).plus(sinceStartOfDay.dividedBy(2))));
+        persist(ago(Duration.ofDays(7).minus(sinceStartOfDay.dividedBy(2))));
+
+        for (Duration age : Arrays.asList(Duration.ofHours(1), Duration.ofDays(7).plusHours(2), Duration.ofDays(7).plus(sinceStartOfDay.dividedBy(3)),
+                Duration.ofDays(7).minus(sinceStartOfDay.dividedBy(3)), Duration.ofMinutes(1))) {
+            executeAndCheck(pastEventCondition, ago(age));
+        }
+        verify(persistenceService, times(1)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perDay()), eq(Event.ITEM_TYPE));
+        verify(persistenceService, times(1)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perMinute()), eq(Event.ITEM_TYPE));
+        verify(persistenceService, never()).queryCount(any(Condition.class), anyString());
+    }
+
+    @Test
+    public void testFirstMinuteOfRollingWindowIsTheOnlyOneCountedWithAQuery() {
+        Condition pastEventCondition = pastEventCondition(7, null, null);
+        persist(ago(Duration.ofDays(7).plusHours(1)));
+        persist(ago(Duration.ofDays(7).plusSeconds(10)));
+        persist(ago(Duration.ofDays(7).minusHours(1)));
+        persist(ago(Duration.ofDays(6)));
+
+        // The events of the minute of the start of the window are all before it, but it has events
+        executeAndCheck(pastEventCondition, ago(Duration.ofHours(1)));
+        verify(persistenceService, times(1)).queryCount(any(Condition.class), anyString());
+
+        // Once the window starts after that minute, the counter is updated without queries
+        setNow(now.plus(Duration.ofMinutes(1)));
+        for (int i = 0; i < 10; i++) {
+            executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(10 - i)));
+        }
+        verify(persistenceService, times(1)).queryCount(any(Condition.class), anyString());
+
+        // An event in the minute of the start of the window, after it, is counted with a query by the events of that minute
+        executeAndCheck(pastEventCondition, ago(Duration.ofDays(7).minusSeconds(2)));
+        executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(1)));
+        verify(persistenceService, times(3)).queryCount(any(Condition.class), anyString());
+        setNow(now.plus(Duration.ofMinutes(1)));
+        executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(1)));
+        verify(persistenceService, times(3)).queryCount(any(Condition.class), anyString());
+
+        // The events of the first day are only read once a day
+        verify(persistenceService, times(1)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perDay()), eq(Event.ITEM_TYPE));
+        verify(persistenceService, times(1)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perMinute()), eq(Event.ITEM_TYPE));
+        setNow(now.plus(Duration.ofDays(1)));
+        executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(1)));
+        verify(persistenceService, times(2)).aggregateWithOptimizedQuery(any(Condition.class), argThat(perMinute()), eq(Event.ITEM_TYPE));
+    }
+
+    @Test
+    public void testDateRangeMatchesQueryCount() {
+        String fromDate = ago(Duration.ofDays(5)).toString();
+        String toDate = ago(Duration.ofDays(1)).toString();
+        Condition pastEventCondition = pastEventCondition(null, fromDate, toDate);
+        persist(ago(Duration.ofDays(6)));
+        persist(ago(Duration.ofDays(4)));
+
+        for (Duration age : Arrays.asList(Duration.ofDays(5).plusMinutes(1), Duration.ofDays(5).minusMinutes(1),
+                Duration.ofDays(1).plusMinutes(1), Duration.ofDays(1).minusMinutes(1))) {
+            executeAndCheck(pastEventCondition, ago(age));
+        }
+        assertEquals(3L, getPastEvent().get("count"));
+        assertNull("Fixed ranges do not need counts per day", getPastEvent().get("days"));
+        assertEquals("Events out of the range should not change the counter", EventService.NO_CHANGE,
+                executeAndCheck(pastEventCondition, ago(Duration.ofHours(1))));
+        verify(persistenceService, times(1)).queryCount(any(Condition.class), eq(Event.ITEM_TYPE));
+        verify(persistenceService, never()).aggregateWithOptimizedQuery(any(Condition.class), any(BaseAggregate.class), anyString());
+    }
+
+    @Test
+    public void testUnboundedCounter() {
+        Condition pastEventCondition = pastEventCondition(null, null, null);
+        persist(ago(Duration.ofDays(400)));
+        persist(ago(Duration.ofDays(1)));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(EventService.PROFILE_UPDATED, executeAndCheck(pastEventCondition, ago(Duration.ofMinutes(10 - i))));
+        }
+        assertEquals(12L, getPastEvent().get("count"));
+        verify(persistenceService, times(1)).queryCount(any(Condition.class), eq(Event.ITEM_TYPE));
+    }
+
+    private int executeAndCheck(Condition pastEventCondition, Instant timeStamp) {
+        // The event is persisted before the rules are executed
+        Event event = persist(timeStamp);
+        Action action = new Action();
+        action.setParameter("pastEventCondition", pastEventCondition);
+        int changes = this.action.execute(action, event);
+
+        assertEquals("Count of the event at " + timeStamp, getQueryCount(pastEventCondition), getPastEvent().get("count"));
+        return changes;
+    }
+
+    /**
+     * Counts the matching events as the past event condition query does.
+     */
+    private long getQueryCount(Condition pastEventCondition) {
+        Integer numberOfDays = (Integer) pastEventCondition.getParameter("numberOfDays");
+        String fromDate = (String) pastEventCondition.getParameter("fromDate");
+        String toDate = (String) pastEventCondition.getParameter("toDate");
+        return persistedEvents.stream().filter(event -> {
+            Instant timeStamp = event.getTimeStamp().toInstant();
+            return (numberOfDays == null || timeStamp.isAfter(now.minus(Duration.ofDays(numberOfDays))))
+                    && (fromDate == null || !timeStamp.isBefore(Instant.parse(fromDate)))
+                    && (toDate == null || !timeStamp.isAfter(Instant.parse(toDate)));
+        }).count();
+    }
+
+    private Condition pastEventCondition(Integer numberOfDays, String fromDate, String toDate) {
+        Condition eventCondition = new Condition(new ConditionType(new Metadata("eventTypeCondition")));
+        eventCondition.setParameter("eventTypeId", "view");
+        Condition pastEventCondition = new Condition(new ConditionType(new Metadata("pastEventCondition")));
+        pastEventCondition.setParameter("generatedPropertyKey", KEY);
+        pastEventCondition.setParameter("eventCondition", eventCondition);
+        if (numberOfDays != null) {
+            pastEventCondition.setParameter("numberOfDays", numberOfDays);
+        }
+        if (fromDate != null) {
+            pastEventCondition.setParameter("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            pastEventCondition.setParameter("toDate", toDate);
+        }
+        return pastEventCondition;
+    }
+
+    private Instant ago(Duration age) {
+        return now.minus(age);
+    }
+
+    private void setNow(Instant now) {
+        this.now = now;
+        action.setClock(Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static ArgumentMatcher<BaseAggregate> perDay() {
+        return aggregate -> "1d".equals(((DateAggregate) aggregate).getInterval());
+    }
+
+    private static ArgumentMatcher<BaseAggregate> perMinute() {
+        return aggregate -> "1m".equals(((DateAggregate) aggregate).getInterval());
+    }
+
+    private Event persist(Instant timeStamp) {
+        Event event = new Event("event" + persistedEvents.size(), "view", null, profile, null, null, null, Date.from(timeStamp));
+        persistedEvents.add(event);
+        return event;
+    }
+
+    private Map<String, Object> getPastEvent() {
+        List<Map<String, Object>> pastEvents = (List<Map<String, Object>>) profile.getSystemProperties().get("pastEvents");
+        return pastEvents.stream().filter(pastEvent -> KEY.equals(pastEvent.get("key"))).findFirst().orElse(null);
+    }
+
+    /**
+     * Moves the persisted events and the counts per day stored on the profile back in time, as if days had passed.
+     */
+    private void shiftDays(int days) {
+        for (Event event : persistedEvents) {
+            event.setTimeStamp(Date.from(event.getTimeStamp().toInstant().minus(Duration.ofDays(days))));
+        }
+        for (Map<String, Object> day : (List<Map<String, Object>>) getPastEvent().get("days")) {
+            day.put("day", LocalDate.parse((String) day.get("day")).minusDays(days).toString());
+        }
+        if (getPastEvent().get("firstDay") != null) {
+            getPastEvent().put("firstDay", LocalDate.parse((String) getPastEvent().get("firstDay")).minusDays(days).toString());
+            for (Map<String, Object> minute : (List<Map<String, Object>>) getPastEvent().get("firstDayMinutes")) {
+                minute.put("minute", LocalDateTime.parse((String) minute.get("minute")).minusDays(days).toString());
+            }
+        }
+    }
+
+    private boolean matches(Event event, Condition condition) {
+        if (condition == null) {
+            return true;
+        }
+        switch (condition.getConditionTypeId()) {
+            case "booleanCondition":
+                for (Condition subCondition : (List<Condition>) condition.getParameter("subConditions")) {
+                    if (!matches(event, subCondition)) {
+                        return false;
+                    }
+                }
+                return true;
+            case "eventPropertyCondition":
+                String propertyName = (String) condition.getParameter("propertyName");
+                String operator = (String) condition.getParameter("comparisonOperator");
+                if (!"timeStamp".equals(propertyName)) {
+                    String value = "profileId".equals(propertyName) ? event.getProfileId() : event.getItemId();
+                    return value.equals(condition.getParameter("propertyValue")) == "equals".equals(operator);
+                }
+                Instant timeStamp = event.getTimeStamp().toInstant();
+                Instant propertyValue;
+                if (condition.getParameter("propertyValueDateExpr") != null) {
+                    String days = ((String) condition.getParameter("propertyValueDateExpr")).replace("now-", "").replace("d", "");
+                    propertyValue = now.minus(Duration.ofDays(Long.parseLong(days)));
+                } else {
+                    propertyValue = DatatypeConverter.parseDateTime((String) condition.getParameter("propertyValueDate")).toInstant();
+                }
+                switch (operator) {
+                    case "greaterThan":
+                        return timeStamp.isAfter(propertyValue);
+                    case "greaterThanOrEqualTo":
+                        return !timeStamp.isBefore(propertyValue);
+                    case "lessThan":
+                        return timeStamp.isBefore(propertyValue);
+                    case "lessThanOrEqualTo":
+                        return !timeStamp.isAfter(propertyValue);
+                    default:
+                        throw new IllegalArgumentException(operator);
+                }
+            default:
+                // The event condition, all the events of the test match it
+                return true;
+        }
+    }
+}
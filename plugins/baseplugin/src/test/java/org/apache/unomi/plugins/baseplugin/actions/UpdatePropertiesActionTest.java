@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.plugins.baseplugin.actions;
+
+import org.apache.unomi.api.Event;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.actions.Action;
+import org.apache.unomi.api.services.EventService;
+import org.apache.unomi.api.services.ProfileService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class UpdatePropertiesActionTest {
+
+    private static final int PROPERTIES = 50;
+
+    private final UpdatePropertiesAction action = new UpdatePropertiesAction();
+
+    @Before
+    public void setUp() {
+        // A plain stub without property types
+        action.setProfileService((ProfileService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ProfileService.class},
+                (proxy, method, args) -> null));
+    }
+
+    @Test
+    public void testStrategies() {
+        Profile profile = new Profile("profile");
+        profile.setProperty("existing", "existing value");
+        profile.setProperty("interests", new ArrayList<>(Arrays.asList("sports")));
+        profile.setProperty("toDelete", "value");
+
+        Map<String, Object> propsToAdd = new HashMap<>();
+        propsToAdd.put("properties.existing", "ignored value");
+        propsToAdd.put("properties.added", "added value");
+        Map<String, Object> propsToUpdate = new HashMap<>();
+        propsToUpdate.put("properties.address.city", "Geneva");
+        Map<String, Object> propsToAddToSet = new HashMap<>();
+        propsToAddToSet.put("properties.interests", Arrays.asList("music", "sports"));
+
+        Event event = updatePropertiesEvent(profile, propsToAdd, propsToUpdate, propsToAddToSet,
+                new ArrayList<>(Collections.singletonList("properties.toDelete")));
+        assertEquals(EventService.PROFILE_UPDATED, action.execute(new Action(), event));
+        assertEquals("existing value", profile.getProperty("existing"));
+        assertEquals("added value", profile.getProperty("added"));
+        assertEquals("Geneva", ((Map) profile.getProperty("address")).get("city"));
+        assertEquals(new HashSet<>(Arrays.asList("music", "sports")), new HashSet<>((List) profile.getProperty("interests")));
+        assertFalse(profile.getProperties().containsKey("toDelete"));
+
+        event = updatePropertiesEvent(profile, propsToAdd, propsToUpdate, propsToAddToSet, new ArrayList<>());
+        assertEquals("Unchanged properties should not update the profile", EventService.NO_CHANGE, action.execute(new Action(), event));
+    }
+
+    @Test
+    public void testUpdateOfManyProperties() {
+        Profile profile = new Profile("profile");
+        Map<String, Object> propsToUpdate = new HashMap<>();
+        for (int i = 0; i < PROPERTIES; i++) {
+            propsToUpdate.put(i % 5 == 0 ? "properties.nested.property" + i : "properties.property" + i, "value " + i);
+        }
+
+        assertEquals(EventService.PROFILE_UPDATED, action.execute(new Action(), updatePropertiesEvent(profile, null, propsToUpdate, null, null)));
+        assertEquals(PROPERTIES - PROPERTIES / 5 + 1, profile.getProperties().size());
+        assertEquals("value 1", profile.getProperty("property1"));
+        Map<?, ?> nested = (Map<?, ?>) profile.getProperty("nested");
+        assertEquals(PROPERTIES / 5, nested.size());
+        assertEquals("value 5", nested.get("property5"));
+    }
+
+    private Event updatePropertiesEvent(Profile profile, Map<String, Object> propsToAdd, Map<String, Object> propsToUpdate,
+                                        Map<String, Object> propsToAddToSet, List<String> propsToDelete) {
+        Event event = new Event("updateProperties", null, profile, null, null, profile, new Date());
+        if (propsToAdd != null) {
+            event.setProperty(UpdatePropertiesAction.PROPS_TO_ADD, new HashMap<>(propsToAdd));
+        }
+        if (propsToUpdate != null) {
+            event.setProperty(UpdatePropertiesAction.PROPS_TO_UPDATE, new HashMap<>(propsToUpdate));
+        }
+        if (propsToAddToSet != null) {
+            event.setProperty(UpdatePropertiesAction.PROPS_TO_ADD_TO_SET, new HashMap<>(propsToAddToSet));
+        }
+        if (propsToDelete != null) {
+            event.setProperty(UpdatePropertiesAction.PROPS_TO_DELETE, propsToDelete);
+        }
+        return event;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.plugins.baseplugin.conditions;
+
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.persistence.spi.conditions.geo.DistanceUnit;
+import org.apache.unomi.persistence.spi.conditions.geo.GeoDistance;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GeoLocationByPointSessionConditionEvaluatorTest {
+
+    private final GeoLocationByPointSessionConditionEvaluator evaluator = new GeoLocationByPointSessionConditionEvaluator();
+
+    private static Session session(Object latitude, Object longitude) {
+        Session session = new Session("session", new Profile("profile"), new Date(), "scope");
+        Map<String, Object> location = new HashMap<>();
+        location.put("lat", latitude);
+        location.put("lon", longitude);
+        session.setProperty("location", location);
+        return session;
+    }
+
+    private static Condition circle(double latitude, double longitude, String distance) {
+        Condition condition = new Condition();
+        condition.setConditionTypeId("geoLocationByPointSessionCondition");
+        condition.setParameter("type", "circle");
+        condition.setParameter("circleLatitude", latitude);
+        condition.setParameter("circleLongitude", longitude);
+        condition.setParameter("distance", distance);
+        return condition;
+    }
+
+    private static Condition rectangle(double latitudeNE, double longitudeNE, double latitudeSW, double longitudeSW) {
+        Condition condition = new Condition();
+        condition.setConditionTypeId("geoLocationByPointSessionCondition");
+        condition.setParameter("type", "rectangle");
+        condition.setParameter("rectLatitudeNE", latitudeNE);
+        condition.setParameter("rectLongitudeNE", longitudeNE);
+        condition.setParameter("rectLatitudeSW", latitudeSW);
+        condition.setParameter("rectLongitudeSW", longitudeSW);
+        return condition;
+    }
+
+    private boolean eval(Condition condition, Session session) {
+        return evaluator.eval(condition, session, new HashMap<>(), null);
+    }
+
+    @Test
+    public void testCircle() {
+        Condition condition = circle(48.8566, 2.3522, "10km");
+
+        assertTrue(eval(condition, session(48.8606, 2.3376)));
+        assertFalse(eval(condition, session(45.7640, 4.8357)));
+        // Coordinates stored as strings
+        assertTrue(eval(condition, session("48.8606", "2.3376")));
+    }
+
+    @Test
+    public void testRectangle() {
+        Condition condition = rectangle(49.0, 3.0, 48.0, 2.0);
+
+        assertTrue(eval(condition, session(48.5, 2.5)));
+        assertFalse(eval(condition, session(48.5, 3.5)));
+        assertFalse(eval(condition, session(49.0, 2.5)));
+    }
+
+    @Test
+    public void testMissingLocationOrParameters() {
+        Session session = new Session("session", new Profile("profile"), new Date(), "scope");
+        assertFalse(eval(circle(48.8566, 2.3522, "10km"), session));
+
+        Condition incomplete = rectangle(49.0, 3.0, 48.0, 2.0);
+        incomplete.setParameter("rectLongitudeSW", null);
+        assertFalse(eval(incomplete, session(48.5, 2.5)));
+
+        Condition unknownType = circle(48.8566, 2.3522, "10km");
+        unknownType.setParameter("type", "polygon");
+        assertFalse(eval(unknownType, session(48.8606, 2.3376)));
+    }
+
+    @Test
+    public void testConditionIsPreparedOnceAndRefreshedOnChange() {
+        Condition condition = circle(48.8566, 2.3522, "10km");
+        Session session = session(48.8606, 2.3376);
+
+        assertTrue(eval(condition, session));
+        Object prepared = condition.getPreparedValue();
+        assertNotNull(prepared);
+        assertTrue(eval(condition, session));
+        assertSame(prepared, condition.getPreparedValue());
+
+        // Parameters changed in place are detected as well
+        condition.getParameterValues().put("distance", "100m");
+        assertFalse(eval(condition, session));
+        assertNotSame(prepared, condition.getPreparedValue());
+    }
+
+    @Test
+    public void testCircleMatchesPlaneDistance() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            double centerLatitude = random.nextDouble() * 160 - 80;
+            double centerLongitude = random.nextDouble() * 340 - 170;
+            double distance = 1 + random.nextDouble() * 500;
+            Condition condition = circle(centerLatitude, centerLongitude, distance + "km");
+            for (int j = 0; j < 50; j++) {
+                double latitude = centerLatitude + random.nextGaussian() * 5;
+                double longitude = centerLongitude + random.nextGaussian() * 5;
+                double planeDistance = GeoDistance.PLANE.calculate(centerLatitude, centerLongitude, latitude, longitude, DistanceUnit.KILOMETERS);
+                if (Math.abs(planeDistance - distance) < 1e-6) {
+                    continue;
+                }
+                assertEquals(planeDistance < distance, eval(condition, session(latitude, longitude)));
+            }
+        }
+    }
+}
@@ -25,12 +25,13 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class IdsConditionEvaluatorTest {
@@ -100,6 +101,49 @@ public class IdsConditionEvaluatorTest {
         assertTrue(evaluator.eval(idsCondition(Arrays.asList("profile-x", "profile-y"), false), profile, new HashMap<>(), dispatcher));
     }
 
+    // --- prepared id set ---
+
+    @Test
+    public void idSetIsPreparedOnceAndRefreshedOnChange() {
+        Condition condition = idsCondition(Arrays.asList("profile-a", "profile-b"), true);
+
+        assertTrue(evaluator.eval(condition, profile, new HashMap<>(), dispatcher));
+        Object prepared = condition.getPreparedValue();
+        assertNotNull(prepared);
+        assertTrue(evaluator.eval(condition, new Profile("profile-b"), new HashMap<>(), dispatcher));
+        assertSame(prepared, condition.getPreparedValue());
+
+        // A list replaced in place is detected
+        condition.getParameterValues().put("ids", Arrays.asList("profile-x"));
+        assertFalse(evaluator.eval(condition, profile, new HashMap<>(), dispatcher));
+        assertNotSame(prepared, condition.getPreparedValue());
+    }
+
+    @Test
+    public void largeExclusionList() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            ids.add("excluded-" + i);
+        }
+        Condition listCondition = idsCondition(ids, false);
+        List<Profile> profiles = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            profiles.add(new Profile(i % 2 == 0 ? "excluded-" + (i * 20) : "included-" + i));
+        }
+
+        assertEquals(profiles.size() / 2, evaluateAll(listCondition, profiles));
+    }
+
+    private int evaluateAll(Condition condition, List<Profile> profiles) {
+        int matches = 0;
+        for (Profile p : profiles) {
+            if (evaluator.eval(condition, p, new HashMap<>(), dispatcher)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
     // --- helper ---
 
     private Condition idsCondition(Object ids, Boolean match) {
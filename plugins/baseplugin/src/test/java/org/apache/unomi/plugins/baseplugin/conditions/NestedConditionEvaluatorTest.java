@@ -17,8 +17,12 @@
 package org.apache.unomi.plugins.baseplugin.conditions;
 
 import org.apache.unomi.api.Event;
+import org.apache.unomi.api.Item;
 import org.apache.unomi.api.Profile;
 import org.apache.unomi.api.Session;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluator;
+import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluatorDispatcher;
 import org.junit.Test;
 
 import java.util.*;
@@ -100,6 +104,58 @@ public class NestedConditionEvaluatorTest {
         assertNull(segment);
     }
 
+    @Test
+    public void testEval_manyNestedItems() {
+        PropertyConditionEvaluator propertyConditionEvaluator = new PropertyConditionEvaluator();
+        nestedConditionEvaluator.setPropertyConditionEvaluator(propertyConditionEvaluator);
+        ConditionEvaluatorDispatcher dispatcher = new ConditionEvaluatorDispatcher() {
+            @Override
+            public void addEvaluator(String name, ConditionEvaluator evaluator) {
+            }
+
+            @Override
+            public void removeEvaluator(String name) {
+            }
+
+            @Override
+            public boolean eval(Condition condition, Item item) {
+                return eval(condition, item, new HashMap<>());
+            }
+
+            @Override
+            public boolean eval(Condition condition, Item item, Map<String, Object> context) {
+                return propertyConditionEvaluator.eval(condition, item, context, this);
+            }
+        };
+
+        Profile profile = new Profile("profile");
+        List<Map<String, Object>> interests = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            interests.add(buildNestedInterest("interest" + i, i));
+        }
+        profile.setProperty("interests", interests);
+
+        Condition lastInterest = nestedCondition("properties.interests", "properties.interests.key", "interest499");
+        Condition missingInterest = nestedCondition("properties.interests", "properties.interests.key", "interest500");
+        Condition systemInterest = nestedCondition("systemProperties.interests", "systemProperties.interests.key", "interest0");
+        assertTrue(nestedConditionEvaluator.eval(lastInterest, profile, new HashMap<>(), dispatcher));
+        assertFalse(nestedConditionEvaluator.eval(missingInterest, profile, new HashMap<>(), dispatcher));
+        assertFalse(nestedConditionEvaluator.eval(systemInterest, profile, new HashMap<>(), dispatcher));
+        profile.setSystemProperty("interests", interests);
+        assertTrue(nestedConditionEvaluator.eval(systemInterest, profile, new HashMap<>(), dispatcher));
+    }
+
+    private Condition nestedCondition(String path, String propertyName, String value) {
+        Condition subCondition = new Condition();
+        subCondition.setParameter("propertyName", propertyName);
+        subCondition.setParameter("comparisonOperator", "equals");
+        subCondition.setParameter("propertyValue", value);
+        Condition condition = new Condition();
+        condition.setParameter("path", path);
+        condition.setParameter("subCondition", subCondition);
+        return condition;
+    }
+
     private Map<String, Object> buildNestedInterest(String key, Object value) {
         Map<String, Object> nestedInterest = new HashMap<>();
         nestedInterest.put("key", key);
@@ -24,6 +24,7 @@ import org.apache.cxf.rs.security.cors.CrossOriginResourceSharing;
 import org.apache.unomi.api.*;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.security.UnomiRoles;
+import org.apache.unomi.api.services.ExecutionContextManager;
 import org.apache.unomi.api.services.PersonalizationService;
 import org.apache.unomi.api.services.PrivacyService;
 import org.apache.unomi.api.services.ProfileService;
@@ -82,6 +83,8 @@ public class ContextJsonEndpoint {
     private ProfileService profileService;
     @Reference
     private TracerService tracerService;
+    @Reference
+    private ExecutionContextManager executionContextManager;
 
     @OPTIONS
     @Path("/context.js")
@@ -161,9 +164,16 @@ public class ContextJsonEndpoint {
             throw new ForbiddenException("Insufficient privileges to access tracing information");
         }
 
+        // Requests are traced when explicitly requested or when sampled for the tenant, in which case the trace is logged
+        boolean tracing = explain;
+        EventsRequestContext eventsRequestContext = null;
         try {
             if (explain) {
                 tracerService.enableTracing();
+            } else {
+                tracing = tracerService.enableSampledTracing(executionContextManager.getCurrentContext().getTenantId());
+            }
+            if (tracing) {
                 tracerService.getCurrentTracer().startOperation("context-request", "Processing context request", contextRequest);
             }
 
@@ -172,7 +182,7 @@ public class ContextJsonEndpoint {
             paramsAsJson.put("personaId", personaId);
             paramsAsJson.put("sessionId", sessionId);
             if (!schemaService.isValid(paramsAsJson.toString(), "https://unomi.apache.org/schemas/json/rest/requestIds/1-0-0")) {
-                if (explain) {
+                if (tracing) {
                     tracerService.getCurrentTracer().endOperation(false, "Schema validation failed");
                 }
                 throw new InvalidRequestException("Invalid parameter", "Invalid received data");
@@ -194,7 +204,7 @@ public class ContextJsonEndpoint {
             }
 
             // build public context, profile + session creation/anonymous etc ...
-            EventsRequestContext eventsRequestContext = restServiceUtils.initEventsRequest(scope, sessionId, profileId,
+            eventsRequestContext = restServiceUtils.initEventsRequest(scope, sessionId, profileId,
                     personaId, invalidateProfile, invalidateSession, request, response, timestamp);
 
             // Build response
@@ -214,15 +224,19 @@ public class ContextJsonEndpoint {
             }
 
             // Add tracing information if requested
-            if (explain) {
+            if (tracing) {
                 tracerService.getCurrentTracer().endOperation(null, "Context request processed successfully");
+            }
+            if (explain) {
                 contextResponse.setRequestTracing(tracerService.getTraceNode());
             }
 
             return contextResponse;
         } finally {
+            // release the profile if the request failed before being finalized
+            restServiceUtils.releaseEventsRequest(eventsRequestContext);
             try {
-                if (explain && tracerService != null) {
+                if (tracing && tracerService != null) {
                     tracerService.disableTracing();
                 }
             } finally {
@@ -246,11 +260,8 @@ public class ContextJsonEndpoint {
 
         List<PersonalizationService.PersonalizedContent> filterNodes = contextRequest.getFilters();
         if (filterNodes != null) {
-            data.setFilteringResults(new HashMap<>());
-            for (PersonalizationService.PersonalizedContent personalizedContent : sanitizePersonalizedContentObjects(filterNodes)) {
-                data.getFilteringResults()
-                        .put(personalizedContent.getId(), personalizationService.filter(eventsRequestContext.getProfile(), eventsRequestContext.getSession(), personalizedContent));
-            }
+            data.setFilteringResults(personalizationService.filter(eventsRequestContext.getProfile(), eventsRequestContext.getSession(),
+                    sanitizePersonalizedContentObjects(filterNodes)));
         }
 
         List<PersonalizationService.PersonalizationRequest> personalizations = contextRequest.getPersonalizations();
@@ -266,10 +277,12 @@ public class ContextJsonEndpoint {
         }
 
         if (contextRequest.isRequireSegments()) {
-            data.setProfileSegments(eventsRequestContext.getProfile().getSegments());
+            Set<String> segments = eventsRequestContext.getProfile().getSegments();
+            data.setProfileSegments(segments != null ? new HashSet<>(segments) : null);
         }
         if (contextRequest.isRequireScores()) {
-            data.setProfileScores(eventsRequestContext.getProfile().getScores());
+            Map<String, Integer> scores = eventsRequestContext.getProfile().getScores();
+            data.setProfileScores(scores != null ? new HashMap<>(scores) : null);
         }
 
         if (contextRequest.getRequiredProfileProperties() != null) {
@@ -283,7 +296,7 @@ public class ContextJsonEndpoint {
                 concealedProperties.removeAll(contextRequest.getRequiredProfileProperties().stream().filter(p -> !p.equals("*")).collect(Collectors.toList()));
                 profileProperties.keySet().removeAll(concealedProperties);
             }
-            data.setProfileProperties(profileProperties);
+            data.setProfileProperties(copyValues(profileProperties));
         }
 
         if (eventsRequestContext.getSession() != null) {
@@ -293,7 +306,7 @@ public class ContextJsonEndpoint {
                 if (!contextRequest.getRequiredSessionProperties().contains("*")) {
                     sessionProperties.keySet().retainAll(contextRequest.getRequiredSessionProperties());
                 }
-                data.setSessionProperties(sessionProperties);
+                data.setSessionProperties(copyValues(sessionProperties));
             }
         }
 
@@ -304,11 +317,42 @@ public class ContextJsonEndpoint {
         }
 
         data.setAnonymousBrowsing(privacyService.isRequireAnonymousBrowsing(eventsRequestContext.getProfile()));
-        data.setConsents(eventsRequestContext.getProfile().getConsents());
+        Map<String, Consent> consents = eventsRequestContext.getProfile().getConsents();
+        data.setConsents(consents != null ? new HashMap<>(consents) : null);
 
         return eventsRequestContext;
     }
 
+    /**
+     * Copies the maps and collections of the properties returned in the response: once the request is finalized, the
+     * profile and session may be modified by the next request for the same profile while the response is serialized.
+     */
+    private static Map<String, Object> copyValues(Map<String, Object> properties) {
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        } else if (value instanceof Collection) {
+            Collection<Object> copy = value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+            for (Object element : (Collection<Object>) value) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
     /**
      * This function will update the profile if it is from Persona instance.
      * The profile will be updated using the overrides attributes :
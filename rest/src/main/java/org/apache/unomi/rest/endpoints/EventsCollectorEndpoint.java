@@ -22,6 +22,7 @@ import org.apache.cxf.rs.security.cors.CrossOriginResourceSharing;
 import org.apache.unomi.api.Event;
 import org.apache.unomi.api.EventsCollectorRequest;
 import org.apache.unomi.api.security.UnomiRoles;
+import org.apache.unomi.api.services.ExecutionContextManager;
 import org.apache.unomi.rest.exception.InvalidRequestException;
 import org.apache.unomi.rest.models.EventCollectorResponse;
 import org.apache.unomi.rest.service.RestServiceUtils;
@@ -58,6 +59,9 @@ public class EventsCollectorEndpoint {
     @Reference
     private TracerService tracerService;
 
+    @Reference
+    private ExecutionContextManager executionContextManager;
+
     @Context
     HttpServletRequest request;
     @Context
@@ -98,9 +102,16 @@ public class EventsCollectorEndpoint {
             throw new ForbiddenException("Insufficient privileges to access tracing information");
         }
 
+        // Requests are traced when explicitly requested or when sampled for the tenant, in which case the trace is logged
+        boolean tracing = explain;
+        EventsRequestContext eventsRequestContext = null;
         try {
             if (explain) {
                 tracerService.enableTracing();
+            } else {
+                tracing = tracerService.enableSampledTracing(executionContextManager.getCurrentContext().getTenantId());
+            }
+            if (tracing) {
                 tracerService.getCurrentTracer().startOperation("event-collection", "Processing event collection request", eventsCollectorRequest);
             }
 
@@ -132,7 +143,7 @@ public class EventsCollectorEndpoint {
             }
 
             // build public context, profile + session creation/anonymous etc ...
-            EventsRequestContext eventsRequestContext = restServiceUtils.initEventsRequest(scope, sessionId, profileId, null, false, false,
+            eventsRequestContext = restServiceUtils.initEventsRequest(scope, sessionId, profileId, null, false, false,
                     request, response, timestamp);
 
             // process events
@@ -144,15 +155,19 @@ public class EventsCollectorEndpoint {
             EventCollectorResponse response = new EventCollectorResponse(eventsRequestContext.getChanges());
 
             // Add tracing information if requested
-            if (explain) {
+            if (tracing) {
                 tracerService.getCurrentTracer().endOperation(null, "Event collection request processed successfully");
+            }
+            if (explain) {
                 response.setRequestTracing(tracerService.getTraceNode());
             }
 
             return response;
         } finally {
+            // release the profile if the request failed before being finalized
+            restServiceUtils.releaseEventsRequest(eventsRequestContext);
             try {
-                if (explain && tracerService != null) {
+                if (tracing && tracerService != null) {
                     tracerService.disableTracing();
                 }
             } finally {
@@ -23,6 +23,7 @@ import org.apache.unomi.api.*;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.query.Query;
 import org.apache.unomi.api.services.EventService;
+import org.apache.unomi.api.services.ExecutionContextManager;
 import org.apache.unomi.api.services.ProfileService;
 import org.apache.unomi.api.services.SegmentService;
 import org.apache.unomi.persistence.spi.CustomObjectMapper;
@@ -37,7 +38,12 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -69,6 +75,9 @@ public class ProfileServiceEndPoint {
     @Reference
     private LocalizationHelper localizationHelper;
 
+    @Reference
+    private ExecutionContextManager executionContextManager;
+
     public ProfileServiceEndPoint() {
         LOGGER.info("Initializing profile service endpoint...");
     }
@@ -89,6 +98,10 @@ public class ProfileServiceEndPoint {
         this.localizationHelper = localizationHelper;
     }
 
+    public void setExecutionContextManager(ExecutionContextManager executionContextManager) {
+        this.executionContextManager = executionContextManager;
+    }
+
     /**
      * Retrieves the number of unique profiles.
      *
@@ -116,14 +129,15 @@ public class ProfileServiceEndPoint {
      * Retrieves an export of profiles matching the specified query as a downloadable file using the comma-separated values (CSV) format.
      *
      * @param query a String JSON representation of the query the profiles to export should match
+     * @param twoPass {@code true} (default) to give each profile property its own column, {@code false} to stream the rows right away
      * @return a Response object configured to allow caller to download the CSV export file
      */
     @GET
     @Path("/export")
     @Produces("text/csv")
-    public Response getExportProfiles(@QueryParam("query") String query) {
+    public Response getExportProfiles(@QueryParam("query") String query, @QueryParam("twoPass") @DefaultValue("true") boolean twoPass) {
         try {
-            return exportProfiles(CustomObjectMapper.getObjectMapper().readValue(query, Query.class));
+            return exportProfiles(CustomObjectMapper.getObjectMapper().readValue(query, Query.class), twoPass);
         } catch (IOException e) {
             LOGGER.error("{}", e.getMessage(), e);
             return Response.serverError().build();
@@ -131,18 +145,19 @@ public class ProfileServiceEndPoint {
     }
 
     /**
-     * A version of {@link #getExportProfiles(String)} suitable to be called from an HTML form.
+     * A version of {@link #getExportProfiles(String, boolean)} suitable to be called from an HTML form.
      *
      * @param query a form-encoded representation of the query the profiles to export should match
+     * @param twoPass {@code true} (default) to give each profile property its own column, {@code false} to stream the rows right away
      * @return a Response object configured to allow caller to download the CSV export file
      */
     @GET
     @Path("/export")
     @Produces("text/csv")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public Response formExportProfiles(@FormParam("query") String query) {
+    public Response formExportProfiles(@FormParam("query") String query, @QueryParam("twoPass") @DefaultValue("true") boolean twoPass) {
         try {
-            return exportProfiles(CustomObjectMapper.getObjectMapper().readValue(query, Query.class));
+            return exportProfiles(CustomObjectMapper.getObjectMapper().readValue(query, Query.class), twoPass);
         } catch (IOException e) {
             LOGGER.error("{}", e.getMessage(), e);
             return Response.serverError().build();
@@ -151,15 +166,30 @@ public class ProfileServiceEndPoint {
 
     /**
      * Retrieves an export of profiles matching the specified query as a downloadable file using the comma-separated values (CSV) format.
+     * The export is streamed to the client as the profiles are retrieved.
      *
      * @param query a String JSON representation of the query the profiles to export should match
+     * @param twoPass {@code true} (default) to give each profile property its own column, {@code false} to stream the rows right away,
+     *                properties without a known type being exported as JSON in a trailing column
      * @return a Response object configured to allow caller to download the CSV export file
      */
     @POST
     @Path("/export")
     @Produces("text/csv")
-    public Response exportProfiles(Query query) {
-        String toCsv = profileService.exportProfilesPropertiesToCsv(query);
+    public Response exportProfiles(Query query, @QueryParam("twoPass") @DefaultValue("true") boolean twoPass) {
+        // The output is written after the request context has been cleaned up, so the current context is restored while writing
+        ExecutionContext executionContext = executionContextManager.getCurrentContext();
+        StreamingOutput toCsv = output -> {
+            ExecutionContext previousContext = executionContextManager.getCurrentContext();
+            executionContextManager.setCurrentContext(executionContext);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                profileService.exportProfilesPropertiesToCsv(query, writer, twoPass);
+                writer.flush();
+            } finally {
+                executionContextManager.setCurrentContext(previousContext);
+            }
+        };
         Response.ResponseBuilder response = Response.ok(toCsv);
         response.header("Content-Disposition",
                 "attachment; filename=Profiles_export_" + new SimpleDateFormat("yyyy-MM-dd-HH-mm").format(new Date()) + ".csv");
@@ -74,6 +74,15 @@ public interface RestServiceUtils {
      */
     void finalizeEventsRequest(EventsRequestContext eventsRequestContext, boolean crashOnError);
 
+    /**
+     * Releases the resources held by an events request, allowing the next request for the same profile to be processed.
+     * It must be called once the request is processed, including when it failed, and has no effect if the resources were
+     * already released.
+     *
+     * @param eventsRequestContext the current EventsRequestContext, may be null
+     */
+    void releaseEventsRequest(EventsRequestContext eventsRequestContext);
+
     /**
      * Try to extract the current visitor profileId from the current request cookies.
      * @param httpServletRequest the current HTTP request
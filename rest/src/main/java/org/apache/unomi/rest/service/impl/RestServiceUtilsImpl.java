@@ -31,6 +31,7 @@ import org.apache.unomi.api.tenants.Tenant;
 import org.apache.unomi.api.tenants.TenantService;
 import org.apache.unomi.rest.authentication.RestAuthenticationConfig;
 import org.apache.unomi.rest.authentication.V2ThirdPartyConfigService;
+import org.apache.unomi.services.common.requests.ProfileRequestQueue;
 import org.apache.unomi.services.common.security.SecurityUtils;
 import org.apache.unomi.rest.exception.InvalidRequestException;
 import org.apache.unomi.rest.service.RestServiceUtils;
@@ -56,6 +57,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component(service = RestServiceUtils.class)
 public class RestServiceUtilsImpl implements RestServiceUtils {
@@ -64,6 +66,10 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RestServiceUtilsImpl.class.getName());
     public static final String UNOMI_TENANT_ID_HEADER = "X-Unomi-Tenant-Id";
+    // Beyond this number of requests waiting for the same profile, requests are rejected
+    private static final int MAX_QUEUED_REQUESTS_PER_PROFILE = 32;
+
+    private final ProfileRequestQueue profileRequestQueue = new ProfileRequestQueue(MAX_QUEUED_REQUESTS_PER_PROFILE);
 
     @Reference
     private ConfigSharingService configSharingService;
@@ -117,7 +123,18 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
 
         // Build context
         EventsRequestContext eventsRequestContext = new EventsRequestContext(timestamp, null, null, request, response);
+        try {
+            return initEventsRequest(eventsRequestContext, scope, sessionId, profileId, personaId, invalidateProfile, invalidateSession,
+                    request, response, timestamp);
+        } catch (RuntimeException e) {
+            releaseEventsRequest(eventsRequestContext);
+            throw e;
+        }
+    }
 
+    private EventsRequestContext initEventsRequest(EventsRequestContext eventsRequestContext, String scope, String sessionId, String profileId,
+                                                   String personaId, boolean invalidateProfile, boolean invalidateSession,
+                                                   HttpServletRequest request, HttpServletResponse response, Date timestamp) {
         // Handle persona
         if (personaId != null) {
             PersonaWithSessions personaWithSessions = profileService.loadPersonaWithSessions(personaId);
@@ -140,14 +157,53 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
             throw new BadRequestException("Couldn't find profileId, sessionId or personaId in incoming request!");
         }
 
+        // Requests for the same profile are processed one at a time, in order, the profile and session modified by the
+        // previous request may be handed over instead of being saved and loaded again
+        Profile pendingProfile = null;
+        Session pendingSession = null;
+        if (personaId == null && profileId != null && !invalidateProfile) {
+            ProfileRequestQueue.Slot slot;
+            try {
+                slot = profileRequestQueue.acquire(resolveTenantId(request), profileId);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Rejected request, too many requests are already queued for the same profile");
+                throw new WebApplicationException(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                        .entity("Too many concurrent requests for the same profile").build());
+            }
+            eventsRequestContext.setProfileRequestSlot(slot);
+            ProfileRequestQueue.PendingUpdate pendingUpdate = slot != null ? slot.takePendingUpdate() : null;
+            if (pendingUpdate != null) {
+                int pendingChanges = pendingUpdate.getChanges();
+                if (profileId.equals(pendingUpdate.getProfile().getItemId())) {
+                    pendingProfile = pendingUpdate.getProfile();
+                    eventsRequestContext.addChanges(pendingChanges & EventService.PROFILE_UPDATED);
+                } else if ((pendingChanges & EventService.PROFILE_UPDATED) == EventService.PROFILE_UPDATED) {
+                    profileService.save(pendingUpdate.getProfile());
+                }
+                Session session = pendingUpdate.getSession();
+                if (session != null && pendingProfile != null && !invalidateSession && session.getItemId().equals(sessionId)) {
+                    pendingSession = session;
+                    eventsRequestContext.addChanges(pendingChanges & EventService.SESSION_UPDATED);
+                } else if (session != null && (pendingChanges & EventService.SESSION_UPDATED) == EventService.SESSION_UPDATED) {
+                    profileService.saveSession(session);
+                }
+            }
+        }
+
         boolean profileCreated = false;
         if (eventsRequestContext.getProfile() == null) {
+            // The profile and the session are loaded together, unless they were handed over by the previous request
+            boolean loadProfile = profileId != null && !invalidateProfile && pendingProfile == null;
+            boolean loadSession = StringUtils.isNotBlank(sessionId) && !invalidateSession && pendingSession == null;
+            ProfileWithSession profileWithSession = loadProfile || loadSession ?
+                    profileService.loadProfileWithSession(loadProfile ? profileId : null, loadSession ? sessionId : null) : new ProfileWithSession();
+
             if (profileId == null || invalidateProfile) {
                 // no profileId cookie was found or the profile has to be invalidated, we generate a new one and create the profile in the profile service
                 eventsRequestContext.setProfile(createNewProfile(null, timestamp));
                 profileCreated = true;
             } else {
-                eventsRequestContext.setProfile(profileService.load(profileId));
+                eventsRequestContext.setProfile(pendingProfile != null ? pendingProfile : profileWithSession.getProfile());
                 if (eventsRequestContext.getProfile() == null) {
                     // this can happen if we have an old cookie but have reset the server,
                     // or if we merged the profiles and somehow this cookie didn't get updated.
@@ -160,7 +216,7 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
             Profile sessionProfile;
             if (StringUtils.isNotBlank(sessionId) && !invalidateSession) {
 
-                eventsRequestContext.setSession(profileService.loadSession(sessionId));
+                eventsRequestContext.setSession(pendingSession != null ? pendingSession : profileWithSession.getSession());
                 if (eventsRequestContext.getSession() != null) {
 
                     sessionProfile = eventsRequestContext.getSession().getProfile();
@@ -339,7 +395,8 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
         return eventsRequestContext;
     }
 
-    private static String resolveTenantId(HttpServletRequest request) {
+    // Not private, so that tests can resolve the tenant without a current CXF message
+    String resolveTenantId(HttpServletRequest request) {
         RolePrefixSecurityContextImpl rolePrefixSecurityContextImpl = (RolePrefixSecurityContextImpl) JAXRSUtils.getCurrentMessage().get(org.apache.cxf.security.SecurityContext.class);
         Subject subject = rolePrefixSecurityContextImpl.getSubject();
         Optional<Principal> optTenantPrincipal = subject.getPrincipals().stream().filter(principal -> principal instanceof TenantPrincipal).findFirst();
@@ -358,8 +415,61 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
 
     @Override
     public void finalizeEventsRequest(EventsRequestContext eventsRequestContext, boolean crashOnError) {
+        ProfileRequestQueue.Slot slot = eventsRequestContext.getProfileRequestSlot();
+        try {
+            int updates = eventsRequestContext.getChanges() & (EventService.PROFILE_UPDATED | EventService.SESSION_UPDATED);
+            if (slot != null && updates != EventService.NO_CHANGE && slot.hasQueuedRequests()
+                    && (eventsRequestContext.getChanges() & EventService.ERROR) != EventService.ERROR) {
+                // the next request for the profile continues with the modified profile and session, and saves them
+                slot.handOver(eventsRequestContext.getProfile(), eventsRequestContext.getSession(), updates);
+            } else {
+                saveChanges(eventsRequestContext);
+            }
+
+            // In case of error, return an error message
+            if ((eventsRequestContext.getChanges() & EventService.ERROR) == EventService.ERROR) {
+                if (crashOnError) {
+                    String errorMessage = "Error processing events. Total number of processed events: " + eventsRequestContext.getProcessedItems() + "/"
+                            + eventsRequestContext.getTotalItems();
+                    throw new BadRequestException(errorMessage);
+                } else {
+                    eventsRequestContext.getResponse().setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+            }
+
+            // Set profile cookie
+            if (!(eventsRequestContext.getProfile() instanceof Persona)) {
+                eventsRequestContext.getResponse().setHeader("Set-Cookie",
+                        HttpUtils.getProfileCookieString(eventsRequestContext.getProfile(), configSharingService, eventsRequestContext.getRequest().isSecure()));
+            }
+        } finally {
+            eventsRequestContext.setProfileRequestSlot(null);
+            if (slot != null) {
+                slot.release();
+            }
+        }
+    }
+
+    @Override
+    public void releaseEventsRequest(EventsRequestContext eventsRequestContext) {
+        if (eventsRequestContext == null || eventsRequestContext.getProfileRequestSlot() == null) {
+            return;
+        }
+        ProfileRequestQueue.Slot slot = eventsRequestContext.getProfileRequestSlot();
+        eventsRequestContext.setProfileRequestSlot(null);
+        try {
+            // The request was not finalized, the changes it may have received from the previous request must not be lost
+            saveChanges(eventsRequestContext);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error saving the profile or session of a failed request", e);
+        } finally {
+            slot.release();
+        }
+    }
+
+    private void saveChanges(EventsRequestContext eventsRequestContext) {
         // in case of changes on profile, persist the profile
-        if ((eventsRequestContext.getChanges() & EventService.PROFILE_UPDATED) == EventService.PROFILE_UPDATED) {
+        if ((eventsRequestContext.getChanges() & EventService.PROFILE_UPDATED) == EventService.PROFILE_UPDATED && eventsRequestContext.getProfile() != null) {
             profileService.save(eventsRequestContext.getProfile());
         }
 
@@ -367,23 +477,6 @@ public class RestServiceUtilsImpl implements RestServiceUtils {
         if ((eventsRequestContext.getChanges() & EventService.SESSION_UPDATED) == EventService.SESSION_UPDATED && eventsRequestContext.getSession() != null) {
             profileService.saveSession(eventsRequestContext.getSession());
         }
-
-        // In case of error, return an error message
-        if ((eventsRequestContext.getChanges() & EventService.ERROR) == EventService.ERROR) {
-            if (crashOnError) {
-                String errorMessage = "Error processing events. Total number of processed events: " + eventsRequestContext.getProcessedItems() + "/"
-                        + eventsRequestContext.getTotalItems();
-                throw new BadRequestException(errorMessage);
-            } else {
-                eventsRequestContext.getResponse().setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            }
-        }
-
-        // Set profile cookie
-        if (!(eventsRequestContext.getProfile() instanceof Persona)) {
-            eventsRequestContext.getResponse().setHeader("Set-Cookie",
-                    HttpUtils.getProfileCookieString(eventsRequestContext.getProfile(), configSharingService, eventsRequestContext.getRequest().isSecure()));
-        }
     }
 
     private Profile createNewProfile(String existingProfileId, Date timestamp) {
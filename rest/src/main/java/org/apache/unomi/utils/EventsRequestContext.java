@@ -19,6 +19,7 @@ package org.apache.unomi.utils;
 import org.apache.unomi.api.Profile;
 import org.apache.unomi.api.Session;
 import org.apache.unomi.api.services.EventService;
+import org.apache.unomi.services.common.requests.ProfileRequestQueue;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -42,6 +43,7 @@ public class EventsRequestContext {
     private int changes;
     private int totalItems;
     private int processedItems;
+    private ProfileRequestQueue.Slot profileRequestSlot;
 
     private EventsRequestContext() {
     }
@@ -128,4 +130,15 @@ public class EventsRequestContext {
     public void setResponse(HttpServletResponse response) {
         this.response = response;
     }
+
+    /**
+     * @return the slot serializing the requests for the profile, null if the request is not serialized
+     */
+    public ProfileRequestQueue.Slot getProfileRequestSlot() {
+        return profileRequestSlot;
+    }
+
+    public void setProfileRequestSlot(ProfileRequestQueue.Slot profileRequestSlot) {
+        this.profileRequestSlot = profileRequestSlot;
+    }
 }
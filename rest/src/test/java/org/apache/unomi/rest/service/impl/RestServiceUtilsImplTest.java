@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.rest.service.impl;
+
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.ProfileWithSession;
+import org.apache.unomi.api.Session;
+import org.apache.unomi.api.services.ConfigSharingService;
+import org.apache.unomi.api.services.EventService;
+import org.apache.unomi.api.services.PrivacyService;
+import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.utils.EventsRequestContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the serialization of the requests for the same profile by {@link RestServiceUtilsImpl}.
+ */
+class RestServiceUtilsImplTest {
+
+    private static final String SCOPE = "scope";
+
+    private final ConcurrentMap<String, Profile> storedProfiles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Session> storedSessions = new ConcurrentHashMap<>();
+
+    private ProfileService profileService;
+    private RestServiceUtilsImpl restServiceUtils;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        profileService = mock(ProfileService.class);
+        when(profileService.loadProfileWithSession(any(), any())).thenAnswer(invocation -> {
+            String profileId = invocation.getArgument(0);
+            String sessionId = invocation.getArgument(1);
+            return new ProfileWithSession(profileId != null ? copy(storedProfiles.get(profileId)) : null,
+                    sessionId != null ? storedSessions.get(sessionId) : null);
+        });
+        when(profileService.load(anyString())).thenAnswer(invocation -> copy(storedProfiles.get(invocation.<String>getArgument(0))));
+        when(profileService.save(any())).thenAnswer(invocation -> {
+            Profile profile = invocation.getArgument(0);
+            storedProfiles.put(profile.getItemId(), copy(profile));
+            return profile;
+        });
+
+        ConfigSharingService configSharingService = mock(ConfigSharingService.class);
+        when(configSharingService.getProperty("profileIdCookieName")).thenReturn("context-profile-id");
+        when(configSharingService.getProperty("profileIdCookieMaxAgeInSeconds")).thenReturn(31536000);
+        when(configSharingService.getProperty("profileIdCookieHttpOnly")).thenReturn(false);
+
+        PrivacyService privacyService = mock(PrivacyService.class);
+        when(privacyService.isRequireAnonymousBrowsing(any(Profile.class))).thenReturn(false);
+
+        restServiceUtils = new RestServiceUtilsImpl() {
+            @Override
+            String resolveTenantId(HttpServletRequest request) {
+                return "tenant1";
+            }
+        };
+        setField("profileService", profileService);
+        setField("configSharingService", configSharingService);
+        setField("privacyService", privacyService);
+        setField("eventService", mock(EventService.class));
+
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsDoNotLoseUpdates() throws Exception {
+        storedProfiles.put("profile1", new Profile("profile1"));
+        int requests = 16;
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.submit(() -> {
+                EventsRequestContext context = init("profile1", null);
+                Integer count = (Integer) context.getProfile().getProperty("count");
+                context.getProfile().setProperty("count", count != null ? count + 1 : 1);
+                context.addChanges(EventService.PROFILE_UPDATED);
+                restServiceUtils.finalizeEventsRequest(context, false);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(requests, storedProfiles.get("profile1").getProperty("count"));
+    }
+
+    @Test
+    void handedOverProfileOfAnotherIdIsSaved() throws Exception {
+        // The session of the first request belongs to another profile, which replaces the profile of the cookie
+        storedProfiles.put("profile1", new Profile("profile1"));
+        storedProfiles.put("profile2", new Profile("profile2"));
+        storedSessions.put("session1", new Session("session1", new Profile("profile2"), new Date(), SCOPE));
+
+        EventsRequestContext first = init("profile1", "session1");
+        assertEquals("profile2", first.getProfile().getItemId());
+        first.getProfile().setProperty("modified", true);
+        first.addChanges(EventService.PROFILE_UPDATED);
+
+        Future<EventsRequestContext> second = executor.submit(() -> init("profile1", null));
+        waitForQueuedRequest(first);
+        restServiceUtils.finalizeEventsRequest(first, false);
+
+        EventsRequestContext secondContext = second.get(5, TimeUnit.SECONDS);
+        assertEquals("profile1", secondContext.getProfile().getItemId());
+        assertEquals(true, storedProfiles.get("profile2").getProperty("modified"));
+        assertEquals(EventService.NO_CHANGE, secondContext.getChanges() & EventService.PROFILE_UPDATED);
+        restServiceUtils.finalizeEventsRequest(secondContext, false);
+        verify(profileService, times(1)).save(any());
+    }
+
+    @Test
+    void handedOverSessionIsSavedWhenTheNextRequestUsesAnotherSession() throws Exception {
+        Profile profile = new Profile("profile1");
+        storedProfiles.put("profile1", profile);
+        storedSessions.put("session1", new Session("session1", profile, new Date(), SCOPE));
+        storedSessions.put("session2", new Session("session2", profile, new Date(), SCOPE));
+
+        EventsRequestContext first = init("profile1", "session1");
+        first.getProfile().setProperty("modified", true);
+        first.getSession().setProperty("modified", true);
+        first.addChanges(EventService.PROFILE_UPDATED | EventService.SESSION_UPDATED);
+
+        Future<EventsRequestContext> second = executor.submit(() -> init("profile1", "session2"));
+        waitForQueuedRequest(first);
+        restServiceUtils.finalizeEventsRequest(first, false);
+
+        EventsRequestContext secondContext = second.get(5, TimeUnit.SECONDS);
+        verify(profileService).saveSession(first.getSession());
+        verify(profileService, never()).save(any());
+        assertSame(first.getProfile(), secondContext.getProfile());
+        assertEquals("session2", secondContext.getSession().getItemId());
+        assertEquals(EventService.PROFILE_UPDATED, secondContext.getChanges() & EventService.PROFILE_UPDATED);
+
+        restServiceUtils.finalizeEventsRequest(secondContext, false);
+        assertEquals(true, storedProfiles.get("profile1").getProperty("modified"));
+    }
+
+    @Test
+    void releasedRequestSavesTheHandedOverChanges() throws Exception {
+        storedProfiles.put("profile1", new Profile("profile1"));
+
+        EventsRequestContext first = init("profile1", null);
+        first.getProfile().setProperty("modified", true);
+        first.addChanges(EventService.PROFILE_UPDATED);
+
+        Future<EventsRequestContext> second = executor.submit(() -> init("profile1", null));
+        waitForQueuedRequest(first);
+        restServiceUtils.finalizeEventsRequest(first, false);
+        verify(profileService, never()).save(any());
+
+        // The second request fails before being finalized
+        EventsRequestContext secondContext = second.get(5, TimeUnit.SECONDS);
+        restServiceUtils.releaseEventsRequest(secondContext);
+        assertNull(secondContext.getProfileRequestSlot());
+        assertEquals(true, storedProfiles.get("profile1").getProperty("modified"));
+
+        EventsRequestContext third = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> init("profile1", null));
+        assertEquals(EventService.NO_CHANGE, third.getChanges() & EventService.PROFILE_UPDATED);
+        assertEquals(true, third.getProfile().getProperty("modified"));
+        restServiceUtils.finalizeEventsRequest(third, false);
+    }
+
+    private EventsRequestContext init(String profileId, String sessionId) {
+        return restServiceUtils.initEventsRequest(SCOPE, sessionId, profileId, null, false, false, request, response, new Date());
+    }
+
+    private static void waitForQueuedRequest(EventsRequestContext context) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (!context.getProfileRequestSlot().hasQueuedRequests()) {
+            assertTrue(System.currentTimeMillis() < timeout, "The next request should be queued");
+            Thread.sleep(1);
+        }
+    }
+
+    private static Profile copy(Profile profile) {
+        if (profile == null) {
+            return null;
+        }
+        Profile copy = new Profile(profile.getItemId());
+        copy.setProperties(new HashMap<>(profile.getProperties()));
+        copy.setSystemProperties(new HashMap<>(profile.getSystemProperties()));
+        return copy;
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = RestServiceUtilsImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(restServiceUtils, value);
+    }
+}
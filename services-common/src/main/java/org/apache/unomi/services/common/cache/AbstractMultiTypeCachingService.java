@@ -40,9 +40,8 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -108,6 +107,11 @@ public abstract class AbstractMultiTypeCachingService extends AbstractContextAwa
      */
     protected final Map<String, ScheduledTask> scheduledRefreshTasks = new ConcurrentHashMap<>();
 
+    /**
+     * Pool deserializing the predefined items of the bundles, created when first needed. Guarded by this.
+     */
+    private ExecutorService predefinedItemsExecutor;
+
     // Each service defines its supported types
     protected abstract Set<CacheableTypeConfig<?>> getTypeConfigs();
 
@@ -213,6 +217,7 @@ public abstract class AbstractMultiTypeCachingService extends AbstractContextAwa
     public void preDestroy() {
         bundleContext.removeBundleListener(this);
         shutdownTimers();
+        shutdownPredefinedItemsExecutor();
         logger.debug("{} service shutdown.", getClass().getSimpleName());
     }
 
@@ -555,38 +560,18 @@ public abstract class AbstractMultiTypeCachingService extends AbstractContextAwa
             entryList = Collections.list(entries);
         }
 
-        for (URL entryURL : entryList) {
-            logger.debug("Found predefined {} at {}, loading... ",
-                config.getType().getSimpleName(), entryURL);
+        final long bundleId = bundleContext.getBundle().getBundleId();
+        List<T> items = readPredefinedItems(bundleContext, config, entryList);
+        preparePredefinedItems(bundleContext, config, items.stream().filter(Objects::nonNull).collect(Collectors.toList()));
 
-            try {
-                final long bundleId = bundleContext.getBundle().getBundleId();
-                T item = null;
-
-                // Use the stream processor if available, otherwise use standard deserialization
-                if (config.hasStreamProcessor()) {
-                    try (InputStream inputStream = entryURL.openStream()) {
-                        item = config.getStreamProcessor().apply(bundleContext, entryURL, inputStream);
-                        if (item == null) {
-                            logger.warn("Stream processor returned null for {}", entryURL);
-                            continue;
-                        }
-                    } catch (Exception e) {
-                        logger.error("Error processing {} with stream processor: {}",
-                            entryURL, e.getMessage(), e);
-                        continue;
-                    }
-                } else {
-                    // Standard deserialization
-                    try (BufferedInputStream bis = new BufferedInputStream(entryURL.openStream())) {
-                        item = CustomObjectMapper.getObjectMapper().readValue(bis, config.getType());
-                    } catch (Exception e) {
-                        logger.error("Error deserializing {}: {}",
-                            entryURL, e.getMessage(), e);
-                        continue;
-                    }
-                }
+        for (int i = 0; i < entryList.size(); i++) {
+            URL entryURL = entryList.get(i);
+            T item = items.get(i);
+            if (item == null) {
+                continue;
+            }
 
+            try {
                 // Final item variable for lambda
                 final T finalItem = item;
 
@@ -650,6 +635,128 @@ public abstract class AbstractMultiTypeCachingService extends AbstractContextAwa
         }
     }
 
+    /**
+     * Reads the predefined items of a type from their JSON resources. Items read with the stream processor of the type
+     * are read sequentially, other items are deserialized in parallel.
+     *
+     * @return the items, in the order of the resources, with {@code null} for the resources that could not be read
+     */
+    private <T extends Serializable> List<T> readPredefinedItems(BundleContext bundleContext, CacheableTypeConfig<T> config, List<URL> entryList) {
+        if (!config.hasStreamProcessor()) {
+            return parsePredefinedItems(entryList, config.getType());
+        }
+        List<T> items = new ArrayList<>();
+        for (URL entryURL : entryList) {
+            logger.debug("Found predefined {} at {}, loading... ", config.getType().getSimpleName(), entryURL);
+            T item = null;
+            try (InputStream inputStream = entryURL.openStream()) {
+                item = config.getStreamProcessor().apply(bundleContext, entryURL, inputStream);
+                if (item == null) {
+                    logger.warn("Stream processor returned null for {}", entryURL);
+                }
+            } catch (Exception e) {
+                logger.error("Error processing {} with stream processor: {}",
+                    entryURL, e.getMessage(), e);
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Deserializes JSON resources in parallel, on a pool shared by the loadings of the service. Only the parsing runs in
+     * parallel: the deserialized items are then registered sequentially, in the order of the resources.
+     *
+     * @param entryList the URLs of the JSON resources
+     * @param type      the class of the items
+     * @param <T>       the type of the items
+     * @return the items, in the order of the resources, with {@code null} for the resources that could not be read
+     */
+    protected <T> List<T> parsePredefinedItems(List<URL> entryList, Class<T> type) {
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (URL entryURL : entryList) {
+            tasks.add(() -> {
+                logger.debug("Found predefined {} at {}, loading... ", type.getSimpleName(), entryURL);
+                try (BufferedInputStream bis = new BufferedInputStream(entryURL.openStream())) {
+                    return CustomObjectMapper.getObjectMapper().readValue(bis, type);
+                } catch (Exception e) {
+                    logger.error("Error deserializing {}: {}",
+                        entryURL, e.getMessage(), e);
+                    return null;
+                }
+            });
+        }
+
+        int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), tasks.size());
+        List<T> items = new ArrayList<>();
+        if (parallelism < 2) {
+            for (Callable<T> task : tasks) {
+                try {
+                    items.add(task.call());
+                } catch (Exception e) {
+                    items.add(null);
+                }
+            }
+            return items;
+        }
+
+        ExecutorService executorService = getPredefinedItemsExecutor();
+        try {
+            for (Future<T> future : executorService.invokeAll(tasks)) {
+                try {
+                    items.add(future.get());
+                } catch (ExecutionException e) {
+                    items.add(null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while reading predefined {} definitions", type.getSimpleName());
+            while (items.size() < tasks.size()) {
+                items.add(null);
+            }
+        }
+        return items;
+    }
+
+    private synchronized ExecutorService getPredefinedItemsExecutor() {
+        if (predefinedItemsExecutor == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            AtomicInteger threadCount = new AtomicInteger();
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "unomi-predefined-items-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            });
+            // The items are mostly loaded at startup, the threads do not outlive the loadings
+            executor.allowCoreThreadTimeOut(true);
+            predefinedItemsExecutor = executor;
+        }
+        return predefinedItemsExecutor;
+    }
+
+    private synchronized void shutdownPredefinedItemsExecutor() {
+        if (predefinedItemsExecutor != null) {
+            predefinedItemsExecutor.shutdownNow();
+            predefinedItemsExecutor = null;
+        }
+    }
+
+    /**
+     * Called with the predefined items of a type read from a bundle, before they are registered. Subclasses can override
+     * it to prepare the registration of the items, for instance by loading the persisted versions of all the items at
+     * once.
+     *
+     * @param bundleContext the context of the bundle providing the items
+     * @param config        the configuration of the type
+     * @param items         the items read from the bundle
+     * @param <T>           the type of the items
+     */
+    protected <T extends Serializable> void preparePredefinedItems(BundleContext bundleContext, CacheableTypeConfig<T> config, List<T> items) {
+    }
+
     /**
      * Handles OSGi bundle start and stop events to load or remove predefined items.
      *
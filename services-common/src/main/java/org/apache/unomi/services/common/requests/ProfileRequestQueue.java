@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.services.common.requests;
+
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serializes the requests processed for the same profile, in their order of arrival, while requests for different
+ * profiles run in parallel.
+ * <p>
+ * A request holding the slot of a profile can hand its modified profile and session over to the next queued request
+ * instead of saving them: the next request uses them without loading them again, and the last request of a burst saves
+ * the changes of all the requests at once. Concurrent requests therefore never overwrite each other's changes.
+ * <p>
+ * When too many requests are already queued for the same profile, the request is rejected, so that a single profile
+ * cannot hold all the request threads. Such a request cannot be processed without being serialized: it would load a
+ * profile whose changes may still be handed over between the queued requests, and overwrite them or be overwritten.
+ */
+public class ProfileRequestQueue {
+
+    private final int maxQueuedRequests;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxQueuedRequests the maximum number of requests waiting for the same profile, 0 to disable the
+     *                          serialization of requests
+     */
+    public ProfileRequestQueue(int maxQueuedRequests) {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    /**
+     * Waits until the previous requests for a profile are processed and takes the slot of the profile.
+     *
+     * @param tenantId the tenant of the profile
+     * @param key      the identifier of the profile, or of the session when the profile is not known
+     * @return the slot, which must be released once the request is processed, or {@code null} if the serialization of
+     * requests is disabled or no key is given
+     * @throws RejectedExecutionException if too many requests are already queued for the profile
+     */
+    public Slot acquire(String tenantId, String key) {
+        if (maxQueuedRequests <= 0 || key == null) {
+            return null;
+        }
+        boolean[] queued = new boolean[1];
+        Entry entry = entries.compute((tenantId != null ? tenantId : "") + "\u0000" + key, (entryKey, existingEntry) -> {
+            if (existingEntry == null) {
+                existingEntry = new Entry(entryKey);
+            } else if (existingEntry.users > maxQueuedRequests) {
+                return existingEntry;
+            }
+            existingEntry.users++;
+            queued[0] = true;
+            return existingEntry;
+        });
+        if (!queued[0]) {
+            throw new RejectedExecutionException("Too many requests are already queued for the profile");
+        }
+        entry.lock.acquireUninterruptibly();
+        return new Slot(entry);
+    }
+
+    /**
+     * @return the number of profiles with requests being processed or queued
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void release(Entry entry) {
+        entry.lock.release();
+        entries.computeIfPresent(entry.key, (entryKey, existingEntry) -> --existingEntry.users == 0 ? null : existingEntry);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final Semaphore lock = new Semaphore(1, true);
+        // The requests holding or waiting for the lock, guarded by the map
+        private int users;
+        // Guarded by the lock
+        private PendingUpdate pendingUpdate;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The changes of a profile and a session which were handed over to the next request instead of being saved.
+     */
+    public static final class PendingUpdate {
+        private final Profile profile;
+        private final Session session;
+        private final int changes;
+
+        private PendingUpdate(Profile profile, Session session, int changes) {
+            this.profile = profile;
+            this.session = session;
+            this.changes = changes;
+        }
+
+        public Profile getProfile() {
+            return profile;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        /**
+         * @return the changes of the profile and session, as {@link org.apache.unomi.api.services.EventService} flags
+         */
+        public int getChanges() {
+            return changes;
+        }
+    }
+
+    /**
+     * The exclusive right of a request to be processed for a profile.
+     */
+    public final class Slot {
+        private final Entry entry;
+        private boolean released;
+
+        private Slot(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * @return {@code true} if other requests are waiting for the profile
+         */
+        public boolean hasQueuedRequests() {
+            return entry.lock.hasQueuedThreads();
+        }
+
+        /**
+         * Takes the changes handed over by the previous request, which must be used or saved by the current request.
+         *
+         * @return the pending update, or {@code null} if the previous request saved its changes
+         */
+        public PendingUpdate takePendingUpdate() {
+            PendingUpdate update = entry.pendingUpdate;
+            entry.pendingUpdate = null;
+            return update;
+        }
+
+        /**
+         * Hands the changes of the current request over to the next queued request, which will save them.
+         *
+         * @param profile the profile
+         * @param session the session
+         * @param changes the changes of the profile and session, as {@link org.apache.unomi.api.services.EventService}
+         *                flags
+         */
+        public void handOver(Profile profile, Session session, int changes) {
+            entry.pendingUpdate = new PendingUpdate(profile, session, changes);
+        }
+
+        /**
+         * Releases the slot, which is then taken by the next queued request. Releasing a slot more than once has no
+         * effect.
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                ProfileRequestQueue.this.release(entry);
+            }
+        }
+    }
+}
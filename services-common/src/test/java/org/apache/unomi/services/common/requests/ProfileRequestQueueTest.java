@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.services.common.requests;
+
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.services.EventService;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ProfileRequestQueueTest {
+
+    @Test
+    public void testRequestsForDifferentProfilesRunInParallel() throws Exception {
+        ProfileRequestQueue queue = new ProfileRequestQueue(32);
+        ProfileRequestQueue.Slot slot = queue.acquire("tenant", "profile1");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ProfileRequestQueue.Slot> otherProfileSlot = executor.submit(() -> queue.acquire("tenant", "profile2"));
+            assertNotNull(otherProfileSlot.get(5, TimeUnit.SECONDS));
+            otherProfileSlot.get().release();
+
+            Future<ProfileRequestQueue.Slot> otherTenantSlot = executor.submit(() -> queue.acquire("otherTenant", "profile1"));
+            assertNotNull(otherTenantSlot.get(5, TimeUnit.SECONDS));
+            otherTenantSlot.get().release();
+
+            Future<ProfileRequestQueue.Slot> sameProfileSlot = executor.submit(() -> queue.acquire("tenant", "profile1"));
+            try {
+                sameProfileSlot.get(100, TimeUnit.MILLISECONDS);
+                fail("A request for the same profile should wait for the previous one");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            assertTrue(slot.hasQueuedRequests());
+            slot.handOver(new Profile("profile1"), null, EventService.PROFILE_UPDATED);
+            slot.release();
+            slot.release();
+
+            ProfileRequestQueue.Slot nextSlot = sameProfileSlot.get(5, TimeUnit.SECONDS);
+            ProfileRequestQueue.PendingUpdate pendingUpdate = nextSlot.takePendingUpdate();
+            assertEquals("profile1", pendingUpdate.getProfile().getItemId());
+            assertEquals(EventService.PROFILE_UPDATED, pendingUpdate.getChanges());
+            assertNull(nextSlot.takePendingUpdate());
+            nextSlot.release();
+            assertEquals("Released slots should be removed", 0, queue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRequestsAreRejectedWhenTheQueueIsFull() throws Exception {
+        assertNull(new ProfileRequestQueue(0).acquire("tenant", "profile"));
+
+        ProfileRequestQueue queue = new ProfileRequestQueue(1);
+        assertNull(queue.acquire("tenant", null));
+        ProfileRequestQueue.Slot slot = queue.acquire("tenant", "profile");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ProfileRequestQueue.Slot> queuedSlot = executor.submit(() -> queue.acquire("tenant", "profile"));
+            while (!slot.hasQueuedRequests()) {
+                Thread.sleep(1);
+            }
+            try {
+                queue.acquire("tenant", "profile");
+                fail("Requests beyond the maximum should be rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            assertNotNull("Other profiles should not be affected", queue.acquire("tenant", "otherProfile"));
+            slot.release();
+            queuedSlot.get(5, TimeUnit.SECONDS).release();
+            assertEquals(1, queue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
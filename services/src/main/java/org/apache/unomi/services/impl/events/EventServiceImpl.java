@@ -25,6 +25,7 @@ import org.apache.unomi.api.query.Query;
 import org.apache.unomi.api.services.DefinitionsService;
 import org.apache.unomi.api.services.EventListenerService;
 import org.apache.unomi.api.services.EventService;
+import org.apache.unomi.api.services.ExecutionContextManager;
 import org.apache.unomi.api.services.TypeResolutionService;
 import org.apache.unomi.api.tenants.Tenant;
 import org.apache.unomi.api.tenants.TenantService;
@@ -38,9 +39,12 @@ import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class EventServiceImpl implements EventService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventServiceImpl.class);
@@ -111,6 +115,19 @@ public class EventServiceImpl implements EventService {
 
     private TracerService tracerService;
 
+    private ExecutionContextManager contextManager;
+
+    private int raisedEventsIndexMaxEntries = 100000;
+    private long raisedEventsIndexTimeToLive = 600000;
+    private volatile RaisedEventsIndex raisedEventsIndex = new RaisedEventsIndex(raisedEventsIndexMaxEntries, raisedEventsIndexTimeToLive);
+    private int raisedEventsIndexMaxEventTypes = 32;
+    private Integer purgeEventExistTime = 0;
+    private Integer purgeEventInterval = 0;
+
+    /** Event types checked with {@link #hasEventAlreadyBeenRaised(Event, boolean)}, covered by the filters of the new items. */
+    private final Set<String> raisedEventTypes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean raisedEventTypesLimitLogged = new AtomicBoolean();
+
     public void setPredefinedEventTypeIds(Set<String> predefinedEventTypeIds) {
         this.predefinedEventTypeIds = predefinedEventTypeIds;
     }
@@ -147,6 +164,32 @@ public class EventServiceImpl implements EventService {
         this.tracerService = tracerService;
     }
 
+    public void setContextManager(ExecutionContextManager contextManager) {
+        this.contextManager = contextManager;
+    }
+
+    public void setRaisedEventsIndexMaxEntries(int raisedEventsIndexMaxEntries) {
+        this.raisedEventsIndexMaxEntries = raisedEventsIndexMaxEntries;
+        this.raisedEventsIndex = new RaisedEventsIndex(raisedEventsIndexMaxEntries, raisedEventsIndexTimeToLive);
+    }
+
+    public void setRaisedEventsIndexTimeToLive(long raisedEventsIndexTimeToLive) {
+        this.raisedEventsIndexTimeToLive = raisedEventsIndexTimeToLive;
+        this.raisedEventsIndex = new RaisedEventsIndex(raisedEventsIndexMaxEntries, raisedEventsIndexTimeToLive);
+    }
+
+    public void setRaisedEventsIndexMaxEventTypes(int raisedEventsIndexMaxEventTypes) {
+        this.raisedEventsIndexMaxEventTypes = raisedEventsIndexMaxEventTypes;
+    }
+
+    public void setPurgeEventExistTime(Integer purgeEventExistTime) {
+        this.purgeEventExistTime = purgeEventExistTime;
+    }
+
+    public void setPurgeEventInterval(Integer purgeEventInterval) {
+        this.purgeEventInterval = purgeEventInterval;
+    }
+
     @Override
     public boolean isEventAllowedForTenant(Event event, String tenantId, String sourceIP) {
         if (event == null || tenantId == null) {
@@ -325,6 +368,9 @@ public class EventServiceImpl implements EventService {
                     }
                 }
             }
+            if (event.isPersistent()) {
+                changes |= recordRaisedEvent(event);
+            }
         } else {
             changes = ERROR;
         }
@@ -492,6 +538,23 @@ public class EventServiceImpl implements EventService {
     }
 
     public boolean hasEventAlreadyBeenRaised(Event event, boolean session) {
+        addRaisedEventType(event.getEventType());
+        SystemPropertiesItem item = session ? getEventSession(event) : getEventProfile(event);
+        if (item != null && Boolean.FALSE.equals(RaisedEventsIndex.mightHaveBeenRaised(item, event))) {
+            return false;
+        }
+        String scopeId = session ? "session:" + event.getSessionId() : "profile:" + event.getProfileId();
+        if (raisedEventsIndex.isConfirmed(getCurrentTenantId(), scopeId, event)) {
+            return true;
+        }
+        if (queryEventAlreadyBeenRaised(event, session)) {
+            raisedEventsIndex.confirm(getCurrentTenantId(), scopeId, event);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean queryEventAlreadyBeenRaised(Event event, boolean session) {
         List<Condition> conditions = new ArrayList<Condition>();
 
         Condition profileIdCondition = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
@@ -530,6 +593,80 @@ public class EventServiceImpl implements EventService {
         return size > 0;
     }
 
+    private void addRaisedEventType(String eventType) {
+        if (raisedEventTypes.contains(eventType)) {
+            return;
+        }
+        if (raisedEventTypes.size() < raisedEventsIndexMaxEventTypes) {
+            raisedEventTypes.add(eventType);
+        } else if (raisedEventTypesLimitLogged.compareAndSet(false, true)) {
+            LOGGER.warn("The raised events filters cover at most {} event types, the events of type {} and of the other new types will be checked with a query. "
+                    + "Increase event.raisedEventsIndex.maxEventTypes to cover more event types.", raisedEventsIndexMaxEventTypes, eventType);
+        }
+    }
+
+    /**
+     * Records a persisted event in the filters of its session and profile, creating them for the items which have
+     * never been loaded nor saved, and caches it as raised if its type is checked with
+     * {@link #hasEventAlreadyBeenRaised(Event, boolean)}.
+     */
+    private int recordRaisedEvent(Event event) {
+        if (event.getTarget() == null || event.getEventType() == null) {
+            return NO_CHANGE;
+        }
+        int changes = NO_CHANGE;
+        Collection<String> eventTypes = new ArrayList<>(raisedEventTypes);
+        LocalDate expirationDay = getRaisedEventsExpirationDay();
+        Session session = getEventSession(event);
+        if (session != null && RaisedEventsIndex.record(session, event, isNewItem(session) ? eventTypes : null, expirationDay)) {
+            changes |= SESSION_UPDATED;
+        }
+        Profile profile = getEventProfile(event);
+        if (profile != null && RaisedEventsIndex.record(profile, event, isNewItem(profile) ? eventTypes : null, expirationDay)) {
+            changes |= PROFILE_UPDATED;
+        }
+        if (raisedEventTypes.contains(event.getEventType())) {
+            if (event.getSessionId() != null) {
+                raisedEventsIndex.confirm(getCurrentTenantId(), "session:" + event.getSessionId(), event);
+            }
+            if (event.getProfileId() != null) {
+                raisedEventsIndex.confirm(getCurrentTenantId(), "profile:" + event.getProfileId(), event);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * The filter generations of the days before the returned one only hold purged events: they are kept for the purge
+     * interval and one more day, so that no generation is dropped while its events may still exist.
+     */
+    private LocalDate getRaisedEventsExpirationDay() {
+        if (purgeEventExistTime == null || purgeEventExistTime <= 0) {
+            return null;
+        }
+        int interval = purgeEventInterval != null && purgeEventInterval > 0 ? purgeEventInterval : 0;
+        return LocalDate.now(ZoneOffset.UTC).minusDays(purgeEventExistTime + interval + 1L);
+    }
+
+    private String getCurrentTenantId() {
+        return contextManager != null && contextManager.getCurrentContext() != null ? contextManager.getCurrentContext().getTenantId() : null;
+    }
+
+    private static boolean isNewItem(Item item) {
+        // Loaded items have a version, or at least the index they were read from when the version was not requested
+        return (item.getVersion() == null || item.getVersion() == 0) && item.getSystemMetadata("index") == null;
+    }
+
+    private static Session getEventSession(Event event) {
+        Session session = event.getSession();
+        return session != null && session.getItemId() != null && session.getItemId().equals(event.getSessionId()) ? session : null;
+    }
+
+    private static Profile getEventProfile(Event event) {
+        Profile profile = event.getProfile();
+        return profile != null && profile.getItemId() != null && profile.getItemId().equals(event.getProfileId()) ? profile : null;
+    }
+
     public void addEventListenerService(EventListenerService eventListenerService) {
         eventListeners.add(eventListenerService);
     }
@@ -558,6 +695,7 @@ public class EventServiceImpl implements EventService {
         profileCondition.setParameter("propertyValue", profileId);
 
         persistenceService.removeByQuery(profileCondition,Event.class);
+        raisedEventsIndex.clear();
     }
 
     @Override
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.services.impl.events;
+
+import org.apache.unomi.api.Event;
+import org.apache.unomi.api.SystemPropertiesItem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index of the events already raised for a session or a profile, used to answer
+ * {@link org.apache.unomi.api.services.EventService#hasEventAlreadyBeenRaised(Event, boolean)} without querying the
+ * events.
+ * <p>
+ * Each session and profile holds, in its {@link #SYSTEM_PROPERTY} system property, a Bloom filter of the event type and
+ * target of the events raised for it, along with the event types the filter covers. The filter never misses an event
+ * recorded in it, so an event type and target not found in the filter has not been raised and no query is needed. A
+ * match may be a false positive and is confirmed by a query, whose positive result is kept in a bounded local cache.
+ * Cache entries expire after a time to live; when the cache is full, it is cleared.
+ * <p>
+ * The filter is split in daily generations, holding the events raised on each day (UTC), so that the generations can
+ * be dropped once their events are purged. The bits of a generation are stored as the keys of a map, so that the
+ * partial updates of concurrent requests, on this node or on other ones, add up their bits instead of overwriting each
+ * other.
+ * <p>
+ * A filter only covers the event types it was created with: only the events sent through the event service once the
+ * filter exists are recorded in it, so it is created with the item, and the events of the other types are checked with a
+ * query.
+ */
+public class RaisedEventsIndex {
+
+    public static final String SYSTEM_PROPERTY = "raisedEvents";
+
+    static final int BITS = 1 << 16;
+    static final int HASHES = 3;
+
+    private static final String EVENT_TYPES = "eventTypes";
+    private static final String DAYS = "days";
+    private static final String SEPARATOR = "\u0000";
+
+    private final int maxEntries;
+    private final long timeToLive;
+
+    private final ConcurrentMap<String, Long> confirmedEvents = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxEntries the maximum number of cached confirmations, 0 to disable the cache
+     * @param timeToLive the time to live of the confirmations, in milliseconds
+     */
+    public RaisedEventsIndex(int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Checks the filter of a session or a profile for an event.
+     *
+     * @param item  the session or the profile
+     * @param event the event
+     * @return {@code false} if an event with the same type and target has not been raised for the item, {@code true} if
+     * it may have been, or {@code null} if the item has no filter covering the type of the event
+     */
+    public static Boolean mightHaveBeenRaised(SystemPropertiesItem item, Event event) {
+        Map<?, ?> index = getIndex(item);
+        if (index == null || !(index.get(EVENT_TYPES) instanceof Collection) || !(index.get(DAYS) instanceof Map)
+                || !((Collection<?>) index.get(EVENT_TYPES)).contains(event.getEventType())) {
+            return null;
+        }
+        String[] bits = bits(event);
+        for (Object generation : ((Map<?, ?>) index.get(DAYS)).values()) {
+            if (generation instanceof Map && containsAll((Map<?, ?>) generation, bits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records an event in the filter of a session or a profile, in the generation of the day it was raised on.
+     *
+     * @param item           the session or the profile
+     * @param event          the event
+     * @param eventTypes     the event types covered by the filter if it must be created, or {@code null} to only update
+     *                       an existing filter
+     * @param expirationDay  the generations of the days before this one are dropped, or {@code null} to keep them
+     * @return {@code true} if the system properties of the item changed
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean record(SystemPropertiesItem item, Event event, Collection<String> eventTypes, LocalDate expirationDay) {
+        Map<String, Object> systemProperties = item.getSystemProperties();
+        if (systemProperties == null) {
+            return false;
+        }
+        Map<String, Object> index = (Map<String, Object>) getIndex(item);
+        boolean changed = false;
+        if (index == null) {
+            if (eventTypes == null || eventTypes.isEmpty()) {
+                return false;
+            }
+            index = new LinkedHashMap<>();
+            index.put(EVENT_TYPES, new ArrayList<>(eventTypes));
+            index.put(DAYS, new LinkedHashMap<String, Object>());
+            systemProperties.put(SYSTEM_PROPERTY, index);
+            changed = true;
+        } else if (!(index.get(EVENT_TYPES) instanceof Collection) || !(index.get(DAYS) instanceof Map)) {
+            return false;
+        }
+        Map<String, Object> days = (Map<String, Object>) index.get(DAYS);
+        if (expirationDay != null) {
+            changed |= days.keySet().removeIf(day -> isExpired(day, expirationDay));
+        }
+        if (((Collection<?>) index.get(EVENT_TYPES)).contains(event.getEventType())) {
+            String day = getDay(event).toString();
+            if (!(days.get(day) instanceof Map)) {
+                days.put(day, new LinkedHashMap<String, Object>());
+            }
+            Map<String, Object> generation = (Map<String, Object>) days.get(day);
+            for (String bit : bits(event)) {
+                changed |= generation.putIfAbsent(bit, Boolean.TRUE) == null;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param tenantId the tenant of the event
+     * @param scopeId  the identifier of the session or profile, prefixed by its type
+     * @param event    the event
+     * @return {@code true} if an event with the same type and target is known to have been raised for the session or
+     * profile
+     */
+    public boolean isConfirmed(String tenantId, String scopeId, Event event) {
+        String key = key(tenantId, scopeId, event);
+        Long expirationTime = confirmedEvents.get(key);
+        if (expirationTime == null) {
+            return false;
+        }
+        if (expirationTime < System.currentTimeMillis()) {
+            confirmedEvents.remove(key, expirationTime);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Caches the fact that an event with the same type and target has been raised for a session or a profile.
+     *
+     * @param tenantId the tenant of the event
+     * @param scopeId  the identifier of the session or profile, prefixed by its type
+     * @param event    the event
+     */
+    public void confirm(String tenantId, String scopeId, Event event) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (confirmedEvents.size() >= maxEntries) {
+            confirmedEvents.clear();
+        }
+        confirmedEvents.put(key(tenantId, scopeId, event), System.currentTimeMillis() + timeToLive);
+    }
+
+    public void clear() {
+        confirmedEvents.clear();
+    }
+
+    public int size() {
+        return confirmedEvents.size();
+    }
+
+    private static Map<?, ?> getIndex(SystemPropertiesItem item) {
+        Map<String, Object> systemProperties = item.getSystemProperties();
+        Object index = systemProperties != null ? systemProperties.get(SYSTEM_PROPERTY) : null;
+        return index instanceof Map ? (Map<?, ?>) index : null;
+    }
+
+    private static LocalDate getDay(Event event) {
+        Date timeStamp = event.getTimeStamp() != null ? event.getTimeStamp() : new Date();
+        return timeStamp.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static boolean isExpired(String day, LocalDate expirationDay) {
+        try {
+            return LocalDate.parse(day).isBefore(expirationDay);
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    private static boolean containsAll(Map<?, ?> generation, String[] bits) {
+        for (String bit : bits) {
+            if (!generation.containsKey(bit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String fingerprint(Event event) {
+        return event.getEventType() + SEPARATOR + event.getTarget().getItemType() + SEPARATOR + event.getTarget().getItemId();
+    }
+
+    private static String key(String tenantId, String scopeId, Event event) {
+        return (tenantId != null ? tenantId : "") + SEPARATOR + scopeId + SEPARATOR + fingerprint(event);
+    }
+
+    private static String[] bits(Event event) {
+        // FNV-1a, with the double hashing scheme to derive the positions of the bits
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : fingerprint(event).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        long step = Long.rotateLeft(hash * 0x9e3779b97f4a7c15L, 31) | 1;
+        String[] bits = new String[HASHES];
+        for (int i = 0; i < HASHES; i++) {
+            bits[i] = Long.toString(Math.floorMod(hash + i * step, (long) BITS));
+        }
+        return bits;
+    }
+}
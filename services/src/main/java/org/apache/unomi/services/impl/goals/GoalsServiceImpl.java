@@ -17,6 +17,7 @@
 
 package org.apache.unomi.services.impl.goals;
 
+import org.apache.unomi.api.Event;
 import org.apache.unomi.api.Metadata;
 import org.apache.unomi.api.PartialList;
 import org.apache.unomi.api.Profile;
@@ -24,6 +25,7 @@ import org.apache.unomi.api.Session;
 import org.apache.unomi.api.actions.Action;
 import org.apache.unomi.api.campaigns.Campaign;
 import org.apache.unomi.api.campaigns.CampaignDetail;
+import org.apache.unomi.api.campaigns.CampaignStatistics;
 import org.apache.unomi.api.campaigns.events.CampaignEvent;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.goals.Goal;
@@ -35,9 +37,11 @@ import org.apache.unomi.api.services.ConditionValidationService.ValidationError;
 import org.apache.unomi.api.services.ConditionValidationService.ValidationErrorType;
 import org.apache.unomi.api.services.DefinitionsService;
 import org.apache.unomi.api.services.GoalsService;
+import org.apache.unomi.api.services.RuleListenerService;
 import org.apache.unomi.api.services.RulesService;
 import org.apache.unomi.api.services.TypeResolutionService;
 import org.apache.unomi.api.services.cache.CacheableTypeConfig;
+import org.apache.unomi.api.tasks.ScheduledTask;
 import org.apache.unomi.persistence.spi.aggregate.*;
 import org.apache.unomi.services.common.cache.AbstractMultiTypeCachingService;
 import org.apache.unomi.tracing.api.RequestTracer;
@@ -46,12 +50,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 
-public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements GoalsService {
+public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements GoalsService, RuleListenerService {
     private static final Logger LOGGER = LoggerFactory.getLogger(GoalsServiceImpl.class.getName());
 
+    /**
+     * Adds the counters accumulated on a node to the persisted statistics in a single atomic update of the document.
+     */
+    private static final String INCREMENT_CAMPAIGN_STATISTICS_SCRIPT = """
+            /* incrementCampaignStatistics */
+            ctx._source.engagedProfiles = (ctx._source.engagedProfiles == null ? 0 : ctx._source.engagedProfiles) + params.engagedProfiles;
+            ctx._source.engagedSessions = (ctx._source.engagedSessions == null ? 0 : ctx._source.engagedSessions) + params.engagedSessions;
+            for (String field : ['goalStartedSessions', 'goalReachedSessions']) {
+                if (ctx._source[field] == null) {
+                    ctx._source[field] = [:];
+                }
+                for (entry in params[field].entrySet()) {
+                    def current = ctx._source[field][entry.getKey()];
+                    ctx._source[field][entry.getKey()] = (current == null ? 0 : current) + entry.getValue();
+                }
+            }
+            ctx._source.lastSyncDate = params.lastSyncDate;
+            """;
+
     private DefinitionsService definitionsService;
 
     private RulesService rulesService;
@@ -60,6 +86,20 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
 
     private long goalRefreshInterval = 5000; // 5 seconds
     private long campaignRefreshInterval = 5000; // 5 seconds
+    private long campaignStatisticsSyncInterval = 10000; // 10 seconds
+    private long campaignStatisticsReconciliationInterval = 3600000; // 1 hour
+
+    /**
+     * Campaign statistics as last synchronized with the persistence, by tenant and statistics identifier.
+     */
+    private final Map<String, Map<String, CampaignStatistics>> campaignStatisticsByTenant = new ConcurrentHashMap<>();
+    /**
+     * Counters accumulated on this node since the last synchronization, by tenant and statistics identifier.
+     */
+    private final Map<String, Map<String, LocalCampaignCounters>> localCampaignCountersByTenant = new ConcurrentHashMap<>();
+
+    private ScheduledTask statisticsSyncTask;
+    private ScheduledTask statisticsReconciliationTask;
 
     public void setDefinitionsService(DefinitionsService definitionsService) {
         this.definitionsService = definitionsService;
@@ -89,13 +129,42 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
         this.campaignRefreshInterval = campaignRefreshInterval;
     }
 
+    public void setCampaignStatisticsSyncInterval(long campaignStatisticsSyncInterval) {
+        this.campaignStatisticsSyncInterval = campaignStatisticsSyncInterval;
+    }
+
+    public void setCampaignStatisticsReconciliationInterval(long campaignStatisticsReconciliationInterval) {
+        this.campaignStatisticsReconciliationInterval = campaignStatisticsReconciliationInterval;
+    }
+
     public void postConstruct() {
         super.postConstruct();
+
+        // Local counters are pushed by every node, reconciliation only needs to run on one node of the cluster
+        statisticsSyncTask = schedulerService.newTask("campaign-statistics-sync")
+            .nonPersistent()
+            .withPeriod(campaignStatisticsSyncInterval, TimeUnit.MILLISECONDS)
+            .withFixedDelay()
+            .withSimpleExecutor(() -> contextManager.executeAsSystem(() -> syncCampaignStatistics()))
+            .schedule();
+        statisticsReconciliationTask = schedulerService.newTask("campaign-statistics-reconciliation")
+            .withPeriod(campaignStatisticsReconciliationInterval, TimeUnit.MILLISECONDS)
+            .withFixedDelay()
+            .asSystemTask()
+            .withSimpleExecutor(() -> contextManager.executeAsSystem(() -> reconcileCampaignStatistics()))
+            .schedule();
+
         LOGGER.info("Goal service initialized.");
     }
 
     public void preDestroy() {
         super.preDestroy();
+        if (statisticsSyncTask != null) {
+            schedulerService.cancelTask(statisticsSyncTask.getItemId());
+        }
+        if (statisticsReconciliationTask != null) {
+            schedulerService.cancelTask(statisticsReconciliationTask.getItemId());
+        }
         LOGGER.info("Goal service shutdown.");
     }
 
@@ -448,31 +517,13 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
         }
 
         CampaignDetail campaignDetail = new CampaignDetail(campaign);
+        String campaignId = campaign.getMetadata().getId();
+        CampaignStatistics statistics = getCampaignStatistics(campaignId);
 
-        // engaged profile
-        Condition profileEngagedCondition = new Condition(definitionsService.getConditionType("profilePropertyCondition"));
-        profileEngagedCondition.setParameter("propertyName", "systemProperties.campaigns." + campaign.getMetadata().getId() + "Engaged");
-        profileEngagedCondition.setParameter("comparisonOperator", "exists");
-        campaignDetail.setEngagedProfiles(persistenceService.queryCount(profileEngagedCondition, Profile.ITEM_TYPE));
-
-        // number of goals
-        Condition campaignGoalsCondition = new Condition(definitionsService.getConditionType("sessionPropertyCondition"));
-        campaignGoalsCondition.setParameter("propertyName", "campaignId");
-        campaignGoalsCondition.setParameter("comparisonOperator", "equals");
-        campaignGoalsCondition.setParameter("propertyValue", campaign.getMetadata().getId());
-        campaignDetail.setNumberOfGoals(persistenceService.queryCount(campaignGoalsCondition, Goal.ITEM_TYPE));
-
-        // sessions
-        Condition sessionEngagedCondition = new Condition(definitionsService.getConditionType("sessionPropertyCondition"));
-        sessionEngagedCondition.setParameter("propertyName", "systemProperties.campaigns." + campaign.getMetadata().getId() + "Engaged");
-        sessionEngagedCondition.setParameter("comparisonOperator", "exists");
-        campaignDetail.setCampaignSessionViews(persistenceService.queryCount(sessionEngagedCondition, Session.ITEM_TYPE));
-
-        // sessions
-        Condition sessionConvertedCondition = new Condition(definitionsService.getConditionType("sessionPropertyCondition"));
-        sessionConvertedCondition.setParameter("propertyName", "systemProperties.goals." + campaign.getPrimaryGoal() + "TargetReached");
-        sessionConvertedCondition.setParameter("comparisonOperator", "exists");
-        campaignDetail.setCampaignSessionSuccess(persistenceService.queryCount(sessionConvertedCondition, Session.ITEM_TYPE));
+        campaignDetail.setEngagedProfiles(statistics.getEngagedProfiles());
+        campaignDetail.setNumberOfGoals(getCampaignGoalMetadatas(campaignId).size());
+        campaignDetail.setCampaignSessionViews(statistics.getEngagedSessions());
+        campaignDetail.setCampaignSessionSuccess(getGoalReachedSessions(campaign.getPrimaryGoal()));
 
         // conversion
         campaignDetail.setConversionRate((double) campaignDetail.getCampaignSessionSuccess() / (campaignDetail.getCampaignSessionViews() > 0  ? (double) campaignDetail.getCampaignSessionViews() : 1));
@@ -489,6 +540,7 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
         }
         rulesService.removeRule(id + "EntryEvent");
         removeItem(id, Campaign.class, Campaign.ITEM_TYPE);
+        removeCampaignStatistics(id);
     }
 
     public void setCampaign(Campaign campaign) {
@@ -512,13 +564,26 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
     }
 
     public GoalReport getGoalReport(String goalId, AggregateQuery query) {
+        Goal g = getGoal(goalId);
+
+        if ((query == null || (query.getCondition() == null && query.getAggregate() == null))
+                && g != null && (g.getStartEvent() != null || g.getCampaignId() != null)) {
+            // Global stats are served from the materialized counters
+            GoalReport report = new GoalReport();
+            GoalReport.Stat stat = new GoalReport.Stat();
+            stat.setStartCount(g.getStartEvent() != null ? getGoalStartedSessions(g) : getCampaignStatistics(g.getCampaignId()).getEngagedSessions());
+            stat.setTargetCount(getGoalReachedSessions(goalId));
+            stat.setConversionRate(stat.getStartCount() > 0 ? (float) stat.getTargetCount() / (float) stat.getStartCount() : 0);
+            report.setGlobalStats(stat);
+            report.setSplit(new LinkedList<GoalReport.Stat>());
+            return report;
+        }
+
         Condition condition = new Condition(definitionsService.getConditionType("booleanCondition"));
         final ArrayList<Condition> list = new ArrayList<Condition>();
         condition.setParameter("operator", "and");
         condition.setParameter("subConditions", list);
 
-        Goal g = getGoal(goalId);
-
         Condition goalTargetCondition = new Condition(definitionsService.getConditionType("sessionPropertyCondition"));
         goalTargetCondition.setParameter("propertyName",  "systemProperties.goals." + goalId+ "TargetReached");
         goalTargetCondition.setParameter("comparisonOperator", "exists");
@@ -582,14 +647,14 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
             list.add(goalTargetCondition);
             match = persistenceService.aggregateWithOptimizedQuery(condition, aggregate, Session.ITEM_TYPE);
         } else {
-            list.add(goalStartCondition);
+            Map<String, Condition> queries = new LinkedHashMap<>();
+            queries.put("start", createAndCondition(list, goalStartCondition));
+            queries.put("target", createAndCondition(list, goalTargetCondition));
+            Map<String, Long> counts = persistenceService.queryCounts(queries, Session.ITEM_TYPE);
             all = new HashMap<String, Long>();
-            all.put("_filtered", persistenceService.queryCount(condition, Session.ITEM_TYPE));
-
-            list.remove(goalStartCondition);
-            list.add(goalTargetCondition);
+            all.put("_filtered", counts.get("start"));
             match = new HashMap<String, Long>();
-            match.put("_filtered", persistenceService.queryCount(condition, Session.ITEM_TYPE));
+            match.put("_filtered", counts.get("target"));
         }
 
         GoalReport report = new GoalReport();
@@ -616,6 +681,381 @@ public class GoalsServiceImpl extends AbstractMultiTypeCachingService implements
         return report;
     }
 
+    /**
+     * Retrieves the statistics of a campaign, or of the goals not attached to a campaign, combining the last
+     * synchronized values with the counters accumulated on this node since. Statistics that were never materialized
+     * are computed from the profiles and sessions on first access.
+     *
+     * @param statisticsId the campaign identifier, or {@link CampaignStatistics#NO_CAMPAIGN_ID}
+     * @return the statistics, never null
+     */
+    private CampaignStatistics getCampaignStatistics(String statisticsId) {
+        String tenantId = contextManager.getCurrentContext().getTenantId();
+        Map<String, CampaignStatistics> tenantStatistics = getCampaignStatisticsForTenant(tenantId);
+        CampaignStatistics synced = tenantStatistics.get(statisticsId);
+        if (synced == null) {
+            synced = persistenceService.load(statisticsId, CampaignStatistics.class);
+            if (synced == null) {
+                // Computing from the source data already includes the local counters
+                LocalCampaignCounters localCounters = getLocalCampaignCountersForTenant(tenantId).get(statisticsId);
+                if (localCounters != null) {
+                    localCounters.reset();
+                }
+                synced = computeCampaignStatistics(statisticsId);
+                persistenceService.save(synced);
+            }
+            tenantStatistics.put(statisticsId, synced);
+        }
+
+        CampaignStatistics statistics = new CampaignStatistics(statisticsId);
+        statistics.setTenantId(tenantId);
+        statistics.setEngagedProfiles(synced.getEngagedProfiles());
+        statistics.setEngagedSessions(synced.getEngagedSessions());
+        statistics.setGoalStartedSessions(new HashMap<>(synced.getGoalStartedSessions()));
+        statistics.setGoalReachedSessions(new HashMap<>(synced.getGoalReachedSessions()));
+        statistics.setLastSyncDate(synced.getLastSyncDate());
+        statistics.setLastReconciliationDate(synced.getLastReconciliationDate());
+
+        LocalCampaignCounters localCounters = getLocalCampaignCountersForTenant(tenantId).get(statisticsId);
+        if (localCounters != null) {
+            localCounters.addTo(statistics);
+        }
+        return statistics;
+    }
+
+    private long getGoalStartedSessions(Goal goal) {
+        Long count = getCampaignStatistics(getStatisticsId(goal)).getGoalStartedSessions().get(goal.getMetadata().getId());
+        return count != null ? count : 0;
+    }
+
+    private long getGoalReachedSessions(String goalId) {
+        Goal goal = goalId != null ? getGoal(goalId) : null;
+        if (goal == null) {
+            return 0;
+        }
+        Long count = getCampaignStatistics(getStatisticsId(goal)).getGoalReachedSessions().get(goalId);
+        return count != null ? count : 0;
+    }
+
+    private static String getStatisticsId(Goal goal) {
+        return goal.getCampaignId() != null ? goal.getCampaignId() : CampaignStatistics.NO_CAMPAIGN_ID;
+    }
+
+    /**
+     * Computes the statistics of a campaign, or of the goals not attached to a campaign, from the profiles and
+     * sessions.
+     */
+    private CampaignStatistics computeCampaignStatistics(String statisticsId) {
+        CampaignStatistics statistics = new CampaignStatistics(statisticsId);
+        // All the session counts are retrieved at once
+        Map<String, Condition> sessionQueries = new LinkedHashMap<>();
+        if (!CampaignStatistics.NO_CAMPAIGN_ID.equals(statisticsId)) {
+            statistics.setEngagedProfiles(persistenceService.queryCount(
+                    createPropertyExistsCondition("profilePropertyCondition", "systemProperties.campaigns." + statisticsId + "Engaged"), Profile.ITEM_TYPE));
+            sessionQueries.put("engaged", createPropertyExistsCondition("sessionPropertyCondition", "systemProperties.campaigns." + statisticsId + "Engaged"));
+        }
+        for (Goal goal : getAllItems(Goal.class, true)) {
+            if (!statisticsId.equals(getStatisticsId(goal))) {
+                continue;
+            }
+            String goalId = goal.getMetadata().getId();
+            if (goal.getStartEvent() != null) {
+                sessionQueries.put("start." + goalId, createPropertyExistsCondition("sessionPropertyCondition", "systemProperties.goals." + goalId + "StartReached"));
+            }
+            sessionQueries.put("target." + goalId, createPropertyExistsCondition("sessionPropertyCondition", "systemProperties.goals." + goalId + "TargetReached"));
+        }
+        if (!sessionQueries.isEmpty()) {
+            for (Map.Entry<String, Long> count : persistenceService.queryCounts(sessionQueries, Session.ITEM_TYPE).entrySet()) {
+                String key = count.getKey();
+                if (key.equals("engaged")) {
+                    statistics.setEngagedSessions(count.getValue());
+                } else if (key.startsWith("start.")) {
+                    statistics.getGoalStartedSessions().put(key.substring("start.".length()), count.getValue());
+                } else {
+                    statistics.getGoalReachedSessions().put(key.substring("target.".length()), count.getValue());
+                }
+            }
+        }
+        statistics.setLastReconciliationDate(new Date());
+        return statistics;
+    }
+
+    private Condition createAndCondition(List<Condition> subConditions, Condition condition) {
+        List<Condition> allSubConditions = new ArrayList<>(subConditions);
+        allSubConditions.add(condition);
+        Condition andCondition = new Condition(definitionsService.getConditionType("booleanCondition"));
+        andCondition.setParameter("operator", "and");
+        andCondition.setParameter("subConditions", allSubConditions);
+        return andCondition;
+    }
+
+    private Condition createPropertyExistsCondition(String conditionTypeId, String propertyName) {
+        Condition condition = new Condition(definitionsService.getConditionType(conditionTypeId));
+        condition.setParameter("propertyName", propertyName);
+        condition.setParameter("comparisonOperator", "exists");
+        return condition;
+    }
+
+    private void removeCampaignStatistics(String campaignId) {
+        String tenantId = contextManager.getCurrentContext().getTenantId();
+        getCampaignStatisticsForTenant(tenantId).remove(campaignId);
+        getLocalCampaignCountersForTenant(tenantId).remove(campaignId);
+        persistenceService.remove(campaignId, CampaignStatistics.class);
+    }
+
+    /**
+     * Adds the counters accumulated on this node to the persisted statistics and reloads the statistics updated by
+     * the other nodes of the cluster.
+     * <p>
+     * The counters are added with an atomic scripted update, so that the nodes synchronizing at the same time do not
+     * overwrite each other's counters. Counters accumulated since before the last reconciliation are dropped, as the
+     * reconciliation recomputed the statistics from the data they were counted from.
+     */
+    void syncCampaignStatistics() {
+        for (String tenantId : getTenants()) {
+            contextManager.executeAsTenant(tenantId, () -> {
+                Map<String, CampaignStatistics> persistedStatistics = new HashMap<>();
+                for (CampaignStatistics statistics : persistenceService.getAllItems(CampaignStatistics.class)) {
+                    persistedStatistics.put(statistics.getItemId(), statistics);
+                }
+                for (Map.Entry<String, LocalCampaignCounters> entry : getLocalCampaignCountersForTenant(tenantId).entrySet()) {
+                    CampaignStatistics statistics = persistedStatistics.get(entry.getKey());
+                    if (statistics == null) {
+                        // Never materialized: computing from the source data already includes the local counters
+                        entry.getValue().reset();
+                        statistics = computeCampaignStatistics(entry.getKey());
+                        statistics.setLastSyncDate(new Date());
+                        persistenceService.save(statistics);
+                        persistedStatistics.put(entry.getKey(), statistics);
+                        continue;
+                    }
+                    CampaignStatistics delta = new CampaignStatistics(entry.getKey());
+                    long since = entry.getValue().drainTo(delta);
+                    if (since < 0) {
+                        continue;
+                    }
+                    if (statistics.getLastReconciliationDate() != null && since < statistics.getLastReconciliationDate().getTime()) {
+                        LOGGER.debug("Dropping the counters of campaign statistics {} accumulated before their reconciliation", entry.getKey());
+                        continue;
+                    }
+                    if (incrementCampaignStatistics(delta)) {
+                        CampaignStatistics updatedStatistics = persistenceService.load(entry.getKey(), CampaignStatistics.class);
+                        if (updatedStatistics != null) {
+                            persistedStatistics.put(entry.getKey(), updatedStatistics);
+                        }
+                    } else {
+                        // Added again at the next synchronization
+                        entry.getValue().restore(delta);
+                    }
+                }
+                Map<String, CampaignStatistics> tenantStatistics = getCampaignStatisticsForTenant(tenantId);
+                tenantStatistics.keySet().retainAll(persistedStatistics.keySet());
+                tenantStatistics.putAll(persistedStatistics);
+            });
+        }
+    }
+
+    private boolean incrementCampaignStatistics(CampaignStatistics delta) {
+        Map<String, Object> scriptParams = new HashMap<>();
+        scriptParams.put("engagedProfiles", delta.getEngagedProfiles());
+        scriptParams.put("engagedSessions", delta.getEngagedSessions());
+        scriptParams.put("goalStartedSessions", delta.getGoalStartedSessions());
+        scriptParams.put("goalReachedSessions", delta.getGoalReachedSessions());
+        scriptParams.put("lastSyncDate", new Date());
+        try {
+            // A new item is used so that the update is not bound to the sequence number of a loaded document
+            return persistenceService.updateWithScript(new CampaignStatistics(delta.getItemId()), CampaignStatistics.class,
+                    INCREMENT_CAMPAIGN_STATISTICS_SCRIPT, scriptParams);
+        } catch (Exception e) {
+            LOGGER.warn("Error while adding the counters of campaign statistics {}", delta.getItemId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Recomputes the statistics of all the campaigns and goals from the profiles and sessions, correcting any drift of
+     * the incremental counters (merged or deleted profiles, purged sessions). The counters accumulated on this node are
+     * included in the recomputed statistics and are reset; the other nodes drop the counters they accumulated before
+     * the reconciliation date at their next synchronization.
+     */
+    void reconcileCampaignStatistics() {
+        for (String tenantId : getTenants()) {
+            contextManager.executeAsTenant(tenantId, () -> {
+                Set<String> statisticsIds = new HashSet<>();
+                for (Campaign campaign : getAllItems(Campaign.class, false)) {
+                    statisticsIds.add(campaign.getMetadata().getId());
+                }
+                for (Goal goal : getAllItems(Goal.class, false)) {
+                    statisticsIds.add(getStatisticsId(goal));
+                }
+                Map<String, CampaignStatistics> tenantStatistics = getCampaignStatisticsForTenant(tenantId);
+                Map<String, LocalCampaignCounters> localCounters = getLocalCampaignCountersForTenant(tenantId);
+                for (String statisticsId : statisticsIds) {
+                    LocalCampaignCounters counters = localCounters.get(statisticsId);
+                    if (counters != null) {
+                        counters.reset();
+                    }
+                    CampaignStatistics statistics = computeCampaignStatistics(statisticsId);
+                    persistenceService.save(statistics);
+                    tenantStatistics.put(statisticsId, statistics);
+                }
+            });
+        }
+    }
+
+    private Map<String, CampaignStatistics> getCampaignStatisticsForTenant(String tenantId) {
+        return campaignStatisticsByTenant.computeIfAbsent(tenantId, k -> new ConcurrentHashMap<>());
+    }
+
+    private Map<String, LocalCampaignCounters> getLocalCampaignCountersForTenant(String tenantId) {
+        return localCampaignCountersByTenant.computeIfAbsent(tenantId, k -> new ConcurrentHashMap<>());
+    }
+
+    private LocalCampaignCounters getLocalCampaignCounters(String statisticsId) {
+        String tenantId = contextManager.getCurrentContext().getTenantId();
+        return getLocalCampaignCountersForTenant(tenantId).computeIfAbsent(statisticsId, k -> new LocalCampaignCounters());
+    }
+
+    @Override
+    public void onEvaluate(Rule rule, Event event) {
+    }
+
+    @Override
+    public void onAlreadyRaised(AlreadyRaisedFor alreadyRaisedFor, Rule rule, Event event) {
+    }
+
+    /**
+     * Maintains the campaign and goal counters when one of the rules generated for them is about to execute its
+     * actions. The session and profile still hold the values from before the actions, so a missing property means
+     * that the session or profile is counted for the first time.
+     */
+    @Override
+    public void onExecuteActions(Rule rule, Event event) {
+        if (rule.getMetadata() == null || !rule.getMetadata().isHidden() || rule.getMetadata().getId() == null) {
+            return;
+        }
+        String ruleId = rule.getMetadata().getId();
+        Session session = event.getSession();
+        Profile profile = event.getProfile();
+        if (ruleId.endsWith("EntryEvent")) {
+            String campaignId = ruleId.substring(0, ruleId.length() - "EntryEvent".length());
+            if (getCampaign(campaignId) == null) {
+                return;
+            }
+            String propertyName = campaignId + "Engaged";
+            LocalCampaignCounters counters = getLocalCampaignCounters(campaignId);
+            if (session != null && !hasSystemProperty(session.getSystemProperties(), "campaigns", propertyName)) {
+                counters.increment(counters.engagedSessions);
+            }
+            if (profile != null && !hasSystemProperty(profile.getSystemProperties(), "campaigns", propertyName)) {
+                counters.increment(counters.engagedProfiles);
+            }
+        } else if (ruleId.endsWith("StartEvent") || ruleId.endsWith("TargetEvent")) {
+            boolean start = ruleId.endsWith("StartEvent");
+            String goalId = ruleId.substring(0, ruleId.length() - (start ? "StartEvent" : "TargetEvent").length());
+            Goal goal = getGoal(goalId);
+            String propertyName = goalId + (start ? "StartReached" : "TargetReached");
+            if (goal == null || session == null || hasSystemProperty(session.getSystemProperties(), "goals", propertyName)) {
+                return;
+            }
+            LocalCampaignCounters counters = getLocalCampaignCounters(getStatisticsId(goal));
+            counters.increment((start ? counters.goalStartedSessions : counters.goalReachedSessions)
+                    .computeIfAbsent(goalId, k -> new AtomicLong()));
+        }
+    }
+
+    private static boolean hasSystemProperty(Map<String, Object> systemProperties, String group, String propertyName) {
+        Object values = systemProperties != null ? systemProperties.get(group) : null;
+        return values instanceof Map && ((Map<?, ?>) values).get(propertyName) != null;
+    }
+
+    /**
+     * Campaign and goal counters accumulated on this node since the last synchronization.
+     */
+    private static class LocalCampaignCounters {
+        private final AtomicLong engagedProfiles = new AtomicLong();
+        private final AtomicLong engagedSessions = new AtomicLong();
+        private final Map<String, AtomicLong> goalStartedSessions = new ConcurrentHashMap<>();
+        private final Map<String, AtomicLong> goalReachedSessions = new ConcurrentHashMap<>();
+        // Time of the first increment since the counters were last drained, 0 when there is none
+        private final AtomicLong since = new AtomicLong();
+
+        private void increment(AtomicLong counter) {
+            since.compareAndSet(0, System.currentTimeMillis());
+            counter.incrementAndGet();
+        }
+
+        /**
+         * Adds the local counters to the given statistics, without resetting them.
+         *
+         * @param statistics the statistics to update
+         */
+        private void addTo(CampaignStatistics statistics) {
+            statistics.setEngagedProfiles(statistics.getEngagedProfiles() + engagedProfiles.get());
+            statistics.setEngagedSessions(statistics.getEngagedSessions() + engagedSessions.get());
+            addTo(statistics.getGoalStartedSessions(), goalStartedSessions);
+            addTo(statistics.getGoalReachedSessions(), goalReachedSessions);
+        }
+
+        private static void addTo(Map<String, Long> target, Map<String, AtomicLong> counters) {
+            for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+                if (entry.getValue().get() != 0) {
+                    target.merge(entry.getKey(), entry.getValue().get(), Long::sum);
+                }
+            }
+        }
+
+        /**
+         * Moves the local counters to the given statistics, which are expected to be empty.
+         *
+         * @param delta the statistics receiving the counters
+         * @return the time of the first drained increment, or -1 if there was none
+         */
+        private long drainTo(CampaignStatistics delta) {
+            long firstIncrement = since.getAndSet(0);
+            delta.setEngagedProfiles(engagedProfiles.getAndSet(0));
+            delta.setEngagedSessions(engagedSessions.getAndSet(0));
+            boolean drained = delta.getEngagedProfiles() != 0 || delta.getEngagedSessions() != 0;
+            drained |= drainTo(delta.getGoalStartedSessions(), goalStartedSessions);
+            drained |= drainTo(delta.getGoalReachedSessions(), goalReachedSessions);
+            // Increments racing with the drain may have been drained without their time
+            return drained ? (firstIncrement != 0 ? firstIncrement : System.currentTimeMillis()) : -1;
+        }
+
+        private static boolean drainTo(Map<String, Long> target, Map<String, AtomicLong> counters) {
+            boolean drained = false;
+            for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+                long value = entry.getValue().getAndSet(0);
+                if (value != 0) {
+                    target.put(entry.getKey(), value);
+                    drained = true;
+                }
+            }
+            return drained;
+        }
+
+        /**
+         * Adds drained counters back to the local counters, when they could not be persisted.
+         *
+         * @param delta the drained counters
+         */
+        private void restore(CampaignStatistics delta) {
+            since.compareAndSet(0, System.currentTimeMillis());
+            engagedProfiles.addAndGet(delta.getEngagedProfiles());
+            engagedSessions.addAndGet(delta.getEngagedSessions());
+            delta.getGoalStartedSessions().forEach((goalId, value) -> goalStartedSessions.computeIfAbsent(goalId, k -> new AtomicLong()).addAndGet(value));
+            delta.getGoalReachedSessions().forEach((goalId, value) -> goalReachedSessions.computeIfAbsent(goalId, k -> new AtomicLong()).addAndGet(value));
+        }
+
+        private void reset() {
+            since.set(0);
+            engagedProfiles.set(0);
+            engagedSessions.set(0);
+            goalStartedSessions.clear();
+            goalReachedSessions.clear();
+        }
+    }
+
     // Campaign Event management methods
     @Override
     public PartialList<CampaignEvent> getEvents(Query query) {
@@ -18,10 +18,10 @@
 package org.apache.unomi.services.impl.personalization;
 
 import org.apache.unomi.api.*;
-import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.services.PersonalizationService;
 import org.apache.unomi.api.services.ProfileService;
 import org.apache.unomi.services.sorts.ControlGroupPersonalizationStrategy;
+import org.apache.unomi.services.sorts.PersonalizationConditionMatcher;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
@@ -61,16 +61,17 @@ public class PersonalizationServiceImpl implements PersonalizationService {
 
     @Override
     public boolean filter(Profile profile, Session session, PersonalizedContent personalizedContent) {
-        boolean result = true;
-        if (personalizedContent.getFilters() != null) {
-            for (Filter filter : personalizedContent.getFilters()) {
-                Condition condition = filter.getCondition();
-                if (condition != null && condition.getConditionTypeId() != null) {
-                    result &= profileService.matchCondition(condition, profile, session);
-                }
-            }
+        return new PersonalizationConditionMatcher(profileService, profile, session).matchesAll(personalizedContent.getFilters());
+    }
+
+    @Override
+    public Map<String, Boolean> filter(Profile profile, Session session, List<PersonalizedContent> personalizedContents) {
+        PersonalizationConditionMatcher matcher = new PersonalizationConditionMatcher(profileService, profile, session);
+        Map<String, Boolean> results = new HashMap<>();
+        for (PersonalizedContent personalizedContent : personalizedContents) {
+            results.put(personalizedContent.getId(), matcher.matchesAll(personalizedContent.getFilters()));
         }
-        return result;
+        return results;
     }
 
     @Override
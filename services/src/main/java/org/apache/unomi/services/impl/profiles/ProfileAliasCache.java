@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.unomi.services.impl.profiles;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded cache of the resolution of profile identifiers, per tenant: the profile an alias points to, or the fact that
+ * an identifier is not an alias.
+ * <p>
+ * A cached alias only saves a round trip: the alias is loaded again along with its profile, and the cached resolution is
+ * replaced when the alias was moved to another profile on another cluster node. An identifier known not to be an alias
+ * is resolved again once its profile is no longer found, for instance after a merge on another node. Entries expire
+ * after a time to live; when the cache is full, it is cleared.
+ */
+public class ProfileAliasCache {
+
+    private static final String SEPARATOR = "\u0000";
+
+    private final int maxEntries;
+    private final long timeToLive;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxEntries the maximum number of cached identifiers, 0 to disable the cache
+     * @param timeToLive the time to live of the entries, in milliseconds
+     */
+    public ProfileAliasCache(int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Looks up the resolution of an identifier.
+     *
+     * @param tenantId  the tenant of the identifier
+     * @param profileId a profile identifier or an alias
+     * @return the identifier of the profile the identifier resolves to, which is the identifier itself if it is known not
+     * to be an alias, or {@code null} if the resolution of the identifier is not cached
+     */
+    public String get(String tenantId, String profileId) {
+        String key = key(tenantId, profileId);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expirationTime < System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.profileId != null ? entry.profileId : profileId;
+    }
+
+    /**
+     * Caches the resolution of an alias.
+     *
+     * @param tenantId  the tenant of the alias
+     * @param alias     the alias
+     * @param profileId the identifier of the profile the alias points to
+     */
+    public void putAlias(String tenantId, String alias, String profileId) {
+        put(key(tenantId, alias), new Entry(profileId, System.currentTimeMillis() + timeToLive));
+    }
+
+    /**
+     * Caches the fact that an identifier is not an alias.
+     *
+     * @param tenantId  the tenant of the identifier
+     * @param profileId the identifier
+     */
+    public void putNonAlias(String tenantId, String profileId) {
+        put(key(tenantId, profileId), new Entry(null, System.currentTimeMillis() + timeToLive));
+    }
+
+    /**
+     * Removes the resolution of an identifier.
+     *
+     * @param tenantId  the tenant of the identifier
+     * @param profileId a profile identifier or an alias
+     */
+    public void remove(String tenantId, String profileId) {
+        entries.remove(key(tenantId, profileId));
+    }
+
+    /**
+     * Removes the resolution of an identifier and of all the aliases pointing to it.
+     *
+     * @param tenantId  the tenant of the profile
+     * @param profileId the identifier of the profile
+     */
+    public void removeProfile(String tenantId, String profileId) {
+        remove(tenantId, profileId);
+        String prefix = (tenantId != null ? tenantId : "") + SEPARATOR;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (profileId.equals(entry.getValue().profileId) && entry.getKey().startsWith(prefix)) {
+                entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void put(String key, Entry entry) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+        entries.put(key, entry);
+    }
+
+    private static String key(String tenantId, String profileId) {
+        return (tenantId != null ? tenantId : "") + SEPARATOR + profileId;
+    }
+
+    private static final class Entry {
+        // The profile the alias points to, null when the identifier is not an alias
+        private final String profileId;
+        private final long expirationTime;
+
+        private Entry(String profileId, long expirationTime) {
+            this.profileId = profileId;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.unomi.services.impl.profiles;
+
+import org.apache.unomi.api.Consent;
+import org.apache.unomi.api.Item;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
+
+import java.util.*;
+
+/**
+ * Tracks the changes made to profiles and sessions since they were loaded from or saved to the persistence service, so
+ * that only the modified properties are sent in a partial update instead of indexing the whole document.
+ * <p>
+ * The state of the item is recorded as a deep copy of its persisted fields, compared with the current fields when the
+ * item is saved. Added or modified values, at any depth of the property maps, make up the partial document. Structural
+ * changes that a partial update cannot express, such as removed keys, objects replaced by values, or modified consents,
+ * require the whole document to be indexed, as do items which were saved through another path since their state was
+ * recorded, and items holding values of types that cannot be copied.
+ */
+public class ProfileChangeTracker {
+
+    // Copy of a value whose changes cannot be detected
+    private static final Object UNTRACKABLE = new Object();
+
+    /**
+     * Records the state of a profile or a session, replacing any previously recorded state.
+     *
+     * @param item the profile or session, as loaded from or saved to the persistence service
+     */
+    public void track(Item item) {
+        if (item == null) {
+            return;
+        }
+        Map<String, Object> state = getState(item);
+        item.setPersistedState(state != null ? new PersistedState(item.getVersion(), state) : null);
+    }
+
+    /**
+     * Computes the changes made to a profile or a session since its state was recorded.
+     *
+     * @param item the profile or session
+     * @return the changes, or {@code null} if the whole item must be indexed
+     */
+    public Changes getChanges(Item item) {
+        if (!(item.getPersistedState() instanceof PersistedState)) {
+            return null;
+        }
+        PersistedState persistedState = (PersistedState) item.getPersistedState();
+        if (!Objects.equals(persistedState.version, item.getVersion())) {
+            // The item was saved or updated since its state was recorded
+            return null;
+        }
+        Map<String, Object> state = getState(item);
+        if (state == null) {
+            return null;
+        }
+        Map<String, Object> source = new LinkedHashMap<>();
+        Set<String> paths = new LinkedHashSet<>();
+        if (!diff(persistedState.state, state, null, source, paths)) {
+            return null;
+        }
+        return new Changes(source, paths);
+    }
+
+    private static Map<String, Object> getState(Item item) {
+        if (item.getClass() == Profile.class) {
+            return getProfileState((Profile) item);
+        } else if (item.getClass() == Session.class) {
+            return getSessionState((Session) item);
+        }
+        return null;
+    }
+
+    private static Map<String, Object> getProfileState(Profile profile) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("properties", copy(profile.getProperties()));
+        state.put("systemProperties", copy(profile.getSystemProperties()));
+        state.put("segments", copy(profile.getSegments()));
+        state.put("scores", copy(profile.getScores()));
+        state.put("consents", getConsentsState(profile.getConsents()));
+        state.put("mergedWith", profile.getMergedWith());
+        return state.containsValue(UNTRACKABLE) ? null : state;
+    }
+
+    private static Map<String, Object> getSessionState(Session session) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("profileId", session.getProfileId());
+        state.put("profile", null);
+        if (session.getProfile() != null) {
+            if (session.getProfile().getClass() != Profile.class) {
+                return null;
+            }
+            Map<String, Object> profileState = getProfileState(session.getProfile());
+            if (profileState == null) {
+                return null;
+            }
+            state.put("profile", profileState);
+        }
+        state.put("properties", copy(session.getProperties()));
+        state.put("systemProperties", copy(session.getSystemProperties()));
+        state.put("timeStamp", copy(session.getTimeStamp()));
+        state.put("scope", session.getScope());
+        state.put("lastEventDate", copy(session.getLastEventDate()));
+        state.put("size", session.getSize());
+        state.put("duration", session.getDuration());
+        state.put("originEventTypes", copy(session.getOriginEventTypes()));
+        state.put("originEventIds", copy(session.getOriginEventIds()));
+        return state.containsValue(UNTRACKABLE) ? null : state;
+    }
+
+    private static Object getConsentsState(Map<String, Consent> consents) {
+        if (consents == null) {
+            return null;
+        }
+        // Consents are compared by value but are not merged, a modified consent requires a full save
+        List<List<Object>> consentsState = new ArrayList<>();
+        for (Map.Entry<String, Consent> entry : consents.entrySet()) {
+            Consent consent = entry.getValue();
+            consentsState.add(consent == null ? Collections.singletonList(entry.getKey()) : Arrays.asList(entry.getKey(), consent.getScope(),
+                    consent.getTypeIdentifier(), consent.getStatus(), copy(consent.getStatusDate()), copy(consent.getRevokeDate())));
+        }
+        return new Unmergeable(consentsState);
+    }
+
+    /**
+     * Compares two states, adding the changed values to the partial document.
+     *
+     * @return {@code false} if the changes cannot be expressed as a partial document
+     */
+    private static boolean diff(Map<?, ?> previous, Map<?, ?> current, String path, Map<String, Object> source, Set<String> paths) {
+        for (Object key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                return false;
+            }
+        }
+        for (Map.Entry<?, ?> entry : current.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            String keyPath = path == null ? key : path + "." + key;
+            Object value = entry.getValue();
+            if (!previous.containsKey(entry.getKey())) {
+                if (value instanceof Unmergeable) {
+                    return false;
+                }
+                source.put(key, copy(value));
+                paths.add(keyPath);
+                continue;
+            }
+            Object previousValue = previous.get(entry.getKey());
+            if (Objects.equals(previousValue, value)) {
+                continue;
+            }
+            if (previousValue instanceof Map && value instanceof Map) {
+                Map<String, Object> nestedSource = new LinkedHashMap<>();
+                if (!diff((Map<?, ?>) previousValue, (Map<?, ?>) value, keyPath, nestedSource, paths)) {
+                    return false;
+                }
+                source.put(key, nestedSource);
+            } else if (previousValue instanceof Map || value instanceof Map || value == null
+                    || previousValue instanceof Unmergeable || value instanceof Unmergeable) {
+                return false;
+            } else {
+                source.put(key, copy(value));
+                paths.add(keyPath);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deep copies a value of a persisted field, returns {@link #UNTRACKABLE} for values whose changes cannot be
+     * detected.
+     */
+    private static Object copy(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum) {
+            return value;
+        } else if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        } else if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Object copiedValue = copy(entry.getValue());
+                if (copiedValue == UNTRACKABLE) {
+                    return UNTRACKABLE;
+                }
+                copy.put(entry.getKey(), copiedValue);
+            }
+            return copy;
+        } else if (value instanceof Collection) {
+            Collection<Object> copy = value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                Object copiedElement = copy(element);
+                if (copiedElement == UNTRACKABLE) {
+                    return UNTRACKABLE;
+                }
+                copy.add(copiedElement);
+            }
+            return copy;
+        }
+        return UNTRACKABLE;
+    }
+
+    private static final class PersistedState {
+        private final Long version;
+        private final Map<String, Object> state;
+
+        private PersistedState(Long version, Map<String, Object> state) {
+            this.version = version;
+            this.state = state;
+        }
+    }
+
+    /**
+     * A value compared with the recorded state, but which cannot be sent in a partial document.
+     */
+    private static final class Unmergeable {
+        private final Object value;
+
+        private Unmergeable(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Unmergeable && Objects.equals(value, ((Unmergeable) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(value);
+        }
+    }
+
+    /**
+     * The changes made to an item: the partial document to send to the persistence service, and the paths of the
+     * modified values.
+     */
+    public static final class Changes {
+        private final Map<String, Object> source;
+        private final Set<String> paths;
+
+        private Changes(Map<String, Object> source, Set<String> paths) {
+            this.source = source;
+            this.paths = paths;
+        }
+
+        public Map<String, Object> getSource() {
+            return source;
+        }
+
+        public Set<String> getPaths() {
+            return paths;
+        }
+
+        public boolean isEmpty() {
+            return source.isEmpty();
+        }
+    }
+}
@@ -32,16 +32,21 @@ import org.apache.unomi.api.services.cache.CacheableTypeConfig;
 import org.apache.unomi.api.tasks.ScheduledTask;
 import org.apache.unomi.api.tasks.TaskExecutor;
 import org.apache.unomi.api.utils.ParserHelper;
+import org.apache.unomi.metrics.MetricsService;
 import org.apache.unomi.persistence.spi.PropertyHelper;
 import org.apache.unomi.persistence.spi.aggregate.TermsAggregate;
 import org.apache.unomi.services.common.cache.AbstractMultiTypeCachingService;
+import org.apache.unomi.services.impl.events.RaisedEventsIndex;
 import org.apache.unomi.services.sorts.ControlGroupPersonalizationStrategy;
 import org.osgi.framework.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -55,6 +60,9 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
 
     private static final String DECREMENT_NB_OF_VISITS_SCRIPT = "decNbOfVisits";
     private static final int NB_OF_VISITS_DECREMENT_BATCH_SIZE = 500;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final String EXPORT_SCROLL_TIME_VALIDITY = "10m";
+    private static final List<Class<? extends Item>> ALIAS_AND_PROFILE_CLASSES = Arrays.asList(ProfileAlias.class, Profile.class);
 
     private DefinitionsService definitionsService;
 
@@ -76,6 +84,15 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
 
     private boolean forceRefreshOnSave = false;
 
+    private int aliasCacheMaxEntries = 100000;
+    private long aliasCacheTimeToLive = 60000;
+    private volatile ProfileAliasCache aliasCache = new ProfileAliasCache(aliasCacheMaxEntries, aliasCacheTimeToLive);
+
+    private boolean partialUpdatesEnabled = true;
+    private final ProfileChangeTracker changeTracker = new ProfileChangeTracker();
+
+    private MetricsService metricsService;
+
     public ProfileServiceImpl() {
         super();
     }
@@ -96,6 +113,24 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
         this.propertiesRefreshInterval = propertiesRefreshInterval;
     }
 
+    public void setAliasCacheMaxEntries(int aliasCacheMaxEntries) {
+        this.aliasCacheMaxEntries = aliasCacheMaxEntries;
+        this.aliasCache = new ProfileAliasCache(aliasCacheMaxEntries, aliasCacheTimeToLive);
+    }
+
+    public void setAliasCacheTimeToLive(long aliasCacheTimeToLive) {
+        this.aliasCacheTimeToLive = aliasCacheTimeToLive;
+        this.aliasCache = new ProfileAliasCache(aliasCacheMaxEntries, aliasCacheTimeToLive);
+    }
+
+    public void setPartialUpdatesEnabled(boolean partialUpdatesEnabled) {
+        this.partialUpdatesEnabled = partialUpdatesEnabled;
+    }
+
+    public void setMetricsService(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
     public void postConstruct() {
         super.postConstruct();
         LOGGER.debug("postConstruct {{}}", bundleContext.getBundle());
@@ -503,50 +538,158 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
     }
 
     public String exportProfilesPropertiesToCsv(Query query) {
-        StringBuilder sb = new StringBuilder();
-        Set<PropertyType> propertyTypes = getExistingProperties("profileProperties", Profile.ITEM_TYPE);
-        PartialList<Profile> profiles = search(query, Profile.class);
+        StringWriter writer = new StringWriter();
+        try {
+            exportProfilesPropertiesToCsv(query, writer, true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while exporting profiles", e);
+        }
+        return writer.toString();
+    }
 
-        HashMap<String, PropertyType> propertyTypesById = new LinkedHashMap<>();
-        for (PropertyType propertyType : propertyTypes) {
+    @Override
+    public void exportProfilesPropertiesToCsv(Query query, Writer writer, boolean twoPass) throws IOException {
+        Map<String, PropertyType> propertyTypesById = new LinkedHashMap<>();
+        for (PropertyType propertyType : getExistingProperties("profileProperties", Profile.ITEM_TYPE)) {
             propertyTypesById.put(propertyType.getMetadata().getId(), propertyType);
         }
-        for (Profile profile : profiles.getList()) {
-            for (String key : profile.getProperties().keySet()) {
-                if (!propertyTypesById.containsKey(key)) {
-                    propertyTypesById.put(key, null);
+        Map<String, String> segmentNames = new HashMap<>();
+
+        if (!twoPass) {
+            writeExportHeader(writer, propertyTypesById.keySet(), true);
+            forEachExportedProfile(query, profile -> writeExportRow(writer, profile, propertyTypesById, segmentNames, true));
+            writer.flush();
+            return;
+        }
+
+        // First pass: the profiles are spilled to a file while collecting the properties without a known type, so
+        // that their columns can be written in the header
+        Path spillFile = Files.createTempFile("unomi-profiles-export", ".jsonl");
+        try {
+            try (BufferedWriter spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8)) {
+                forEachExportedProfile(query, profile -> {
+                    for (String key : profile.getProperties().keySet()) {
+                        propertyTypesById.putIfAbsent(key, null);
+                    }
+                    spillWriter.write(getObjectMapper().writeValueAsString(profile));
+                    spillWriter.newLine();
+                });
+            }
+            writeExportHeader(writer, propertyTypesById.keySet(), false);
+            try (BufferedReader spillReader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = spillReader.readLine()) != null) {
+                    writeExportRow(writer, getObjectMapper().readValue(line, Profile.class), propertyTypesById, segmentNames, false);
                 }
             }
+            writer.flush();
+        } finally {
+            Files.deleteIfExists(spillFile);
         }
+    }
 
-        sb.append("profileId;");
-        // headers
-        for (String propertyId : propertyTypesById.keySet()) {
-            sb.append(propertyId);
-            sb.append(";");
+    @FunctionalInterface
+    private interface ExportedProfileConsumer {
+        void accept(Profile profile) throws IOException;
+    }
+
+    /**
+     * Pages through the profiles matching the specified query, up to the query limit when one is set, without holding
+     * more than a page of profiles in memory. Scroll queries cannot start at an offset, so the profiles before the query
+     * offset are scrolled past, and a scroll that is not read until its end is cleared.
+     */
+    private void forEachExportedProfile(Query query, ExportedProfileConsumer consumer) throws IOException {
+        boolean fullText = StringUtils.isNotBlank(query.getText());
+        long remaining = query.getLimit() >= 0 ? query.getLimit() : Long.MAX_VALUE;
+        long skipped = fullText ? 0 : Math.max(query.getOffset(), 0);
+
+        Query pageQuery = new Query();
+        pageQuery.setCondition(query.getCondition());
+        pageQuery.setText(query.getText());
+        pageQuery.setSortby(query.getSortby());
+        // Full text queries cannot be scrolled, they are paged using offsets instead
+        pageQuery.setOffset(fullText ? query.getOffset() : 0);
+        pageQuery.setLimit((int) Math.min(EXPORT_PAGE_SIZE, fullText ? remaining : remaining + skipped));
+        pageQuery.setScrollTimeValidity(fullText ? null : EXPORT_SCROLL_TIME_VALIDITY);
+
+        PartialList<Profile> page = remaining > 0 ? doSearch(pageQuery, Profile.class) : null;
+        try {
+            while (page != null && !page.getList().isEmpty()) {
+                for (Profile profile : page.getList()) {
+                    if (skipped > 0) {
+                        skipped--;
+                        continue;
+                    }
+                    consumer.accept(profile);
+                    if (--remaining == 0) {
+                        break;
+                    }
+                }
+                if (remaining == 0) {
+                    break;
+                }
+                if (page.getScrollIdentifier() != null) {
+                    page = persistenceService.continueScrollQuery(Profile.class, page.getScrollIdentifier(), page.getScrollTimeValidity());
+                } else if (fullText && page.getList().size() == pageQuery.getLimit()) {
+                    pageQuery.setOffset(pageQuery.getOffset() + page.getList().size());
+                    pageQuery.setLimit((int) Math.min(EXPORT_PAGE_SIZE, remaining));
+                    page = doSearch(pageQuery, Profile.class);
+                } else {
+                    page = null;
+                }
+            }
+        } finally {
+            if (page != null && !page.getList().isEmpty() && page.getScrollIdentifier() != null) {
+                persistenceService.clearScrollQuery(page.getScrollIdentifier());
+            }
         }
-        sb.append("segments\n");
+    }
 
-        // rows
-        for (Profile profile : profiles.getList()) {
-            sb.append(profile.getItemId());
+    private void writeExportHeader(Writer writer, Set<String> propertyIds, boolean otherPropertiesColumn) throws IOException {
+        writer.write("profileId;");
+        for (String propertyId : propertyIds) {
+            writer.write(propertyId);
+            writer.write(";");
+        }
+        writer.write(otherPropertiesColumn ? "segments;otherProperties\n" : "segments\n");
+    }
+
+    private void writeExportRow(Writer writer, Profile profile, Map<String, PropertyType> propertyTypesById, Map<String, String> segmentNames,
+                                boolean otherPropertiesColumn) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(profile.getItemId());
+        sb.append(";");
+        for (Map.Entry<String, PropertyType> propertyIdAndType : propertyTypesById.entrySet()) {
+            String propertyId = propertyIdAndType.getKey();
+            if (profile.getProperties().get(propertyId) != null) {
+                handleExportProperty(sb, profile.getProperties().get(propertyId), propertyIdAndType.getValue());
+            }
             sb.append(";");
-            for (Map.Entry<String, PropertyType> propertyIdAndType : propertyTypesById.entrySet()) {
-                String propertyId = propertyIdAndType.getKey();
-                if (profile.getProperties().get(propertyId) != null) {
-                    handleExportProperty(sb, profile.getProperties().get(propertyId), propertyIdAndType.getValue());
+        }
+        List<String> profileSegmentNames = new ArrayList<String>();
+        for (String segment : profile.getSegments()) {
+            // Segment names are resolved once per export
+            String segmentName = segmentNames.computeIfAbsent(segment, segmentId -> {
+                Segment s = segmentService.getSegmentDefinition(segmentId);
+                return s != null ? s.getMetadata().getName() : segmentId;
+            });
+            profileSegmentNames.add(csvEncode(segmentName));
+        }
+        sb.append(csvEncode(StringUtils.join(profileSegmentNames, ",")));
+        if (otherPropertiesColumn) {
+            Map<String, Object> otherProperties = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> property : profile.getProperties().entrySet()) {
+                if (!propertyTypesById.containsKey(property.getKey()) && property.getValue() != null) {
+                    otherProperties.put(property.getKey(), property.getValue());
                 }
-                sb.append(";");
             }
-            List<String> segmentNames = new ArrayList<String>();
-            for (String segment : profile.getSegments()) {
-                Segment s = segmentService.getSegmentDefinition(segment);
-                segmentNames.add(csvEncode(s.getMetadata().getName()));
+            sb.append(";");
+            if (!otherProperties.isEmpty()) {
+                sb.append(csvEncode(getObjectMapper().writeValueAsString(otherProperties)));
             }
-            sb.append(csvEncode(StringUtils.join(segmentNames, ",")));
-            sb.append('\n');
         }
-        return sb.toString();
+        sb.append('\n');
+        writer.write(sb.toString());
     }
 
     // TODO may be moved this in a specific Export Utils Class and improve it to handle date format, ...
@@ -575,11 +718,190 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
     }
 
     public Profile load(String profileId) {
-        ProfileAlias profileAlias = persistenceService.load(profileId, ProfileAlias.class);
+        Profile profile = resolveAndLoad(profileId);
+        trackChanges(profile);
+        return profile;
+    }
+
+    private Profile resolveAndLoad(String profileId) {
+        if (profileId == null) {
+            return null;
+        }
+        String tenantId = getCurrentTenantId();
+        String resolvedProfileId = aliasCache.get(tenantId, profileId);
+        if (resolvedProfileId != null && resolvedProfileId.equals(profileId)) {
+            Profile profile = persistenceService.load(resolvedProfileId, Profile.class);
+            if (profile != null) {
+                return profile;
+            }
+            // The profile may have been merged or deleted on another node
+            aliasCache.remove(tenantId, profileId);
+        } else if (resolvedProfileId != null) {
+            // The alias is checked along with the profile, as it may have been moved to another profile on another node
+            Map<Class<? extends Item>, String> itemIds = new LinkedHashMap<>();
+            itemIds.put(ProfileAlias.class, profileId);
+            itemIds.put(Profile.class, resolvedProfileId);
+            Map<Class<? extends Item>, Item> items = persistenceService.multiLoad(itemIds);
+            ProfileAlias profileAlias = items != null ? (ProfileAlias) items.get(ProfileAlias.class) : null;
+            if (profileAlias != null && resolvedProfileId.equals(profileAlias.getProfileID()) && items.get(Profile.class) != null) {
+                return (Profile) items.get(Profile.class);
+            }
+            aliasCache.remove(tenantId, profileId);
+        }
+
+        // Most identifiers are not aliases, the alias and the profile are loaded together
+        Map<Class<? extends Item>, Item> items = persistenceService.multiLoad(profileId, ALIAS_AND_PROFILE_CLASSES);
+        if (items == null) {
+            return null;
+        }
+        ProfileAlias profileAlias = (ProfileAlias) items.get(ProfileAlias.class);
         if (profileAlias != null) {
-            profileId = profileAlias.getProfileID();
+            aliasCache.putAlias(tenantId, profileId, profileAlias.getProfileID());
+            return persistenceService.load(profileAlias.getProfileID(), Profile.class);
+        }
+        Profile profile = (Profile) items.get(Profile.class);
+        if (profile != null) {
+            aliasCache.putNonAlias(tenantId, profileId);
+        }
+        return profile;
+    }
+
+    @Override
+    public Map<String, Profile> loadProfiles(Collection<String> profileIds) {
+        String tenantId = getCurrentTenantId();
+        Map<String, String> resolvedProfileIds = new LinkedHashMap<>();
+        List<String> aliasLookupIds = new ArrayList<>();
+        for (String profileId : profileIds) {
+            if (profileId == null || resolvedProfileIds.containsKey(profileId)) {
+                continue;
+            }
+            String resolvedProfileId = aliasCache.get(tenantId, profileId);
+            resolvedProfileIds.put(profileId, resolvedProfileId != null ? resolvedProfileId : profileId);
+            // Cached aliases are checked as well, as they may have been moved to another profile on another node
+            if (resolvedProfileId == null || !resolvedProfileId.equals(profileId)) {
+                aliasLookupIds.add(profileId);
+            }
+        }
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+        if (resolvedProfileIds.isEmpty()) {
+            return profiles;
+        }
+
+        // The aliases then the profiles are read in real time, each with a single multi-get
+        Set<String> aliases = new HashSet<>();
+        if (!aliasLookupIds.isEmpty()) {
+            Map<String, ProfileAlias> profileAliases = persistenceService.multiLoad(aliasLookupIds, ProfileAlias.class);
+            if (profileAliases == null) {
+                profileAliases = Collections.emptyMap();
+            }
+            for (String profileId : aliasLookupIds) {
+                ProfileAlias profileAlias = profileAliases.get(profileId);
+                if (profileAlias != null) {
+                    aliases.add(profileId);
+                    resolvedProfileIds.put(profileId, profileAlias.getProfileID());
+                    aliasCache.putAlias(tenantId, profileId, profileAlias.getProfileID());
+                } else if (!profileId.equals(resolvedProfileIds.get(profileId))) {
+                    // The alias was removed on another node
+                    aliasCache.remove(tenantId, profileId);
+                    resolvedProfileIds.put(profileId, profileId);
+                }
+            }
+        }
+        Map<String, Profile> loadedProfiles = persistenceService.multiLoad(new LinkedHashSet<>(resolvedProfileIds.values()), Profile.class);
+        if (loadedProfiles == null) {
+            return profiles;
+        }
+        for (Map.Entry<String, String> entry : resolvedProfileIds.entrySet()) {
+            String profileId = entry.getKey();
+            Profile profile = loadedProfiles.get(entry.getValue());
+            if (profile == null && !aliasLookupIds.contains(profileId)) {
+                // The profile may have been merged or deleted on another node
+                aliasCache.remove(tenantId, profileId);
+                profile = resolveAndLoad(profileId);
+            } else if (profile != null && !aliases.contains(profileId)) {
+                aliasCache.putNonAlias(tenantId, profileId);
+            }
+            if (profile != null) {
+                profiles.put(profileId, profile);
+            }
+        }
+        Set<Profile> trackedProfiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Profile profile : profiles.values()) {
+            if (trackedProfiles.add(profile)) {
+                trackChanges(profile);
+            }
+        }
+        return profiles;
+    }
+
+    @Override
+    public ProfileWithSession loadProfileWithSession(String profileId, String sessionId) {
+        long startTime = System.currentTimeMillis();
+        String tenantId = getCurrentTenantId();
+        String resolvedProfileId = profileId != null ? aliasCache.get(tenantId, profileId) : null;
+        Map<Class<? extends Item>, String> itemIds = new LinkedHashMap<>();
+        boolean cachedAlias = resolvedProfileId != null && !resolvedProfileId.equals(profileId);
+        if (profileId != null) {
+            if (resolvedProfileId == null || cachedAlias) {
+                // Most identifiers are not aliases, the alias is loaded along with the profile and the session. Cached
+                // aliases are checked as well, as they may have been moved to another profile on another node
+                itemIds.put(ProfileAlias.class, profileId);
+            }
+            itemIds.put(Profile.class, resolvedProfileId != null ? resolvedProfileId : profileId);
+        }
+        if (sessionId != null) {
+            itemIds.put(Session.class, sessionId);
+        }
+        if (itemIds.isEmpty()) {
+            return new ProfileWithSession();
+        }
+
+        Map<Class<? extends Item>, Item> items = persistenceService.multiLoad(itemIds);
+        updateTimer("loadProfileWithSession.multiLoad", startTime);
+        if (items == null) {
+            items = Collections.emptyMap();
+        }
+        Profile profile = (Profile) items.get(Profile.class);
+        Session session = (Session) items.get(Session.class);
+        if (profileId != null) {
+            long resolveStartTime = System.currentTimeMillis();
+            ProfileAlias profileAlias = (ProfileAlias) items.get(ProfileAlias.class);
+            if (profileAlias != null) {
+                if (!cachedAlias || !profileAlias.getProfileID().equals(resolvedProfileId) || profile == null) {
+                    aliasCache.putAlias(tenantId, profileId, profileAlias.getProfileID());
+                    profile = persistenceService.load(profileAlias.getProfileID(), Profile.class);
+                    updateTimer("loadProfileWithSession.resolveAlias", resolveStartTime);
+                }
+            } else if (cachedAlias) {
+                // The alias was removed on another node
+                aliasCache.remove(tenantId, profileId);
+                profile = resolveAndLoad(profileId);
+                updateTimer("loadProfileWithSession.resolveAlias", resolveStartTime);
+            } else if (resolvedProfileId == null) {
+                if (profile != null) {
+                    aliasCache.putNonAlias(tenantId, profileId);
+                }
+            } else if (profile == null) {
+                // The profile may have been merged or deleted on another node
+                aliasCache.remove(tenantId, profileId);
+                profile = resolveAndLoad(profileId);
+                updateTimer("loadProfileWithSession.resolveAlias", resolveStartTime);
+            }
+        }
+        trackChanges(profile);
+        trackChanges(session);
+        updateTimer("loadProfileWithSession", startTime);
+        return new ProfileWithSession(profile, session);
+    }
+
+    private void updateTimer(String timerName, long startTime) {
+        if (metricsService != null && metricsService.isActivated()) {
+            metricsService.updateTimer(this.getClass().getName() + "." + timerName, startTime);
         }
-        return persistenceService.load(profileId, Profile.class);
+    }
+
+    private String getCurrentTenantId() {
+        return contextManager != null && contextManager.getCurrentContext() != null ? contextManager.getCurrentContext().getTenantId() : null;
     }
 
     public Profile save(Profile profile) {
@@ -611,6 +933,7 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
 
             persistenceService.save(profileAlias);
         }
+        aliasCache.putAlias(getCurrentTenantId(), alias, profileID);
     }
 
     @Override
@@ -642,6 +965,7 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
         List<ProfileAlias> profileAliases = persistenceService.query(condition, null, ProfileAlias.class);
 
         if (profileAliases.size() == 1 && persistenceService.removeByQuery(condition, ProfileAlias.class)) {
+            aliasCache.remove(getCurrentTenantId(), alias);
             return profileAliases.get(0);
         }
 
@@ -663,7 +987,7 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
             return null;
         }
         profile.setSystemProperty("lastUpdated", new Date());
-        if (persistenceService.save(profile)) {
+        if (persist(profile, Profile.class)) {
             if (forceRefresh) {
                 persistenceService.refreshIndex(Profile.class, null);
             }
@@ -715,6 +1039,7 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
             persistenceService.removeByQuery(removeAliasesCondition, ProfileAlias.class);
 
             persistenceService.remove(profileId, Profile.class);
+            aliasCache.removeProfile(getCurrentTenantId(), profileId);
         }
     }
 
@@ -795,6 +1120,10 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
         for (Profile profile : profilesToMerge) {
             masterProfileChanged = mergeSystemProperties(masterProfile.getSystemProperties(), profile.getSystemProperties()) || masterProfileChanged;
         }
+        // the events of the merged profiles are not recorded in the filter of the master profile, drop it to query them instead
+        if (masterProfile.getSystemProperties().remove(RaisedEventsIndex.SYSTEM_PROPERTY) != null) {
+            masterProfileChanged = true;
+        }
 
         // we now have to merge the profile's segments
         for (Profile profile : profilesToMerge) {
@@ -856,7 +1185,9 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
 
     @Override
     public Session loadSession(String sessionId) {
-        return persistenceService.load(sessionId, Session.class);
+        Session session = persistenceService.load(sessionId, Session.class);
+        trackChanges(session);
+        return session;
     }
 
     public Session saveSession(Session session) {
@@ -871,7 +1202,47 @@ public class ProfileServiceImpl extends AbstractMultiTypeCachingService implemen
                 session.getProfile().getSystemProperties().entrySet().removeIf(entry -> entry.getKey().equals("pastEvents"));
             }
         }
-        return persistenceService.save(session) ? session : null;
+        return persist(session, Session.class) ? session : null;
+    }
+
+    /**
+     * Saves a profile or a session, only sending the properties modified since it was loaded or saved when possible.
+     */
+    private boolean persist(Item item, Class<? extends Item> clazz) {
+        if (!isChangeTrackingEnabled(item)) {
+            return persistenceService.save(item);
+        }
+        long startTime = System.currentTimeMillis();
+        ProfileChangeTracker.Changes changes = changeTracker.getChanges(item);
+        updateTimer("getChanges", startTime);
+        boolean saved;
+        if (changes == null) {
+            saved = persistenceService.save(item);
+        } else if (changes.isEmpty()) {
+            saved = true;
+        } else {
+            LOGGER.debug("Updating {} {} with the modified paths {}", item.getItemType(), item.getItemId(), changes.getPaths());
+            saved = persistenceService.update(item, clazz, changes.getSource());
+        }
+        if (saved) {
+            trackChanges(item);
+        }
+        return saved;
+    }
+
+    private boolean isChangeTrackingEnabled(Item item) {
+        return partialUpdatesEnabled && item != null && persistenceService.isPartialUpdateSupported(item);
+    }
+
+    /**
+     * Records the state of a profile or a session, for its next save to only send its changes.
+     */
+    private void trackChanges(Item item) {
+        if (isChangeTrackingEnabled(item)) {
+            long startTime = System.currentTimeMillis();
+            changeTracker.track(item);
+            updateTimer("trackChanges", startTime);
+        }
     }
 
     private Map<String, Object> removePersonalIdentifiersFromSessionProfile(final Map<String, Object> profileProperties) {
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.unomi.services.impl.rules;
+
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.persistence.spi.conditions.ConditionContextHelper;
+
+import java.util.*;
+
+/**
+ * Analyzes rule conditions to find the values an event property must have for the condition to match, so that rules
+ * can be indexed by event type and target item type.
+ * <p>
+ * The analysis is conservative: the resulting {@link ValueFilter} accepts every value for which the condition may be
+ * true, but may also accept values for which it is always false. Property conditions comparing the property with
+ * {@code equals}, {@code notEquals}, {@code in} or {@code notIn}, boolean conditions, negations and condition types
+ * built on a parent condition are analyzed, any other condition does not constrain the property.
+ * <p>
+ * Values are compared after ASCII folding, as done by the property condition evaluator.
+ */
+public class EventConditionAnalyzer {
+
+    public static final String EVENT_TYPE_PROPERTY = "eventType";
+    public static final String TARGET_ITEM_TYPE_PROPERTY = "target.itemType";
+
+    private static final String PARAMETER_PREFIX = "parameter::";
+    private static final int MAX_PARENT_DEPTH = 16;
+
+    private EventConditionAnalyzer() {
+    }
+
+    /**
+     * Analyzes a condition evaluated on events.
+     *
+     * @param condition    the condition, with its condition types resolved
+     * @param propertyName the event property to analyze, {@link #EVENT_TYPE_PROPERTY} or {@link #TARGET_ITEM_TYPE_PROPERTY}
+     * @return the values of the property for which the condition may match
+     */
+    public static ValueFilter analyze(Condition condition, String propertyName) {
+        if (condition == null) {
+            return ValueFilter.UNCONSTRAINED;
+        }
+        return analyze(condition, condition.getParameterValues(), propertyName, 0);
+    }
+
+    private static ValueFilter analyze(Condition condition, Map<String, Object> parameters, String propertyName, int depth) {
+        String conditionTypeId = condition.getConditionTypeId();
+        if (conditionTypeId == null) {
+            return ValueFilter.UNCONSTRAINED;
+        }
+        switch (conditionTypeId) {
+            case "booleanCondition":
+                return analyzeBoolean(condition, parameters, propertyName, depth);
+            case "notCondition":
+                Object subCondition = getParameter(condition, parameters, "subCondition");
+                if (!(subCondition instanceof Condition)) {
+                    return ValueFilter.UNCONSTRAINED;
+                }
+                return analyze((Condition) subCondition, ((Condition) subCondition).getParameterValues(), propertyName, depth).negate();
+            case "matchAllCondition":
+                return ValueFilter.ALL;
+            case "eventTypeCondition":
+                if (!EVENT_TYPE_PROPERTY.equals(propertyName)) {
+                    return ValueFilter.UNCONSTRAINED;
+                }
+                return ValueFilter.of(false, Collections.singletonList(getParameter(condition, parameters, "eventTypeId")));
+            case "eventPropertyCondition":
+                return analyzeProperty(condition, parameters, propertyName);
+            default:
+                if (condition.getConditionType() != null && condition.getConditionType().getParentCondition() != null && depth < MAX_PARENT_DEPTH) {
+                    // The parameters of the parent condition may refer to the parameters of this condition
+                    Map<String, Object> resolvedParameters = new HashMap<>();
+                    for (String parameterName : condition.getParameterValues().keySet()) {
+                        resolvedParameters.put(parameterName, getParameter(condition, parameters, parameterName));
+                    }
+                    Condition parentCondition = condition.getConditionType().getParentCondition();
+                    return analyze(parentCondition, resolveParameters(parentCondition.getParameterValues(), resolvedParameters), propertyName, depth + 1);
+                }
+                return ValueFilter.UNCONSTRAINED;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ValueFilter analyzeBoolean(Condition condition, Map<String, Object> parameters, String propertyName, int depth) {
+        Object subConditions = getParameter(condition, parameters, "subConditions");
+        if (!(subConditions instanceof List) || ((List<?>) subConditions).isEmpty()) {
+            return ValueFilter.UNCONSTRAINED;
+        }
+        boolean isAnd = "and".equalsIgnoreCase((String) getParameter(condition, parameters, "operator"));
+        ValueFilter result = null;
+        for (Object subCondition : (List<Object>) subConditions) {
+            ValueFilter filter = subCondition instanceof Condition
+                    ? analyze((Condition) subCondition, ((Condition) subCondition).getParameterValues(), propertyName, depth)
+                    : ValueFilter.UNCONSTRAINED;
+            result = result == null ? filter : (isAnd ? result.intersect(filter) : result.union(filter));
+        }
+        return result;
+    }
+
+    private static ValueFilter analyzeProperty(Condition condition, Map<String, Object> parameters, String propertyName) {
+        if (!propertyName.equals(getParameter(condition, parameters, "propertyName"))) {
+            return ValueFilter.UNCONSTRAINED;
+        }
+        Object operator = getParameter(condition, parameters, "comparisonOperator");
+        if ("equals".equals(operator) || "notEquals".equals(operator)) {
+            if (hasParameters(condition, parameters, "propertyValueInteger", "propertyValueDouble", "propertyValueDate", "propertyValueDateExpr")) {
+                return ValueFilter.UNCONSTRAINED;
+            }
+            return ValueFilter.of("notEquals".equals(operator), Collections.singletonList(getParameter(condition, parameters, "propertyValue")));
+        } else if ("in".equals(operator) || "notIn".equals(operator)) {
+            Object values = getParameter(condition, parameters, "propertyValues");
+            if (!(values instanceof Collection) || hasParameters(condition, parameters, "propertyValuesInteger", "propertyValuesDouble",
+                    "propertyValuesDate", "propertyValuesDateExpr")) {
+                return ValueFilter.UNCONSTRAINED;
+            }
+            return ValueFilter.of("notIn".equals(operator), (Collection<?>) values);
+        }
+        return ValueFilter.UNCONSTRAINED;
+    }
+
+    private static boolean hasParameters(Condition condition, Map<String, Object> parameters, String... parameterNames) {
+        for (String parameterName : parameterNames) {
+            if (getParameter(condition, parameters, parameterName) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object getParameter(Condition condition, Map<String, Object> parameters, String parameterName) {
+        return parameters == condition.getParameterValues() ? condition.getParameter(parameterName) : parameters.get(parameterName);
+    }
+
+    private static Map<String, Object> resolveParameters(Map<String, Object> parentParameters, Map<String, Object> parameters) {
+        Map<String, Object> resolvedParameters = new HashMap<>();
+        for (Map.Entry<String, Object> entry : parentParameters.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof String && ((String) value).startsWith(PARAMETER_PREFIX)) {
+                value = parameters.get(((String) value).substring(PARAMETER_PREFIX.length()));
+            }
+            resolvedParameters.put(entry.getKey(), value);
+        }
+        return resolvedParameters;
+    }
+
+    /**
+     * A set of property values, either the values listed or all the values except the ones listed. A filter is exact
+     * when the analyzed condition matches exactly the accepted values, only exact filters can be negated.
+     */
+    public static final class ValueFilter {
+
+        /**
+         * Accepts every value, without knowing whether the condition matches them.
+         */
+        public static final ValueFilter UNCONSTRAINED = new ValueFilter(true, Collections.emptySet(), false);
+        /**
+         * Accepts every value, the condition matching all of them.
+         */
+        public static final ValueFilter ALL = new ValueFilter(true, Collections.emptySet(), true);
+
+        private final boolean excluding;
+        private final Set<String> values;
+        private final boolean exact;
+
+        private ValueFilter(boolean excluding, Set<String> values, boolean exact) {
+            this.excluding = excluding;
+            this.values = values;
+            this.exact = exact;
+        }
+
+        static ValueFilter of(boolean excluding, Collection<?> values) {
+            Set<String> foldedValues = new HashSet<>();
+            for (Object value : values) {
+                // Values resolved at evaluation time cannot be indexed
+                if (!(value instanceof String) || ((String) value).contains("::")) {
+                    return UNCONSTRAINED;
+                }
+                foldedValues.add(ConditionContextHelper.foldToASCII((String) value));
+            }
+            return new ValueFilter(excluding, foldedValues, true);
+        }
+
+        /**
+         * Checks whether the analyzed condition may match a value.
+         *
+         * @param foldedValue the value of the property folded to ASCII, see {@link #fold(String)}, may be {@code null}
+         * @return {@code true} if the condition may match events having this value
+         */
+        public boolean accepts(String foldedValue) {
+            return excluding != (foldedValue != null && values.contains(foldedValue));
+        }
+
+        public boolean isUnconstrained() {
+            return excluding && values.isEmpty();
+        }
+
+        /**
+         * @return the accepted values if the filter lists them, {@code null} if the filter accepts all the values except
+         * a given set
+         */
+        public Set<String> getValues() {
+            return excluding ? null : values;
+        }
+
+        ValueFilter union(ValueFilter other) {
+            boolean unionExact = exact && other.exact;
+            if (!excluding && !other.excluding) {
+                return new ValueFilter(false, union(values, other.values), unionExact);
+            } else if (excluding && other.excluding) {
+                return new ValueFilter(true, intersection(values, other.values), unionExact);
+            }
+            ValueFilter including = excluding ? other : this;
+            ValueFilter excluded = excluding ? this : other;
+            return new ValueFilter(true, difference(excluded.values, including.values), unionExact);
+        }
+
+        ValueFilter intersect(ValueFilter other) {
+            boolean intersectionExact = exact && other.exact;
+            if (!excluding && !other.excluding) {
+                return new ValueFilter(false, intersection(values, other.values), intersectionExact);
+            } else if (excluding && other.excluding) {
+                return new ValueFilter(true, union(values, other.values), intersectionExact);
+            }
+            ValueFilter including = excluding ? other : this;
+            ValueFilter excluded = excluding ? this : other;
+            return new ValueFilter(false, difference(including.values, excluded.values), intersectionExact);
+        }
+
+        ValueFilter negate() {
+            return exact ? new ValueFilter(!excluding, values, true) : UNCONSTRAINED;
+        }
+
+        private static Set<String> union(Set<String> first, Set<String> second) {
+            Set<String> result = new HashSet<>(first);
+            result.addAll(second);
+            return result;
+        }
+
+        private static Set<String> intersection(Set<String> first, Set<String> second) {
+            Set<String> result = new HashSet<>(first);
+            result.retainAll(second);
+            return result;
+        }
+
+        private static Set<String> difference(Set<String> first, Set<String> second) {
+            Set<String> result = new HashSet<>(first);
+            result.removeAll(second);
+            return result;
+        }
+
+        /**
+         * Folds a property value the way it is compared by the property condition evaluator.
+         *
+         * @param value the value of the property of the event
+         * @return the folded value
+         */
+        public static String fold(String value) {
+            return ConditionContextHelper.foldToASCII(value);
+        }
+
+        @Override
+        public String toString() {
+            return (excluding ? "all except " : "") + values + (exact ? "" : " (approximate)");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.unomi.services.impl.rules;
+
+import org.apache.unomi.api.Metadata;
+import org.apache.unomi.api.rules.Rule;
+import org.apache.unomi.services.impl.rules.EventConditionAnalyzer.ValueFilter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable index of the rules visible from a tenant, giving the rules that may match an event from its type,
+ * scope and target item type.
+ * <p>
+ * Rules are indexed by the event types found in their condition, as computed by
+ * {@link org.apache.unomi.api.utils.ParserHelper#resolveConditionEventTypes}, narrowed by the analysis of their
+ * condition by {@link EventConditionAnalyzer}: rules matching any event type except some of them, or constraining the
+ * type with property conditions, are not tested for every event anymore. The candidates of an event type and target
+ * item type are computed once and kept as arrays grouped by scope.
+ */
+public class RuleEventIndex {
+
+    static final String WILDCARD = "*";
+
+    private static final String NULL_KEY = "\u0000";
+    private static final int MAX_CACHED_CANDIDATES = 10000;
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final long version;
+    private final List<Layer> layers = new ArrayList<>();
+
+    private final ConcurrentMap<String, ScopedCandidates> candidatesByTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Builds an index from the event type indexes of the rules service.
+     *
+     * @param version              the version of the rules the index is built from
+     * @param rulesByEventTypeMaps the rules by event type of the tenant, then of the tenants it inherits rules from
+     */
+    public RuleEventIndex(long version, List<Map<String, Set<Rule>>> rulesByEventTypeMaps) {
+        this.version = version;
+        for (Map<String, Set<Rule>> rulesByEventTypeMap : rulesByEventTypeMaps) {
+            layers.add(new Layer(rulesByEventTypeMap));
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Retrieves the rules that may match an event. The returned rules must still be evaluated against the event.
+     *
+     * @param eventType      the type of the event
+     * @param scope          the scope of the event
+     * @param targetItemType the item type of the target of the event, may be {@code null}
+     * @return the candidate rules, the array must not be modified
+     */
+    public Rule[] getCandidates(String eventType, String scope, String targetItemType) {
+        String key = (eventType == null ? NULL_KEY : eventType) + NULL_KEY + (targetItemType == null ? NULL_KEY : targetItemType);
+        ScopedCandidates candidates = candidatesByTypes.get(key);
+        if (candidates == null) {
+            candidates = computeCandidates(eventType, targetItemType);
+            // Event and item types are sent by clients, the number of cached combinations is bounded
+            if (candidatesByTypes.size() < MAX_CACHED_CANDIDATES) {
+                candidatesByTypes.putIfAbsent(key, candidates);
+            }
+        }
+        return candidates.get(scope);
+    }
+
+    private ScopedCandidates computeCandidates(String eventType, String targetItemType) {
+        String foldedEventType = ValueFilter.fold(eventType);
+        String foldedTargetItemType = ValueFilter.fold(targetItemType);
+
+        Set<Rule> candidates = new LinkedHashSet<>();
+        // Rules are unique by id: a rule of an inherited tenant is hidden by a rule with the same id indexed for the event
+        // type in a previous layer, even when the analysis of its condition excludes it
+        Set<Rule> hidingRules = new HashSet<>();
+        for (Layer layer : layers) {
+            layer.addCandidates(candidates, hidingRules, eventType, foldedEventType, foldedTargetItemType);
+            layer.addIndexedRules(hidingRules, eventType);
+        }
+        return new ScopedCandidates(candidates);
+    }
+
+    /**
+     * The rules of a tenant.
+     */
+    private static final class Layer {
+        // Rules indexed under exact event types
+        private final Map<String, List<IndexedRule>> rulesByEventType = new HashMap<>();
+        // Rules indexed under the wildcard, constrained by their condition to some folded event types
+        private final Map<String, List<IndexedRule>> rulesByFoldedEventType = new HashMap<>();
+        // Rules that may match any event type, except the ones excluded by their condition
+        private final List<IndexedRule> wildcardRules = new ArrayList<>();
+        private final Set<Rule> allWildcardRules = new HashSet<>();
+
+        private Layer(Map<String, Set<Rule>> rulesByEventTypeMap) {
+            Map<Rule, Set<String>> eventTypesByRule = new IdentityHashMap<>();
+            for (Map.Entry<String, Set<Rule>> entry : rulesByEventTypeMap.entrySet()) {
+                for (Rule rule : entry.getValue()) {
+                    eventTypesByRule.computeIfAbsent(rule, k -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+
+            for (Map.Entry<Rule, Set<String>> entry : eventTypesByRule.entrySet()) {
+                Rule rule = entry.getKey();
+                IndexedRule indexedRule = new IndexedRule(rule,
+                        EventConditionAnalyzer.analyze(rule.getCondition(), EventConditionAnalyzer.EVENT_TYPE_PROPERTY),
+                        EventConditionAnalyzer.analyze(rule.getCondition(), EventConditionAnalyzer.TARGET_ITEM_TYPE_PROPERTY));
+                for (String eventType : entry.getValue()) {
+                    if (!WILDCARD.equals(eventType)) {
+                        rulesByEventType.computeIfAbsent(eventType, k -> new ArrayList<>()).add(indexedRule);
+                    }
+                }
+                if (entry.getValue().contains(WILDCARD)) {
+                    allWildcardRules.add(rule);
+                    Set<String> foldedEventTypes = indexedRule.eventTypes.getValues();
+                    if (foldedEventTypes != null) {
+                        for (String foldedEventType : foldedEventTypes) {
+                            rulesByFoldedEventType.computeIfAbsent(foldedEventType, k -> new ArrayList<>()).add(indexedRule);
+                        }
+                    } else {
+                        wildcardRules.add(indexedRule);
+                    }
+                }
+            }
+        }
+
+        private void addCandidates(Set<Rule> candidates, Set<Rule> hidingRules, String eventType, String foldedEventType, String foldedTargetItemType) {
+            addCandidates(candidates, hidingRules, eventType != null ? rulesByEventType.get(eventType) : null, foldedEventType, foldedTargetItemType);
+            addCandidates(candidates, hidingRules, foldedEventType != null ? rulesByFoldedEventType.get(foldedEventType) : null, foldedEventType, foldedTargetItemType);
+            addCandidates(candidates, hidingRules, wildcardRules, foldedEventType, foldedTargetItemType);
+        }
+
+        private static void addCandidates(Set<Rule> candidates, Set<Rule> hidingRules, List<IndexedRule> indexedRules,
+                                          String foldedEventType, String foldedTargetItemType) {
+            if (indexedRules == null) {
+                return;
+            }
+            for (IndexedRule indexedRule : indexedRules) {
+                if (!hidingRules.contains(indexedRule.rule)
+                        && indexedRule.eventTypes.accepts(foldedEventType)
+                        && indexedRule.targetItemTypes.accepts(foldedTargetItemType)) {
+                    candidates.add(indexedRule.rule);
+                }
+            }
+        }
+
+        private void addIndexedRules(Set<Rule> rules, String eventType) {
+            List<IndexedRule> eventTypeRules = eventType != null ? rulesByEventType.get(eventType) : null;
+            if (eventTypeRules != null) {
+                for (IndexedRule indexedRule : eventTypeRules) {
+                    rules.add(indexedRule.rule);
+                }
+            }
+            rules.addAll(allWildcardRules);
+        }
+    }
+
+    private static final class IndexedRule {
+        private final Rule rule;
+        private final ValueFilter eventTypes;
+        private final ValueFilter targetItemTypes;
+
+        private IndexedRule(Rule rule, ValueFilter eventTypes, ValueFilter targetItemTypes) {
+            this.rule = rule;
+            this.eventTypes = eventTypes;
+            this.targetItemTypes = targetItemTypes;
+        }
+    }
+
+    /**
+     * The candidates of an event type and target item type, by rule scope. Rules in the system scope, and rules without
+     * scope which are reported when evaluated, are candidates in every scope.
+     */
+    private static final class ScopedCandidates {
+        private final Map<String, Rule[]> rulesByScope = new HashMap<>();
+        private final Rule[] anyScopeRules;
+
+        private ScopedCandidates(Collection<Rule> rules) {
+            List<Rule> anyScope = new ArrayList<>();
+            Map<String, List<Rule>> byScope = new HashMap<>();
+            for (Rule rule : rules) {
+                String scope = rule.getMetadata() != null ? rule.getMetadata().getScope() : null;
+                if (scope == null || Metadata.SYSTEM_SCOPE.equals(scope)) {
+                    anyScope.add(rule);
+                } else {
+                    byScope.computeIfAbsent(scope, k -> new ArrayList<>()).add(rule);
+                }
+            }
+            anyScopeRules = anyScope.isEmpty() ? NO_RULES : anyScope.toArray(NO_RULES);
+            for (Map.Entry<String, List<Rule>> entry : byScope.entrySet()) {
+                List<Rule> scopeRules = new ArrayList<>(entry.getValue());
+                scopeRules.addAll(anyScope);
+                rulesByScope.put(entry.getKey(), scopeRules.toArray(NO_RULES));
+            }
+        }
+
+        private Rule[] get(String scope) {
+            if (scope == null) {
+                return anyScopeRules;
+            }
+            Rule[] rules = rulesByScope.get(scope);
+            return rules != null ? rules : anyScopeRules;
+        }
+    }
+}
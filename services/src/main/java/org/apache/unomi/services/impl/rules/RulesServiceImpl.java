@@ -50,6 +50,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.apache.unomi.api.tenants.TenantService.SYSTEM_TENANT;
@@ -71,6 +72,8 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
 
     private final Object cacheLock = new Object();
     private final Map<String, Map<String, Set<Rule>>> rulesByEventTypeByTenant = new ConcurrentHashMap<>();
+    private final Map<String, RuleEventIndex> ruleEventIndexByTenant = new ConcurrentHashMap<>();
+    private final AtomicLong rulesVersion = new AtomicLong();
     private final Map<String, Map<String, RuleStatistics>> ruleStatisticsByTenant = new ConcurrentHashMap<>();
     private volatile Boolean optimizedRulesActivated = true;
 
@@ -180,6 +183,7 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
                     String tenantId = rule.getTenantId();
                     Map<String, Set<Rule>> tenantEventTypeRules = getRulesByEventTypeForTenant(tenantId);
                     updateRulesByEventType(tenantEventTypeRules, rule);
+                    rulesVersion.incrementAndGet();
                 })
                 .build());
 
@@ -247,9 +251,8 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
                         // Query rules for current tenant
                         List<Rule> rules = persistenceService.query("tenantId", tenantId, "priority", Rule.class);
 
-                        // Update tenant event type rules cache
-                        Map<String, Set<Rule>> tenantEventTypeRules = getRulesByEventTypeForTenant(tenantId);
-                        tenantEventTypeRules.clear();
+                        // Rebuild the tenant event type rules cache, replaced once complete
+                        Map<String, Set<Rule>> tenantEventTypeRules = new ConcurrentHashMap<>();
 
                         for (Rule rule : rules) {
                             // Only ensure rule is resolved (for refresh from persistence)
@@ -261,8 +264,10 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
                             // Update event type index
                             updateRulesByEventType(tenantEventTypeRules, rule);
                         }
+                        rulesByEventTypeByTenant.put(tenantId, tenantEventTypeRules);
                     });
                 }
+                rulesVersion.incrementAndGet();
             }
         } catch (Throwable t) {
             LOGGER.error("Error loading rules from persistence back-end", t);
@@ -277,39 +282,18 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
         Boolean hasEventAlreadyBeenRaisedForSession = null;
         Boolean hasEventAlreadyBeenRaisedForProfile = null;
 
-        // Get rules for current tenant and event type
-        Set<Rule> eventTypeRules = new HashSet<>();
-        Map<String, Set<Rule>> tenantRules = getRulesByEventTypeForTenant(currentTenant);
-
+        // Get rules for current tenant and event type, including the rules inherited from the system tenant
+        Collection<Rule> eventTypeRules;
         if (optimizedRulesActivated) {
-            Set<Rule> typeRules = tenantRules.get(event.getEventType());
-            if (typeRules != null) {
-                eventTypeRules.addAll(typeRules);
-            }
-            Set<Rule> allEventRules = tenantRules.get("*");
-            if (allEventRules != null) {
-                eventTypeRules.addAll(allEventRules);
-            }
-
-            // If not in system tenant, also get inherited rules
-            if (!SYSTEM_TENANT.equals(currentTenant)) {
-                Map<String, Set<Rule>> systemRules = getRulesByEventTypeForTenant(SYSTEM_TENANT);
-                Set<Rule> systemTypeRules = systemRules.get(event.getEventType());
-                if (systemTypeRules != null) {
-                    eventTypeRules.addAll(systemTypeRules);
-                }
-                Set<Rule> systemAllEventRules = systemRules.get("*");
-                if (systemAllEventRules != null) {
-                    eventTypeRules.addAll(systemAllEventRules);
-                }
-            }
-
-            if (eventTypeRules.isEmpty()) {
+            Rule[] candidateRules = getRuleEventIndex(currentTenant).getCandidates(event.getEventType(), event.getScope(),
+                    event.getTarget() != null ? event.getTarget().getItemType() : null);
+            if (candidateRules.length == 0) {
                 return matchedRules;
             }
+            eventTypeRules = Arrays.asList(candidateRules);
         } else {
             // Get all rules from current tenant and system tenant if needed
-            eventTypeRules.addAll(getAllItems(Rule.class, true));
+            eventTypeRules = new HashSet<>(getAllItems(Rule.class, true));
         }
 
         // Rest of the existing matching logic
@@ -757,6 +741,7 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
         saveItem(rule, Rule::getItemId, Rule.ITEM_TYPE);
         Map<String, Set<Rule>> tenantEventTypeRules = getRulesByEventTypeForTenant(tenantId);
         updateRulesByEventType(tenantEventTypeRules, rule);
+        rulesVersion.incrementAndGet();
     }
 
     public void removeRule(String ruleId) {
@@ -1166,6 +1151,28 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
         }
     }
 
+    /**
+     * Retrieves the compiled index of the rules visible from a tenant, rebuilding it if the rules changed since it was
+     * built.
+     *
+     * @param tenantId the tenant
+     * @return the index of the rules of the tenant and of the system tenant
+     */
+    private RuleEventIndex getRuleEventIndex(String tenantId) {
+        long version = rulesVersion.get();
+        RuleEventIndex ruleEventIndex = ruleEventIndexByTenant.get(tenantId);
+        if (ruleEventIndex == null || ruleEventIndex.getVersion() != version) {
+            List<Map<String, Set<Rule>>> rulesByEventTypeMaps = new ArrayList<>();
+            rulesByEventTypeMaps.add(getRulesByEventTypeForTenant(tenantId));
+            if (!SYSTEM_TENANT.equals(tenantId)) {
+                rulesByEventTypeMaps.add(getRulesByEventTypeForTenant(SYSTEM_TENANT));
+            }
+            ruleEventIndex = new RuleEventIndex(version, rulesByEventTypeMaps);
+            ruleEventIndexByTenant.put(tenantId, ruleEventIndex);
+        }
+        return ruleEventIndex;
+    }
+
     private Map<String, RuleStatistics> getRuleStatisticsForTenant(String tenantId) {
         if (tenantId == null) {
             throw new IllegalArgumentException("Tenant ID cannot be null");
@@ -1296,6 +1303,7 @@ public class RulesServiceImpl extends AbstractMultiTypeCachingService implements
                                     cacheService.put(Rule.ITEM_TYPE, rule.getItemId(), tId, rule);
                                     Map<String, Set<Rule>> tenantEventTypeRules = getRulesByEventTypeForTenant(tId);
                                     updateRulesByEventType(tenantEventTypeRules, rule);
+                                    rulesVersion.incrementAndGet();
                                 }
                             }
                         }
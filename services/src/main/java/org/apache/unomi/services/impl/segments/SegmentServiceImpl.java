@@ -18,6 +18,7 @@
 package org.apache.unomi.services.impl.segments;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import net.jodah.failsafe.Failsafe;
 import net.jodah.failsafe.RetryPolicy;
 import org.apache.unomi.api.*;
@@ -47,7 +48,6 @@ import org.osgi.framework.BundleEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
 import java.security.MessageDigest;
@@ -84,6 +84,9 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
     private boolean pastEventsDisablePartitions = false;
     private int dailyDateExprEvaluationHourUtc = 5;
 
+    // The predefined definitions being loaded by the current thread, see loadPredefinedDefinitions
+    private final ThreadLocal<PredefinedDefinitions> predefinedDefinitions = new ThreadLocal<>();
+
     public SegmentServiceImpl() {
         LOGGER.info("Initializing segment service...");
     }
@@ -199,7 +202,7 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
 
     @Override
     public void postConstruct() {
-        super.postConstruct();
+        loadPredefinedDefinitions(super::postConstruct);
         initializeTimer();
         LOGGER.info("Segment service initialized.");
     }
@@ -213,8 +216,10 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
         if (bundleContext == null) {
             return;
         }
-        loadPredefinedSegments(bundleContext);
-        loadPredefinedScorings(bundleContext);
+        loadPredefinedDefinitions(() -> {
+            loadPredefinedSegments(bundleContext);
+            loadPredefinedScorings(bundleContext);
+        });
     }
 
     protected void processBundleStop(BundleContext bundleContext) {
@@ -230,20 +235,18 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
                 return;
             }
 
-            while (predefinedSegmentEntries.hasMoreElements()) {
-                URL predefinedSegmentURL = predefinedSegmentEntries.nextElement();
-                LOGGER.debug("Found predefined segment at {}, loading... ", predefinedSegmentURL);
-
-                try {
-                    Segment segment = CustomObjectMapper.getObjectMapper().readValue(predefinedSegmentURL, Segment.class);
-                    if (segment.getMetadata().getScope() == null) {
-                        segment.getMetadata().setScope("systemscope");
-                    }
-                    setSegmentDefinition(segment);
-                    LOGGER.info("Predefined segment with id {} registered", segment.getMetadata().getId());
-                } catch (IOException e) {
-                    LOGGER.error("Error while loading segment definition {}", predefinedSegmentURL, e);
+            List<Segment> segments = parsePredefinedItems(Collections.list(predefinedSegmentEntries), Segment.class);
+            segments.removeIf(Objects::isNull);
+            PredefinedDefinitions definitions = predefinedDefinitions.get();
+            if (definitions != null) {
+                loadPersistedDefinitions(segments, Segment.class, definitions.segments);
+            }
+            for (Segment segment : segments) {
+                if (segment.getMetadata().getScope() == null) {
+                    segment.getMetadata().setScope("systemscope");
                 }
+                setSegmentDefinition(segment);
+                LOGGER.info("Predefined segment with id {} registered", segment.getMetadata().getId());
             }
         });
     }
@@ -255,24 +258,138 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
                 return;
             }
 
-            while (predefinedScoringEntries.hasMoreElements()) {
-                URL predefinedScoringURL = predefinedScoringEntries.nextElement();
-                LOGGER.debug("Found predefined scoring at {}, loading... ", predefinedScoringURL);
+            List<Scoring> scorings = parsePredefinedItems(Collections.list(predefinedScoringEntries), Scoring.class);
+            scorings.removeIf(Objects::isNull);
+            PredefinedDefinitions definitions = predefinedDefinitions.get();
+            if (definitions != null) {
+                loadPersistedDefinitions(scorings, Scoring.class, definitions.scorings);
+            }
+            for (Scoring scoring : scorings) {
+                if (scoring.getMetadata().getScope() == null) {
+                    scoring.getMetadata().setScope("systemscope");
+                }
+                setScoringDefinition(scoring);
+                LOGGER.info("Predefined scoring with id {} registered", scoring.getMetadata().getId());
+            }
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <T extends Serializable> void preparePredefinedItems(BundleContext bundleContext, CacheableTypeConfig<T> config, List<T> items) {
+        PredefinedDefinitions definitions = predefinedDefinitions.get();
+        if (definitions == null) {
+            return;
+        }
+        if (config.getType() == Segment.class) {
+            loadPersistedDefinitions((List<Segment>) items, Segment.class, definitions.segments);
+        } else if (config.getType() == Scoring.class) {
+            loadPersistedDefinitions((List<Scoring>) items, Scoring.class, definitions.scorings);
+        }
+    }
 
-                try {
-                    Scoring scoring = CustomObjectMapper.getObjectMapper().readValue(predefinedScoringURL, Scoring.class);
-                    if (scoring.getMetadata().getScope() == null) {
-                        scoring.getMetadata().setScope("systemscope");
+    /**
+     * Runs a loading of predefined segments and scorings. The persisted versions of the definitions are read at once
+     * instead of one by one, unchanged definitions are not saved again, and the updates of existing profiles are
+     * deferred until the end of the loading, so that a definition modified several times is only applied once. Modified
+     * definitions are saved without the hash of their definition until their profiles are updated, so that a loading
+     * interrupted or failing before that updates the profiles again.
+     * <p>
+     * At startup, the loading covers all the bundles already started. A bundle started later is loaded on its own, the
+     * profiles are then updated once its definitions are registered. Only segments and scorings are loaded this way,
+     * the other predefined items are registered one by one.
+     *
+     * @param loading the loading of the definitions, which may register definitions of other types
+     */
+    private void loadPredefinedDefinitions(Runnable loading) {
+        if (predefinedDefinitions.get() != null) {
+            loading.run();
+            return;
+        }
+        PredefinedDefinitions definitions = new PredefinedDefinitions();
+        predefinedDefinitions.set(definitions);
+        try {
+            loading.run();
+        } finally {
+            predefinedDefinitions.remove();
+            contextManager.executeAsSystem(() -> updateExistingProfilesForPredefinedDefinitions(definitions));
+        }
+    }
+
+    /**
+     * Reads the persisted versions of definitions with a single query, or one query per batch of
+     * {@code maximumIdsQueryCount} definitions.
+     *
+     * @param definitions          the definitions
+     * @param clazz                the class of the definitions
+     * @param persistedDefinitions the persisted versions, by identifier, to which the read versions are added
+     */
+    private <T extends Item> void loadPersistedDefinitions(List<T> definitions, Class<T> clazz, Map<String, T> persistedDefinitions) {
+        List<String> ids = definitions.stream()
+                .map(Item::getItemId)
+                .filter(id -> id != null && !persistedDefinitions.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return;
+        }
+        contextManager.executeAsSystem(() -> {
+            try {
+                // Unlike loads, queries only see the definitions saved before the last refresh
+                persistenceService.refreshIndex(clazz);
+                for (int i = 0; i < ids.size(); i += maximumIdsQueryCount) {
+                    List<String> batchIds = ids.subList(i, Math.min(i + maximumIdsQueryCount, ids.size()));
+                    Condition idsCondition = definitionsService.getConditionBuilder().condition("idsCondition").parameter("ids", batchIds).parameter("match", true).build();
+                    for (T persistedDefinition : persistenceService.query(idsCondition, null, clazz, 0, batchIds.size()).getList()) {
+                        persistedDefinitions.put(persistedDefinition.getItemId(), persistedDefinition);
+                    }
+                    for (String id : batchIds) {
+                        persistedDefinitions.putIfAbsent(id, null);
                     }
-                    setScoringDefinition(scoring);
-                    LOGGER.info("Predefined scoring with id {} registered", scoring.getMetadata().getId());
-                } catch (IOException e) {
-                    LOGGER.error("Error while loading segment definition {}", predefinedScoringURL, e);
                 }
+            } catch (Exception e) {
+                LOGGER.warn("Unable to read the persisted {} definitions at once, they will be read one by one", clazz.getSimpleName(), e);
             }
         });
     }
 
+    private <T extends Item> T loadPersistedDefinition(String id, Class<T> clazz, Map<String, T> persistedDefinitions) {
+        if (!persistedDefinitions.containsKey(id)) {
+            persistedDefinitions.put(id, persistenceService.load(id, clazz));
+        }
+        return persistedDefinitions.get(id);
+    }
+
+    private void updateExistingProfilesForPredefinedDefinitions(PredefinedDefinitions definitions) {
+        // The updates run back to back, each of them must see the profiles updated by the previous ones
+        for (Map.Entry<String, Segment> entry : definitions.previousSegments.entrySet()) {
+            Segment segment = definitions.segments.get(entry.getKey());
+            try {
+                // A definition modified back to the version whose profiles were updated only needs its hash saved
+                if (entry.getValue() == null || !getDefinitionHash(segment).equals(entry.getValue().getDefinitionHash())) {
+                    persistenceService.refreshIndex(Profile.class);
+                    updateExistingProfilesForSegment(segment);
+                }
+                saveAppliedDefinitionHash(segment);
+            } catch (Exception e) {
+                LOGGER.error("Error while updating the existing profiles for segment {}, they will be updated on its next registration", entry.getKey(), e);
+            }
+        }
+        for (Map.Entry<String, Scoring> entry : definitions.previousScorings.entrySet()) {
+            Scoring scoring = definitions.scorings.get(entry.getKey());
+            try {
+                if (entry.getValue() != null && getDefinitionHash(scoring).equals(entry.getValue().getDefinitionHash())) {
+                    saveAppliedDefinitionHash(scoring);
+                } else {
+                    persistenceService.refreshIndex(Profile.class);
+                    updateExistingProfilesAndSaveDefinitionHash(entry.getValue(), scoring);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error while updating the existing profiles for scoring {}, they will be updated on its next registration", entry.getKey(), e);
+            }
+        }
+    }
+
     public PartialList<Metadata> getSegmentMetadatas(int offset, int size, String sortBy) {
         return getSegmentMetadatas(null, offset, size, sortBy);
     }
@@ -466,10 +583,34 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
 
         segment.setTenantId(contextManager.getCurrentContext().getTenantId());
 
-        // Save segment and update cache
-        persistenceService.save(segment, null, true);
+        PredefinedDefinitions definitions = predefinedDefinitions.get();
+        Segment previousSegment = definitions != null ? loadPersistedDefinition(segment.getItemId(), Segment.class, definitions.segments)
+                : persistenceService.load(segment.getItemId(), Segment.class);
+        String previousHash = previousSegment != null ? previousSegment.getDefinitionHash() : null;
+        String definitionHash = getDefinitionHash(segment);
+        boolean unchanged = previousHash != null && previousHash.equals(definitionHash);
+        // The hash is only saved once the existing profiles are updated, until then any registration updates them again
+        segment.setDefinitionHash(unchanged ? definitionHash : null);
+
+        // Save segment and update cache, unchanged predefined segments are not saved again
+        if (definitions == null || !unchanged) {
+            persistenceService.save(segment, null, true);
+        }
         cacheService.put(Segment.ITEM_TYPE, segment.getItemId(), segment.getTenantId(), segment);
+
+        if (unchanged) {
+            LOGGER.info("Segment {} is unchanged, skipping the update of existing profiles", segment.getItemId());
+            return;
+        }
+        if (definitions != null) {
+            if (!definitions.previousSegments.containsKey(segment.getItemId())) {
+                definitions.previousSegments.put(segment.getItemId(), previousSegment);
+            }
+            definitions.segments.put(segment.getItemId(), segment);
+            return;
+        }
         updateExistingProfilesForSegment(segment);
+        saveAppliedDefinitionHash(segment);
     }
 
     private boolean checkSegmentDeletionImpact(Condition condition, String segmentToDeleteId) {
@@ -835,10 +976,23 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
             }
         }
 
-        // Save to persistence and cache
-        persistenceService.save(scoring);
+        PredefinedDefinitions definitions = predefinedDefinitions.get();
+        Scoring previousScoring = definitions != null ? loadPersistedDefinition(scoring.getItemId(), Scoring.class, definitions.scorings)
+                : persistenceService.load(scoring.getItemId(), Scoring.class);
+        String previousHash = previousScoring != null ? previousScoring.getDefinitionHash() : null;
+        String definitionHash = getDefinitionHash(scoring);
+        boolean unchanged = previousHash != null && previousHash.equals(definitionHash);
+        // The hash is only saved once the existing profiles are updated, until then any registration updates them again
+        scoring.setDefinitionHash(unchanged ? definitionHash : null);
+
+        // Update cache, unchanged predefined scorings are not saved again and already have their mapping
         cacheService.put(Scoring.ITEM_TYPE, scoring.getItemId(), scoring.getTenantId(), scoring);
+        if (definitions != null && unchanged) {
+            LOGGER.info("Scoring {} is unchanged, skipping the update of existing profiles", scoring.getItemId());
+            return;
+        }
 
+        persistenceService.save(scoring);
         persistenceService.createMapping(Profile.ITEM_TYPE, String.format(
                 "{\n" +
                         "  \"properties\": {\n" +
@@ -852,7 +1006,56 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
                         "  }\n" +
                         "}", scoring.getItemId()));
 
-        updateExistingProfilesForScoring(scoring.getItemId(), scoring.getElements(), scoring.getMetadata().isEnabled());
+        if (unchanged) {
+            LOGGER.info("Scoring {} is unchanged, skipping the update of existing profiles", scoring.getItemId());
+            return;
+        }
+        if (definitions != null) {
+            if (!definitions.previousScorings.containsKey(scoring.getItemId())) {
+                definitions.previousScorings.put(scoring.getItemId(), previousScoring);
+            }
+            definitions.scorings.put(scoring.getItemId(), scoring);
+            return;
+        }
+        updateExistingProfilesAndSaveDefinitionHash(previousScoring, scoring);
+    }
+
+    private void updateExistingProfilesAndSaveDefinitionHash(Scoring previousScoring, Scoring scoring) {
+        if (updateExistingProfilesForScoring(previousScoring, scoring)) {
+            saveAppliedDefinitionHash(scoring);
+        } else {
+            LOGGER.warn("Unable to update the existing profiles for scoring {}, they will be updated on its next registration", scoring.getItemId());
+        }
+    }
+
+    /**
+     * Updates the scores of the existing profiles for a new version of a scoring, applying the changes of its elements
+     * when the previous version was fully applied to the profiles.
+     *
+     * @return {@code true} if the profiles were updated, {@code false} otherwise
+     */
+    private boolean updateExistingProfilesForScoring(Scoring previousScoring, Scoring scoring) {
+        if (previousScoring != null && previousScoring.getDefinitionHash() != null && previousScoring != scoring
+                && updateExistingProfilesForScoringChanges(previousScoring, scoring)) {
+            return true;
+        }
+        return updateExistingProfilesForScoring(scoring.getItemId(), scoring.getElements(), scoring.getMetadata().isEnabled());
+    }
+
+    /**
+     * Saves a segment with the hash of its definition, once the existing profiles are updated for it.
+     */
+    private void saveAppliedDefinitionHash(Segment segment) {
+        segment.setDefinitionHash(getDefinitionHash(segment));
+        persistenceService.save(segment, null, true);
+    }
+
+    /**
+     * Saves a scoring with the hash of its definition, once the existing profiles are updated for it.
+     */
+    private void saveAppliedDefinitionHash(Scoring scoring) {
+        scoring.setDefinitionHash(getDefinitionHash(scoring));
+        persistenceService.save(scoring);
     }
 
     public void createScoringDefinition(String scope, String scoringId, String name, String description) {
@@ -1031,11 +1234,16 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
     public void updateAutoGeneratedRules(Metadata metadata, Condition condition) {
         List<Rule> previousRules = persistenceService.query("linkedItems", metadata.getId(), null, Rule.class);
         List<Rule> rules = new ArrayList<Rule>();
+        Set<String> modifiedRuleIds = new HashSet<>();
         if (condition != null) {
-            getAutoGeneratedRules(metadata, condition, null, rules);
+            getAutoGeneratedRules(metadata, condition, null, rules, modifiedRuleIds);
         }
+        boolean loadingPredefinedDefinitions = predefinedDefinitions.get() != null;
         for (Rule rule : rules) {
-            rulesService.setRule(rule);
+            // Existing rules already linked to the item are only saved again outside of the loading of predefined definitions
+            if (!loadingPredefinedDefinitions || modifiedRuleIds.contains(rule.getItemId())) {
+                rulesService.setRule(rule);
+            }
         }
         previousRules.removeAll(rules);
         clearAutoGeneratedRules(previousRules, metadata.getId());
@@ -1053,7 +1261,8 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
         }
     }
 
-    private void getAutoGeneratedRules(Metadata metadata, Condition condition, Condition parentCondition, List<Rule> rules) {
+    private void getAutoGeneratedRules(Metadata metadata, Condition condition, Condition parentCondition, List<Rule> rules,
+                                       Set<String> modifiedRuleIds) {
         // Resolve condition type if needed before accessing it
         if (condition.getConditionType() == null) {
             TypeResolutionService typeResolutionService = getTypeResolutionService();
@@ -1084,8 +1293,10 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
                     // it's a new generated rules to keep track of the event count, we should update all the profile that match this past event
                     // it will update the count of event occurrence on the profile directly
                     recalculatePastEventOccurrencesOnProfiles(condition, parentCondition, true, false);
+                    modifiedRuleIds.add(rule.getItemId());
                 } else if (!rule.getLinkedItems().contains(metadata.getId())) {
                     rule.getLinkedItems().add(metadata.getId());
+                    modifiedRuleIds.add(rule.getItemId());
                 }
                 rules.add(rule);
             }
@@ -1093,11 +1304,11 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
             Collection<Object> values = new ArrayList<>(condition.getParameterValues().values());
             for (Object parameterValue : values) {
                 if (parameterValue instanceof Condition) {
-                    getAutoGeneratedRules(metadata, (Condition) parameterValue, condition, rules);
+                    getAutoGeneratedRules(metadata, (Condition) parameterValue, condition, rules, modifiedRuleIds);
                 } else if (parameterValue instanceof Collection) {
                     for (Object subCondition : (Collection<?>) parameterValue) {
                         if (subCondition instanceof Condition) {
-                            getAutoGeneratedRules(metadata, (Condition) subCondition, condition, rules);
+                            getAutoGeneratedRules(metadata, (Condition) subCondition, condition, rules, modifiedRuleIds);
                         }
                     }
                 }
@@ -1494,7 +1705,7 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
         return sourceMap;
     }
 
-    private void updateExistingProfilesForScoring(String scoringId, List<ScoringElement> scoringElements, boolean isEnabled) {
+    private boolean updateExistingProfilesForScoring(String scoringId, List<ScoringElement> scoringElements, boolean isEnabled) {
         long startTime = System.currentTimeMillis();
 
         String[] scripts = new String[scoringElements.size() + 1];
@@ -1522,8 +1733,189 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
                 idx++;
             }
         }
-        persistenceService.updateWithQueryAndStoredScript(Profile.class, scripts, scriptParams, conditions);
+        if (!persistenceService.updateWithQueryAndStoredScript(Profile.class, scripts, scriptParams, conditions)) {
+            return false;
+        }
         LOGGER.info("Updated scoring for profiles in {}ms", System.currentTimeMillis() - startTime);
+        return true;
+    }
+
+    /**
+     * Applies the changes of the elements of a scoring to the scores of existing profiles: the values of the removed
+     * elements are subtracted from the profiles matching them and the values of the added elements are added to the
+     * profiles matching them, a modified element being both removed and added. This avoids resetting and evaluating
+     * again all the elements of the scoring.
+     *
+     * @param previousScoring the scoring as it was when profiles were last updated
+     * @param scoring         the new scoring
+     * @return {@code false} if the changes cannot be applied incrementally, or failed to be, and all the elements must
+     * be evaluated again
+     */
+    private boolean updateExistingProfilesForScoringChanges(Scoring previousScoring, Scoring scoring) {
+        if (previousScoring.getMetadata().isEnabled() != scoring.getMetadata().isEnabled()
+                || previousScoring.getMetadata().isMissingPlugins() != scoring.getMetadata().isMissingPlugins()
+                || previousScoring.getElements() == null || scoring.getElements() == null) {
+            return false;
+        }
+        if (!scoring.getMetadata().isEnabled()) {
+            // The scores were already reset when the scoring was disabled
+            return true;
+        }
+
+        Map<String, Deque<ScoringElement>> removedElements = new LinkedHashMap<>();
+        for (ScoringElement element : previousScoring.getElements()) {
+            String hash = getContentHash(element);
+            if (hash == null) {
+                return false;
+            }
+            removedElements.computeIfAbsent(hash, h -> new ArrayDeque<>()).add(element);
+        }
+        List<ScoringElement> addedElements = new ArrayList<>();
+        for (ScoringElement element : scoring.getElements()) {
+            String hash = getContentHash(element);
+            if (hash == null) {
+                return false;
+            }
+            Deque<ScoringElement> previousElements = removedElements.get(hash);
+            if (previousElements != null && !previousElements.isEmpty()) {
+                previousElements.poll();
+            } else {
+                addedElements.add(element);
+            }
+        }
+
+        List<ScoringElement> changedElements = new ArrayList<>();
+        removedElements.values().forEach(changedElements::addAll);
+        int removedCount = changedElements.size();
+        changedElements.addAll(addedElements);
+        TypeResolutionService typeResolutionService = getTypeResolutionService();
+        for (ScoringElement element : changedElements) {
+            // Profiles matching a time dependent condition may have changed since they were scored
+            if (element.getCondition() == null || isTimeDependent(element.getCondition())) {
+                return false;
+            }
+            if (element.getCondition().getConditionType() == null && (typeResolutionService == null
+                    || !typeResolutionService.resolveConditionType(element.getCondition(), "scoring element for scoring " + scoring.getItemId()))) {
+                return false;
+            }
+        }
+        if (changedElements.isEmpty()) {
+            return true;
+        }
+
+        long startTime = System.currentTimeMillis();
+        String[] scripts = new String[changedElements.size()];
+        Map<String, Object>[] scriptParams = new HashMap[changedElements.size()];
+        Condition[] conditions = new Condition[changedElements.size()];
+        for (int i = 0; i < changedElements.size(); i++) {
+            ScoringElement element = changedElements.get(i);
+            scriptParams[i] = new HashMap<>();
+            scriptParams[i].put("scoringId", scoring.getItemId());
+            scriptParams[i].put("scoringValue", i < removedCount ? -element.getValue() : element.getValue());
+            scripts[i] = EVALUATE_SCORING_ELEMENT_SCRIPT;
+            conditions[i] = element.getCondition();
+        }
+        if (!persistenceService.updateWithQueryAndStoredScript(Profile.class, scripts, scriptParams, conditions)) {
+            // The scores are reset and all the elements evaluated again, whichever changes were applied
+            LOGGER.warn("Unable to apply the changes of scoring {} to the existing profiles, evaluating all its elements", scoring.getItemId());
+            return false;
+        }
+        LOGGER.info("Updated scoring for profiles with {} removed and {} added elements in {}ms", removedCount,
+                changedElements.size() - removedCount, System.currentTimeMillis() - startTime);
+        return true;
+    }
+
+    /**
+     * Checks if the profiles matched by a condition may change with time alone, walking the condition tree along with
+     * the parent conditions of the condition types, through which conditions such as newVisitorCondition resolve. Past
+     * event conditions, date expressions and dates relative to now are time dependent. Conditions that cannot be fully
+     * inspected, such as conditions of unknown types or scripted parameters, are considered time dependent.
+     */
+    private boolean isTimeDependent(Condition condition) {
+        return isTimeDependent(condition, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private boolean isTimeDependent(Condition condition, Set<Condition> visitedConditions) {
+        if (!visitedConditions.add(condition)) {
+            return false;
+        }
+        if ("pastEventCondition".equals(condition.getConditionTypeId())) {
+            return true;
+        }
+        ConditionType conditionType = condition.getConditionType();
+        if (conditionType == null && condition.getConditionTypeId() != null && definitionsService != null) {
+            conditionType = definitionsService.getConditionType(condition.getConditionTypeId());
+        }
+        if (conditionType == null) {
+            return true;
+        }
+        for (Map.Entry<String, Object> parameter : condition.getParameterValues().entrySet()) {
+            if (parameter.getKey().endsWith("DateExpr") || isTimeDependentValue(parameter.getValue(), visitedConditions)) {
+                return true;
+            }
+        }
+        return conditionType.getParentCondition() != null && isTimeDependent(conditionType.getParentCondition(), visitedConditions);
+    }
+
+    private boolean isTimeDependentValue(Object value, Set<Condition> visitedConditions) {
+        if (value instanceof Condition) {
+            return isTimeDependent((Condition) value, visitedConditions);
+        }
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                if (isTimeDependentValue(item, visitedConditions)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (value instanceof Map) {
+            // Conditions that were not deserialized as such
+            return true;
+        }
+        // Date math relative to now, such as "now-30d", and scripts which may compute such dates
+        return value instanceof String && (((String) value).regionMatches(true, 0, "now", 0, 3)
+                || ((String) value).startsWith("script::"));
+    }
+
+    private String getDefinitionHash(Segment segment) {
+        return getDefinitionHash(segment.getMetadata(), segment.getCondition());
+    }
+
+    private String getDefinitionHash(Scoring scoring) {
+        return getDefinitionHash(scoring.getMetadata(), scoring.getElements());
+    }
+
+    /**
+     * Computes the hash of the content of a segment or scoring definition which affects the profiles.
+     */
+    private String getDefinitionHash(Metadata metadata, Object content) {
+        Map<String, Object> definition = new LinkedHashMap<>();
+        definition.put("enabled", metadata.isEnabled());
+        definition.put("missingPlugins", metadata.isMissingPlugins());
+        definition.put("content", content);
+        return getContentHash(definition);
+    }
+
+    /**
+     * Computes a SHA-256 hash of the canonical JSON form of an object, with the entries of maps sorted by keys.
+     *
+     * @return the hash, or {@code null} if the object cannot be serialized
+     */
+    private String getContentHash(Object content) {
+        try {
+            byte[] json = CustomObjectMapper.getObjectMapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(content);
+            byte[] array = MessageDigest.getInstance("SHA-256").digest(json);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : array) {
+                sb.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1, 3));
+            }
+            return sb.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            LOGGER.warn("Unable to compute the hash of the definition, existing profiles will be updated", e);
+            return null;
+        }
     }
 
     public void bundleChanged(BundleEvent event) {
@@ -1783,4 +2175,17 @@ public class SegmentServiceImpl extends AbstractMultiTypeCachingService implemen
             }
         }
     }
+
+    /**
+     * The state of a loading of predefined segments and scorings.
+     */
+    private static final class PredefinedDefinitions {
+        // The latest persisted versions of the definitions, by identifier, null for definitions that are not persisted
+        private final Map<String, Segment> segments = new HashMap<>();
+        private final Map<String, Scoring> scorings = new HashMap<>();
+        // The versions persisted before the loading of the modified definitions, whose profiles must be updated before
+        // the hashes of the modified definitions are saved
+        private final Map<String, Segment> previousSegments = new LinkedHashMap<>();
+        private final Map<String, Scoring> previousScorings = new LinkedHashMap<>();
+    }
 }
@@ -21,7 +21,6 @@ import org.apache.unomi.api.PersonalizationResult;
 import org.apache.unomi.api.Profile;
 import org.apache.unomi.api.Session;
 import org.apache.unomi.api.PersonalizationStrategy;
-import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.services.PersonalizationService;
 import org.apache.unomi.api.services.ProfileService;
 
@@ -42,15 +41,9 @@ public class FilterPersonalizationStrategy implements PersonalizationStrategy {
     @Override
     public PersonalizationResult personalizeList(Profile profile, Session session, PersonalizationService.PersonalizationRequest personalizationRequest) {
         List<String> sortedContent = new ArrayList<>();
+        PersonalizationConditionMatcher matcher = new PersonalizationConditionMatcher(profileService, profile, session);
         for (PersonalizationService.PersonalizedContent personalizedContent : personalizationRequest.getContents()) {
-            boolean result = true;
-            if (personalizedContent.getFilters() != null) {
-                for (PersonalizationService.Filter filter : personalizedContent.getFilters()) {
-                    Condition condition = filter.getCondition();
-                    result &= profileService.matchCondition(condition, profile, session);
-                }
-            }
-            if (result) {
+            if (matcher.matchesAll(personalizedContent.getFilters())) {
                 sortedContent.add(personalizedContent.getId());
             }
         }
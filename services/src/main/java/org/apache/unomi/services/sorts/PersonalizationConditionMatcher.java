@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.services.sorts;
+
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.api.services.PersonalizationService;
+import org.apache.unomi.api.services.ProfileService;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the filters of a personalization request against a profile and session, remembering the result of each
+ * condition. Contents of a same request often share their filter conditions, so each condition instance is only resolved
+ * and evaluated once per request. Conditions are compared by identity, as hashing a condition tree by value costs about
+ * as much as evaluating it and conditions may be modified when they are resolved.
+ * <p>
+ * A matcher is bound to a profile and session and is not thread safe: a new one must be created for each request.
+ */
+public class PersonalizationConditionMatcher {
+
+    private final ProfileService profileService;
+    private final Profile profile;
+    private final Session session;
+    private final Map<Condition, Boolean> results = new IdentityHashMap<>();
+
+    public PersonalizationConditionMatcher(ProfileService profileService, Profile profile, Session session) {
+        this.profileService = profileService;
+        this.profile = profile;
+        this.session = session;
+    }
+
+    /**
+     * Checks if a condition matches the profile and session.
+     *
+     * @param condition the condition
+     * @return true if the condition matches
+     */
+    public boolean matches(Condition condition) {
+        Boolean result = results.get(condition);
+        if (result == null) {
+            result = profileService.matchCondition(condition, profile, session);
+            results.put(condition, result);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if all the filters with a condition match the profile and session, stopping at the first one that does
+     * not match.
+     *
+     * @param filters the filters, may be null
+     * @return true if all the filters match
+     */
+    public boolean matchesAll(List<PersonalizationService.Filter> filters) {
+        if (filters != null) {
+            for (PersonalizationService.Filter filter : filters) {
+                Condition condition = filter.getCondition();
+                if (condition != null && condition.getConditionTypeId() != null && !matches(condition)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the number of distinct conditions evaluated so far.
+     *
+     * @return the number of evaluated conditions
+     */
+    public int getEvaluatedConditionCount() {
+        return results.size();
+    }
+}
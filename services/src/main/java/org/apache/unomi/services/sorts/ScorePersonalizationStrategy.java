@@ -45,41 +45,44 @@ public class ScorePersonalizationStrategy implements PersonalizationStrategy {
             threshold = 1;
         }
 
+        PersonalizationConditionMatcher matcher = new PersonalizationConditionMatcher(profileService, profile, session);
+        Map<String, Integer> interestValues = getInterestValues(profile);
+        // Contents often share the same interests and scoring plans, so each distinct list is only scored once
+        Map<String, Integer> interestListScores = new HashMap<>();
+        Map<String, Integer> scoringPlanListScores = new HashMap<>();
+
         for (PersonalizationService.PersonalizedContent personalizedContent : personalizationRequest.getContents()) {
             int score = 0;
 
             String interestList = (String) (personalizedContent.getProperties() != null ? personalizedContent.getProperties().get("interests") : null);
-            if (interestList != null) {
-                List<Map<String, Object>> profileInterests = (List<Map<String, Object>>) profile.getProperties().get("interests");
-                if (profileInterests != null) {
-                    for (String interest : interestList.split(" ")) {
-                        for (Map<String, Object> profileInterest : profileInterests) {
-                            if (profileInterest.get("key").equals(interest)){
-                                score += ((Number) profileInterest.get("value")).intValue();
-                                break;
-                            }
-                        }
+            if (interestList != null && !interestValues.isEmpty()) {
+                score += interestListScores.computeIfAbsent(interestList, list -> {
+                    int interestScore = 0;
+                    for (String interest : list.split(" ")) {
+                        interestScore += interestValues.getOrDefault(interest, 0);
                     }
-                }
+                    return interestScore;
+                });
             }
 
             String scoringPlanList = (String) (personalizedContent.getProperties() != null ? personalizedContent.getProperties().get("scoringPlans") : null);
             if (scoringPlanList != null) {
-                Map<String,Integer> scoreValues = profile.getScores();
-                for (String scoringPlan : scoringPlanList.split(" ")) {
-                    if (scoreValues.get(scoringPlan) != null) {
-                        score += scoreValues.get(scoringPlan);
-                    } else {
-                        score++;
+                score += scoringPlanListScores.computeIfAbsent(scoringPlanList, list -> {
+                    Map<String, Integer> scoreValues = profile.getScores();
+                    int scoringPlanScore = 0;
+                    for (String scoringPlan : list.split(" ")) {
+                        Integer scoreValue = scoreValues != null ? scoreValues.get(scoringPlan) : null;
+                        scoringPlanScore += scoreValue != null ? scoreValue : 1;
                     }
-                }
+                    return scoringPlanScore;
+                });
             }
 
             if (personalizedContent.getFilters() != null) {
                 for (PersonalizationService.Filter filter : personalizedContent.getFilters()) {
                     Condition condition = filter.getCondition();
                     if (condition != null && condition.getConditionTypeId() != null) {
-                        if (profileService.matchCondition(condition, profile, session)) {
+                        if (matcher.matches(condition)) {
                             if (filter.getProperties() != null && filter.getProperties().get("score") != null) {
                                 score += (int) filter.getProperties().get("score");
                             } else {
@@ -104,4 +107,21 @@ public class ScorePersonalizationStrategy implements PersonalizationStrategy {
 
         return new PersonalizationResult(sortedContent);
     }
+
+    private Map<String, Integer> getInterestValues(Profile profile) {
+        List<Map<String, Object>> profileInterests = (List<Map<String, Object>>) profile.getProperties().get("interests");
+        if (profileInterests == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> interestValues = new HashMap<>();
+        for (Map<String, Object> profileInterest : profileInterests) {
+            Object key = profileInterest.get("key");
+            Object value = profileInterest.get("value");
+            if (key != null && value instanceof Number) {
+                // The first occurrence of an interest is the one used for scoring
+                interestValues.putIfAbsent(key.toString(), ((Number) value).intValue());
+            }
+        }
+        return interestValues;
+    }
 }
@@ -19,6 +19,7 @@ package org.apache.unomi.services.impl;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.unomi.api.*;
+import org.apache.unomi.api.campaigns.CampaignStatistics;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.query.DateRange;
 import org.apache.unomi.api.query.IpRange;
@@ -58,7 +59,7 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
     // System items have their itemType appended to the document ID: tenantId_itemId_itemType
     private static final Collection<String> systemItems = Arrays.asList("actionType", "campaign", "campaignevent", "goal", "userList",
             "propertyType", "scope", "conditionType", "rule", "scoring", "segment", "groovyAction", "topic", "patch", "jsonSchema",
-            "importConfig", "exportConfig", "rulestats");
+            "importConfig", "exportConfig", "rulestats", "campaignstats");
 
     private final Map<String, Item> itemsById = new ConcurrentHashMap<>();
     private final Map<String, Map<String, Map<String, Object>>> propertyMappings = new ConcurrentHashMap<>();
@@ -873,6 +874,29 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
         return load(itemId, clazz);
     }
 
+    @Override
+    public Map<Class<? extends Item>, Item> multiLoad(String itemId, List<Class<? extends Item>> classes) {
+        Map<Class<? extends Item>, String> itemIds = new LinkedHashMap<>();
+        for (Class<? extends Item> clazz : classes) {
+            itemIds.put(clazz, itemId);
+        }
+        return multiLoad(itemIds);
+    }
+
+    @Override
+    public Map<Class<? extends Item>, Item> multiLoad(Map<Class<? extends Item>, String> itemIds) {
+        // Simulates a multi-get: the items are retrieved in a single operation
+        Map<Class<? extends Item>, Item> items = new LinkedHashMap<>();
+        for (Map.Entry<Class<? extends Item>, String> entry : itemIds.entrySet()) {
+            Class<? extends Item> clazz = entry.getKey();
+            Item item = entry.getValue() != null ? itemsById.get(getKey(entry.getValue(), getIndex(clazz))) : null;
+            if (item != null && clazz.isAssignableFrom(item.getClass()) && executionContextManager.getCurrentContext().getTenantId().equals(item.getTenantId())) {
+                items.put(clazz, handleItemReverseTransformation(item));
+            }
+        }
+        return items;
+    }
+
     @Override
     public <T extends Item> boolean remove(String itemId, Class<T> clazz) {
         String key = getKey(itemId, getIndex(clazz));
@@ -1461,7 +1485,7 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
                 String propertyName = entry.getKey().toString();
                 Object propertyValue = entry.getValue();
                 try {
-                    PropertyUtils.setProperty(existingItem, propertyName, propertyValue);
+                    mergeProperty(existingItem, propertyName, propertyValue);
                 } catch (Exception e) {
                     LOGGER.debug("Failed to set property: " + propertyName, e);
                     return false;
@@ -1522,6 +1546,25 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
         }
     }
 
+    /**
+     * Sets a property of an updated item, merging objects into the existing ones as done by a partial document update
+     * (simulates Elasticsearch/OpenSearch behavior)
+     */
+    @SuppressWarnings("unchecked")
+    private void mergeProperty(Object target, String propertyName, Object propertyValue) throws Exception {
+        Object existingValue = target instanceof Map ? ((Map<String, Object>) target).get(propertyName) : PropertyUtils.getProperty(target, propertyName);
+        if (propertyValue instanceof Map && existingValue != null && !(existingValue instanceof Collection) && !(existingValue instanceof String)
+                && !(existingValue instanceof Number) && !(existingValue instanceof Boolean) && !(existingValue instanceof Date)) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) propertyValue).entrySet()) {
+                mergeProperty(existingValue, entry.getKey().toString(), entry.getValue());
+            }
+        } else if (target instanceof Map) {
+            ((Map<String, Object>) target).put(propertyName, propertyValue);
+        } else {
+            PropertyUtils.setProperty(target, propertyName, propertyValue);
+        }
+    }
+
     @Override
     public boolean update(Item item, Date dateHint, Class<?> clazz, String propertyName, Object propertyValue) {
         if (item == null || propertyName == null || clazz == null) {
@@ -1569,10 +1612,14 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
             success = executeUpdatePastEventOccurrencesScript(item, scriptParams);
         } else if (script.contains("updateProfileId")) {
             success = executeUpdateProfileIdScript(item, scriptParams);
+        } else if (script.contains("anonymizeBrowsingData")) {
+            success = executeAnonymizeBrowsingDataScript(item, scriptParams);
         } else if (script.contains("resetScoringPlan")) {
             success = executeResetScoringPlanScript(item, scriptParams);
         } else if (script.contains("evaluateScoringPlanElement")) {
             success = executeEvaluateScoringPlanElementScript(item, scriptParams);
+        } else if (script.contains("incrementCampaignStatistics")) {
+            success = executeIncrementCampaignStatisticsScript(item, scriptParams);
         }
 
         // Throw for unrecognized scripts so callers notice missing handlers early
@@ -1587,48 +1634,62 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
     }
 
     private boolean executeResetScoringPlanScript(Item item, Map<String, Object> params) {
-        try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> systemProperties = (Map<String, Object>) PropertyUtils.getProperty(item, "systemProperties");
-            if (systemProperties == null) {
-                systemProperties = new HashMap<>();
-                PropertyUtils.setProperty(item, "systemProperties", systemProperties);
-            }
-
-            systemProperties.remove("scores");
-            systemProperties.remove("scoringPlan");
-
-            save(item);
-            return true;
-        } catch (Exception e) {
-            LOGGER.error("Error executing resetScoringPlan script", e);
+        // Same behavior as the resetScoringPlan stored script
+        if (!(item instanceof Profile)) {
             return false;
         }
+        Profile profile = (Profile) item;
+        if (profile.getScores() != null) {
+            profile.getScores().remove((String) params.get("scoringId"));
+        }
+        profile.setSystemProperty("lastUpdated", new Date());
+        save(item);
+        return true;
     }
 
-    private boolean executeEvaluateScoringPlanElementScript(Item item, Map<String, Object> params) {
-        try {
-            String scoringPlanId = (String) params.get("scoringPlanId");
-            String elementId = (String) params.get("elementId");
-            Integer score = (Integer) params.get("score");
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> systemProperties = (Map<String, Object>) PropertyUtils.getProperty(item, "systemProperties");
-            if (systemProperties == null) {
-                systemProperties = new HashMap<>();
-                PropertyUtils.setProperty(item, "systemProperties", systemProperties);
+    @SuppressWarnings("unchecked")
+    private boolean executeIncrementCampaignStatisticsScript(Item item, Map<String, Object> params) {
+        // Same behavior as the script of GoalsServiceImpl, applied to the stored document
+        synchronized (this) {
+            CampaignStatistics statistics = load(item.getItemId(), CampaignStatistics.class);
+            if (statistics == null) {
+                return false;
             }
+            statistics.setEngagedProfiles(statistics.getEngagedProfiles() + ((Number) params.get("engagedProfiles")).longValue());
+            statistics.setEngagedSessions(statistics.getEngagedSessions() + ((Number) params.get("engagedSessions")).longValue());
+            ((Map<String, Long>) params.get("goalStartedSessions")).forEach((goalId, value) -> statistics.getGoalStartedSessions().merge(goalId, value, Long::sum));
+            ((Map<String, Long>) params.get("goalReachedSessions")).forEach((goalId, value) -> statistics.getGoalReachedSessions().merge(goalId, value, Long::sum));
+            statistics.setLastSyncDate((Date) params.get("lastSyncDate"));
+            save(statistics);
+        }
+        return true;
+    }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> scores = (Map<String, Object>) systemProperties.computeIfAbsent("scores", k -> new HashMap<>());
-            scores.put(scoringPlanId + "--" + elementId, score);
-
-            save(item);
-            return true;
-        } catch (Exception e) {
-            LOGGER.error("Error executing evaluateScoringPlanElement script", e);
+    private boolean executeEvaluateScoringPlanElementScript(Item item, Map<String, Object> params) {
+        // Same behavior as the evaluateScoringPlanElement stored script
+        if (!(item instanceof Profile)) {
             return false;
         }
+        Profile profile = (Profile) item;
+        String scoringId = (String) params.get("scoringId");
+        int scoringValue = ((Number) params.get("scoringValue")).intValue();
+        if (profile.getScores() == null) {
+            profile.setScores(new HashMap<>());
+        }
+        Integer score = profile.getScores().get(scoringId);
+        if (score == null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> scoreModifiers = (Map<String, Object>) profile.getSystemProperties().get("scoreModifiers");
+            if (scoreModifiers != null && scoreModifiers.get(scoringId) instanceof Number) {
+                score = ((Number) scoreModifiers.get(scoringId)).intValue();
+            } else {
+                score = 0;
+            }
+        }
+        profile.getScores().put(scoringId, score + scoringValue);
+        profile.setSystemProperty("lastUpdated", new Date());
+        save(item);
+        return true;
     }
 
     @Override
@@ -1915,6 +1976,13 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
         return partialList;
     }
 
+    @Override
+    public void clearScrollQuery(String scrollIdentifier) {
+        if (scrollIdentifier != null) {
+            scrollStates.remove(scrollIdentifier);
+        }
+    }
+
     @Override
     public Map<String, Long> aggregateQuery(Condition condition, BaseAggregate aggregate, String itemType) {
         // This is the deprecated version, delegate to the optimized version
@@ -2308,6 +2376,35 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
         return count;
     }
 
+    @Override
+    public Map<String, Long> queryCounts(Map<String, Condition> queries, String itemType) {
+        // Single pass over the items, as the filters aggregation does in Elasticsearch/OpenSearch
+        Map<String, Long> counts = new LinkedHashMap<>();
+        queries.keySet().forEach(key -> counts.put(key, 0L));
+        for (Map.Entry<String, Item> entry : itemsById.entrySet()) {
+            Item item = entry.getValue();
+            if (item.getItemType().equals(itemType) && isItemAvailableForQuery(entry.getKey(), itemType)) {
+                for (Map.Entry<String, Condition> query : queries.entrySet()) {
+                    if (query.getValue() == null || testMatch(query.getValue(), item)) {
+                        counts.merge(query.getKey(), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean isPartialUpdateSupported(Item item) {
+        // Tenant transformation listeners only apply to whole items
+        for (TenantTransformationListener listener : new ArrayList<>(transformationListeners)) {
+            if (listener.isTransformationEnabled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean isConsistent(Item item) {
         // In Elasticsearch, isConsistent returns true if refresh policy is not FALSE
@@ -2420,6 +2517,9 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
             for (Map<String, Object> pastEvent : pastEvents) {
                 if (pastEventKey.equals(pastEvent.get("key"))) {
                     pastEvent.put("count", valueToAdd);
+                    pastEvent.remove("days");
+                    pastEvent.remove("firstDay");
+                    pastEvent.remove("firstDayMinutes");
                     exists = true;
                     break;
                 }
@@ -2496,6 +2596,36 @@ public class InMemoryPersistenceServiceImpl implements PersistenceService {
         }
     }
 
+    private boolean executeAnonymizeBrowsingDataScript(Item item, Map<String, Object> params) {
+        try {
+            @SuppressWarnings("unchecked")
+            Collection<String> deniedProperties = (Collection<String>) params.getOrDefault("deniedProperties", Collections.emptyList());
+
+            if (item instanceof Session) {
+                Session session = (Session) item;
+                Profile anonymousProfile = new Profile();
+                anonymousProfile.setTenantId(session.getProfile() != null ? session.getProfile().getTenantId() : null);
+                anonymousProfile.getSystemProperties().put("isAnonymousProfile", true);
+                if (session.getProfile() != null) {
+                    anonymousProfile.getProperties().putAll(session.getProfile().getProperties());
+                    anonymousProfile.getProperties().keySet().removeAll(deniedProperties);
+                }
+                // also resets the profileId of the session
+                session.setProfile(anonymousProfile);
+            } else if (item instanceof Event) {
+                ((Event) item).setProfileId(null);
+            } else {
+                return false;
+            }
+
+            save(item);
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Error executing anonymizeBrowsingData script", e);
+            return false;
+        }
+    }
+
     // Add new utility methods for common operations
     private <T extends Item> List<T> sortItems(List<T> items, String sortBy) {
         if (sortBy == null) {
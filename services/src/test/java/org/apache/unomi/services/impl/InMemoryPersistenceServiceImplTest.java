@@ -1258,6 +1258,48 @@ public class InMemoryPersistenceServiceImplTest {
             assertEquals(5, count);  // Should count only active profiles
         }
 
+        @Test
+        void shouldCountItemsMatchingEachConditionAtOnce() {
+            // given
+            for (int i = 0; i < 10; i++) {
+                Profile profile = new Profile();
+                profile.setItemId("profile-" + i);
+                profile.setProperty("active", i % 2 == 0);
+                profile.setProperty("score", i);
+                persistenceService.save(profile);
+            }
+
+            Condition activeCondition = new Condition();
+            activeCondition.setConditionType(TestConditionEvaluators.getConditionType("propertyCondition"));
+            activeCondition.setParameter("propertyName", "properties.active");
+            activeCondition.setParameter("comparisonOperator", "equals");
+            activeCondition.setParameter("propertyValue", true);
+
+            Condition scoreCondition = new Condition();
+            scoreCondition.setConditionType(TestConditionEvaluators.getConditionType("propertyCondition"));
+            scoreCondition.setParameter("propertyName", "properties.score");
+            scoreCondition.setParameter("comparisonOperator", "greaterThan");
+            scoreCondition.setParameter("propertyValueInteger", 6);
+
+            Map<String, Condition> queries = new LinkedHashMap<>();
+            queries.put("active", activeCondition);
+            queries.put("highScore", scoreCondition);
+            queries.put("all", null);
+
+            // when - retry query until all items are available (handles refresh delay)
+            Map<String, Long> counts = TestHelper.retryUntil(
+                () -> persistenceService.queryCounts(queries, Profile.ITEM_TYPE),
+                c -> c.get("all") == 10L
+            );
+
+            // then - same results as individual counts, in the order of the queries
+            assertEquals(Arrays.asList("active", "highScore", "all"), new ArrayList<>(counts.keySet()));
+            assertEquals(5L, counts.get("active"));
+            assertEquals(3L, counts.get("highScore"));
+            assertEquals(persistenceService.queryCount(activeCondition, Profile.ITEM_TYPE), counts.get("active"));
+            assertEquals(persistenceService.queryCount(scoreCondition, Profile.ITEM_TYPE), counts.get("highScore"));
+        }
+
         @Test
         void shouldReturnZeroForNonExistentType() {
             // when
@@ -35,6 +35,7 @@ import org.apache.unomi.services.impl.TestConditionEvaluators;
 import org.apache.unomi.services.impl.TestTenantService;
 import org.apache.unomi.services.impl.cache.MultiTypeCacheServiceImpl;
 import org.apache.unomi.services.impl.definitions.DefinitionsServiceImpl;
+import org.apache.unomi.services.impl.profiles.ProfileChangeTracker;
 import org.apache.unomi.tracing.api.TracerService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -48,6 +49,11 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -490,6 +496,179 @@ public class EventServiceImplTest {
         assertTrue(result, "Duplicate check should respect session scoping when requested");
     }
 
+    @Test
+    public void testHasEventAlreadyBeenRaised_UsesRaisedEventsIndex() {
+        PersistenceService persistenceSpy = spy(persistenceService);
+        EventServiceImpl node = TestHelper.createEventService(persistenceSpy, bundleContext, definitionsService, tenantService, tracerService);
+
+        Event event = createTestEvent(createTarget("page1"));
+        assertFalse(node.hasEventAlreadyBeenRaised(event, true), "No event should have been raised for a new session");
+        int changes = node.send(event);
+        assertEquals(EventService.SESSION_UPDATED | EventService.PROFILE_UPDATED, changes & (EventService.SESSION_UPDATED | EventService.PROFILE_UPDATED),
+                "Recording the event should update the session and the profile");
+        assertNotNull(event.getSession().getSystemProperties().get(RaisedEventsIndex.SYSTEM_PROPERTY), "The session should hold a filter");
+        assertNotNull(event.getProfile().getSystemProperties().get(RaisedEventsIndex.SYSTEM_PROPERTY), "The profile should hold a filter");
+        persistenceService.save(event.getSession());
+        persistenceService.save(event.getProfile());
+
+        Session session = persistenceService.load("test-session", Session.class);
+        Profile profile = persistenceService.load("test-profile", Profile.class);
+        clearInvocations(persistenceSpy);
+        assertFalse(node.hasEventAlreadyBeenRaised(createTestEvent(session, profile, createTarget("page2")), true));
+        assertFalse(node.hasEventAlreadyBeenRaised(createTestEvent(session, profile, createTarget("page2")), false));
+        verify(persistenceSpy, never()).queryCount(any(Condition.class), anyString());
+
+        // The events sent through the node are cached, the filter matches are confirmed without a query
+        assertTrue(node.hasEventAlreadyBeenRaised(createTestEvent(session, profile, createTarget("page1")), true));
+        assertTrue(node.hasEventAlreadyBeenRaised(createTestEvent(session, profile, createTarget("page1")), false));
+        verify(persistenceSpy, never()).queryCount(any(Condition.class), anyString());
+
+        // Recording an event already in the filter does not require saving the session nor the profile
+        Event sameEvent = createTestEvent(session, profile, createTarget("page1"));
+        assertEquals(EventService.NO_CHANGE, node.send(sameEvent) & (EventService.SESSION_UPDATED | EventService.PROFILE_UPDATED));
+    }
+
+    @Test
+    public void testHasEventAlreadyBeenRaised_AfterRestart() {
+        Event event = createTestEvent(createTarget("page1"));
+        eventService.hasEventAlreadyBeenRaised(event, true);
+        eventService.send(event);
+        persistenceService.save(event.getSession());
+
+        // A new service instance has no cached confirmation, the filter persisted with the session is used
+        PersistenceService persistenceSpy = spy(persistenceService);
+        EventServiceImpl restartedNode = TestHelper.createEventService(persistenceSpy, bundleContext, definitionsService, tenantService, tracerService);
+        Session session = persistenceService.load("test-session", Session.class);
+
+        assertFalse(restartedNode.hasEventAlreadyBeenRaised(createTestEvent(session, session.getProfile(), createTarget("page2")), true));
+        verify(persistenceSpy, never()).queryCount(any(Condition.class), anyString());
+
+        boolean result = TestHelper.retryUntil(
+            () -> restartedNode.hasEventAlreadyBeenRaised(createTestEvent(session, session.getProfile(), createTarget("page1")), true),
+            r -> r == true
+        );
+        assertTrue(result, "A possibly raised event should be confirmed with a query");
+        verify(persistenceSpy, atLeastOnce()).queryCount(any(Condition.class), anyString());
+
+        clearInvocations(persistenceSpy);
+        assertTrue(restartedNode.hasEventAlreadyBeenRaised(createTestEvent(session, session.getProfile(), createTarget("page1")), true));
+        verify(persistenceSpy, never()).queryCount(any(Condition.class), anyString());
+    }
+
+    @Test
+    public void testHasEventAlreadyBeenRaised_ConcurrentNodes() throws Exception {
+        Event firstEvent = createTestEvent(createTarget("page-first"));
+        eventService.hasEventAlreadyBeenRaised(firstEvent, true);
+        eventService.send(firstEvent);
+        persistenceService.save(firstEvent.getSession());
+
+        // The other node has never checked the event type, it records its events in the filter of the session
+        EventServiceImpl otherNode = TestHelper.createEventService(persistenceService, bundleContext, definitionsService, tenantService, tracerService);
+        List<EventServiceImpl> nodes = Arrays.asList(eventService, otherNode);
+        String tenantId = executionContextManager.getCurrentContext().getTenantId();
+        ProfileChangeTracker changeTracker = new ProfileChangeTracker();
+        Object documentLock = new Object();
+        int threads = 8;
+        int eventsPerThread = 10;
+
+        // Each request works on its own copy of the session and saves its changes with a partial update, as concurrent
+        // requests do; the updates of a document are applied one at a time, as by the search engine
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                EventServiceImpl node = nodes.get(i % nodes.size());
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    executionContextManager.executeAsTenant(tenantId, () -> {
+                        for (int j = 0; j < eventsPerThread; j++) {
+                            Session session;
+                            synchronized (documentLock) {
+                                session = copySession(persistenceService.load("test-session", Session.class));
+                            }
+                            changeTracker.track(session);
+                            Event event = createTestEvent(session, session.getProfile(), createTarget("page-" + thread + "-" + j));
+                            // Only the filter changes, the in-memory persistence cannot update the computed session duration
+                            event.setTimeStamp(session.getLastEventDate());
+                            assertFalse(node.hasEventAlreadyBeenRaised(event, true));
+                            assertEquals(EventService.SESSION_UPDATED, node.send(event) & EventService.SESSION_UPDATED);
+                            ProfileChangeTracker.Changes changes = changeTracker.getChanges(session);
+                            assertNotNull(changes, "The recorded event should be saved with a partial update");
+                            synchronized (documentLock) {
+                                assertTrue(persistenceService.update(session, Session.class, changes.getSource()));
+                            }
+                        }
+                    });
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PersistenceService persistenceSpy = spy(persistenceService);
+        EventServiceImpl newNode = TestHelper.createEventService(persistenceSpy, bundleContext, definitionsService, tenantService, tracerService);
+        Session session = persistenceService.load("test-session", Session.class);
+        for (EventServiceImpl node : Arrays.asList(eventService, otherNode, newNode)) {
+            for (int i = 0; i < threads; i++) {
+                for (int j = 0; j < eventsPerThread; j++) {
+                    String page = "page-" + i + "-" + j;
+                    assertEquals(Boolean.TRUE, RaisedEventsIndex.mightHaveBeenRaised(session, createTestEvent(session, session.getProfile(), createTarget(page))),
+                            "Events raised on any node should be in the filter (page=" + page + ")");
+                    boolean result = TestHelper.retryUntil(
+                        () -> node.hasEventAlreadyBeenRaised(createTestEvent(session, session.getProfile(), createTarget(page)), true),
+                        r -> r == true
+                    );
+                    assertTrue(result, "Events raised on any node should be found (page=" + page + ")");
+                }
+            }
+            clearInvocations(persistenceSpy);
+            assertFalse(node.hasEventAlreadyBeenRaised(createTestEvent(session, session.getProfile(), createTarget("page-other")), true));
+            verify(persistenceSpy, never()).queryCount(any(Condition.class), anyString());
+        }
+    }
+
+    @Test
+    public void testHasEventAlreadyBeenRaised_MaxEventTypes() {
+        eventService.setRaisedEventsIndexMaxEventTypes(1);
+        Event event = createTestEvent(createTarget("page1"));
+        eventService.hasEventAlreadyBeenRaised(event, true);
+        Event otherEvent = createTestEvent(createTarget("page1"));
+        otherEvent.setEventType("other");
+        eventService.hasEventAlreadyBeenRaised(otherEvent, true);
+
+        // The events of the types beyond the limit are not covered by the filter, they are checked with a query
+        eventService.send(event);
+        assertEquals(Boolean.TRUE, RaisedEventsIndex.mightHaveBeenRaised(event.getSession(), event));
+        otherEvent.setSession(event.getSession());
+        assertNull(RaisedEventsIndex.mightHaveBeenRaised(event.getSession(), otherEvent));
+    }
+
+    @Test
+    public void testHasEventAlreadyBeenRaised_ExpiredGenerationsAreDropped() {
+        eventService.setPurgeEventExistTime(30);
+        eventService.setPurgeEventInterval(1);
+        Event oldEvent = createTestEvent(createTarget("page1"));
+        oldEvent.setTimeStamp(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(40)));
+        eventService.hasEventAlreadyBeenRaised(oldEvent, true);
+        eventService.send(oldEvent);
+        assertEquals(Boolean.TRUE, RaisedEventsIndex.mightHaveBeenRaised(oldEvent.getSession(), oldEvent));
+
+        // The events of the expired generation are purged, the generation is dropped when the next event is recorded
+        Session session = oldEvent.getSession();
+        Event recentEvent = createTestEvent(session, session.getProfile(), createTarget("page2"));
+        recentEvent.setTimeStamp(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31)));
+        eventService.send(recentEvent);
+        assertEquals(Boolean.TRUE, RaisedEventsIndex.mightHaveBeenRaised(session, recentEvent), "Events which may not be purged yet should be kept");
+        assertEquals(Boolean.FALSE, RaisedEventsIndex.mightHaveBeenRaised(session, createTestEvent(session, session.getProfile(), createTarget("page1"))));
+    }
+
     // ========= Profile Event Management Tests =========
 
     @Test
@@ -840,4 +1019,54 @@ public class EventServiceImplTest {
 
         return event;
     }
+
+    private Event createTestEvent(Item target) {
+        Event event = createTestEvent();
+        event.setTarget(target);
+        return event;
+    }
+
+    private Event createTestEvent(Session session, Profile profile, Item target) {
+        Event event = createTestEvent(target);
+        event.setSession(session);
+        event.setSessionId(session.getItemId());
+        event.setProfile(profile);
+        event.setProfileId(profile.getItemId());
+        return event;
+    }
+
+    private Session copySession(Session session) {
+        // The profile of each request is an already saved copy, only its session is checked
+        Profile profile = new Profile(session.getProfile().getTenantId());
+        profile.setItemId(session.getProfile().getItemId());
+        profile.setVersion(1L);
+        Session copy = new Session(session.getItemId(), profile, session.getTimeStamp(), session.getScope());
+        copy.setVersion(session.getVersion());
+        copy.setLastEventDate(session.getLastEventDate());
+        copy.setSize(session.getSize());
+        copy.setProperties(copy(session.getProperties()));
+        copy.setSystemProperties(copy(session.getSystemProperties()));
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T copy(T value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, entryValue) -> copy.put(key, copy(entryValue)));
+            return (T) copy;
+        } else if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            ((List<?>) value).forEach(element -> copy.add(copy(element)));
+            return (T) copy;
+        }
+        return value;
+    }
+
+    private Item createTarget(String itemId) {
+        TestItem target = new TestItem();
+        target.setItemId(itemId);
+        target.setItemType("page");
+        return target;
+    }
 }
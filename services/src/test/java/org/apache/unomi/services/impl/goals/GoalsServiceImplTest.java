@@ -16,11 +16,19 @@
  */
 package org.apache.unomi.services.impl.goals;
 
+import org.apache.unomi.api.Event;
 import org.apache.unomi.api.Metadata;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
 import org.apache.unomi.api.actions.ActionType;
+import org.apache.unomi.api.campaigns.Campaign;
+import org.apache.unomi.api.campaigns.CampaignDetail;
+import org.apache.unomi.api.campaigns.CampaignStatistics;
 import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.conditions.ConditionType;
 import org.apache.unomi.api.goals.Goal;
+import org.apache.unomi.api.goals.GoalReport;
+import org.apache.unomi.api.rules.Rule;
 import org.apache.unomi.api.services.EventService;
 import org.apache.unomi.api.services.RulesService;
 import org.apache.unomi.api.services.SchedulerService;
@@ -52,7 +60,9 @@ import org.osgi.framework.BundleContext;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @ExtendWith(MockitoExtension.class)
@@ -293,4 +303,164 @@ public class GoalsServiceImplTest {
             return null;
         });
     }
+
+    @Test
+    public void testCampaignStatisticsMatchReconciliation() {
+        goalsService.setTenantService(tenantService);
+        goalsService.setSchedulerService(schedulerService);
+        goalsService.setBundleContext(bundleContext);
+        goalsService.postConstruct();
+        executionContextManager.executeAsSystem(() -> {
+            createStatsCampaign();
+
+            assertEquals(0, goalsService.getCampaignDetail("statsCampaign").getCampaignSessionViews());
+
+            Profile profile = new Profile("statsProfile");
+            List<Session> sessions = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Session session = new Session("statsSession" + i, profile, new Date(), "systemscope");
+                sessions.add(session);
+                executeActions(goalsService, "statsCampaignEntryEvent", session, "campaigns", "statsCampaignEngaged");
+            }
+            // Rules executed again for an already counted session or profile are not counted twice
+            executeActions(goalsService, "statsCampaignEntryEvent", sessions.get(0), "campaigns", "statsCampaignEngaged");
+            executeActions(goalsService, "statsGoalStartEvent", sessions.get(0), "goals", "statsGoalStartReached");
+            executeActions(goalsService, "statsGoalStartEvent", sessions.get(1), "goals", "statsGoalStartReached");
+            executeActions(goalsService, "statsGoalTargetEvent", sessions.get(0), "goals", "statsGoalTargetReached");
+            executeActions(goalsService, "statsGoalTargetEvent", sessions.get(0), "goals", "statsGoalTargetReached");
+
+            assertCampaignStatistics(1, 3, 2, 1);
+            goalsService.syncCampaignStatistics();
+            assertCampaignStatistics(1, 3, 2, 1);
+            goalsService.reconcileCampaignStatistics();
+            assertCampaignStatistics(1, 3, 2, 1);
+            return null;
+        });
+    }
+
+    @Test
+    public void testCampaignStatisticsAcrossNodes() throws Exception {
+        GoalsServiceImpl otherNode = new GoalsServiceImpl();
+        otherNode.setPersistenceService(persistenceService);
+        otherNode.setDefinitionsService(definitionsService);
+        otherNode.setRulesService(rulesService);
+        otherNode.setCacheService(multiTypeCacheService);
+        otherNode.setContextManager(executionContextManager);
+        otherNode.setTenantService(tenantService);
+        otherNode.setSchedulerService(schedulerService);
+        otherNode.setBundleContext(bundleContext);
+        goalsService.setTenantService(tenantService);
+        goalsService.setSchedulerService(schedulerService);
+        goalsService.setBundleContext(bundleContext);
+        goalsService.postConstruct();
+        otherNode.postConstruct();
+
+        executionContextManager.executeAsSystem(() -> {
+            createStatsCampaign();
+            assertEquals(0, goalsService.getCampaignDetail("statsCampaign").getCampaignSessionViews());
+            return null;
+        });
+        Profile profile = new Profile("statsProfile");
+        executionContextManager.executeAsSystem(() -> {
+            executeActions(goalsService, "statsCampaignEntryEvent", new Session("statsSession0", profile, new Date(), "systemscope"),
+                    "campaigns", "statsCampaignEngaged");
+            executeActions(otherNode, "statsCampaignEntryEvent", new Session("statsSession1", new Profile("otherProfile"), new Date(), "systemscope"),
+                    "campaigns", "statsCampaignEngaged");
+            return null;
+        });
+
+        // Both nodes synchronize at the same time, neither overwrites the counters of the other
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> syncs = new ArrayList<>();
+            for (GoalsServiceImpl node : Arrays.asList(goalsService, otherNode)) {
+                syncs.add(executor.submit(() -> {
+                    start.await();
+                    executionContextManager.executeAsSystem(() -> {
+                        node.syncCampaignStatistics();
+                        return null;
+                    });
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> sync : syncs) {
+                sync.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        executionContextManager.executeAsSystem(() -> {
+            CampaignStatistics statistics = persistenceService.load("statsCampaign", CampaignStatistics.class);
+            assertEquals(2, statistics.getEngagedSessions());
+            assertEquals(2, statistics.getEngagedProfiles());
+
+            // Counted on this node, then included by a reconciliation run on the other node: not added again
+            executeActions(goalsService, "statsCampaignEntryEvent", new Session("statsSession2", profile, new Date(), "systemscope"),
+                    "campaigns", "statsCampaignEngaged");
+            return null;
+        });
+        // The reconciliation date is compared to the time of the first local increment
+        Thread.sleep(2);
+        executionContextManager.executeAsSystem(() -> {
+            otherNode.reconcileCampaignStatistics();
+            goalsService.syncCampaignStatistics();
+            assertEquals(3, persistenceService.load("statsCampaign", CampaignStatistics.class).getEngagedSessions());
+
+            // Counted on this node, then included by a reconciliation run on this node: not added again
+            executeActions(goalsService, "statsCampaignEntryEvent", new Session("statsSession3", profile, new Date(), "systemscope"),
+                    "campaigns", "statsCampaignEngaged");
+            goalsService.reconcileCampaignStatistics();
+            goalsService.syncCampaignStatistics();
+            assertEquals(4, persistenceService.load("statsCampaign", CampaignStatistics.class).getEngagedSessions());
+            assertEquals(4, goalsService.getCampaignDetail("statsCampaign").getCampaignSessionViews());
+            return null;
+        });
+    }
+
+    private void createStatsCampaign() {
+        Campaign campaign = new Campaign(new Metadata(null, "statsCampaign", "Stats campaign", ""));
+        campaign.getMetadata().setEnabled(true);
+        campaign.setPrimaryGoal("statsGoal");
+        goalsService.setCampaign(campaign);
+
+        Goal goal = new Goal(new Metadata(null, "statsGoal", "Stats goal", ""));
+        goal.getMetadata().setEnabled(true);
+        goal.setCampaignId("statsCampaign");
+        Condition startEvent = new Condition(definitionsService.getConditionType("profilePropertyCondition"));
+        startEvent.setParameter("propertyName", "profileProperty");
+        startEvent.setParameter("comparisonOperator", "exists");
+        goal.setStartEvent(startEvent);
+        goal.setTargetEvent(startEvent);
+        goalsService.setGoal(goal);
+    }
+
+    private void executeActions(GoalsServiceImpl node, String ruleId, Session session, String group, String propertyName) {
+        Metadata metadata = new Metadata(null, ruleId, ruleId, "");
+        metadata.setHidden(true);
+        Event event = new Event("test", session, session.getProfile(), "systemscope", null, null, new Date());
+        node.onExecuteActions(new Rule(metadata), event);
+
+        // Apply what the generated rule's actions would do
+        for (Map<String, Object> systemProperties : Arrays.asList(session.getSystemProperties(), session.getProfile().getSystemProperties())) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> values = (Map<String, Object>) systemProperties.computeIfAbsent(group, k -> new HashMap<String, Object>());
+            values.putIfAbsent(propertyName, new Date());
+        }
+        persistenceService.save(session);
+        persistenceService.save(session.getProfile());
+        persistenceService.refresh();
+    }
+
+    private void assertCampaignStatistics(long engagedProfiles, long engagedSessions, long goalStarted, long goalReached) {
+        CampaignDetail campaignDetail = goalsService.getCampaignDetail("statsCampaign");
+        assertEquals(engagedProfiles, campaignDetail.getEngagedProfiles());
+        assertEquals(engagedSessions, campaignDetail.getCampaignSessionViews());
+        assertEquals(goalReached, campaignDetail.getCampaignSessionSuccess());
+
+        GoalReport goalReport = goalsService.getGoalReport("statsGoal");
+        assertEquals(goalStarted, goalReport.getGlobalStats().getStartCount());
+        assertEquals(goalReached, goalReport.getGlobalStats().getTargetCount());
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.services.impl.personalization;
+
+import org.apache.unomi.api.PersonalizationResult;
+import org.apache.unomi.api.PersonalizationStrategy;
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.Session;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.api.services.PersonalizationService;
+import org.apache.unomi.api.services.ProfileService;
+import org.apache.unomi.services.sorts.FilterPersonalizationStrategy;
+import org.apache.unomi.services.sorts.ScorePersonalizationStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PersonalizationServiceImplTest {
+
+    @Mock
+    private ProfileService profileService;
+    @Mock
+    private BundleContext bundleContext;
+
+    private PersonalizationServiceImpl personalizationService;
+    private Profile profile;
+    private Session session;
+
+    @BeforeEach
+    public void setUp() {
+        // Only the conditions on the "red" color match
+        when(profileService.matchCondition(any(Condition.class), any(), any()))
+                .thenAnswer(invocation -> "red".equals(((Condition) invocation.getArgument(0)).getParameter("propertyValue")));
+
+        FilterPersonalizationStrategy filterStrategy = new FilterPersonalizationStrategy();
+        filterStrategy.setProfileService(profileService);
+        ScorePersonalizationStrategy scoreStrategy = new ScorePersonalizationStrategy();
+        scoreStrategy.setProfileService(profileService);
+
+        personalizationService = new PersonalizationServiceImpl();
+        personalizationService.setProfileService(profileService);
+        personalizationService.setBundleContext(bundleContext);
+        addStrategy("filter", filterStrategy);
+        addStrategy("score-sorted", scoreStrategy);
+
+        profile = new Profile("profile1");
+        session = new Session("session1", profile, new Date(), "test");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addStrategy(String id, PersonalizationStrategy strategy) {
+        ServiceReference<PersonalizationStrategy> reference = mock(ServiceReference.class);
+        when(reference.getProperty("personalizationStrategyId")).thenReturn(id);
+        when(bundleContext.getService(reference)).thenReturn(strategy);
+        personalizationService.addPersonalizationStrategy(reference);
+    }
+
+    private static Condition createColorCondition(String color) {
+        Condition condition = new Condition();
+        condition.setConditionTypeId("profilePropertyCondition");
+        condition.setParameter("propertyName", "properties.color");
+        condition.setParameter("comparisonOperator", "equals");
+        condition.setParameter("propertyValue", color);
+        return condition;
+    }
+
+    private static PersonalizationService.PersonalizedContent createContent(String id, Map<String, Object> properties, Condition... conditions) {
+        List<PersonalizationService.Filter> filters = new ArrayList<>();
+        for (Condition condition : conditions) {
+            PersonalizationService.Filter filter = new PersonalizationService.Filter();
+            filter.setCondition(condition);
+            filters.add(filter);
+        }
+        PersonalizationService.PersonalizedContent content = new PersonalizationService.PersonalizedContent();
+        content.setId(id);
+        content.setFilters(filters);
+        content.setProperties(properties);
+        return content;
+    }
+
+    @Test
+    public void testSharedFiltersAreEvaluatedOnce() {
+        Condition red = createColorCondition("red");
+        Condition blue = createColorCondition("blue");
+        List<PersonalizationService.PersonalizedContent> contents = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            contents.add(createContent("content" + i, null, i % 2 == 0 ? red : blue));
+        }
+        PersonalizationService.PersonalizationRequest request = new PersonalizationService.PersonalizationRequest();
+        request.setId("slots");
+        request.setStrategy("filter");
+        request.setStrategyOptions(new HashMap<>());
+        request.setContents(contents);
+
+        PersonalizationResult result = personalizationService.personalizeList(profile, session, request);
+
+        assertEquals(20, result.getContentIds().size());
+        assertTrue(result.getContentIds().contains("content0"));
+        assertFalse(result.getContentIds().contains("content1"));
+        verify(profileService, times(2)).matchCondition(any(Condition.class), any(), any());
+    }
+
+    @Test
+    public void testFilterContents() {
+        Condition red = createColorCondition("red");
+        Condition blue = createColorCondition("blue");
+        List<PersonalizationService.PersonalizedContent> contents = Arrays.asList(
+                createContent("redOnly", null, red),
+                createContent("redAndBlue", null, red, blue),
+                createContent("blueAndRed", null, blue, red),
+                createContent("noFilter", null));
+
+        Map<String, Boolean> results = personalizationService.filter(profile, session, contents);
+
+        assertEquals(Map.of("redOnly", true, "redAndBlue", false, "blueAndRed", false, "noFilter", true), results);
+        verify(profileService, times(2)).matchCondition(any(Condition.class), any(), any());
+    }
+
+    @Test
+    public void testEqualConditionInstancesAreEvaluatedSeparately() {
+        List<PersonalizationService.PersonalizedContent> contents = Arrays.asList(
+                createContent("first", null, createColorCondition("red")),
+                createContent("second", null, createColorCondition("red")));
+
+        Map<String, Boolean> results = personalizationService.filter(profile, session, contents);
+
+        assertEquals(Map.of("first", true, "second", true), results);
+        verify(profileService, times(2)).matchCondition(any(Condition.class), any(), any());
+    }
+
+    @Test
+    public void testScoreStrategy() {
+        profile.setProperty("interests", Arrays.asList(Map.of("key", "sports", "value", 3), Map.of("key", "music", "value", 1)));
+        profile.setScores(Map.of("plan1", 5));
+
+        List<PersonalizationService.PersonalizedContent> contents = Arrays.asList(
+                createContent("sports", Map.of("interests", "sports unknown")),
+                createContent("music", Map.of("interests", "music")),
+                createContent("musicAndRed", Map.of("interests", "music"), createColorCondition("red")),
+                createContent("plan", Map.of("scoringPlans", "plan1 otherPlan")),
+                createContent("none", Map.of("interests", "unknown"), createColorCondition("blue")));
+        PersonalizationService.PersonalizationRequest request = new PersonalizationService.PersonalizationRequest();
+        request.setId("scored");
+        request.setStrategy("score-sorted");
+        request.setStrategyOptions(new HashMap<>(Map.of("fallback", "none")));
+        request.setContents(contents);
+
+        PersonalizationResult result = personalizationService.personalizeList(profile, session, request);
+
+        assertEquals(Arrays.asList("plan", "sports", "musicAndRed", "music", "none"), result.getContentIds());
+    }
+}
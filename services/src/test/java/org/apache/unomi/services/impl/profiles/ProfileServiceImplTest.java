@@ -17,7 +17,13 @@
 package org.apache.unomi.services.impl.profiles;
 
 import org.apache.unomi.api.*;
+import org.apache.unomi.api.query.Query;
+import org.apache.unomi.api.segments.Segment;
 import org.apache.unomi.api.services.SchedulerService;
+import org.apache.unomi.api.services.SegmentService;
+import org.apache.unomi.api.tenants.TenantTransformationListener;
+import org.apache.unomi.metrics.MetricsService;
+import org.apache.unomi.persistence.spi.CustomObjectMapper;
 import org.apache.unomi.persistence.spi.PersistenceService;
 import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluatorDispatcher;
 import org.apache.unomi.services.TestHelper;
@@ -40,6 +46,8 @@ import org.mockito.quality.Strictness;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleEvent;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
@@ -671,4 +679,353 @@ public class ProfileServiceImplTest {
         }
     }
 
+    @Test
+    public void testExportProfilesPropertiesToCsv() {
+        SegmentService segmentService = mock(SegmentService.class);
+        Segment segment = new Segment(new Metadata("segment1"));
+        segment.getMetadata().setName("Segment 1");
+        when(segmentService.getSegmentDefinition("segment1")).thenReturn(segment);
+        profileService.setSegmentService(segmentService);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            for (int i = 0; i < 5; i++) {
+                Profile profile = new Profile("exported-profile-" + i);
+                profile.setProperty("exportedProperty", "value" + i);
+                profile.getSegments().add("segment1");
+                profileService.save(profile);
+            }
+            persistenceService.refresh();
+
+            Query query = new Query();
+            query.setSortby("itemId:asc");
+            String twoPassExport = exportToCsv(query, true);
+            String[] lines = twoPassExport.split("\n");
+            assertEquals(6, lines.length);
+            assertTrue(lines[0].startsWith("profileId;"));
+            assertTrue(lines[0].contains(";exportedProperty;"));
+            assertTrue(lines[0].endsWith(";segments"));
+            assertTrue(lines[1].startsWith("exported-profile-0;"));
+            assertTrue(lines[1].contains(";value0;"));
+            assertTrue(lines[1].endsWith(";Segment 1"));
+            assertEquals(twoPassExport, profileService.exportProfilesPropertiesToCsv(query));
+
+            // Without a known type, the property is only exported in the trailing column when streaming in a single pass
+            String[] singlePassLines = exportToCsv(query, false).split("\n");
+            assertEquals(6, singlePassLines.length);
+            assertTrue(singlePassLines[0].endsWith(";segments;otherProperties"));
+            assertFalse(singlePassLines[0].contains(";exportedProperty;"));
+            assertTrue(singlePassLines[1].contains("exportedProperty"));
+            assertTrue(singlePassLines[1].contains("value0"));
+
+            query.setLimit(2);
+            assertEquals(3, exportToCsv(query, false).split("\n").length);
+
+            // The profiles before the offset are scrolled past
+            query.setOffset(1);
+            String[] offsetLines = exportToCsv(query, false).split("\n");
+            assertEquals(3, offsetLines.length);
+            assertTrue(offsetLines[1].startsWith("exported-profile-1;"));
+            assertTrue(offsetLines[2].startsWith("exported-profile-2;"));
+        });
+
+        // Segment names are only resolved once per export
+        verify(segmentService, times(5)).getSegmentDefinition("segment1");
+    }
+
+    @Test
+    public void testLoadResolvesAliasesWithASingleRoundTrip() {
+        PersistenceService countingPersistenceService = spy(persistenceService);
+        profileService.setPersistenceService(countingPersistenceService);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            persistenceService.save(new Profile("profile1"));
+            persistenceService.save(new Profile("profile2"));
+
+            // Unknown identifiers load the alias and the profile in a single request
+            assertEquals("profile1", profileService.load("profile1").getItemId());
+            verify(countingPersistenceService, times(1)).multiLoad(eq("profile1"), anyList());
+            verify(countingPersistenceService, never()).load(eq("profile1"), eq(Profile.class));
+
+            // Identifiers known not to be aliases load the profile directly
+            assertEquals("profile1", profileService.load("profile1").getItemId());
+            assertEquals("profile1", profileService.load("profile1").getItemId());
+            verify(countingPersistenceService, times(1)).multiLoad(eq("profile1"), anyList());
+            verify(countingPersistenceService, times(2)).load(eq("profile1"), eq(Profile.class));
+
+            // Aliases added through the service are checked along with their profile in a single request
+            profileService.addAliasToProfile("profile1", "alias1", "client1");
+            clearInvocations(countingPersistenceService);
+            assertEquals("profile1", profileService.load("alias1").getItemId());
+            Map<Class<? extends Item>, String> expectedItemIds = new LinkedHashMap<>();
+            expectedItemIds.put(ProfileAlias.class, "alias1");
+            expectedItemIds.put(Profile.class, "profile1");
+            verify(countingPersistenceService, times(1)).multiLoad(eq(expectedItemIds));
+            verify(countingPersistenceService, never()).multiLoad(anyString(), anyList());
+            verify(countingPersistenceService, never()).load(anyString(), any());
+
+            // Aliases moved to another profile on another node are seen right away
+            ProfileAlias movedAlias = new ProfileAlias();
+            movedAlias.setItemId("alias1");
+            movedAlias.setItemType(ProfileAlias.ITEM_TYPE);
+            movedAlias.setProfileID("profile2");
+            movedAlias.setClientID("client1");
+            persistenceService.save(movedAlias);
+            assertEquals("profile2", profileService.load("alias1").getItemId());
+            assertEquals("profile2", profileService.loadProfiles(Collections.singletonList("alias1")).get("alias1").getItemId());
+            assertEquals("profile2", profileService.loadProfileWithSession("alias1", null).getProfile().getItemId());
+            movedAlias.setProfileID("profile1");
+            persistenceService.save(movedAlias);
+            assertEquals("profile1", profileService.loadProfileWithSession("alias1", null).getProfile().getItemId());
+            assertEquals("profile1", profileService.loadProfiles(Collections.singletonList("alias1")).get("alias1").getItemId());
+
+            // Aliases created by another node are found once the cached profile no longer exists
+            assertEquals("profile2", profileService.load("profile2").getItemId());
+            ProfileAlias profileAlias = new ProfileAlias();
+            profileAlias.setItemId("profile2");
+            profileAlias.setItemType(ProfileAlias.ITEM_TYPE);
+            profileAlias.setProfileID("profile1");
+            profileAlias.setClientID("client1");
+            persistenceService.save(profileAlias);
+            persistenceService.remove("profile2", Profile.class);
+            assertEquals("profile1", profileService.load("profile2").getItemId());
+
+            // Identifiers of missing profiles are not cached
+            clearInvocations(countingPersistenceService);
+            assertNull(profileService.load("unknown"));
+            assertNull(profileService.load("unknown"));
+            verify(countingPersistenceService, times(2)).multiLoad(eq("unknown"), anyList());
+            return null;
+        });
+
+        // Resolutions are cached per tenant
+        executionContextManager.executeAsTenant(SYSTEM_TENANT, () -> {
+            assertNull(profileService.load("alias1"));
+            return null;
+        });
+    }
+
+    @Test
+    public void testLoadProfilesReadsProfilesAndAliasesInRealTime() {
+        PersistenceService countingPersistenceService = spy(persistenceService);
+        profileService.setPersistenceService(countingPersistenceService);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            persistenceService.save(new Profile("profile1"));
+            persistenceService.save(new Profile("profile2"));
+            ProfileAlias profileAlias = new ProfileAlias();
+            profileAlias.setItemId("alias1");
+            profileAlias.setItemType(ProfileAlias.ITEM_TYPE);
+            profileAlias.setProfileID("profile1");
+            profileAlias.setClientID("client1");
+            persistenceService.save(profileAlias);
+            // The items are not searchable before the next refresh
+            assertTrue(persistenceService.query("itemId", new String[]{"profile1", "profile2"}, null, Profile.class).isEmpty());
+
+            Map<String, Profile> profiles = profileService.loadProfiles(Arrays.asList("profile1", "alias1", "profile2", "unknown"));
+            assertEquals("profile1", profiles.get("profile1").getItemId());
+            assertEquals("profile1", profiles.get("alias1").getItemId());
+            assertEquals("profile2", profiles.get("profile2").getItemId());
+            assertFalse(profiles.containsKey("unknown"));
+            // One request for the aliases and one for the profiles
+            verify(countingPersistenceService, times(1)).multiLoad(anyCollection(), eq(ProfileAlias.class));
+            verify(countingPersistenceService, times(1)).multiLoad(anyCollection(), eq(Profile.class));
+
+            // Identifiers known not to be aliases are not looked up again, cached aliases are checked
+            clearInvocations(countingPersistenceService);
+            profiles = profileService.loadProfiles(Arrays.asList("profile1", "alias1"));
+            assertEquals("profile1", profiles.get("alias1").getItemId());
+            verify(countingPersistenceService, times(1)).multiLoad(eq(Collections.singletonList("alias1")), eq(ProfileAlias.class));
+            verify(countingPersistenceService, times(1)).multiLoad(anyCollection(), eq(Profile.class));
+            return null;
+        });
+    }
+
+    @Test
+    public void testLoadProfileWithSessionUsesASingleRoundTrip() {
+        PersistenceService countingPersistenceService = spy(persistenceService);
+        profileService.setPersistenceService(countingPersistenceService);
+        MetricsService metricsService = mock(MetricsService.class);
+        when(metricsService.isActivated()).thenReturn(true);
+        profileService.setMetricsService(metricsService);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile1 = new Profile("profile1");
+            persistenceService.save(profile1);
+            persistenceService.save(new Session("session1", profile1, new Date(), "scope"));
+
+            // The alias, the profile and the session are loaded in a single request
+            ProfileWithSession profileWithSession = profileService.loadProfileWithSession("profile1", "session1");
+            assertEquals("profile1", profileWithSession.getProfile().getItemId());
+            assertEquals("session1", profileWithSession.getSession().getItemId());
+            assertEquals("profile1", profileWithSession.getSession().getProfileId());
+            verify(countingPersistenceService, times(1)).multiLoad(anyMap());
+            verify(countingPersistenceService, never()).load(anyString(), any());
+            verify(countingPersistenceService, never()).multiLoad(anyString(), anyList());
+
+            // Once the identifier is known not to be an alias, the alias is no longer loaded
+            clearInvocations(countingPersistenceService);
+            Map<Class<? extends Item>, String> expectedItemIds = new LinkedHashMap<>();
+            expectedItemIds.put(Profile.class, "profile1");
+            expectedItemIds.put(Session.class, "session1");
+            assertEquals("session1", profileService.loadProfileWithSession("profile1", "session1").getSession().getItemId());
+            verify(countingPersistenceService, times(1)).multiLoad(eq(expectedItemIds));
+
+            // Aliases are resolved with a second request, then loaded with the session
+            profileService.addAliasToProfile("profile1", "alias1", "client1");
+            profileService.setAliasCacheMaxEntries(100);
+            clearInvocations(countingPersistenceService);
+            assertEquals("profile1", profileService.loadProfileWithSession("alias1", "session1").getProfile().getItemId());
+            verify(countingPersistenceService, times(1)).multiLoad(anyMap());
+            verify(countingPersistenceService, times(1)).load(eq("profile1"), eq(Profile.class));
+            // Cached aliases are checked in the same request
+            clearInvocations(countingPersistenceService);
+            profileWithSession = profileService.loadProfileWithSession("alias1", "session1");
+            assertEquals("profile1", profileWithSession.getProfile().getItemId());
+            assertEquals("session1", profileWithSession.getSession().getItemId());
+            Map<Class<? extends Item>, String> expectedAliasItemIds = new LinkedHashMap<>();
+            expectedAliasItemIds.put(ProfileAlias.class, "alias1");
+            expectedAliasItemIds.putAll(expectedItemIds);
+            verify(countingPersistenceService, times(1)).multiLoad(eq(expectedAliasItemIds));
+            verify(countingPersistenceService, never()).load(anyString(), any());
+
+            // Missing items are returned as null, without any request when nothing is requested
+            profileWithSession = profileService.loadProfileWithSession("unknown", "unknownSession");
+            assertNull(profileWithSession.getProfile());
+            assertNull(profileWithSession.getSession());
+            assertNull(profileService.loadProfileWithSession(null, "unknownSession").getProfile());
+            clearInvocations(countingPersistenceService);
+            profileWithSession = profileService.loadProfileWithSession(null, null);
+            assertNull(profileWithSession.getProfile());
+            assertNull(profileWithSession.getSession());
+            verifyNoInteractions(countingPersistenceService);
+            return null;
+        });
+
+        verify(metricsService, atLeastOnce()).updateTimer(eq(ProfileServiceImpl.class.getName() + ".loadProfileWithSession.multiLoad"), anyLong());
+        verify(metricsService, times(1)).updateTimer(eq(ProfileServiceImpl.class.getName() + ".loadProfileWithSession.resolveAlias"), anyLong());
+    }
+
+    @Test
+    public void testSaveIndexesWholeDocumentsWhileTransformationsAreEnabled() {
+        TenantTransformationListener listener = mock(TenantTransformationListener.class);
+        when(listener.isTransformationEnabled()).thenReturn(true);
+        when(listener.transformItem(any(Item.class), anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(listener.reverseTransformItem(any(Item.class), anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        ((InMemoryPersistenceServiceImpl) persistenceService).addTransformationListener(listener);
+        PersistenceService recordingPersistenceService = spy(persistenceService);
+        profileService.setPersistenceService(recordingPersistenceService);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            profileService.save(new Profile("profile1"));
+            Profile profile = profileService.load("profile1");
+            profile.setProperty("property1", "a new value");
+            profileService.save(profile);
+
+            // Partial documents skip the tenant transformation listeners, whole documents are sent while one is enabled
+            verify(recordingPersistenceService, times(2)).save(any(Item.class));
+            verify(recordingPersistenceService, never()).update(any(Item.class), any(Class.class), anyMap());
+            verify(listener, times(2)).transformItem(any(Profile.class), eq(TENANT_1));
+            assertNull(profile.getPersistedState(), "Items saved whole should not be tracked");
+
+            // Once the transformation is disabled, only the modified properties are sent again
+            when(listener.isTransformationEnabled()).thenReturn(false);
+            profile = profileService.load("profile1");
+            profile.setProperty("property1", "another value");
+            profileService.save(profile);
+            verify(recordingPersistenceService, times(2)).save(any(Item.class));
+            verify(recordingPersistenceService, times(1)).update(any(Item.class), any(Class.class), anyMap());
+            assertEquals("another value", persistenceService.load("profile1", Profile.class).getProperty("property1"));
+            return null;
+        });
+    }
+
+    @Test
+    public void testSaveOnlySendsModifiedProperties() throws Exception {
+        PersistenceService recordingPersistenceService = spy(persistenceService);
+        profileService.setPersistenceService(recordingPersistenceService);
+        List<Integer> savedPayloadSizes = new ArrayList<>();
+        List<Integer> updatedPayloadSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            savedPayloadSizes.add(CustomObjectMapper.getObjectMapper().writeValueAsString(invocation.getArgument(0)).length());
+            return invocation.callRealMethod();
+        }).when(recordingPersistenceService).save(any(Item.class));
+        doAnswer(invocation -> {
+            updatedPayloadSizes.add(CustomObjectMapper.getObjectMapper().writeValueAsString(invocation.getArgument(2)).length());
+            return invocation.callRealMethod();
+        }).when(recordingPersistenceService).update(any(Item.class), any(Class.class), anyMap());
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile = new Profile("profile1");
+            for (int i = 0; i < 50; i++) {
+                profile.setProperty("property" + i, "a value of the property " + i);
+            }
+            Map<String, Object> address = new HashMap<>();
+            address.put("city", "Geneva");
+            address.put("country", "Switzerland");
+            profile.setProperty("address", address);
+            profile.getSegments().add("segment1");
+            profileService.save(profile);
+            assertEquals(1, savedPayloadSizes.size(), "New profiles should be indexed");
+
+            // Modified properties are sent in a partial update
+            profile = profileService.load("profile1");
+            profile.setProperty("property1", "a new value");
+            ((Map<String, Object>) profile.getProperty("address")).put("city", "Lausanne");
+            profile.getSegments().add("segment2");
+            profileService.save(profile);
+            assertEquals(1, savedPayloadSizes.size());
+            assertEquals(1, updatedPayloadSizes.size(), "Modified properties should be sent in a partial update");
+            assertTrue(updatedPayloadSizes.get(0) * 5 < savedPayloadSizes.get(0), "Partial updates should be smaller than the document");
+
+            Profile updatedProfile = persistenceService.load("profile1", Profile.class);
+            assertEquals(51, updatedProfile.getProperties().size());
+            assertEquals("a new value", updatedProfile.getProperty("property1"));
+            assertEquals("a value of the property 2", updatedProfile.getProperty("property2"));
+            assertEquals("Lausanne", ((Map<String, Object>) updatedProfile.getProperty("address")).get("city"));
+            assertEquals("Switzerland", ((Map<String, Object>) updatedProfile.getProperty("address")).get("country"));
+            assertEquals(new HashSet<>(Arrays.asList("segment1", "segment2")), updatedProfile.getSegments());
+
+            // Removed properties cannot be expressed as a partial update, the whole profile is indexed
+            profile.getProperties().remove("property2");
+            profileService.save(profile);
+            assertEquals(2, savedPayloadSizes.size(), "Removed properties should require the profile to be indexed");
+            assertNull(persistenceService.load("profile1", Profile.class).getProperty("property2"));
+
+            // Profiles saved through another path since they were loaded are indexed
+            profile = profileService.load("profile1");
+            persistenceService.save(profile);
+            profile.setProperty("property3", "another value");
+            profileService.save(profile);
+            assertEquals(3, savedPayloadSizes.size(), "Profiles saved since they were loaded should be indexed");
+
+            // Sessions are tracked the same way
+            Session session = new Session("session1", profile, new Date(), "scope");
+            profileService.saveSession(session);
+            int sessionPayloadSize = savedPayloadSizes.get(savedPayloadSizes.size() - 1);
+            session = profileService.loadSession("session1");
+            session.setSize(session.getSize() + 1);
+            session.setLastEventDate(new Date());
+            session.getProfile().setProperty("property4", "a session value");
+            profileService.saveSession(session);
+            assertEquals(4, savedPayloadSizes.size());
+            assertEquals(2, updatedPayloadSizes.size(), "Modified session properties should be sent in a partial update");
+            assertTrue(updatedPayloadSizes.get(1) * 5 < sessionPayloadSize, "Partial updates should be smaller than the document");
+            Session updatedSession = persistenceService.load("session1", Session.class);
+            assertEquals(1, updatedSession.getSize());
+            assertEquals("a session value", updatedSession.getProfile().getProperty("property4"));
+            assertEquals("a value of the property 5", updatedSession.getProfile().getProperty("property5"));
+            return null;
+        });
+    }
+
+    private String exportToCsv(Query query, boolean twoPass) {
+        StringWriter writer = new StringWriter();
+        try {
+            profileService.exportProfilesPropertiesToCsv(query, writer, twoPass);
+        } catch (IOException e) {
+            fail("Export failed: " + e.getMessage());
+        }
+        return writer.toString();
+    }
+
 }
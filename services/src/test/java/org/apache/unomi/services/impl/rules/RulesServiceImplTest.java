@@ -25,6 +25,7 @@ import org.apache.unomi.api.rules.Rule;
 import org.apache.unomi.api.rules.RuleStatistics;
 import org.apache.unomi.api.services.EventService;
 import org.apache.unomi.api.services.RuleListenerService;
+import org.apache.unomi.api.utils.ParserHelper;
 import org.apache.unomi.services.impl.scheduler.SchedulerServiceImpl;
 import org.apache.unomi.persistence.spi.PersistenceService;
 import org.apache.unomi.persistence.spi.conditions.evaluator.ConditionEvaluatorDispatcher;
@@ -50,6 +51,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
@@ -2206,4 +2208,117 @@ public class RulesServiceImplTest {
         });
     }
 
+    @Test
+    public void testRuleEventIndexMatchesUnindexedEvaluation() {
+        Random random = new Random(42);
+        String[] scopes = {"systemscope", "site1", "site2"};
+        List<Rule> allRules = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            String tenantId = i % 3 == 0 ? SYSTEM_TENANT : TENANT_1;
+            Rule rule = createTestRule();
+            rule.setItemId("random-rule-" + i);
+            rule.getMetadata().setId("random-rule-" + i);
+            rule.getMetadata().setScope(scopes[random.nextInt(scopes.length)]);
+            rule.setTenantId(tenantId);
+            rule.setCondition(createRandomEventCondition(random, 0));
+            executionContextManager.executeAsTenant(tenantId, () -> {
+                rulesService.setRule(rule);
+                return null;
+            });
+            allRules.add(rule);
+        }
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            for (int i = 0; i < 300; i++) {
+                Event event = createTestEvent();
+                event.setEventType(RANDOM_EVENT_TYPES[random.nextInt(RANDOM_EVENT_TYPES.length)]);
+                event.setScope(scopes[random.nextInt(scopes.length)]);
+                event.setTarget(random.nextInt(4) == 0 ? null : new CustomItem("target",
+                        RANDOM_ITEM_TYPES[random.nextInt(RANDOM_ITEM_TYPES.length)]));
+                event.setProperty("flag", random.nextBoolean() ? "yes" : "no");
+                // Negations are also tagged as source event conditions
+                event.setSource(new CustomItem("source", "site"));
+
+                Set<String> indexedRules = ids(rulesService.getMatchingRules(event));
+
+                // Evaluate every rule, and keep the rules that the event type index based on the event type
+                // conditions found in the rule condition would have tested
+                rulesService.setOptimizedRulesActivated(false);
+                Set<String> expectedRules = rulesService.getMatchingRules(event).stream().filter(rule -> {
+                    Set<String> eventTypeIds = ParserHelper.resolveConditionEventTypes(rule.getCondition(), definitionsService);
+                    return eventTypeIds.isEmpty() || eventTypeIds.contains("*") || eventTypeIds.contains(event.getEventType());
+                }).map(Rule::getItemId).collect(Collectors.toSet());
+                rulesService.setOptimizedRulesActivated(true);
+
+                assertEquals(expectedRules, indexedRules, "Matching rules differ for event " + event.getEventType() + " in scope "
+                        + event.getScope() + " on " + (event.getTarget() != null ? event.getTarget().getItemType() : null));
+            }
+            return null;
+        });
+    }
+
+    private static final String[] RANDOM_EVENT_TYPES = {"view", "click", "login", "form", "search", "other"};
+    private static final String[] RANDOM_ITEM_TYPES = {"page", "product", "form"};
+
+    private static Set<String> ids(Collection<Rule> rules) {
+        return rules.stream().map(Rule::getItemId).collect(Collectors.toSet());
+    }
+
+    private Condition createRandomEventCondition(Random random, int depth) {
+        // Rule conditions are combinations of conditions, nested up to three levels
+        int choice = depth == 0 ? 7 + random.nextInt(3) : random.nextInt(depth < 3 ? 10 : 7);
+        switch (choice) {
+            case 0:
+            case 1:
+                return createEventTypeCondition(RANDOM_EVENT_TYPES[random.nextInt(RANDOM_EVENT_TYPES.length - 1)]);
+            case 2:
+                return createEventPropertyCondition("eventType", random, RANDOM_EVENT_TYPES);
+            case 3:
+                return createEventPropertyCondition("target.itemType", random, RANDOM_ITEM_TYPES);
+            case 4: {
+                Condition condition = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
+                condition.setParameter("propertyName", "properties.flag");
+                condition.setParameter("comparisonOperator", "equals");
+                condition.setParameter("propertyValue", "yes");
+                return condition;
+            }
+            case 5:
+                return new Condition(definitionsService.getConditionType("matchAllCondition"));
+            case 6:
+                return createEventTypeCondition(RANDOM_EVENT_TYPES[random.nextInt(RANDOM_EVENT_TYPES.length - 1)]);
+            case 7: {
+                Condition condition = new Condition(definitionsService.getConditionType("notCondition"));
+                condition.setParameter("subCondition", createRandomEventCondition(random, depth + 1));
+                return condition;
+            }
+            default: {
+                List<Condition> subConditions = new ArrayList<>();
+                int count = 1 + random.nextInt(3);
+                for (int i = 0; i < count; i++) {
+                    subConditions.add(createRandomEventCondition(random, depth + 1));
+                }
+                return createBooleanCondition(random.nextBoolean() ? "and" : "or", subConditions);
+            }
+        }
+    }
+
+    private Condition createEventPropertyCondition(String propertyName, Random random, String[] values) {
+        Condition condition = new Condition(definitionsService.getConditionType("eventPropertyCondition"));
+        condition.setParameter("propertyName", propertyName);
+        String[] operators = {"equals", "notEquals", "in", "notIn"};
+        String operator = operators[random.nextInt(operators.length)];
+        condition.setParameter("comparisonOperator", operator);
+        if (operator.endsWith("quals")) {
+            condition.setParameter("propertyValue", values[random.nextInt(values.length)]);
+        } else {
+            List<String> propertyValues = new ArrayList<>();
+            for (String value : values) {
+                if (random.nextBoolean()) {
+                    propertyValues.add(value);
+                }
+            }
+            condition.setParameter("propertyValues", propertyValues);
+        }
+        return condition;
+    }
 }
@@ -25,6 +25,8 @@ import org.apache.unomi.api.conditions.Condition;
 import org.apache.unomi.api.conditions.ConditionType;
 import org.apache.unomi.api.exceptions.BadSegmentConditionException;
 import org.apache.unomi.api.rules.Rule;
+import org.apache.unomi.api.segments.Scoring;
+import org.apache.unomi.api.segments.ScoringElement;
 import org.apache.unomi.api.segments.Segment;
 import org.apache.unomi.api.segments.SegmentsAndScores;
 import org.apache.unomi.api.services.EventService;
@@ -53,6 +55,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -60,10 +63,19 @@ import org.osgi.framework.BundleContext;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -320,6 +332,202 @@ public class SegmentServiceImplTest {
         });
     }
 
+    @Test
+    public void testUnchangedSegmentDefinitionDoesNotUpdateProfiles() {
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile = new Profile("segment-profile");
+            profile.setProperty("testProperty", "testValue");
+            persistenceService.save(profile);
+            persistenceService.refreshIndex(Profile.class, null);
+
+            segmentService.setSegmentDefinition(createTestSegment("test-segment", "Test Segment"));
+            profile = persistenceService.load("segment-profile", Profile.class);
+            assertTrue(profile.getSegments().contains("test-segment"), "Profile should be added to the segment");
+
+            // Registering the same definition again should not recompute the segment
+            profile.getSegments().remove("test-segment");
+            persistenceService.save(profile);
+            persistenceService.refreshIndex(Profile.class, null);
+            segmentService.setSegmentDefinition(createTestSegment("test-segment", "Test Segment renamed"));
+            profile = persistenceService.load("segment-profile", Profile.class);
+            assertFalse(profile.getSegments().contains("test-segment"), "Unchanged segment should not update profiles");
+            assertEquals("Test Segment renamed", segmentService.getSegmentDefinition("test-segment").getMetadata().getName());
+
+            Segment modifiedSegment = createTestSegment("test-segment", "Test Segment");
+            modifiedSegment.getCondition().setParameter("comparisonOperator", "exists");
+            segmentService.setSegmentDefinition(modifiedSegment);
+            profile = persistenceService.load("segment-profile", Profile.class);
+            assertTrue(profile.getSegments().contains("test-segment"), "Modified segment should update profiles");
+            return null;
+        });
+    }
+
+    @Test
+    public void testFailedProfileUpdatesAreRetriedOnNextRegistration() {
+        PersistenceService failingPersistenceService = spy(persistenceService);
+        segmentService.setPersistenceService(failingPersistenceService);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile = new Profile("segment-profile");
+            profile.setProperty("testProperty", "testValue");
+            profile.setProperty("age", 30);
+            profile.setProperty("interest", "music");
+            persistenceService.save(profile);
+            persistenceService.refreshIndex(Profile.class, null);
+
+            // The segment is saved, but not its hash, as long as the profiles are not updated
+            doThrow(new RuntimeException("Profiles update failure")).when(failingPersistenceService)
+                    .query(any(Condition.class), isNull(), eq(Profile.class), anyInt(), anyInt(), eq("10m"));
+            assertThrows(RuntimeException.class, () -> segmentService.setSegmentDefinition(createTestSegment("test-segment", "Test Segment")));
+            assertNotNull(persistenceService.load("test-segment", Segment.class));
+            assertNull(persistenceService.load("test-segment", Segment.class).getDefinitionHash(), "The hash should not be saved before the profiles are updated");
+            assertFalse(persistenceService.load("segment-profile", Profile.class).getSegments().contains("test-segment"));
+
+            doCallRealMethod().when(failingPersistenceService)
+                    .query(any(Condition.class), isNull(), eq(Profile.class), anyInt(), anyInt(), eq("10m"));
+            segmentService.setSegmentDefinition(createTestSegment("test-segment", "Test Segment"));
+            assertTrue(persistenceService.load("segment-profile", Profile.class).getSegments().contains("test-segment"),
+                    "Registering the same definition again should update the profiles");
+            assertNotNull(persistenceService.load("test-segment", Segment.class).getDefinitionHash());
+
+            // Scorings are retried the same way
+            doReturn(false).when(failingPersistenceService)
+                    .updateWithQueryAndStoredScript(eq(Profile.class), any(String[].class), any(Map[].class), any(Condition[].class));
+            segmentService.setScoringDefinition(createTestScoring(10, 5, false));
+            assertNull(getScore("segment-profile"));
+            assertNull(persistenceService.load("test-scoring", Scoring.class).getDefinitionHash(), "The hash should not be saved before the profiles are updated");
+
+            doCallRealMethod().when(failingPersistenceService)
+                    .updateWithQueryAndStoredScript(eq(Profile.class), any(String[].class), any(Map[].class), any(Condition[].class));
+            segmentService.setScoringDefinition(createTestScoring(10, 5, false));
+            assertEquals(Integer.valueOf(15), getScore("segment-profile"), "Registering the same definition again should update the profiles");
+            assertNotNull(persistenceService.load("test-scoring", Scoring.class).getDefinitionHash());
+            return null;
+        });
+    }
+
+    @Test
+    public void testScoringDefinitionChangesAreAppliedIncrementally() {
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile1 = new Profile("scoring-profile1");
+            profile1.setProperty("age", 30);
+            profile1.setProperty("interest", "music");
+            persistenceService.save(profile1);
+            Profile profile2 = new Profile("scoring-profile2");
+            profile2.setProperty("age", 20);
+            profile2.setProperty("interest", "music");
+            persistenceService.save(profile2);
+
+            segmentService.setScoringDefinition(createTestScoring(10, 5, false));
+            assertEquals(Integer.valueOf(15), getScore("scoring-profile1"));
+            assertEquals(Integer.valueOf(5), getScore("scoring-profile2"));
+
+            // Registering the same definition again should not recompute the scores
+            persistenceService.load("scoring-profile1", Profile.class).getScores().put("test-scoring", 100);
+            segmentService.setScoringDefinition(createTestScoring(10, 5, false));
+            assertEquals(Integer.valueOf(100), getScore("scoring-profile1"), "Unchanged scoring should not update profiles");
+
+            // Only the modified and added elements should be applied
+            segmentService.setScoringDefinition(createTestScoring(10, 7, true));
+            assertEquals(Integer.valueOf(102), getScore("scoring-profile1"), "Scores should be updated with the changed elements only");
+            assertEquals(Integer.valueOf(8), getScore("scoring-profile2"));
+
+            Scoring disabledScoring = createTestScoring(10, 7, true);
+            disabledScoring.getMetadata().setEnabled(false);
+            segmentService.setScoringDefinition(disabledScoring);
+            assertNull(getScore("scoring-profile1"), "Disabling the scoring should reset the scores");
+            assertNull(getScore("scoring-profile2"));
+            return null;
+        });
+    }
+
+    @Test
+    public void testTimeDependentScoringChangesAreFullyRecomputed() {
+        // A condition type resolving through a parent condition relative to now, as newVisitorCondition does
+        Condition recentVisitParent = new Condition();
+        recentVisitParent.setConditionTypeId("profilePropertyCondition");
+        recentVisitParent.setParameter("propertyName", "properties.lastVisit");
+        recentVisitParent.setParameter("comparisonOperator", "greaterThan");
+        recentVisitParent.setParameter("propertyValueDate", "now-30d");
+        ConditionType recentVisitorType = new ConditionType(new Metadata("recentVisitorCondition"));
+        recentVisitorType.setParentCondition(recentVisitParent);
+        definitionsService.setConditionType(recentVisitorType);
+
+        executionContextManager.executeAsTenant(TENANT_1, () -> {
+            Profile profile = new Profile("scoring-profile1");
+            profile.setProperty("age", 30);
+            profile.setProperty("interest", "music");
+            persistenceService.save(profile);
+            segmentService.setScoringDefinition(createTestScoring(10, 5, false));
+            assertEquals(Integer.valueOf(15), getScore("scoring-profile1"));
+
+            // A date relative to now is time dependent, the scores are recomputed
+            persistenceService.load("scoring-profile1", Profile.class).getScores().put("test-scoring", 100);
+            Scoring scoring = createTestScoring(10, 5, false);
+            ScoringElement lastVisitElement = createScoringElement("properties.lastVisit", "greaterThan", "now-30d", 1);
+            lastVisitElement.getCondition().getParameterValues().remove("propertyValue");
+            lastVisitElement.getCondition().setParameter("propertyValueDate", "now-30d");
+            scoring.getElements().add(lastVisitElement);
+            segmentService.setScoringDefinition(scoring);
+            assertEquals(Integer.valueOf(15), getScore("scoring-profile1"), "Time dependent elements should recompute the scores");
+
+            // So is a condition whose type resolves through a time dependent parent condition
+            persistenceService.load("scoring-profile1", Profile.class).getScores().put("test-scoring", 100);
+            scoring = createTestScoring(10, 5, false);
+            Condition recentVisitorCondition = new Condition(recentVisitorType);
+            ScoringElement recentVisitorElement = new ScoringElement();
+            recentVisitorElement.setCondition(recentVisitorCondition);
+            recentVisitorElement.setValue(2);
+            scoring.getElements().add(recentVisitorElement);
+            segmentService.setScoringDefinition(scoring);
+            assertEquals(Integer.valueOf(15), getScore("scoring-profile1"), "Parent conditions should be inspected");
+
+            // Other changes are still applied incrementally
+            segmentService.setScoringDefinition(createTestScoring(10, 5, false));
+            persistenceService.load("scoring-profile1", Profile.class).getScores().put("test-scoring", 100);
+            segmentService.setScoringDefinition(createTestScoring(10, 7, false));
+            assertEquals(Integer.valueOf(102), getScore("scoring-profile1"), "Other elements should be applied incrementally");
+            return null;
+        });
+    }
+
+    private Scoring createTestScoring(int ageValue, int interestValue, boolean withYoungElement) {
+        Metadata metadata = new Metadata();
+        metadata.setId("test-scoring");
+        metadata.setName("Test Scoring");
+        metadata.setScope("systemscope");
+        metadata.setEnabled(true);
+        Scoring scoring = new Scoring(metadata);
+        scoring.setTenantId(executionContextManager.getCurrentContext().getTenantId());
+
+        List<ScoringElement> elements = new ArrayList<>();
+        elements.add(createScoringElement("properties.age", "greaterThan", 25, ageValue));
+        elements.add(createScoringElement("properties.interest", "equals", "music", interestValue));
+        if (withYoungElement) {
+            elements.add(createScoringElement("properties.age", "lessThan", 25, 1));
+        }
+        scoring.setElements(elements);
+        return scoring;
+    }
+
+    private ScoringElement createScoringElement(String propertyName, String comparisonOperator, Object propertyValue, int value) {
+        Condition condition = new Condition();
+        condition.setConditionType(definitionsService.getConditionType("profilePropertyCondition"));
+        condition.setConditionTypeId("profilePropertyCondition");
+        condition.setParameter("propertyName", propertyName);
+        condition.setParameter("comparisonOperator", comparisonOperator);
+        condition.setParameter(propertyValue instanceof Integer ? "propertyValueInteger" : "propertyValue", propertyValue);
+        ScoringElement element = new ScoringElement();
+        element.setCondition(condition);
+        element.setValue(value);
+        return element;
+    }
+
+    private Integer getScore(String profileId) {
+        Map<String, Integer> scores = persistenceService.load(profileId, Profile.class).getScores();
+        return scores != null ? scores.get("test-scoring") : null;
+    }
+
     @Test
     public void testIsProfileInSegment() {
         executionContextManager.executeAsTenant(TENANT_1, () -> {
@@ -698,6 +906,122 @@ public class SegmentServiceImplTest {
         });
     }
 
+    @Test
+    public void testPredefinedSegmentsStartupLoading(@TempDir Path definitionsDir) throws Exception {
+        int segmentCount = 200;
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < segmentCount; i++) {
+            urls.add(writePredefinedSegment(definitionsDir, "predefined-segment-" + i, "testValue"));
+        }
+        when(bundleContext.getBundle().findEntries(eq("META-INF/cxs/segments"), eq("*.json"), eq(true)))
+            .thenAnswer(invocation -> Collections.enumeration(urls));
+        // The profile updated events are processed asynchronously and would save the profile concurrently
+        segmentService.setSendProfileUpdateEventForSegmentUpdate(false);
+
+        executionContextManager.executeAsSystem(() -> {
+            Profile profile = new Profile("predefined-segments-profile");
+            profile.setProperty("testProperty", "testValue");
+            persistenceService.save(profile);
+            persistenceService.refreshIndex(Profile.class, null);
+            return null;
+        });
+
+        segmentService.processBundleStartup(bundleContext);
+
+        executionContextManager.executeAsSystem(() -> {
+            Profile profile = persistenceService.load("predefined-segments-profile", Profile.class);
+            assertEquals(segmentCount, profile.getSegments().size(), "Profiles should be updated once all the segments are loaded");
+
+            // Unchanged definitions should neither be saved again nor update the profiles
+            Profile newProfile = new Profile("predefined-segments-new-profile");
+            newProfile.setProperty("testProperty", "testValue");
+            persistenceService.save(newProfile);
+            persistenceService.refreshIndex(Profile.class, null);
+            return null;
+        });
+        Segment persistedSegment = executionContextManager.executeAsSystem(() -> persistenceService.load("predefined-segment-1", Segment.class));
+
+        segmentService.processBundleStartup(bundleContext);
+
+        executionContextManager.executeAsSystem(() -> {
+            assertSame(persistedSegment, persistenceService.load("predefined-segment-1", Segment.class), "Unchanged segment should not be saved");
+            assertNotNull(segmentService.getSegmentDefinition("predefined-segment-1"));
+            Profile newProfile = persistenceService.load("predefined-segments-new-profile", Profile.class);
+            assertTrue(newProfile.getSegments().isEmpty(), "Unchanged segments should not update profiles");
+            return null;
+        });
+
+        // A definition modified in a bundle should update the profiles
+        writePredefinedSegment(definitionsDir, "predefined-segment-0", "otherValue");
+        executionContextManager.executeAsSystem(() -> {
+            Profile otherProfile = new Profile("predefined-segments-other-profile");
+            otherProfile.setProperty("testProperty", "otherValue");
+            persistenceService.save(otherProfile);
+            persistenceService.refreshIndex(Profile.class, null);
+            return null;
+        });
+        segmentService.processBundleStartup(bundleContext);
+        executionContextManager.executeAsSystem(() -> {
+            Segment segment = segmentService.getSegmentDefinition("predefined-segment-0");
+            assertEquals("otherValue", segment.getCondition().getParameter("propertyValue"));
+            Profile otherProfile = persistenceService.load("predefined-segments-other-profile", Profile.class);
+            assertEquals(Collections.singleton("predefined-segment-0"), otherProfile.getSegments(), "Modified segment should update profiles");
+            Profile newProfile = persistenceService.load("predefined-segments-new-profile", Profile.class);
+            assertTrue(newProfile.getSegments().isEmpty(), "Unchanged segments should not update profiles");
+            return null;
+        });
+    }
+
+    @Test
+    public void testFailedPredefinedProfileUpdatesAreRetriedOnNextLoading(@TempDir Path definitionsDir) throws Exception {
+        List<URL> urls = Collections.singletonList(writePredefinedSegment(definitionsDir, "predefined-segment", "testValue"));
+        when(bundleContext.getBundle().findEntries(eq("META-INF/cxs/segments"), eq("*.json"), eq(true)))
+            .thenAnswer(invocation -> Collections.enumeration(urls));
+        segmentService.setSendProfileUpdateEventForSegmentUpdate(false);
+        PersistenceService failingPersistenceService = spy(persistenceService);
+        segmentService.setPersistenceService(failingPersistenceService);
+
+        executionContextManager.executeAsSystem(() -> {
+            Profile profile = new Profile("predefined-segment-profile");
+            profile.setProperty("testProperty", "testValue");
+            persistenceService.save(profile);
+            persistenceService.refreshIndex(Profile.class, null);
+            return null;
+        });
+
+        // The deferred update of the profiles fails, the segment is registered but its hash is not saved
+        doThrow(new RuntimeException("Profiles update failure")).when(failingPersistenceService)
+                .query(any(Condition.class), isNull(), eq(Profile.class), anyInt(), anyInt(), eq("10m"));
+        segmentService.processBundleStartup(bundleContext);
+        executionContextManager.executeAsSystem(() -> {
+            assertNotNull(segmentService.getSegmentDefinition("predefined-segment"));
+            assertNull(persistenceService.load("predefined-segment", Segment.class).getDefinitionHash(),
+                    "The hash should not be saved before the profiles are updated");
+            assertTrue(persistenceService.load("predefined-segment-profile", Profile.class).getSegments().isEmpty());
+            return null;
+        });
+
+        // The next loading of the unmodified definition updates the profiles
+        doCallRealMethod().when(failingPersistenceService)
+                .query(any(Condition.class), isNull(), eq(Profile.class), anyInt(), anyInt(), eq("10m"));
+        segmentService.processBundleStartup(bundleContext);
+        executionContextManager.executeAsSystem(() -> {
+            assertEquals(Collections.singleton("predefined-segment"), persistenceService.load("predefined-segment-profile", Profile.class).getSegments(),
+                    "Profiles should be updated by the next loading");
+            assertNotNull(persistenceService.load("predefined-segment", Segment.class).getDefinitionHash());
+            return null;
+        });
+    }
+
+    private URL writePredefinedSegment(Path definitionsDir, String segmentId, String propertyValue) throws IOException {
+        Path file = definitionsDir.resolve(segmentId + ".json");
+        Files.writeString(file, "{\"itemId\": \"" + segmentId + "\", \"metadata\": {\"id\": \"" + segmentId + "\", \"name\": \""
+            + segmentId + "\", \"enabled\": true}, \"condition\": {\"type\": \"profilePropertyCondition\", \"parameterValues\": "
+            + "{\"propertyName\": \"properties.testProperty\", \"comparisonOperator\": \"equals\", \"propertyValue\": \""
+            + propertyValue + "\"}}}");
+        return file.toUri().toURL();
+    }
+
     @Test
     public void testGetSegmentMetadatasTenantInheritance() {
         // Create segments in system tenant
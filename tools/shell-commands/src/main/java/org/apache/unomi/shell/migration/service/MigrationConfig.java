@@ -52,6 +52,9 @@ public class MigrationConfig {
     public static final String ROLLOVER_MAX_DOCS = "rolloverMaxDocs";
     public static final String SEARCH_ENGINE = "searchEngine";
     public static final String TENANT_ID = "tenantId";
+    public static final String REINDEX_SLICES = "reindex.slices";
+    public static final String REINDEX_REQUESTS_PER_SECOND = "reindex.requestsPerSecond";
+    public static final String REINDEX_PARALLELISM = "reindex.parallelism";
     protected static final Map<String, MigrationConfigProperty> configProperties;
     static {
         Map<String, MigrationConfigProperty> m = new HashMap<>();
@@ -31,6 +31,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 import static org.apache.unomi.shell.migration.service.MigrationConfig.*;
 import static org.apache.unomi.shell.migration.service.MigrationServiceImpl.MIGRATION_FS_ROOT_FOLDER;
@@ -51,6 +53,8 @@ import static org.apache.unomi.shell.migration.service.MigrationServiceImpl.MIGR
 public class MigrationContext {
     private static final Logger LOGGER = LoggerFactory.getLogger(MigrationContext.class);
 
+    private static final int DEFAULT_REINDEX_PARALLELISM = 2;
+
     private static final Path MIGRATION_FS_HISTORY_FILE = Paths.get(System.getProperty( "karaf.data" ), MIGRATION_FS_ROOT_FOLDER, "history.json");
 
     private enum MigrationStepState {
@@ -69,9 +73,10 @@ public class MigrationContext {
     private final ObjectMapper objectMapper;
     private CloseableHttpClient httpClient;
 
-    private Map<String, MigrationStepState> history = new HashMap<>();
+    private Map<String, MigrationStepState> history = new ConcurrentHashMap<>();
     private Map<String, String> userConfig = new HashMap<>();
     private Boolean logToLogger = true;
+    private Semaphore reindexPermits;
 
     public void setLogToLogger(Boolean logToLogger) {
         this.logToLogger = logToLogger;
@@ -85,7 +90,7 @@ public class MigrationContext {
     protected void tryRecoverFromHistory() throws IOException {
         if (Files.exists(MIGRATION_FS_HISTORY_FILE)) {
             if (getConfigBoolean(MIGRATION_HISTORY_RECOVER)) {
-                history = objectMapper.readValue(MIGRATION_FS_HISTORY_FILE.toFile(), new TypeReference<Map<String, MigrationStepState>>() {});
+                history = new ConcurrentHashMap<>(objectMapper.readValue(MIGRATION_FS_HISTORY_FILE.toFile(), new TypeReference<Map<String, MigrationStepState>>() {}));
             } else {
                 cleanHistory();
             }
@@ -280,7 +285,33 @@ public class MigrationContext {
     }
 
 
-    private void updateHistoryStep(String stepKey, MigrationStepState stepState) throws IOException {
+    /**
+     * The maximum number of re-indexation tasks running at the same time, from the reindex.parallelism configuration
+     * (2 by default).
+     * @return the re-indexation parallelism, at least 1
+     * @throws IOException
+     */
+    public int getReindexParallelism() throws IOException {
+        String parallelism = getConfigString(REINDEX_PARALLELISM);
+        return StringUtils.isBlank(parallelism) ? DEFAULT_REINDEX_PARALLELISM : Math.max(1, Integer.parseInt(parallelism.trim()));
+    }
+
+    /**
+     * The permits shared by all the re-indexation tasks of the migration, so that no more than
+     * {@link #getReindexParallelism()} tasks run on the search engine at the same time, whether they re-index different
+     * indices or different slices of an index.
+     * @return the re-indexation permits
+     * @throws IOException
+     */
+    public synchronized Semaphore getReindexPermits() throws IOException {
+        if (reindexPermits == null) {
+            reindexPermits = new Semaphore(getReindexParallelism());
+        }
+        return reindexPermits;
+    }
+
+    private synchronized void updateHistoryStep(String stepKey, MigrationStepState stepState) throws IOException {
+        // Steps may be performed in parallel, see MigrationUtils.forEachInParallel
         printMessage("Migration step: " + stepKey + " reach: " + stepState);
         history.put(stepKey, stepState);
         objectMapper.writeValue(MIGRATION_FS_HISTORY_FILE.toFile(), history);
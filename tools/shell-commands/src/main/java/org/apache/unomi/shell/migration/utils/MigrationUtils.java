@@ -16,6 +16,11 @@
  */
 package org.apache.unomi.shell.migration.utils;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
@@ -35,7 +40,10 @@ import java.io.*;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.apache.unomi.shell.migration.service.MigrationConfig.*;
 
@@ -46,6 +54,11 @@ public class MigrationUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MigrationUtils.class);
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String DEFAULT_REINDEX_SLICES = "auto";
+
     public static JSONObject queryWithScroll(CloseableHttpClient httpClient, String url) throws IOException {
         url += "?scroll=1m";
 
@@ -357,10 +370,10 @@ public class MigrationUtils {
                 .replace("#dest", targetIndexName)
                 .replace("#painless", StringUtils.isNotEmpty(painlessScript) ? getScriptPart(painlessScript, scriptParams) : "");
 
-        // Reindex
-        JSONObject task = new JSONObject(HttpUtils.executePostRequest(httpClient, esAddress + "/_reindex?wait_for_completion=false", reIndexRequest, null));
+        // Reindex, sliced by the search engine
+        String task = getTaskId(HttpUtils.executePostRequest(httpClient, esAddress + "/_reindex?wait_for_completion=false&slices=" + DEFAULT_REINDEX_SLICES, reIndexRequest, null));
         //Wait for the reindex task to finish
-        waitForTaskToFinish(httpClient, esAddress, task.getString("task"), null, "Reindex operation from " + sourceIndexName + " to " + targetIndexName);
+        waitForTaskToFinish(httpClient, esAddress, task, null, "Reindex operation from " + sourceIndexName + " to " + targetIndexName);
     }
 
     public static void deleteIndex(CloseableHttpClient httpClient, String esAddress, String indexName) throws Exception {
@@ -383,8 +396,8 @@ public class MigrationUtils {
 
         String reIndexRequest = resourceAsString(bundleContext, "requestBody/2.0.0/base_reindex_request.json")
                 .replace("#source", indexNameCloned)
-                .replace("#dest", indexName)
-                .replace("#painless", StringUtils.isNotEmpty(painlessScript) ? getScriptPart(painlessScript, scriptParams) : "");
+                .replace("#dest", indexName);
+        String scriptPart = StringUtils.isNotEmpty(painlessScript) ? getScriptPart(painlessScript, scriptParams) : "";
 
         String setIndexReadOnlyRequest = resourceAsString(bundleContext, "requestBody/2.0.0/base_set_index_readonly_request.json");
 
@@ -399,17 +412,39 @@ public class MigrationUtils {
             HttpUtils.executePostRequest(httpClient, esAddress + "/" + indexName + "/_clone/" + indexNameCloned, null, null);
         });
 
-        migrationContext.performMigrationStep(migrationUniqueName + " - reindex step for: " + indexName + " (recreate the index and perform the re-indexation)", () -> {
-            // Delete original index if it still exists
-            if (indexExists(httpClient, esAddress, indexName)) {
-                HttpUtils.executeDeleteRequest(httpClient, esAddress + "/" + indexName, null);
-            }
-            // Recreate the original index with new mappings
-            HttpUtils.executePutRequest(httpClient, esAddress + "/" + indexName, newIndexSettings, null);
-            // Reindex data from clone
-            JSONObject task = new JSONObject(HttpUtils.executePostRequest(httpClient, esAddress + "/_reindex?wait_for_completion=false", reIndexRequest, null));
-            //Wait for the reindex task to finish
-            waitForTaskToFinish(httpClient, esAddress, task.getString("task"), migrationContext, "Reindex operation for " + indexName);
+        String reIndexStepKey = migrationUniqueName + " - reindex step for: " + indexName + " (recreate the index and perform the re-indexation)";
+        migrationContext.performMigrationStep(reIndexStepKey, () -> {
+            // The index is only recreated once, an interrupted re-indexation resumes with the slices not completed yet
+            migrationContext.performMigrationStep(reIndexStepKey + " - recreate the index", () -> {
+                // Delete original index if it still exists
+                if (indexExists(httpClient, esAddress, indexName)) {
+                    HttpUtils.executeDeleteRequest(httpClient, esAddress + "/" + indexName, null);
+                }
+                // Recreate the original index with new mappings
+                HttpUtils.executePutRequest(httpClient, esAddress + "/" + indexName, newIndexSettings, null);
+            });
+
+            // Reindex data from clone, each slice being a separate task recorded in the migration history. The tasks of
+            // all the indices re-indexed in parallel share the same permits, bounding the load on the search engine.
+            int slices = getReindexSlices(httpClient, esAddress, indexNameCloned, migrationContext);
+            String reIndexUrl = esAddress + "/_reindex?wait_for_completion=false" + getRequestsPerSecondParameter(migrationContext, migrationUniqueName);
+            Semaphore reindexPermits = migrationContext.getReindexPermits();
+            forEachInParallel(IntStream.range(0, slices).boxed().collect(Collectors.toList()), Math.min(slices, migrationContext.getReindexParallelism()), slice -> {
+                String sliceDescription = slices > 1 ? " slice " + (slice + 1) + "/" + slices : "";
+                migrationContext.performMigrationStep(reIndexStepKey + " - reindex" + sliceDescription, () -> {
+                    String sliceRequest = reIndexRequest
+                            .replace("#slice", slices > 1 ? ", \"slice\": {\"id\": " + slice + ", \"max\": " + slices + "}" : "")
+                            .replace("#painless", scriptPart);
+                    reindexPermits.acquire();
+                    try {
+                        String task = getTaskId(HttpUtils.executePostRequest(httpClient, reIndexUrl, sliceRequest, null));
+                        //Wait for the reindex task to finish
+                        waitForTaskToFinish(httpClient, esAddress, task, migrationContext, "Reindex operation for " + indexName + sliceDescription);
+                    } finally {
+                        reindexPermits.release();
+                    }
+                });
+            });
         });
 
         migrationContext.performMigrationStep(migrationUniqueName + " - reindex step for: " + indexName + " (delete clone)", () -> {
@@ -431,31 +466,168 @@ public class MigrationUtils {
         String response = HttpUtils.executePostRequest(httpClient, esAddress + queryURL + "?scroll=" + scrollDuration, query, null);
 
         while (true) {
-            JSONObject responseAsJson = new JSONObject(response);
-            String scrollId = responseAsJson.has("_scroll_id") ? responseAsJson.getString("_scroll_id") : null;
-            JSONArray hits = new JSONArray();
-            if (responseAsJson.has("hits")) {
-                JSONObject hitsObject = responseAsJson.getJSONObject("hits");
-                if (hitsObject.has("hits")) {
-                    hits = hitsObject.getJSONArray("hits");
-                }
-            }
+            ScrollPage page = parseScrollPage(response);
 
             // no more results, delete scroll
-            if (hits.isEmpty()) {
-                if (scrollId != null) {
-                    HttpUtils.executeDeleteRequest(httpClient, esAddress + "/_search/scroll/" + scrollId, null);
+            if (page.hits == null) {
+                if (page.scrollId != null) {
+                    HttpUtils.executeDeleteRequest(httpClient, esAddress + "/_search/scroll/" + page.scrollId, null);
                 }
                 break;
             }
 
             // execute callback
             if (scrollCallback != null) {
-                scrollCallback.execute(hits.toString());
+                scrollCallback.execute(page.hits);
             }
 
             // scroll
-            response = HttpUtils.executePostRequest(httpClient, esAddress + "/_search/scroll", "{\n" + "  \"scroll_id\": \"" + scrollId + "\",\n" + "  \"scroll\": \"" + scrollDuration + "\"\n" + "}", null);
+            response = HttpUtils.executePostRequest(httpClient, esAddress + "/_search/scroll", "{\n" + "  \"scroll_id\": \"" + page.scrollId + "\",\n" + "  \"scroll\": \"" + scrollDuration + "\"\n" + "}", null);
+        }
+    }
+
+    private static class ScrollPage {
+        String scrollId;
+        // The hits array as found in the response, null if there are no hits
+        String hits;
+    }
+
+    /**
+     * Extracts the scroll ID and the hits of a search response with a streaming parser: the hits are skipped over
+     * instead of being parsed, and passed to the scroll callback as they appear in the response.
+     *
+     * @param response the search response
+     * @return the scroll ID and the hits of the response
+     * @throws IOException if the response is not valid JSON
+     */
+    private static ScrollPage parseScrollPage(String response) throws IOException {
+        ScrollPage page = new ScrollPage();
+        try (JsonParser parser = JSON_FACTORY.createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return page;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("_scroll_id".equals(fieldName)) {
+                    page.scrollId = parser.getValueAsString();
+                } else if ("hits".equals(fieldName) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String hitsFieldName = parser.getCurrentName();
+                        if (parser.nextToken() == JsonToken.START_ARRAY && "hits".equals(hitsFieldName)) {
+                            int start = (int) parser.getTokenLocation().getCharOffset();
+                            boolean empty = parser.nextToken() == JsonToken.END_ARRAY;
+                            if (!empty) {
+                                parser.skipChildren();
+                                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                                    parser.skipChildren();
+                                }
+                                page.hits = response.substring(start, (int) parser.getCurrentLocation().getCharOffset());
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return page;
+    }
+
+    private static String getTaskId(String response) throws IOException {
+        return OBJECT_MAPPER.readTree(response).get("task").asText();
+    }
+
+    /**
+     * Retrieves the number of slices of a re-indexation, from the reindex.slices configuration. As for the search
+     * engine automatic slicing, "auto" uses one slice per primary shard of the source index.
+     */
+    private static int getReindexSlices(CloseableHttpClient httpClient, String esAddress, String sourceIndexName, MigrationContext migrationContext) throws IOException {
+        String slices = StringUtils.defaultIfBlank(migrationContext.getConfigString(REINDEX_SLICES), DEFAULT_REINDEX_SLICES);
+        if (!DEFAULT_REINDEX_SLICES.equals(slices)) {
+            return Math.max(1, Integer.parseInt(slices.trim()));
+        }
+        JsonNode settings = OBJECT_MAPPER.readTree(HttpUtils.executeGetRequest(httpClient, esAddress + "/" + sourceIndexName + "/_settings/index.number_of_shards", null));
+        JsonNode numberOfShards = settings.path(sourceIndexName).path("settings").path("index").path("number_of_shards");
+        return numberOfShards.isMissingNode() ? 1 : Math.max(1, numberOfShards.asInt(1));
+    }
+
+    /**
+     * Builds the requests_per_second parameter of a re-indexation, from the reindex.requestsPerSecond configuration,
+     * which can be overridden for a migration step with reindex.requestsPerSecond.[migration step name]
+     */
+    private static String getRequestsPerSecondParameter(MigrationContext migrationContext, String migrationUniqueName) throws IOException {
+        String requestsPerSecond = migrationContext.getConfigString(REINDEX_REQUESTS_PER_SECOND + "." + migrationUniqueName);
+        if (StringUtils.isBlank(requestsPerSecond)) {
+            requestsPerSecond = migrationContext.getConfigString(REINDEX_REQUESTS_PER_SECOND);
+        }
+        if (StringUtils.isBlank(requestsPerSecond) || Double.parseDouble(requestsPerSecond.trim()) <= 0) {
+            return "";
+        }
+        return "&requests_per_second=" + requestsPerSecond.trim();
+    }
+
+    /**
+     * Executes a migration task for each of the given items, running at most reindex.parallelism tasks at the same
+     * time (2 by default), for instance to re-index several indices in parallel. The slices of the re-indexations
+     * started by the tasks are bounded by the same limit, see {@link MigrationContext#getReindexPermits()}.
+     *
+     * @param migrationContext the migration context
+     * @param items the items, usually index names
+     * @param task the task to execute for each item
+     * @param <T> the type of the items
+     * @throws Exception the failure of the first task that failed, the tasks still running are then interrupted
+     */
+    public static <T> void forEachInParallel(MigrationContext migrationContext, Collection<T> items, ParallelTask<T> task) throws Exception {
+        forEachInParallel(items, migrationContext.getReindexParallelism(), task);
+    }
+
+    /**
+     * Executes a migration task for each of the given items, running at most the given number of tasks at the same time.
+     *
+     * @param items the items
+     * @param parallelism the maximum number of tasks running at the same time, tasks are executed sequentially in the
+     *                    calling thread if lower than 2
+     * @param task the task to execute for each item
+     * @param <T> the type of the items
+     * @throws Exception the failure of the first task that failed, the tasks still running are then interrupted
+     */
+    public static <T> void forEachInParallel(Collection<T> items, int parallelism, ParallelTask<T> task) throws Exception {
+        if (parallelism < 2 || items.size() < 2) {
+            for (T item : items) {
+                task.execute(item);
+            }
+            return;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(parallelism, items.size()), runnable -> {
+            Thread thread = new Thread(runnable, "unomi-migration-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+            for (T item : items) {
+                completionService.submit(() -> {
+                    task.execute(item);
+                    return null;
+                });
+            }
+            for (int i = 0; i < items.size(); i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
         }
     }
 
@@ -487,10 +659,10 @@ public class MigrationUtils {
      * @throws Exception if there is an error during the HTTP request or while waiting for the task to finish
      */
     public static void updateByQuery(CloseableHttpClient httpClient, String esAddress, String indexName, String requestBody) throws Exception {
-        JSONObject task = new JSONObject(HttpUtils.executePostRequest(httpClient, esAddress + "/" + indexName + "/_update_by_query?wait_for_completion=false", requestBody, null));
+        String task = getTaskId(HttpUtils.executePostRequest(httpClient, esAddress + "/" + indexName + "/_update_by_query?wait_for_completion=false", requestBody, null));
 
         //Wait for the update task to finish
-        waitForTaskToFinish(httpClient, esAddress, task.getString("task"), null, "Update by query operation for " + indexName);
+        waitForTaskToFinish(httpClient, esAddress, task, null, "Update by query operation for " + indexName);
     }
 
     /**
@@ -507,9 +679,9 @@ public class MigrationUtils {
      * @throws Exception if there is an error during the HTTP request or while waiting for the task to finish
      */
     public static void deleteByQuery(CloseableHttpClient httpClient, String esAddress, String indexName, String requestBody) throws Exception {
-        JSONObject task = new JSONObject(HttpUtils.executePostRequest(httpClient, esAddress + "/" + indexName + "/_delete_by_query?wait_for_completion=false", requestBody, null));
+        String task = getTaskId(HttpUtils.executePostRequest(httpClient, esAddress + "/" + indexName + "/_delete_by_query?wait_for_completion=false", requestBody, null));
         //Wait for the deletion task to finish
-        waitForTaskToFinish(httpClient, esAddress, task.getString("task"), null, "Delete by query operation for " + indexName);
+        waitForTaskToFinish(httpClient, esAddress, task, null, "Delete by query operation for " + indexName);
     }
 
     public static void waitForTaskToFinish(CloseableHttpClient httpClient, String esAddress, String taskId, MigrationContext migrationContext, String taskDescription) throws IOException {
@@ -919,6 +1091,10 @@ public class MigrationUtils {
         void execute(String hits);
     }
 
+    public interface ParallelTask<T> {
+        void execute(T item) throws Exception;
+    }
+
     private static String getScriptPart(String painlessScript, Map<String, Object> params) {
         JSONObject scriptObj = new JSONObject();
         scriptObj.put("source", painlessScript);
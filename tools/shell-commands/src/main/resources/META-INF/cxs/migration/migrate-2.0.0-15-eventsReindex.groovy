@@ -33,6 +33,6 @@ String reIndexScript = MigrationUtils.getFileWithoutComments(bundleContext, "req
 String mapping = MigrationUtils.extractMappingFromBundles(bundleContext, "event.json")
 String newIndexSettings = MigrationUtils.buildIndexCreationRequest(baseSettings, mapping, context, true)
 Set<String> eventIndices = MigrationUtils.getIndexesPrefixedBy(context.getHttpClient(), esAddress, "${indexPrefix}-event-date-")
-eventIndices.each { eventIndex ->
+MigrationUtils.forEachInParallel(context, eventIndices, { String eventIndex ->
     MigrationUtils.reIndex(context.getHttpClient(), bundleContext, esAddress, eventIndex, newIndexSettings, reIndexScript, context, "migrate-2.0.0-15-eventsReindex")
-}
+})
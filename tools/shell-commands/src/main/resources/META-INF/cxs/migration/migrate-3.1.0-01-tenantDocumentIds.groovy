@@ -117,8 +117,8 @@ context.performMigrationStep("3.1.0-get-all-indices", () -> {
     // Get the Painless script
     String updateScript = MigrationUtils.getFileWithoutComments(bundleContext, "requestBody/3.1.0/initialize_tenant_and_audit_fields.painless")
 
-    // Process each index (reindex them)
-    allIndices.each { indexName ->
+    // Process each index (reindex them), several indices at a time
+    MigrationUtils.forEachInParallel(context, allIndices, { String indexName ->
         context.printMessage("Processing index: " + indexName)
 
         // Determine item type and get configuration
@@ -145,7 +145,7 @@ context.performMigrationStep("3.1.0-get-all-indices", () -> {
 
         // Execute reindex
         MigrationUtils.reIndex(context.getHttpClient(), bundleContext, esAddress, indexName, newIndexSettings, updateScript, params, context, "3.1.0-${indexName}-update")
-    }
+    })
     
     // Configure aliases for rollover indices after all reindexing is complete
     // For each rollover alias, find all indices and set the latest one as write index
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.shell.migration.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.unomi.shell.migration.service.MigrationConfig;
+import org.apache.unomi.shell.migration.service.MigrationContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the re-indexation and scroll utilities against a local stub of the search engine HTTP API.
+ */
+public class MigrationUtilsReindexTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private String esAddress;
+    private CloseableHttpClient httpClient;
+    private BundleContext bundleContext;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<JsonNode> reindexBodies = new CopyOnWriteArrayList<>();
+    private final Set<String> indices = Collections.synchronizedSet(new HashSet<>());
+    private final Map<String, Integer> taskSlices = Collections.synchronizedMap(new HashMap<>());
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final AtomicInteger runningTasks = new AtomicInteger();
+    private final AtomicInteger maxRunningTasks = new AtomicInteger();
+    private volatile Integer failingSlice;
+    private final List<String> scrollPages = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUpMigrationFolder() throws IOException {
+        // The migration history is written in the Karaf data folder
+        File karafData = Files.createTempDirectory("unomi-migration-test").toFile();
+        new File(karafData, "migration").mkdirs();
+        System.setProperty("karaf.data", karafData.getAbsolutePath());
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        esAddress = "http://localhost:" + server.getAddress().getPort();
+        httpClient = HttpClients.createDefault();
+
+        bundleContext = mock(BundleContext.class);
+        Bundle bundle = mock(Bundle.class);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        when(bundle.getResource(anyString())).thenAnswer(invocation -> getClass().getClassLoader().getResource(invocation.<String>getArgument(0)));
+
+        indices.add("context-profile");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        requests.add(method + " " + path + (query != null ? "?" + query : ""));
+
+        int status = 200;
+        String response = "{}";
+        if (path.equals("/_reindex")) {
+            JsonNode reindexBody = OBJECT_MAPPER.readTree(body);
+            reindexBodies.add(reindexBody);
+            String taskId = "node:" + taskCount.incrementAndGet();
+            taskSlices.put(taskId, reindexBody.path("source").path("slice").path("id").asInt(0));
+            maxRunningTasks.accumulateAndGet(runningTasks.incrementAndGet(), Math::max);
+            response = "{\"task\":\"" + taskId + "\"}";
+        } else if (path.startsWith("/_tasks/")) {
+            Integer slice = taskSlices.get(path.substring("/_tasks/".length()));
+            // Tasks run for a while, so that the tasks of parallel re-indexations overlap
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            runningTasks.decrementAndGet();
+            if (slice.equals(failingSlice)) {
+                response = "{\"completed\":true,\"error\":{\"type\":\"node_closed_exception\",\"reason\":\"node closed\"}}";
+            } else {
+                response = "{\"completed\":true,\"task\":{\"status\":{\"total\":10,\"created\":10}}}";
+            }
+        } else if (path.equals("/_cluster/health")) {
+            response = "{\"timed_out\":false,\"status\":\"green\"}";
+        } else if (path.endsWith("/_settings/index.number_of_shards")) {
+            String indexName = path.substring(1, path.indexOf("/_settings"));
+            response = "{\"" + indexName + "\":{\"settings\":{\"index\":{\"number_of_shards\":\"3\"}}}}";
+        } else if (path.contains("/_clone/")) {
+            indices.add(path.substring(path.indexOf("/_clone/") + "/_clone/".length()));
+        } else if (path.endsWith("/_search") || path.equals("/_search/scroll")) {
+            response = scrollPages.isEmpty() ? "{\"_scroll_id\":\"scroll1\",\"hits\":{\"hits\":[]}}" : scrollPages.remove(0);
+        } else if (path.lastIndexOf('/') == 0 && !path.startsWith("/_")) {
+            String indexName = path.substring(1);
+            if (method.equals("GET") && !indices.contains(indexName)) {
+                status = 404;
+            } else if (method.equals("PUT")) {
+                indices.add(indexName);
+            } else if (method.equals("DELETE")) {
+                indices.remove(indexName);
+            }
+        }
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private MigrationContext createMigrationContext(Map<String, String> config) {
+        MigrationConfig migrationConfig = new MigrationConfig();
+        migrationConfig.modified(config);
+        return new MigrationContext(null, migrationConfig) {
+        };
+    }
+
+    private long countRequests(String prefix) {
+        return requests.stream().filter(request -> request.startsWith(prefix)).count();
+    }
+
+    @Test
+    public void testReIndexIsSlicedAndThrottled() throws Exception {
+        Map<String, String> config = new HashMap<>();
+        config.put(MigrationConfig.REINDEX_REQUESTS_PER_SECOND, "1000");
+        config.put(MigrationConfig.REINDEX_REQUESTS_PER_SECOND + ".test-migration", "500");
+        MigrationContext migrationContext = createMigrationContext(config);
+
+        MigrationUtils.reIndex(httpClient, bundleContext, esAddress, "context-profile", "{}", "ctx._source.test = params.value",
+                Collections.singletonMap("value", "test"), migrationContext, "test-migration");
+
+        // One task per primary shard of the clone, throttled with the configuration of the step
+        assertEquals(3, reindexBodies.size());
+        Set<Integer> slices = new HashSet<>();
+        for (JsonNode reindexBody : reindexBodies) {
+            assertEquals("context-profile-cloned", reindexBody.path("source").path("index").asText());
+            assertEquals(3, reindexBody.path("source").path("slice").path("max").asInt());
+            slices.add(reindexBody.path("source").path("slice").path("id").asInt());
+            assertEquals("context-profile", reindexBody.path("dest").path("index").asText());
+            assertEquals("ctx._source.test = params.value", reindexBody.path("script").path("source").asText());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(0, 1, 2)), slices);
+        assertEquals(3, countRequests("POST /_reindex?wait_for_completion=false&requests_per_second=500"));
+        assertFalse(indices.contains("context-profile-cloned"));
+        assertTrue(indices.contains("context-profile"));
+    }
+
+    @Test
+    public void testReIndexWithFixedSlices() throws Exception {
+        MigrationContext migrationContext = createMigrationContext(Collections.singletonMap(MigrationConfig.REINDEX_SLICES, "1"));
+
+        MigrationUtils.reIndex(httpClient, bundleContext, esAddress, "context-profile", "{}", null, migrationContext, "test-migration");
+
+        assertEquals(1, reindexBodies.size());
+        assertTrue(reindexBodies.get(0).path("source").path("slice").isMissingNode());
+        assertTrue(reindexBodies.get(0).path("script").isMissingNode());
+        assertEquals(0, countRequests("GET /context-profile-cloned/_settings"));
+        assertEquals(1, countRequests("POST /_reindex?wait_for_completion=false"));
+    }
+
+    @Test
+    public void testInterruptedReIndexResumesRemainingSlices() throws Exception {
+        // All the slices are started before the failure
+        MigrationContext migrationContext = createMigrationContext(Collections.singletonMap(MigrationConfig.REINDEX_PARALLELISM, "3"));
+        failingSlice = 1;
+
+        try {
+            MigrationUtils.reIndex(httpClient, bundleContext, esAddress, "context-profile", "{}", null, migrationContext, "test-migration");
+            fail("The re-indexation of a slice failed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("node_closed_exception"));
+        }
+        assertEquals(3, reindexBodies.size());
+        assertEquals(1, requests.stream().filter("PUT /context-profile"::equals).count());
+
+        // The index is not recreated and only the failed slice is re-indexed
+        failingSlice = null;
+        reindexBodies.clear();
+        requests.clear();
+        MigrationUtils.reIndex(httpClient, bundleContext, esAddress, "context-profile", "{}", null, migrationContext, "test-migration");
+
+        assertEquals(1, reindexBodies.size());
+        assertEquals(1, reindexBodies.get(0).path("source").path("slice").path("id").asInt());
+        assertEquals(0, requests.stream().filter("PUT /context-profile"::equals).count());
+        assertEquals(0, countRequests("POST /context-profile/_clone"));
+        assertEquals(1, countRequests("DELETE /context-profile-cloned"));
+    }
+
+    @Test
+    public void testParallelReIndexationsShareTheParallelismLimit() throws Exception {
+        indices.add("context-session");
+        MigrationContext migrationContext = createMigrationContext(Collections.singletonMap(MigrationConfig.REINDEX_PARALLELISM, "2"));
+
+        MigrationUtils.forEachInParallel(migrationContext, Arrays.asList("context-profile", "context-session"), indexName ->
+                MigrationUtils.reIndex(httpClient, bundleContext, esAddress, indexName, "{}", null, migrationContext, "test-migration-" + indexName));
+
+        // Each index has 3 slices, but no more than 2 tasks run at the same time across both indices
+        assertEquals(6, reindexBodies.size());
+        assertTrue(maxRunningTasks.get() <= 2);
+        assertEquals(2, migrationContext.getReindexPermits().availablePermits());
+    }
+
+    @Test
+    public void testScrollQueryStreamsHits() throws Exception {
+        scrollPages.add("{\"_scroll_id\":\"scroll1\",\"took\":1,\"hits\":{\"total\":{\"value\":3},\"max_score\":1.0,\"hits\":["
+                + "{\"_id\":\"1\",\"_source\":{\"nested\":{\"values\":[1,2,{\"a\":\"]\"}]}}},{\"_id\":\"2\",\"_source\":{}}]},\"_shards\":{\"total\":1}}");
+        scrollPages.add("{\"_scroll_id\":\"scroll1\",\"hits\":{\"hits\":[ {\"_id\":\"3\"} ]}}");
+        List<String> pages = new ArrayList<>();
+
+        MigrationUtils.scrollQuery(httpClient, esAddress, "/context-profile/_search", "{}", "1m", pages::add);
+
+        assertEquals(2, pages.size());
+        JsonNode firstPage = OBJECT_MAPPER.readTree(pages.get(0));
+        assertEquals(2, firstPage.size());
+        assertEquals("]", firstPage.get(0).path("_source").path("nested").path("values").get(2).path("a").asText());
+        assertEquals("2", firstPage.get(1).path("_id").asText());
+        assertEquals("3", OBJECT_MAPPER.readTree(pages.get(1)).get(0).path("_id").asText());
+        assertEquals(1, countRequests("POST /context-profile/_search?scroll=1m"));
+        assertEquals(2, countRequests("POST /_search/scroll"));
+        assertEquals(1, countRequests("DELETE /_search/scroll/scroll1"));
+    }
+
+    @Test
+    public void testForEachInParallel() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(i);
+        }
+
+        MigrationUtils.forEachInParallel(items, 3, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            running.decrementAndGet();
+            executed.add(item);
+        });
+
+        assertEquals(20, executed.size());
+        assertEquals(new HashSet<>(items), new HashSet<>(executed));
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= 3);
+
+        try {
+            MigrationUtils.forEachInParallel(items, 3, item -> {
+                if (item == 5) {
+                    throw new IOException("failure of " + item);
+                }
+            });
+            fail("The failure of a task should be propagated");
+        } catch (IOException e) {
+            assertEquals("failure of 5", e.getMessage());
+        }
+    }
+}
@@ -38,6 +38,16 @@ public interface TracerService {
      */
     void disableTracing();
 
+    /**
+     * Enable tracing for the current request if it is part of the sampled requests of a tenant, as configured by the
+     * sample rates of the implementation. The trace of a sampled request is logged when tracing is disabled.
+     * @param tenantId the tenant of the request, may be null
+     * @return true if tracing was enabled for the current request
+     */
+    default boolean enableSampledTracing(String tenantId) {
+        return false;
+    }
+
     /**
      * Check if tracing is enabled for the current request
      * @return true if tracing is enabled
@@ -19,21 +19,32 @@ package org.apache.unomi.tracing.impl;
 import org.apache.unomi.tracing.api.RequestTracer;
 import org.apache.unomi.tracing.api.TraceNode;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Stack;
+import java.util.Deque;
 
 /**
- * Default implementation of the RequestTracer interface that stores trace information in a tree structure
+ * Default implementation of the RequestTracer interface that stores trace information in a tree structure.
+ * <p>
+ * Operations are recorded in a per thread buffer of events keeping references to the context and result objects
+ * (conditions, items, ...). The objects are only rendered to strings when the trace tree is built by
+ * {@link #getTraceNode()}, usually to serialize it at the end of the request: a trace shows the state of the objects
+ * at that time.
  */
 public class DefaultRequestTracer implements RequestTracer {
 
-    private final ThreadLocal<Boolean> enabled = ThreadLocal.withInitial(() -> false);
-    private final ThreadLocal<TraceNode> currentNode = new ThreadLocal<>();
-    private final ThreadLocal<TraceNode> rootNode = new ThreadLocal<>();
-    private final ThreadLocal<Stack<TraceNode>> nodeStack = ThreadLocal.withInitial(Stack::new);
-    private final ThreadLocal<Integer> droppedOperations = ThreadLocal.withInitial(() -> 0);
     private static final int MAX_CONTEXT_STRING_LENGTH = 4096;
     private static final int MAX_TRACE_DEPTH = 100;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_EVENTS = 65536;
+
+    private static final byte START = 0;
+    private static final byte END = 1;
+    private static final byte TRACE = 2;
+    private static final byte VALIDATION = 3;
+
+    private final ThreadLocal<TraceBuffer> buffer = ThreadLocal.withInitial(TraceBuffer::new);
 
     private static String safeContextToString(Object context) {
         if (context == null) {
@@ -54,115 +65,249 @@ public class DefaultRequestTracer implements RequestTracer {
 
     @Override
     public void startOperation(String operationType, String description, Object context) {
-        if (!isEnabled()) {
+        TraceBuffer traceBuffer = buffer.get();
+        if (!traceBuffer.enabled) {
             return;
         }
 
-        if (rootNode.get() != null && nodeStack.get().size() >= MAX_TRACE_DEPTH) {
-            droppedOperations.set(droppedOperations.get() + 1);
+        if (traceBuffer.rootStarted && traceBuffer.stackSize >= MAX_TRACE_DEPTH) {
+            traceBuffer.droppedOperations++;
+            return;
+        }
+        // Room is kept for the end of the operation and of all the open operations
+        if (traceBuffer.rootStarted && !traceBuffer.hasRoom(traceBuffer.stackSize + 3)) {
+            traceBuffer.droppedOperations++;
+            traceBuffer.droppedEvents++;
             return;
         }
 
-        TraceNode node = new TraceNode();
-        node.setOperationType(operationType);
-        node.setDescription(description);
-        node.setContext(safeContextToString(context));
-        node.setStartTime(System.currentTimeMillis());
-
-        if (rootNode.get() == null) {
-            rootNode.set(node);
-            currentNode.set(node);
-        } else {
-            TraceNode parent = currentNode.get();
-            parent.addChild(node);
-            nodeStack.get().push(currentNode.get());
-            currentNode.set(node);
+        traceBuffer.add(START, operationType, description, context);
+        if (traceBuffer.rootStarted) {
+            traceBuffer.stackSize++;
         }
+        traceBuffer.rootStarted = true;
     }
 
     @Override
     public void endOperation(Object result, String description) {
-        if (!isEnabled()) {
+        TraceBuffer traceBuffer = buffer.get();
+        if (!traceBuffer.enabled) {
             return;
         }
 
-        int dropped = droppedOperations.get();
-        if (dropped > 0) {
-            droppedOperations.set(dropped - 1);
+        if (traceBuffer.droppedOperations > 0) {
+            traceBuffer.droppedOperations--;
             return;
         }
 
-        TraceNode node = currentNode.get();
-        if (node != null) {
-            node.setResult(safeContextToString(result));
-            node.setDescription(description);
-            node.setEndTime(System.currentTimeMillis());
-
-            if (!nodeStack.get().isEmpty()) {
-                currentNode.set(nodeStack.get().pop());
+        if (traceBuffer.rootStarted) {
+            if (traceBuffer.stackSize > 0) {
+                traceBuffer.stackSize--;
+            } else if (!traceBuffer.hasRoom(1)) {
+                // Extra end of the root operation
+                traceBuffer.droppedEvents++;
+                return;
             }
+            traceBuffer.add(END, null, description, result);
         }
     }
 
     @Override
     public void trace(String message, Object context) {
-        if (!isEnabled()) {
-            return;
-        }
-
-        TraceNode node = currentNode.get();
-        if (node != null) {
-            if (context != null) {
-                node.addTrace(message + " - Context: " + safeContextToString(context));
-            } else {
-                node.addTrace(message);
-            }
-        }
+        addTrace(TRACE, message, context);
     }
 
     @Override
     public void addValidationInfo(Collection<?> validationMessages, String schemaId) {
-        if (!isEnabled()) {
+        addTrace(VALIDATION, schemaId, validationMessages);
+    }
+
+    private void addTrace(byte kind, String label, Object value) {
+        TraceBuffer traceBuffer = buffer.get();
+        if (!traceBuffer.enabled || !traceBuffer.rootStarted) {
             return;
         }
-
-        TraceNode node = currentNode.get();
-        if (node != null) {
-            node.addTrace("Validation against schema " + schemaId + ": " + safeContextToString(validationMessages));
+        if (!traceBuffer.hasRoom(traceBuffer.stackSize + 2)) {
+            traceBuffer.droppedEvents++;
+            return;
         }
+        traceBuffer.add(kind, label, null, value);
     }
 
     @Override
     public TraceNode getTraceNode() {
-        if (!isEnabled() || rootNode.get() == null) {
+        TraceBuffer traceBuffer = buffer.get();
+        if (!traceBuffer.enabled || !traceBuffer.rootStarted) {
             return null;
         }
-        return rootNode.get();
+        if (traceBuffer.builtNode == null || traceBuffer.builtSize != traceBuffer.size) {
+            traceBuffer.builtNode = traceBuffer.build();
+            traceBuffer.builtSize = traceBuffer.size;
+        }
+        return traceBuffer.builtNode;
     }
 
     @Override
     public boolean isEnabled() {
-        return enabled.get();
+        return buffer.get().enabled;
     }
 
     @Override
     public void setEnabled(boolean enabled) {
-        this.enabled.set(enabled);
+        buffer.get().enabled = enabled;
     }
 
     @Override
     public void reset() {
-        rootNode.remove();
-        currentNode.remove();
-        nodeStack.remove();
-        droppedOperations.set(0);
+        buffer.get().clear();
+    }
+
+    boolean isSampled() {
+        return buffer.get().sampled;
+    }
+
+    String getSampledTenantId() {
+        return buffer.get().sampledTenantId;
+    }
+
+    void setSampled(boolean sampled, String tenantId) {
+        TraceBuffer traceBuffer = buffer.get();
+        traceBuffer.sampled = sampled;
+        traceBuffer.sampledTenantId = tenantId;
     }
 
     void removeThreadLocals() {
-        enabled.remove();
-        currentNode.remove();
-        rootNode.remove();
-        nodeStack.remove();
-        droppedOperations.remove();
+        buffer.remove();
+    }
+
+    /**
+     * The events recorded for the current request, in parallel arrays grown on demand up to {@link #MAX_EVENTS}.
+     */
+    private static final class TraceBuffer {
+        private boolean enabled;
+        private boolean sampled;
+        private String sampledTenantId;
+
+        private byte[] kinds;
+        // Operation type, trace message or schema id
+        private String[] labels;
+        private String[] descriptions;
+        // Context, result, trace context or validation messages, rendered when the tree is built
+        private Object[] values;
+        private long[] times;
+        private int size;
+
+        private boolean rootStarted;
+        // Open operations below the root operation
+        private int stackSize;
+        private int droppedOperations;
+        private int droppedEvents;
+
+        private TraceNode builtNode;
+        private int builtSize;
+
+        private boolean hasRoom(int events) {
+            return size + events <= MAX_EVENTS;
+        }
+
+        private void add(byte kind, String label, String description, Object value) {
+            if (kinds == null) {
+                allocate(INITIAL_CAPACITY);
+            } else if (size == kinds.length) {
+                allocate(Math.min(MAX_EVENTS, kinds.length * 2));
+            }
+            kinds[size] = kind;
+            labels[size] = label;
+            descriptions[size] = description;
+            values[size] = value;
+            times[size] = System.currentTimeMillis();
+            size++;
+        }
+
+        private void allocate(int capacity) {
+            if (kinds == null) {
+                kinds = new byte[capacity];
+                labels = new String[capacity];
+                descriptions = new String[capacity];
+                values = new Object[capacity];
+                times = new long[capacity];
+            } else {
+                kinds = Arrays.copyOf(kinds, capacity);
+                labels = Arrays.copyOf(labels, capacity);
+                descriptions = Arrays.copyOf(descriptions, capacity);
+                values = Arrays.copyOf(values, capacity);
+                times = Arrays.copyOf(times, capacity);
+            }
+        }
+
+        private void clear() {
+            if (kinds != null && kinds.length > INITIAL_CAPACITY * 16) {
+                // Do not keep the memory of an exceptionally large trace
+                kinds = null;
+                labels = null;
+                descriptions = null;
+                values = null;
+                times = null;
+            } else if (kinds != null) {
+                Arrays.fill(labels, 0, size, null);
+                Arrays.fill(descriptions, 0, size, null);
+                Arrays.fill(values, 0, size, null);
+            }
+            size = 0;
+            rootStarted = false;
+            stackSize = 0;
+            droppedOperations = 0;
+            droppedEvents = 0;
+            builtNode = null;
+            builtSize = 0;
+        }
+
+        private TraceNode build() {
+            TraceNode root = null;
+            TraceNode current = null;
+            Deque<TraceNode> nodeStack = new ArrayDeque<>();
+            for (int i = 0; i < size; i++) {
+                switch (kinds[i]) {
+                    case START:
+                        TraceNode node = new TraceNode();
+                        node.setOperationType(labels[i]);
+                        node.setDescription(descriptions[i]);
+                        node.setContext(safeContextToString(values[i]));
+                        node.setStartTime(times[i]);
+                        if (root == null) {
+                            root = node;
+                        } else {
+                            current.addChild(node);
+                            nodeStack.push(current);
+                        }
+                        current = node;
+                        break;
+                    case END:
+                        current.setResult(safeContextToString(values[i]));
+                        current.setDescription(descriptions[i]);
+                        current.setEndTime(times[i]);
+                        if (!nodeStack.isEmpty()) {
+                            current = nodeStack.pop();
+                        }
+                        break;
+                    case TRACE:
+                        if (values[i] != null) {
+                            current.addTrace(labels[i] + " - Context: " + safeContextToString(values[i]));
+                        } else {
+                            current.addTrace(labels[i]);
+                        }
+                        break;
+                    case VALIDATION:
+                        current.addTrace("Validation against schema " + labels[i] + ": " + safeContextToString(values[i]));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (root != null && droppedEvents > 0) {
+                root.addTrace("Trace buffer full, " + droppedEvents + " events were not recorded");
+            }
+            return root;
+        }
     }
 }
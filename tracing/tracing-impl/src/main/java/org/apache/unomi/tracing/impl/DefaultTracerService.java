@@ -16,18 +16,83 @@
  */
 package org.apache.unomi.tracing.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.unomi.tracing.api.RequestTracer;
 import org.apache.unomi.tracing.api.TracerService;
 import org.apache.unomi.tracing.api.TraceNode;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Default implementation of the TracerService
+ * Default implementation of the TracerService.
+ * <p>
+ * Besides the requests explicitly traced, a fraction of the requests of each tenant can be sampled, see
+ * {@link #enableSampledTracing(String)}: the traces of sampled requests are logged at the INFO level by the
+ * {@value #SAMPLED_TRACES_LOGGER_NAME} logger.
  */
-@Component(service = TracerService.class, immediate = true)
+@Component(service = TracerService.class, immediate = true, configurationPid = {"org.apache.unomi.tracing"})
 public class DefaultTracerService implements TracerService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultTracerService.class.getName());
+
+    public static final String SAMPLED_TRACES_LOGGER_NAME = "org.apache.unomi.tracing.sampled";
+    public static final String SAMPLE_RATE = "sampleRate";
+    public static final String TENANT_SAMPLE_RATES = "tenantSampleRates";
+
+    private static final Logger SAMPLED_TRACES_LOGGER = LoggerFactory.getLogger(SAMPLED_TRACES_LOGGER_NAME);
+
     private final ThreadLocal<RequestTracer> currentTracer = new ThreadLocal<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile double sampleRate = 0;
+    private volatile Map<String, Double> tenantSampleRates = Collections.emptyMap();
+
+    @Activate
+    @Modified
+    public void modified(Map<String, Object> config) {
+        sampleRate = parseSampleRate(config.get(SAMPLE_RATE), SAMPLE_RATE);
+        Map<String, Double> rates = new HashMap<>();
+        Object tenantRates = config.get(TENANT_SAMPLE_RATES);
+        if (tenantRates != null) {
+            for (String tenantRate : tenantRates.toString().split(",")) {
+                if (tenantRate.isBlank()) {
+                    continue;
+                }
+                int separator = tenantRate.lastIndexOf(':');
+                if (separator <= 0) {
+                    LOGGER.warn("Ignoring invalid tenant sample rate {}, expected tenantId:rate", tenantRate);
+                    continue;
+                }
+                String tenantId = tenantRate.substring(0, separator).trim();
+                rates.put(tenantId, parseSampleRate(tenantRate.substring(separator + 1), TENANT_SAMPLE_RATES + " of tenant " + tenantId));
+            }
+        }
+        tenantSampleRates = rates;
+        if (sampleRate > 0 || !rates.isEmpty()) {
+            LOGGER.info("Request trace sampling enabled, sample rate: {}, tenant sample rates: {}", sampleRate, rates);
+        }
+    }
+
+    private static double parseSampleRate(Object value, String name) {
+        if (value == null || value.toString().isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Math.min(1, Double.parseDouble(value.toString().trim())));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid {} {}, request trace sampling disabled", name, value);
+            return 0;
+        }
+    }
 
     @Override
     public RequestTracer getCurrentTracer() {
@@ -42,19 +107,59 @@ public class DefaultTracerService implements TracerService {
     @Override
     public void enableTracing() {
         RequestTracer tracer = getCurrentTracer();
+        if (tracer instanceof DefaultRequestTracer) {
+            ((DefaultRequestTracer) tracer).setSampled(false, null);
+        }
         tracer.setEnabled(true);
         tracer.reset();
     }
 
+    @Override
+    public boolean enableSampledTracing(String tenantId) {
+        double rate = sampleRate;
+        if (tenantId != null) {
+            rate = tenantSampleRates.getOrDefault(tenantId, rate);
+        }
+        if (rate <= 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return false;
+        }
+        enableTracing();
+        RequestTracer tracer = getCurrentTracer();
+        if (tracer instanceof DefaultRequestTracer) {
+            ((DefaultRequestTracer) tracer).setSampled(true, tenantId);
+        }
+        return true;
+    }
+
     @Override
     public void disableTracing() {
         RequestTracer tracer = currentTracer.get();
         if (tracer != null) {
+            if (tracer instanceof DefaultRequestTracer && ((DefaultRequestTracer) tracer).isSampled()) {
+                logSampledTrace((DefaultRequestTracer) tracer);
+            }
             tracer.setEnabled(false);
             tracer.reset();
         }
     }
 
+    private void logSampledTrace(DefaultRequestTracer tracer) {
+        String tenantId = tracer.getSampledTenantId();
+        tracer.setSampled(false, null);
+        if (!SAMPLED_TRACES_LOGGER.isInfoEnabled()) {
+            return;
+        }
+        TraceNode traceNode = tracer.getTraceNode();
+        if (traceNode == null) {
+            return;
+        }
+        try {
+            SAMPLED_TRACES_LOGGER.info("Sampled request trace for tenant {}: {}", tenantId, objectMapper.writeValueAsString(traceNode));
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Failed to serialize sampled request trace for tenant {}", tenantId, e);
+        }
+    }
+
     @Override
     public boolean isTracingEnabled() {
         RequestTracer tracer = currentTracer.get();
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.unomi.tracing.impl;
+
+import org.apache.unomi.api.Profile;
+import org.apache.unomi.api.conditions.Condition;
+import org.apache.unomi.tracing.api.TraceNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link DefaultRequestTracer} and the sampling of {@link DefaultTracerService}
+ */
+public class DefaultRequestTracerTest {
+
+    private DefaultTracerService tracerService;
+
+    @BeforeEach
+    public void setUp() {
+        tracerService = new DefaultTracerService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tracerService.cleanup();
+    }
+
+    @Test
+    public void testContextsAreRenderedWhenTheTraceIsBuilt() {
+        AtomicInteger renderings = new AtomicInteger();
+        Object context = new Object() {
+            @Override
+            public String toString() {
+                renderings.incrementAndGet();
+                return "rendered-context";
+            }
+        };
+
+        tracerService.enableTracing();
+        DefaultRequestTracer tracer = (DefaultRequestTracer) tracerService.getCurrentTracer();
+        tracer.startOperation("root", "Root operation", context);
+        for (int i = 0; i < 100; i++) {
+            tracer.startOperation("child", "Child operation", context);
+            tracer.trace("Child trace", context);
+            tracer.endOperation(context, "Child completed");
+        }
+        tracer.endOperation(null, "Root completed");
+        assertEquals(0, renderings.get(), "Contexts should not be rendered while recording");
+
+        TraceNode root = tracer.getTraceNode();
+        assertEquals(301, renderings.get(), "Contexts should be rendered once when the trace is built");
+        assertEquals("rendered-context", root.getContext());
+        assertEquals(100, root.getChildren().size());
+        assertEquals("Child trace - Context: rendered-context", root.getChildren().get(0).getTraces().get(0));
+        assertEquals("rendered-context", root.getChildren().get(99).getResult());
+
+        assertSame(root, tracer.getTraceNode(), "An unchanged trace should not be built again");
+        assertEquals(301, renderings.get());
+    }
+
+    @Test
+    public void testDepthLimitDropsNestedOperations() {
+        tracerService.enableTracing();
+        DefaultRequestTracer tracer = (DefaultRequestTracer) tracerService.getCurrentTracer();
+        for (int i = 0; i < 150; i++) {
+            tracer.startOperation("level-" + i, null, null);
+        }
+        for (int i = 149; i >= 0; i--) {
+            tracer.endOperation(i, null);
+        }
+
+        TraceNode node = tracer.getTraceNode();
+        int depth = 1;
+        while (!node.getChildren().isEmpty()) {
+            node = node.getChildren().get(0);
+            depth++;
+        }
+        assertEquals(101, depth, "Operations deeper than the limit should be dropped");
+        assertEquals("100", node.getResult(), "Ends of dropped operations should not end recorded operations");
+        assertEquals("0", tracer.getTraceNode().getResult());
+    }
+
+    @Test
+    public void testFullBufferKeepsTheEndsOfRecordedOperations() {
+        tracerService.enableTracing();
+        DefaultRequestTracer tracer = (DefaultRequestTracer) tracerService.getCurrentTracer();
+        tracer.startOperation("root", null, null);
+        tracer.startOperation("child", null, null);
+        for (int i = 0; i < 70000; i++) {
+            tracer.trace("message", null);
+        }
+        tracer.startOperation("dropped", null, null);
+        tracer.endOperation("dropped-result", null);
+        tracer.endOperation("child-result", null);
+        tracer.endOperation("root-result", null);
+
+        TraceNode root = tracer.getTraceNode();
+        assertEquals("root-result", root.getResult());
+        assertEquals(1, root.getChildren().size());
+        TraceNode child = root.getChildren().get(0);
+        assertEquals("child-result", child.getResult());
+        assertTrue(child.getChildren().isEmpty(), "Operations should not be recorded once the buffer is full");
+        assertTrue(child.getTraces().size() < 70000);
+        assertTrue(root.getTraces().get(0).startsWith("Trace buffer full"), "Dropped events should be reported");
+
+        // The buffer is reusable after a reset
+        tracer.reset();
+        tracer.startOperation("root", null, null);
+        tracer.trace("message", null);
+        assertEquals(1, tracer.getTraceNode().getTraces().size());
+    }
+
+    @Test
+    public void testResetReleasesContextReferences() {
+        tracerService.enableTracing();
+        DefaultRequestTracer tracer = (DefaultRequestTracer) tracerService.getCurrentTracer();
+        tracer.startOperation("root", null, new Profile("profile"));
+        tracer.reset();
+        tracer.startOperation("root", null, null);
+        assertNull(tracer.getTraceNode().getContext());
+    }
+
+    @Test
+    public void testSampling() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(DefaultTracerService.SAMPLE_RATE, "0");
+        config.put(DefaultTracerService.TENANT_SAMPLE_RATES, "sampled:1, partial:0.5,invalid");
+        tracerService.modified(config);
+
+        assertFalse(tracerService.enableSampledTracing(null));
+        assertFalse(tracerService.enableSampledTracing("other"));
+        assertFalse(tracerService.isTracingEnabled());
+
+        assertTrue(tracerService.enableSampledTracing("sampled"));
+        assertTrue(tracerService.isTracingEnabled());
+        DefaultRequestTracer tracer = (DefaultRequestTracer) tracerService.getCurrentTracer();
+        assertTrue(tracer.isSampled());
+        tracer.startOperation("root", "Sampled request", null);
+        tracer.endOperation(null, "Sampled request completed");
+        tracerService.disableTracing();
+        assertFalse(tracerService.isTracingEnabled());
+        assertFalse(tracer.isSampled());
+
+        int sampled = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (tracerService.enableSampledTracing("partial")) {
+                sampled++;
+                tracerService.disableTracing();
+            }
+        }
+        assertTrue(sampled > 4000 && sampled < 6000, "About half of the requests should be sampled: " + sampled);
+
+        config.put(DefaultTracerService.SAMPLE_RATE, "1");
+        tracerService.modified(config);
+        assertTrue(tracerService.enableSampledTracing("other"));
+        tracerService.disableTracing();
+
+        // Explicit tracing is not logged as sampled
+        assertTrue(tracerService.enableSampledTracing("sampled"));
+        tracerService.enableTracing();
+        assertFalse(tracer.isSampled());
+    }
+
+    @Test
+    public void testTracingDoesNotChangeConditionEvaluation() {
+        List<Condition> conditions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Condition condition = new Condition();
+            condition.setConditionTypeId("profilePropertyCondition");
+            condition.setParameter("propertyName", "properties.property" + i);
+            condition.setParameter("comparisonOperator", "equals");
+            condition.setParameter("propertyValue", "value" + (i % 3));
+            conditions.add(condition);
+        }
+        Profile profile = new Profile("profile");
+        for (int i = 0; i < 20; i++) {
+            profile.setProperty("property" + i, "value" + (i % 2));
+        }
+        int requests = 10;
+
+        int matches = evaluate(conditions, profile, requests, false);
+        assertEquals(requests * 8, matches);
+        assertEquals(matches, evaluate(conditions, profile, requests, true));
+    }
+
+    private int evaluate(List<Condition> conditions, Profile profile, int requests, boolean traced) {
+        int matches = 0;
+        for (int request = 0; request < requests; request++) {
+            if (traced) {
+                tracerService.enableTracing();
+                tracerService.getCurrentTracer().startOperation("context-request", "Processing context request", profile);
+            }
+            for (Condition condition : conditions) {
+                DefaultRequestTracer tracer = null;
+                if (tracerService.isTracingEnabled()) {
+                    tracer = (DefaultRequestTracer) tracerService.getCurrentTracer();
+                    tracer.startOperation("condition-evaluation", "Evaluating condition: " + condition.getConditionTypeId(), condition);
+                }
+                String propertyName = ((String) condition.getParameter("propertyName")).substring("properties.".length());
+                boolean result = Objects.equals(profile.getProperty(propertyName), condition.getParameter("propertyValue"));
+                if (result) {
+                    matches++;
+                }
+                if (tracer != null) {
+                    tracer.endOperation(result, "Condition evaluation completed");
+                }
+            }
+            if (traced) {
+                tracerService.getCurrentTracer().endOperation(null, "Context request processed successfully");
+                tracerService.disableTracing();
+            }
+        }
+        return matches;
+    }
+}